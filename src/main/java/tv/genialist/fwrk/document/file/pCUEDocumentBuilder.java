@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.document.file;
+
+import java.io.File;
+import java.util.List;
+
+import tv.genialist.fwrk.document.pFragmentPosition;
+import tv.genialist.fwrk.media.pMediaUtil;
+import tv.genialist.fwrk.media.pMetadata;
+import tv.genialist.fwrk.media.cue.pCUESheet;
+import tv.genialist.fwrk.media.cue.pCUEStringPool;
+import tv.genialist.fwrk.media.cue.pCUETrack;
+import tv.genialist.ptools.util.pDuration;
+
+/**
+ * The <code>pCUEDocumentBuilder</code> class creates the media documents of the tracks of a cue sheet.
+ * <p>
+ * Each track becomes a {@link pMediaFileDocument} of the media file, limited to the track by a {@link pFragmentPosition}.
+ * The meta-data of a document is copied from its track on first access only, so that the tracks can belong to a shared frozen sheet
+ * and the documents of a large sheet are created at once.
+ * The path of the .cue file is shared with the documents built before from the same sheet through the {@link pCUEStringPool}.
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ * @see pCUESheet
+ */
+public final class pCUEDocumentBuilder {
+
+	/**************************************************************************/
+	/***  SUB-CLASSES  ********************************************************/
+	/**************************************************************************/
+
+	/**
+	 * The document of a track, which copies the meta-data of the track on first access.
+	 * <p>
+	 * The values set when the document is created (its identifier and {@link pMediaUtil#MNAME_LENGTH}) are written into the
+	 * meta-data of the document as usual, and kept when the values of the track are added to it. The methods of the document classes
+	 * that read the meta-data without calling {@link #getMetadata()} only see these values until the first call to {@link #getMetadata()}.
+	 * @since 0.9.30
+	 */
+	private static final class pCUEDocumentBuilder_Document extends pMediaFileDocument {
+
+		/** The track, until its meta-data is copied. Guarded by <code>this</code>. */
+		private pCUETrack m_track;
+		private final String m_cue_path;
+		private final pDuration m_duration;
+
+		pCUEDocumentBuilder_Document(final File p_media, final pCUETrack p_track, final String p_cue_path, final pDuration p_duration) {
+			super(p_media);
+			m_track = p_track;
+			m_cue_path = p_cue_path;
+			m_duration = p_duration;
+		}
+
+		@Override
+		public pMetadata getMetadata() {
+			synchronized(this) {
+				if (null!=m_track) {
+					final pMetadata i_track = m_track.copyMetadata();
+					m_track = null;
+					
+					//*** ADDED TO THE VALUES ALREADY SET (putValue() OF THE DOCUMENT), WHICH ARE KEPT
+					final pMetadata i_metadata = super.getMetadata();
+					if (null==i_metadata) {
+						i_track.setDuration(m_duration);
+						i_track.put(pMediaUtil.MNAME_TRACKS_FILE, m_cue_path);
+						super.setMetadata(i_track);
+					}
+					else {
+						for(String i_key : pCUETrack.getMetadataKeys()) {
+							final Object i_value = i_track.get(i_key);
+							if (null!=i_value && null==i_metadata.get(i_key))
+								i_metadata.put(i_key, i_value);
+						}
+						i_metadata.setDuration(m_duration);
+						i_metadata.put(pMediaUtil.MNAME_TRACKS_FILE, m_cue_path);
+					}
+				}
+			}
+			return super.getMetadata();
+		}
+
+		@Override
+		public void setMetadata(final pMetadata p_metadata) {
+			synchronized(this) {
+				m_track = null;
+			}
+			super.setMetadata(p_metadata);
+		}
+	}
+
+	/**************************************************************************/
+	/***  CONSTRUCTORS  *******************************************************/
+	/**************************************************************************/
+
+	private pCUEDocumentBuilder() {
+		super();
+	}
+
+	/**************************************************************************/
+	/***  STATIC METHODS  *****************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Creates the media documents of the tracks of a cue sheet.
+	 * <p>
+	 * @param p_media The media file described by the sheet.
+	 * @param p_cue The .cue file, used for the {@link pMediaUtil#MNAME_TRACKS_FILE} meta-data.
+	 * @param p_sheet The cue sheet.
+	 * @param p_result The list where the documents are added.
+	 * @return The number of documents added.
+	 * @see #addDocuments(File, File, pCUESheet, long, List)
+	 */
+	public static int addDocuments(final File p_media, final File p_cue, final pCUESheet p_sheet, final List<? super pMediaFileDocument> p_result) {
+		return addDocuments(p_media, p_cue, p_sheet, -1, p_result);
+	}
+
+	/**
+	 * Creates the media documents of the tracks of a cue sheet that belong to a media file.
+	 * <p>
+	 * If the sheet references several media files, only the tracks of the "FILE" line matching the media file are added.
+	 * <p>
+	 * @param p_media The media file described by the sheet.
+	 * @param p_cue The .cue file, used for the {@link pMediaUtil#MNAME_TRACKS_FILE} meta-data.
+	 * @param p_sheet The cue sheet.
+	 * @param p_total_length The length of the media file, if known (in milliseconds): it is used for the end of its last track if the sheet does not define it.
+	 * @param p_result The list where the documents are added.
+	 * @return The number of documents added.
+	 */
+	public static int addDocuments(final File p_media, final File p_cue, final pCUESheet p_sheet, final long p_total_length, final List<? super pMediaFileDocument> p_result) {
+		//*** ONLY THE TRACKS OF THE MEDIA FILE WHEN THE SHEET REFERENCES SEVERAL FILES
+		final List<pCUETrack> i_tracks = p_sheet.isMultiFile()? p_sheet.getTracks(p_sheet.getFile(p_media.getName())) : p_sheet.getTrackList();
+
+		return addDocuments(p_media, p_cue, i_tracks, p_total_length, p_result);
+	}
+
+	/**
+	 * Creates the media documents of tracks.
+	 * <p>
+	 * @param p_media The media file of the tracks.
+	 * @param p_cue The .cue file, used for the {@link pMediaUtil#MNAME_TRACKS_FILE} meta-data.
+	 * @param p_tracks The tracks, in the order of the sheet.
+	 * @param p_total_length The length of the media file, if known (in milliseconds): it is used for the end of the last track if it is not known.
+	 * @param p_result The list where the documents are added.
+	 * @return The number of documents added.
+	 */
+	public static int addDocuments(final File p_media, final File p_cue, final List<pCUETrack> p_tracks, final long p_total_length, final List<? super pMediaFileDocument> p_result) {
+		//*** THE DOCUMENTS OF A SHEET BUILT AGAIN SHARE THE PATH OF THE PREVIOUS ONES
+		final String i_cue_path = pCUEStringPool.getDefaultInstance().intern(p_cue.getAbsolutePath());
+		final int i_len = p_tracks.size();
+
+		for(int i=0 ; i<i_len ; i++) {
+			final pCUETrack i_track = p_tracks.get(i);
+
+			long i_end = i_track.getEnd();
+			if (i_end<0 && i==i_len-1 && p_total_length>0)
+				i_end = p_total_length;
+			final pDuration i_duration = pDuration.getInstance((i_end<0)? 0 : i_end - i_track.getStart());
+
+			//0.9.30: the meta-data is copied on first access
+			final pMediaFileDocument i_doc = new pCUEDocumentBuilder_Document(p_media, i_track, i_cue_path, i_duration);
+
+			final pFragmentPosition i_position = new pFragmentPosition();
+			i_position.setStartPosition(i_track.getStart());
+			i_position.setEndPosition(i_end);
+
+			i_doc.setFragment(i_position);
+			i_doc.setID(i_track.getID());
+			i_doc.putValue(pMediaUtil.MNAME_LENGTH, i_duration);
+
+			p_result.add(i_doc);
+		}
+		return i_len;
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/
@@ -0,0 +1,329 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.media.cue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import tv.genialist.fwrk.document.file.pCUEDocumentBuilder;
+import tv.genialist.fwrk.media.pMediaUtil;
+import tv.genialist.ptools.string.pString;
+
+/**
+ * Measures the main paths of the cue sheet classes on synthetic sheets and prints out the results.
+ * <p>
+ * Every benchmark is run for each sheet size: warm-up iterations first, then measured iterations of a fixed duration.
+ * The results are the throughput (operations per second), the average time of an operation, and the bytes allocated
+ * by an operation with the garbage collections during the measure.
+ * <p>
+ * <b>Example:</b>
+ * <dl>
+ * <dd><code>
+ * java -cp ... tv.genialist.fwrk.media.cue.bench_pCUESheet 10,100,1000,10000 parse update<br>
+ * </code>
+ * </dl>
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ */
+public class bench_pCUESheet {
+
+	/**************************************************************************/
+	/***  DEFINITIONS  ********************************************************/
+	/**************************************************************************/
+
+	/** The default numbers of tracks of the sheets. */
+	private static final int[] DEFAULT_SIZES = { 10, 100, 1000, 10000 };
+
+	/** The number of warm-up iterations. */
+	private static final int WARMUP_ITERATIONS = 3;
+
+	/** The number of measured iterations. */
+	private static final int ITERATIONS = 5;
+
+	/** The duration of an iteration (in nanoseconds). */
+	private static final long ITERATION_TIME = 1_000_000_000L;
+
+	/** The last position of an index in the generated sheets (99:00:00, in CD frames). */
+	private static final int MAX_FRAMES = 99*60*75;
+
+	/** The values written in the generated sheets, with accented and non-latin characters. */
+	private static final String[] WORDS = { "Intro", "Night", "Caf\u00E9", "D\u00E9j\u00E0 Vu", "M\u00FCnchen", "Se\u00F1or", "Stra\u00DFe", "\u00C9t\u00E9", "\u6771\u4EAC", "\u041C\u043E\u0441\u043A\u0432\u0430", "Remix", "Dub" };
+
+	/**************************************************************************/
+	/***  SUB-CLASSES  ********************************************************/
+	/**************************************************************************/
+
+	/**
+	 * An operation to measure.
+	 */
+	private interface bench_pCUESheet_Operation {
+
+		/**
+		 * Runs the operation once.
+		 * <p>
+		 * @param p_index The number of the operation in the iteration.
+		 * @return A result that is consumed so that the operation is not optimized away.
+		 */
+		Object run(int p_index) throws Exception;
+	}
+
+	/**
+	 * The encodings of the generated sheets.
+	 * <p>
+	 * Shared with the JMH benchmarks (see <code>bench_pCUESheetJMH</code>).
+	 */
+	enum bench_pCUESheet_Encoding {
+		UTF8(StandardCharsets.UTF_8, null),
+		UTF8_BOM(StandardCharsets.UTF_8, new byte[] { (byte)0xEF, (byte)0xBB, (byte)0xBF }),
+		UTF16_BOM(StandardCharsets.UTF_16LE, new byte[] { (byte)0xFF, (byte)0xFE }),
+		WINDOWS_1252(Charset.forName("windows-1252"), null);
+
+		private final Charset m_charset;
+		private final byte[] m_bom;
+
+		bench_pCUESheet_Encoding(final Charset p_charset, final byte[] p_bom) {
+			m_charset = p_charset;
+			m_bom = p_bom;
+		}
+	}
+
+	/**************************************************************************/
+	/***  RUNTIME DATA  *******************************************************/
+	/**************************************************************************/
+
+	/** The results of the operations, so that they are not optimized away. */
+	private static volatile int SINK;
+
+	/**************************************************************************/
+	/***  MAIN METHOD  ********************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Runs the benchmarks and prints out the results.
+	 * <p>
+	 * @param p_args The numbers of tracks separated by commas (optional), then the names of the benchmarks to run (all by default):
+	 * <code>parse</code>, <code>getTracks</code>, <code>getTrack</code>, <code>insertTrack</code>, <code>toString</code>,
+	 * <code>save</code>, <code>update</code>, <code>playlist</code>.
+	 */
+	public static void main(final String[] p_args) throws Exception {
+		int[] i_sizes = DEFAULT_SIZES;
+		List<String> i_names = new ArrayList<>(Arrays.asList(p_args));
+		if (!i_names.isEmpty() && Character.isDigit(i_names.get(0).charAt(0)))
+			i_sizes = Arrays.stream(i_names.remove(0).split(",")).mapToInt(Integer::parseInt).toArray();
+
+		final Path i_dir = Files.createTempDirectory("bench_pCUESheet");
+		try {
+			System.out.println(String.format(Locale.ROOT, "%-24s %7s %14s %14s %14s %6s %8s", "Benchmark", "Tracks", "ops/s", "ns/op", "B/op", "GCs", "GC ms"));
+			for(int i_size : i_sizes)
+				run(i_size, i_dir, i_names);
+		}
+		finally {
+			try (final Stream<Path> i_files = Files.walk(i_dir)) {
+				i_files.sorted(Comparator.reverseOrder()).forEach(p_path -> p_path.toFile().delete());
+			}
+		}
+	}
+
+	/**
+	 * Runs the benchmarks for a sheet size.
+	 */
+	private static void run(final int p_size, final Path p_dir, final List<String> p_names) throws Exception {
+		final HashMap<bench_pCUESheet_Encoding,byte[]> i_bytes = new HashMap<>();
+		for(bench_pCUESheet_Encoding i_encoding : bench_pCUESheet_Encoding.values())
+			i_bytes.put(i_encoding, generate(p_size, 42L+p_size, i_encoding));
+
+		final byte[] i_utf8 = i_bytes.get(bench_pCUESheet_Encoding.UTF8);
+		final pCUESheet i_sheet = new pCUESheet(ByteBuffer.wrap(i_utf8), -1);
+		final pCUETrack[] i_tracks = i_sheet.getTracks();
+		final String[] i_ids = new String[i_tracks.length];
+		for(int i=0 ; i<i_tracks.length ; i++)
+			i_ids[i] = i_tracks[i].getID();
+		final long i_end = i_tracks[i_tracks.length-1].getStart();
+
+		if (accept(p_names, "parse")) {
+			measure("parse.stream", p_size, p_index -> new pCUESheet(new ByteArrayInputStream(i_utf8), -1));
+			for(bench_pCUESheet_Encoding i_encoding : bench_pCUESheet_Encoding.values()) {
+				final byte[] i_data = i_bytes.get(i_encoding);
+				measure("parse.buffer." + i_encoding.name().toLowerCase(Locale.ROOT), p_size, p_index -> new pCUESheet(ByteBuffer.wrap(i_data), -1));
+			}
+		}
+		if (accept(p_names, "getTracks"))
+			measure("getTracks", p_size, p_index -> i_sheet.getTracks());
+		if (accept(p_names, "getTrack"))
+			measure("getTrack", p_size, p_index -> i_sheet.getTrack(i_ids[p_index % i_ids.length]));
+		if (accept(p_names, "insertTrack")) {
+			//*** THE COPY IS MEASURED ALONE TOO, SO THAT IT CAN BE SUBTRACTED
+			measure("copy", p_size, p_index -> i_sheet.copy(-1));
+			measure("insertTrack", p_size, p_index -> i_sheet.copy(-1).insertTrack(1 + (p_index * 7919L) % i_end));
+		}
+		if (accept(p_names, "toString"))
+			measure("toString", p_size, p_index -> i_sheet.toString());
+
+		final File i_file = p_dir.resolve("bench" + p_size + ".cue").toFile();
+		if (accept(p_names, "save"))
+			measure("save", p_size, p_index -> {
+				i_sheet.save(i_file, "bench.mp3");
+				return i_file;
+			});
+		if (accept(p_names, "update")) {
+			Files.write(i_file.toPath(), i_utf8);
+			measure("update", p_size, p_index -> {
+				final HashMap<String,Object> i_values = new HashMap<>();
+				i_values.put(pMediaUtil.MNAME_TRACK, i_ids[p_index % i_ids.length]);
+				i_values.put(pMediaUtil.MNAME_TITLE, "Title " + p_index);
+				return Boolean.valueOf(pCUESheet.update(i_file, i_values));
+			});
+		}
+		if (accept(p_names, "playlist")) {
+			//*** THE PATH OF THE FILE-TO-PLAYLIST SERVICE OF THE PLUG-IN: SIDECAR LOOKUP, SHARED FROZEN SHEET, DOCUMENTS
+			final File i_media = p_dir.resolve("playlist" + p_size + ".mp3").toFile();
+			Files.write(i_media.toPath(), new byte[0]);
+			Files.write(p_dir.resolve("playlist" + p_size + ".cue"), i_utf8);
+			measure("playlist", p_size, p_index -> {
+				final File i_cue = pCUESidecarFinder.getDefaultInstance().find(i_media.getParentFile(), "playlist" + p_size + ".cue");
+				final pCUESheet i_cached = pCUESheetCache.getDefaultInstance().getFrozen(i_cue);
+				final ArrayList<Object> i_result = new ArrayList<>();
+				return Integer.valueOf(pCUEDocumentBuilder.addDocuments(i_media, i_cue, i_cached, -1, i_result));
+			});
+		}
+	}
+
+	/**
+	 * Measures an operation and prints out the result.
+	 */
+	private static void measure(final String p_name, final int p_size, final bench_pCUESheet_Operation p_operation) throws Exception {
+		for(int i=0 ; i<WARMUP_ITERATIONS ; i++)
+			iterate(p_operation);
+
+		final ThreadMXBean i_threads = ManagementFactory.getThreadMXBean();
+		final com.sun.management.ThreadMXBean i_allocations = (i_threads instanceof com.sun.management.ThreadMXBean)? (com.sun.management.ThreadMXBean)i_threads : null;
+		final long i_thread = Thread.currentThread().getId();
+
+		final long i_gc_count = gcCount(false);
+		final long i_gc_time = gcCount(true);
+		final long i_allocated = (null!=i_allocations)? i_allocations.getThreadAllocatedBytes(i_thread) : 0;
+		long i_count = 0;
+		long i_time = 0;
+		for(int i=0 ; i<ITERATIONS ; i++) {
+			final long i_start = System.nanoTime();
+			i_count += iterate(p_operation);
+			i_time += System.nanoTime() - i_start;
+		}
+		final long i_bytes = (null!=i_allocations)? i_allocations.getThreadAllocatedBytes(i_thread) - i_allocated : -1;
+
+		System.out.println(String.format(Locale.ROOT, "%-24s %7d %14.1f %14.1f %14s %6d %8d", p_name, Integer.valueOf(p_size),
+				Double.valueOf(i_count * 1e9 / i_time), Double.valueOf((double)i_time / i_count),
+				(i_bytes<0)? "n/a" : Long.toString(i_bytes / i_count), Long.valueOf(gcCount(false) - i_gc_count), Long.valueOf(gcCount(true) - i_gc_time)));
+	}
+
+	/**
+	 * Runs an operation for the duration of an iteration.
+	 * <p>
+	 * @return The number of operations.
+	 */
+	private static long iterate(final bench_pCUESheet_Operation p_operation) throws Exception {
+		final long i_end = System.nanoTime() + ITERATION_TIME;
+		int i_count = 0;
+		int i_sink = 0;
+		do {
+			i_sink += System.identityHashCode(p_operation.run(i_count++));
+		}
+		while(System.nanoTime()<i_end);
+		SINK += i_sink;
+		return i_count;
+	}
+
+	/**
+	 * Gets the number of garbage collections, or their total time (in milliseconds).
+	 */
+	private static long gcCount(final boolean p_time) {
+		long i_total = 0;
+		for(GarbageCollectorMXBean i_gc : ManagementFactory.getGarbageCollectorMXBeans())
+			i_total += Math.max(0, p_time? i_gc.getCollectionTime() : i_gc.getCollectionCount());
+		return i_total;
+	}
+
+	/**
+	 * Checks if a benchmark is selected on the command line.
+	 */
+	private static boolean accept(final List<String> p_names, final String p_name) {
+		return p_names.isEmpty() || p_names.contains(p_name);
+	}
+
+	/**
+	 * Generates a cue sheet of the given number of tracks.
+	 * <p>
+	 * The values are quoted or not at random (a value with a space is always quoted), and the non-latin words
+	 * are replaced by latin ones for the windows-1252 encoding.
+	 * <p>
+	 * @param p_size The number of tracks.
+	 * @param p_seed The seed of the random values.
+	 * @param p_encoding The encoding of the sheet.
+	 */
+	static byte[] generate(final int p_size, final long p_seed, final bench_pCUESheet_Encoding p_encoding) {
+		final Random i_random = new Random(p_seed);
+		final StringBuilder i_text = new StringBuilder(p_size*96);
+		i_text.append("REM GENRE Electronic\nREM DATE 2026\n");
+		i_text.append("PERFORMER ").append(value(i_random, p_encoding)).append('\n');
+		i_text.append("TITLE ").append(value(i_random, p_encoding)).append('\n');
+		i_text.append("FILE \"bench.mp3\" MP3\n");
+
+		//*** THE MINUTES OF AN INDEX HAVE TWO DIGITS: THE TRACKS ARE SHORTER IN LARGE SHEETS
+		final int i_step = MAX_FRAMES / p_size;
+		long i_frames = 0;
+		for(int i=1 ; i<=p_size ; i++) {
+			i_text.append("  TRACK ").append(pCUETrack.trackID(i)).append(" AUDIO\n");
+			i_text.append("    TITLE ").append(value(i_random, p_encoding)).append('\n');
+			i_text.append("    PERFORMER ").append(value(i_random, p_encoding)).append('\n');
+			i_text.append("    INDEX 01 ").append(pString.toString2Digits((int)(i_frames/(60*75)))).append(':')
+				.append(pString.toString2Digits((int)(i_frames/75%60))).append(':').append(pString.toString2Digits((int)(i_frames%75))).append('\n');
+			i_frames += i_step/2 + i_random.nextInt(i_step/2+1);
+		}
+
+		final byte[] i_text_bytes = i_text.toString().getBytes(p_encoding.m_charset);
+		if (null==p_encoding.m_bom)
+			return i_text_bytes;
+
+		final byte[] i_bytes = Arrays.copyOf(p_encoding.m_bom, p_encoding.m_bom.length+i_text_bytes.length);
+		System.arraycopy(i_text_bytes, 0, i_bytes, p_encoding.m_bom.length, i_text_bytes.length);
+		return i_bytes;
+	}
+
+	/**
+	 * Generates a random value, quoted or not.
+	 */
+	private static String value(final Random p_random, final bench_pCUESheet_Encoding p_encoding) {
+		String i_word = WORDS[p_random.nextInt(WORDS.length)];
+		if (bench_pCUESheet_Encoding.WINDOWS_1252==p_encoding && !p_encoding.m_charset.newEncoder().canEncode(i_word))
+			i_word = WORDS[p_random.nextInt(2)];
+
+		final String i_value = p_random.nextBoolean()? i_word : i_word + " " + (1+p_random.nextInt(99));
+		return (i_value.indexOf(' ')>=0 || p_random.nextBoolean())? "\"" + i_value + "\"" : i_value;
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/
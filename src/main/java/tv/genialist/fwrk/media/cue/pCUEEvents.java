@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.media.cue;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The <code>pCUEEvents</code> class holds the JDK Flight Recorder events of the cue sheet classes.
+ * <p>
+ * The events are recorded only when a recording enables them, for instance:
+ * <code>jcmd &lt;pid&gt; JFR.start settings=profile</code>, then filtered on the <code>tv.genialist.cue</code> prefix.
+ * Their duration is measured by the recorder; the fields are set only if the event is committed.
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ * @see pCUEMetrics
+ */
+final class pCUEEvents {
+
+	/**************************************************************************/
+	/***  DEFINITIONS  ********************************************************/
+	/**************************************************************************/
+
+	/** The category of the events. */
+	private static final String CATEGORY = "Genialist";
+
+	/**************************************************************************/
+	/***  SUB-CLASSES  ********************************************************/
+	/**************************************************************************/
+
+	/**
+	 * The parsing of a cue sheet.
+	 */
+	@Name("tv.genialist.cue.CueParse")
+	@Label("CUE Parse")
+	@Category({ CATEGORY, "CUE" })
+	@Description("Parsing of a cue sheet")
+	@StackTrace(false)
+	static final class pCUEEvents_Parse extends Event {
+
+		@Label("Path")
+		@Description("The .cue file, or null if read from a stream")
+		String path;
+
+		@Label("File Size")
+		@Description("The number of bytes of the sheet, or -1 if read from a character stream")
+		@DataAmount
+		long fileSize;
+
+		@Label("Track Count")
+		int trackCount;
+
+		@Label("Charset")
+		String charset;
+	}
+
+	/**
+	 * The writing of a whole cue sheet.
+	 */
+	@Name("tv.genialist.cue.CueSave")
+	@Label("CUE Save")
+	@Category({ CATEGORY, "CUE" })
+	@Description("Writing of a whole cue sheet")
+	@StackTrace(false)
+	static final class pCUEEvents_Save extends Event {
+
+		@Label("Path")
+		String path;
+
+		@Label("File Size")
+		@DataAmount
+		long fileSize;
+
+		@Label("Track Count")
+		int trackCount;
+	}
+
+	/**
+	 * The changes of track meta-data in a .cue file.
+	 */
+	@Name("tv.genialist.cue.CueUpdate")
+	@Label("CUE Update")
+	@Category({ CATEGORY, "CUE" })
+	@Description("Changes of track meta-data in a .cue file")
+	@StackTrace(false)
+	static final class pCUEEvents_Update extends Event {
+
+		@Label("Path")
+		String path;
+
+		@Label("File Size")
+		@DataAmount
+		long fileSize;
+
+		@Label("Track Count")
+		@Description("The number of edited tracks")
+		int trackCount;
+
+		@Label("Changed Track Count")
+		int changedCount;
+
+		@Label("Patched")
+		@Description("True if only the changed lines were written")
+		boolean patched;
+	}
+
+	/**
+	 * The lookup of a .cue file next to a media file.
+	 */
+	@Name("tv.genialist.cue.CueSidecarLookup")
+	@Label("CUE Sidecar Lookup")
+	@Category({ CATEGORY, "CUE" })
+	@Description("Lookup of a .cue file next to a media file")
+	@StackTrace(false)
+	static final class pCUEEvents_SidecarLookup extends Event {
+
+		@Label("Directory")
+		String directory;
+
+		@Label("Name")
+		String name;
+
+		@Label("Found")
+		boolean found;
+	}
+
+	/**************************************************************************/
+	/***  CONSTRUCTORS  *******************************************************/
+	/**************************************************************************/
+
+	private pCUEEvents() {
+		super();
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/
@@ -0,0 +1,396 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.media.cue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import tv.genialist.ptools.trace.pTraceImpl;
+
+/**
+ * The <code>pCUEExecutor</code> class runs the blocking operations of the cue sheet classes (file reading, parsing, writing)
+ * in the background, and returns their results as {@link CompletableFuture} objects.
+ * <p>
+ * The operations run on virtual threads when the Java runtime provides them, otherwise on daemon threads created on demand.
+ * At most {@link #getMaxConcurrency()} operations run at once: the other ones wait in submission order,
+ * so that a bulk operation cannot flood a slow network share.
+ * <p>
+ * Cancelling a future removes the waiting operation, or interrupts the running one if <code>cancel(true)</code> is called:
+ * the channels of the files it reads are closed. A timeout cancels the operation the same way, and completes the future
+ * with a {@link java.util.concurrent.TimeoutException}. <code>cancel(false)</code> lets a running operation complete, so that
+ * an operation shared with other threads (such as a parsing of the {@link pCUESheetCache}) is not stopped.
+ * <p>
+ * <b>Example:</b>
+ * <dl>
+ * <dd><code>
+ * pCUESheet.parseAsync(i_path).thenAccept(i_sheet -&gt; ...);<br>
+ * pCUEExecutor.getDefaultInstance().submit(() -&gt; pCUESheet.updateTracks(i_file, i_edits), 10, TimeUnit.SECONDS);<br>
+ * </code>
+ * </dl>
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ */
+public class pCUEExecutor {
+
+	/**************************************************************************/
+	/***  DEFINITIONS  ********************************************************/
+	/**************************************************************************/
+
+	/** The prefix used in trace and log messages. */
+	public static final String TRACE_PREFIX = "CUEExecutor";
+
+	/** The default number of operations running at once. */
+	public static final int DEFAULT_CONCURRENCY = 8;
+
+	/** The time after which an idle background thread stops, when virtual threads are not available (in seconds). */
+	private static final long KEEP_ALIVE = 30;
+
+	/**************************************************************************/
+	/***  SUB-CLASSES  ********************************************************/
+	/**************************************************************************/
+
+	/**
+	 * A blocking operation.
+	 */
+	@FunctionalInterface
+	public interface pCUEExecutor_Task<T> {
+
+		/**
+		 * Runs the operation.
+		 * <p>
+		 * @return The result of the operation.
+		 * @throws Exception If the operation failed: the future is completed with this exception.
+		 */
+		T run() throws Exception;
+	}
+
+	/**
+	 * The future of an operation, which stops the operation when it is cancelled or timed out.
+	 */
+	private static final class pCUEExecutor_Future<T> extends CompletableFuture<T> implements Runnable {
+
+		private final pCUEExecutor m_owner;
+		private final pCUEExecutor_Task<T> m_task;
+
+		/** The thread running the operation, if running. Guarded by <code>this</code>. */
+		private Thread m_thread;
+
+		pCUEExecutor_Future(final pCUEExecutor p_owner, final pCUEExecutor_Task<T> p_task) {
+			m_owner = p_owner;
+			m_task = p_task;
+		}
+
+		@Override
+		public void run() {
+			try {
+				synchronized(this) {
+					if (isDone())
+						return;
+					m_thread = Thread.currentThread();
+				}
+				try {
+					complete(m_task.run());
+				}
+				catch (final Exception ex) {
+					completeExceptionally(ex);
+				}
+			}
+			finally {
+				synchronized(this) {
+					m_thread = null;
+					//*** AN INTERRUPTION OF THIS OPERATION MUST NOT REACH THE NEXT ONE OF THE THREAD
+					Thread.interrupted();
+				}
+				m_owner.finished();
+			}
+		}
+
+		@Override
+		public boolean cancel(final boolean p_interrupt) {
+			final boolean i_result = super.cancel(p_interrupt);
+			if (i_result)
+				stop(p_interrupt);
+			return i_result;
+		}
+
+		@Override
+		public boolean completeExceptionally(final Throwable p_ex) {
+			//*** ALSO CALLED BY orTimeout()
+			final boolean i_result = super.completeExceptionally(p_ex);
+			if (i_result)
+				stop(true);
+			return i_result;
+		}
+
+		/**
+		 * Removes the operation if waiting, or interrupts it if running on another thread.
+		 * <p>
+		 * @param p_interrupt <code>false</code> to let the operation complete if running.
+		 */
+		private void stop(final boolean p_interrupt) {
+			synchronized(this) {
+				if (p_interrupt && null!=m_thread && m_thread!=Thread.currentThread())
+					m_thread.interrupt();
+			}
+			m_owner.remove(this);
+		}
+	}
+
+	/**************************************************************************/
+	/***  RUNTIME DATA  *******************************************************/
+	/**************************************************************************/
+
+	private static final pTraceImpl TRACE = pTraceImpl.getTrace(pCUEExecutor.class, TRACE_PREFIX);
+
+	/** The default instance of this object. */
+	private static final pCUEExecutor DEFAULT = new pCUEExecutor(DEFAULT_CONCURRENCY);
+
+	/** The operations waiting for a slot, in submission order. Guarded by <code>this</code>. */
+	private final ArrayDeque<pCUEExecutor_Future<?>> m_queue = new ArrayDeque<>();
+
+	/** The threads, created on demand. Guarded by <code>this</code>. */
+	private ExecutorService m_executor;
+
+	/** Whether the threads are virtual threads. Guarded by <code>this</code>. */
+	private boolean m_virtual;
+
+	/** The number of operations running. Guarded by <code>this</code>. */
+	private int m_running;
+
+	/** The maximum number of operations running at once. Guarded by <code>this</code>. */
+	private int m_max;
+
+	/**************************************************************************/
+	/***  CONSTRUCTORS  *******************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Constructs a new <code>pCUEExecutor</code> object.
+	 * <p>
+	 * @param p_max The maximum number of operations running at once (at least 1).
+	 */
+	public pCUEExecutor(final int p_max) {
+		super();
+		m_max = Math.max(1, p_max);
+	}
+
+	/**************************************************************************/
+	/***  METHODS  ************************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Submits an operation.
+	 * <p>
+	 * @param p_task The operation.
+	 * @return The future of the operation: cancelling it stops the operation.
+	 */
+	public <T> CompletableFuture<T> submit(final pCUEExecutor_Task<T> p_task) {
+		final pCUEExecutor_Future<T> i_future = new pCUEExecutor_Future<>(this, p_task);
+
+		synchronized(this) {
+			if (m_running>=m_max) {
+				m_queue.add(i_future);
+				return i_future;
+			}
+			m_running++;
+		}
+		start(i_future);
+		return i_future;
+	}
+
+	/**
+	 * Submits an operation that is cancelled if not completed within a timeout.
+	 * <p>
+	 * The timeout includes the time the operation waits for a slot.
+	 * <p>
+	 * @param p_task The operation.
+	 * @param p_timeout The timeout.
+	 * @param p_unit The unit of the timeout.
+	 * @return The future of the operation, completed with a {@link java.util.concurrent.TimeoutException} on timeout.
+	 */
+	public <T> CompletableFuture<T> submit(final pCUEExecutor_Task<T> p_task, final long p_timeout, final TimeUnit p_unit) {
+		final CompletableFuture<T> i_future = submit(p_task);
+		i_future.orTimeout(p_timeout, p_unit);
+		return i_future;
+	}
+
+	/**
+	 * Cancels the waiting operations and stops the threads once the running operations are completed.
+	 * <p>
+	 * The executor can still be used afterwards: the threads are created again on demand.
+	 */
+	public void close() {
+		final ExecutorService i_executor;
+		final ArrayList<pCUEExecutor_Future<?>> i_queue;
+		synchronized(this) {
+			i_executor = m_executor;
+			m_executor = null;
+			i_queue = new ArrayList<>(m_queue);
+			m_queue.clear();
+		}
+
+		for(pCUEExecutor_Future<?> i_future : i_queue)
+			i_future.cancel(false);
+		if (null!=i_executor)
+			i_executor.shutdown();
+	}
+
+	/**
+	 * Runs an operation on a thread.
+	 */
+	private void start(final pCUEExecutor_Future<?> p_future) {
+		try {
+			executor().execute(p_future);
+		}
+		catch (final RejectedExecutionException ex) {
+			//*** CLOSED IN THE MEANTIME
+			p_future.completeExceptionally(ex);
+			finished();
+		}
+	}
+
+	/**
+	 * Starts the next waiting operation, when an operation is completed.
+	 */
+	private void finished() {
+		pCUEExecutor_Future<?> i_next;
+		synchronized(this) {
+			do {
+				i_next = (m_running<=m_max)? m_queue.poll() : null;
+			}
+			while(null!=i_next && i_next.isDone());
+			if (null==i_next)
+				m_running--;
+		}
+		if (null!=i_next)
+			start(i_next);
+	}
+
+	/**
+	 * Removes a waiting operation.
+	 */
+	private synchronized void remove(final pCUEExecutor_Future<?> p_future) {
+		m_queue.remove(p_future);
+	}
+
+	/**
+	 * Gets the threads, creating them if needed.
+	 */
+	private synchronized ExecutorService executor() {
+		if (null==m_executor) {
+			m_executor = newVirtualThreadExecutor();
+			m_virtual = (null!=m_executor);
+			if (null==m_executor) {
+				//*** THE NUMBER OF THREADS IS BOUNDED BY THE MAXIMUM NUMBER OF RUNNING OPERATIONS
+				m_executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, KEEP_ALIVE, TimeUnit.SECONDS, new SynchronousQueue<>(), p_runnable -> {
+					final Thread i_thread = new Thread(p_runnable, TRACE_PREFIX);
+					i_thread.setDaemon(true);
+					return i_thread;
+				});
+			}
+			if (TRACE.isDebugEnabled())
+				TRACE.debug("Starting CUE executor: virtual threads: ", Boolean.toString(m_virtual));
+		}
+		return m_executor;
+	}
+
+	/**************************************************************************/
+	/***  ACCESSOR METHODS  ***************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Gets the maximum number of operations running at once.
+	 */
+	public synchronized int getMaxConcurrency() {
+		return m_max;
+	}
+
+	/**
+	 * Sets the maximum number of operations running at once.
+	 * <p>
+	 * When the maximum is raised, the waiting operations are started at once; when it is lowered, the running operations are not stopped.
+	 * <p>
+	 * @param p_max The maximum (at least 1).
+	 */
+	public void setMaxConcurrency(final int p_max) {
+		final ArrayList<pCUEExecutor_Future<?>> i_started = new ArrayList<>();
+		synchronized(this) {
+			m_max = Math.max(1, p_max);
+			while(m_running<m_max && !m_queue.isEmpty()) {
+				final pCUEExecutor_Future<?> i_next = m_queue.poll();
+				if (i_next.isDone())
+					continue;
+				m_running++;
+				i_started.add(i_next);
+			}
+		}
+		for(pCUEExecutor_Future<?> i_future : i_started)
+			start(i_future);
+	}
+
+	/**
+	 * Gets the number of operations running.
+	 */
+	public synchronized int getRunningCount() {
+		return m_running;
+	}
+
+	/**
+	 * Gets the number of operations waiting for a slot.
+	 */
+	public synchronized int getQueuedCount() {
+		return m_queue.size();
+	}
+
+	/**
+	 * Returns <code>true</code> if the operations run on virtual threads.
+	 */
+	public synchronized boolean isVirtual() {
+		executor();
+		return m_virtual;
+	}
+
+	/**************************************************************************/
+	/***  STATIC METHODS  *****************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Gets the default instance of this class, used by the asynchronous methods of {@link pCUESheet}.
+	 * <p>
+	 * @return The default instance (this cannot be <code>null</code>).
+	 */
+	public static pCUEExecutor getDefaultInstance() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Creates an executor that starts a virtual thread per operation, if the Java runtime provides them.
+	 * <p>
+	 * @return The executor, or <code>null</code> if virtual threads are not available.
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (final ReflectiveOperationException | RuntimeException ex) {
+			//*** BEFORE JAVA 21, OR PREVIEW FEATURES DISABLED
+			return null;
+		}
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/
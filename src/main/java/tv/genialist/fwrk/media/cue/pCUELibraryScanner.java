@@ -0,0 +1,528 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.media.cue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import tv.genialist.fwrk.document.file.pCUEDocumentBuilder;
+import tv.genialist.fwrk.document.file.pMediaFileDocument;
+import tv.genialist.fwrk.media.pMediaUtil;
+import tv.genialist.ptools.trace.pTraceImpl;
+import tv.genialist.ptools.util.pFilenameUtil;
+
+/**
+ * The <code>pCUELibraryScanner</code> class turns a directory tree into the media documents of the cue sheet tracks.
+ * <p>
+ * The tree is walked in parallel by a fork-join pool whose parallelism bounds the number of concurrent I/O operations.
+ * As done by the CUE plug-in, a media file is paired with the .cue file of the same directory and base name
+ * (<code>album.flac</code> and <code>album.cue</code>), otherwise with a sheet of the directory that references it in a "FILE" line,
+ * and its tracks are turned into {@link pMediaFileDocument} objects by {@link pCUEDocumentBuilder}.
+ * <p>
+ * Every .cue file found is parsed once and added to a {@link pCUEMediaIndex}, so that the sheets can then be found from their media files.
+ * <p>
+ * Symbolic links to directories are not followed.
+ * <p>
+ * <b>Example:</b>
+ * <dl>
+ * <dd><code>
+ * pCUELibraryScanner i_scanner = new pCUELibraryScanner(8);<br>
+ * pCUELibraryScanner_Progress i_done = i_scanner.scan(new File("/music"), (p_media, p_cue, p_documents) -&gt; i_library.addAll(p_documents));<br>
+ * System.out.println(i_done);<br>
+ * </code>
+ * </dl>
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ */
+public class pCUELibraryScanner {
+
+	/**************************************************************************/
+	/***  DEFINITIONS  ********************************************************/
+	/**************************************************************************/
+
+	/** The prefix used in trace and log messages. */
+	public static final String TRACE_PREFIX = "CUELibraryScanner";
+
+	/** The default extensions (lower case, without dot) of the media files paired with cue sheets. */
+	public static final Set<String> DEFAULT_MEDIA_EXTENSIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+		"aac", "aif", "aiff", "ape", "avi", "flac", "m4a", "mkv", "mp2", "mp3", "mp4", "mpc", "ogg", "opus", "tta", "wav", "wma", "wv"
+	)));
+
+	/** The default interval between two progress notifications (in milliseconds). */
+	public static final long DEFAULT_PROGRESS_INTERVAL = 1000L;
+
+	/**************************************************************************/
+	/***  SUB-CLASSES  ********************************************************/
+	/**************************************************************************/
+
+	/**
+	 * The receiver of the scanner results.
+	 * <p>
+	 * The methods are invoked concurrently from the threads of the scanner and must be thread-safe.
+	 */
+	public interface pCUELibraryScanner_Handler {
+
+		/**
+		 * Receives the documents of the tracks of a media file.
+		 * <p>
+		 * @param p_media The media file.
+		 * @param p_cue The .cue file.
+		 * @param p_documents The documents, one per track (cannot be <code>null</code>).
+		 */
+		void sheet(File p_media, File p_cue, List<pMediaFileDocument> p_documents);
+
+		/**
+		 * Receives a failure to read a directory or a .cue file.
+		 * <p>
+		 * @param p_file The directory or the .cue file.
+		 * @param p_exception The failure.
+		 */
+		default void error(final File p_file, final Exception p_exception) {
+		}
+
+		/**
+		 * Receives the progress of the scanner, at most once per progress interval.
+		 */
+		default void progress(final pCUELibraryScanner_Progress p_progress) {
+		}
+	}
+
+	/**
+	 * A snapshot of the progress of a scanner.
+	 */
+	public static final class pCUELibraryScanner_Progress {
+
+		private final long m_directories;
+		private final long m_files;
+		private final long m_sheets;
+		private final long m_documents;
+		private final long m_errors;
+		private final long m_elapsed;
+
+		pCUELibraryScanner_Progress(final long p_directories, final long p_files, final long p_sheets, final long p_documents, final long p_errors, final long p_elapsed) {
+			m_directories = p_directories;
+			m_files = p_files;
+			m_sheets = p_sheets;
+			m_documents = p_documents;
+			m_errors = p_errors;
+			m_elapsed = p_elapsed;
+		}
+
+		/** Gets the number of directories listed. */
+		public long getDirectoryCount() {
+			return m_directories;
+		}
+
+		/** Gets the number of files seen. */
+		public long getFileCount() {
+			return m_files;
+		}
+
+		/** Gets the number of cue sheets parsed. */
+		public long getSheetCount() {
+			return m_sheets;
+		}
+
+		/** Gets the number of track documents created. */
+		public long getDocumentCount() {
+			return m_documents;
+		}
+
+		/** Gets the number of directories or .cue files that could not be read. */
+		public long getErrorCount() {
+			return m_errors;
+		}
+
+		/** Gets the time elapsed since the start of the scan (in milliseconds). */
+		public long getElapsedTime() {
+			return m_elapsed;
+		}
+
+		/** Gets the number of files seen per second. */
+		public double getFileThroughput() {
+			return (m_elapsed>0)? m_files*1000.0/m_elapsed : 0.0;
+		}
+
+		/** Gets the number of cue sheets parsed per second. */
+		public double getSheetThroughput() {
+			return (m_elapsed>0)? m_sheets*1000.0/m_elapsed : 0.0;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%d directories, %d files, %d sheets, %d tracks, %d errors in %d ms (%.1f files/s, %.1f sheets/s)",
+				m_directories, m_files, m_sheets, m_documents, m_errors, m_elapsed, getFileThroughput(), getSheetThroughput());
+		}
+	}
+
+	/**
+	 * The state of one call to {@link pCUELibraryScanner#scan(File, pCUELibraryScanner_Handler)}, so that concurrent scans do not share their counters.
+	 */
+	private final class pCUELibraryScanner_Scan {
+
+		private final pCUELibraryScanner_Handler m_handler;
+		private final LongAdder m_directories = new LongAdder();
+		private final LongAdder m_files = new LongAdder();
+		private final LongAdder m_sheets = new LongAdder();
+		private final LongAdder m_documents = new LongAdder();
+		private final LongAdder m_errors = new LongAdder();
+		private final long m_started = System.currentTimeMillis();
+		private final AtomicLong m_last_progress = new AtomicLong(m_started);
+		private volatile boolean m_cancelled;
+
+		pCUELibraryScanner_Scan(final pCUELibraryScanner_Handler p_handler) {
+			m_handler = p_handler;
+		}
+
+		/**
+		 * Gets the progress of this scan.
+		 */
+		pCUELibraryScanner_Progress getProgress() {
+			return new pCUELibraryScanner_Progress(m_directories.sum(), m_files.sum(), m_sheets.sum(), m_documents.sum(), m_errors.sum(),
+				System.currentTimeMillis() - m_started);
+		}
+
+		/**
+		 * Notifies the progress if the progress interval elapsed.
+		 * <p>
+		 * @param p_force <code>true</code> to notify in any case.
+		 */
+		pCUELibraryScanner_Progress progress(final boolean p_force) {
+			final long i_now = System.currentTimeMillis();
+			final long i_last = m_last_progress.get();
+			if (!p_force && (i_now-i_last<m_progress_interval || !m_last_progress.compareAndSet(i_last, i_now)))
+				return null;
+
+			final pCUELibraryScanner_Progress i_progress = getProgress();
+			if (null!=m_handler)
+				m_handler.progress(i_progress);
+			return i_progress;
+		}
+
+		void error(final File p_file, final Exception p_exception) {
+			m_errors.increment();
+			if (TRACE.isDebugEnabled())
+				TRACE.debug("Scanning CUE library: failed to read: ", p_file.getAbsolutePath(), p_exception);
+			if (null!=m_handler)
+				m_handler.error(p_file, p_exception);
+		}
+	}
+
+	/**
+	 * The scan of one directory; the sub-directories are scanned by forked tasks.
+	 */
+	private final class pCUELibraryScanner_Task extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Path m_directory;
+		private final pCUELibraryScanner_Scan m_scan;
+
+		pCUELibraryScanner_Task(final Path p_directory, final pCUELibraryScanner_Scan p_scan) {
+			m_directory = p_directory;
+			m_scan = p_scan;
+		}
+
+		@Override
+		protected void compute() {
+			if (m_scan.m_cancelled)
+				return;
+
+			final List<pCUELibraryScanner_Task> i_subtasks = new ArrayList<>();
+			final List<Path> i_media = new ArrayList<>();
+			final HashMap<String,Path> i_sheets = new HashMap<>();
+
+			try (DirectoryStream<Path> i_stream = Files.newDirectoryStream(m_directory)) {
+				for(Path i_path : i_stream) {
+					final BasicFileAttributes i_attributes = Files.readAttributes(i_path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+					if (i_attributes.isDirectory()) {
+						i_subtasks.add(new pCUELibraryScanner_Task(i_path, m_scan));
+						continue;
+					}
+					if (!i_attributes.isRegularFile() && !(i_attributes.isSymbolicLink() && Files.isRegularFile(i_path)))
+						continue;
+
+					m_scan.m_files.increment();
+
+					final String i_name = i_path.getFileName().toString();
+					final int i_ext = pFilenameUtil.indexOfExtension(i_name);
+					if (i_ext<0)
+						continue;
+					final String i_extension = i_name.substring(i_ext+1).toLowerCase(Locale.ROOT);
+					if ("cue".equals(i_extension))
+						i_sheets.put(i_name.substring(0, i_ext), i_path);
+					else if (m_media_extensions.contains(i_extension))
+						i_media.add(i_path);
+				}
+			}
+			catch (final IOException | SecurityException ex) {
+				m_scan.error(m_directory.toFile(), ex);
+			}
+			m_scan.m_directories.increment();
+
+			if (!i_subtasks.isEmpty())
+				invokeAll(i_subtasks);
+
+			if (!i_sheets.isEmpty())
+				pair(i_media, i_sheets);
+
+			m_scan.progress(false);
+		}
+
+		/**
+		 * Parses (or loads from the snapshot store) and indexes the .cue files, then pairs the media files with them and emits their documents.
+		 */
+		private void pair(final List<Path> p_media, final HashMap<String,Path> p_sheets) {
+			final HashMap<Path,pCUESheet> i_parsed = new HashMap<>(p_sheets.size()*2);
+			final pCUEMediaIndex i_index = m_index;
+			final pCUESnapshotStore i_store = m_store;
+
+			for(Path i_cue_path : p_sheets.values()) {
+				if (m_scan.m_cancelled)
+					return;
+				try {
+					//0.9.30: from its snapshot when it did not change since the last run
+					final pCUESheet i_sheet;
+					if (null!=i_store) {
+						final BasicFileAttributes i_attributes = Files.readAttributes(i_cue_path, BasicFileAttributes.class);
+						i_sheet = i_store.load(i_cue_path.toFile(), i_attributes.lastModifiedTime().toMillis(), i_attributes.size());
+					}
+					else {
+						i_sheet = new pCUESheet(i_cue_path, -1);
+					}
+					i_parsed.put(i_cue_path, i_sheet);
+					i_index.add(i_cue_path.toFile(), i_sheet);
+					m_scan.m_sheets.increment();
+				}
+				catch (final IOException | RuntimeException ex) {
+					m_scan.error(i_cue_path.toFile(), ex);
+				}
+			}
+
+			//0.9.30: indexing only
+			if (null==m_scan.m_handler)
+				return;
+
+			for(Path i_path : p_media) {
+				if (m_scan.m_cancelled)
+					return;
+
+				final File i_file = i_path.toFile();
+				final String i_name = i_path.getFileName().toString();
+				final Path i_cue_path = p_sheets.get(i_name.substring(0, pFilenameUtil.indexOfExtension(i_name)));
+				if (null!=i_cue_path) {
+					final pCUESheet i_sheet = i_parsed.get(i_cue_path);
+					if (null!=i_sheet)
+						emit(i_file, i_cue_path.toFile(), i_sheet, null);
+					continue;
+				}
+
+				//*** A SHEET OF ANOTHER NAME REFERENCING THE MEDIA FILE
+				for(pCUEMediaIndex.pCUEMediaIndex_Entry i_entry : i_index.find(i_file)) {
+					final pCUESheet i_sheet = i_parsed.get(i_entry.getSheet().toPath());
+					if (null!=i_sheet) {
+						emit(i_file, i_entry.getSheet(), i_sheet, i_entry);
+						break;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Emits the documents of the tracks of a media file.
+		 * <p>
+		 * @param p_entry The "FILE" line of the media file if the sheet was found from the index, otherwise <code>null</code>.
+		 */
+		private void emit(final File p_media, final File p_cue, final pCUESheet p_sheet, final pCUEMediaIndex.pCUEMediaIndex_Entry p_entry) {
+			try {
+				//*** SEVERAL MEDIA FILES CAN SHARE ONE SHEET: PARSED ONCE, COPIED FOR EACH OF THEM
+				final pCUESheet i_sheet = p_sheet.copy(-1);
+				i_sheet.getMetadata().put(pMediaUtil.MNAME_TITLE, p_media.getName());
+
+				final List<pMediaFileDocument> i_documents = new ArrayList<>(i_sheet.getTrackCount());
+				if (null!=p_entry)
+					m_scan.m_documents.add(pCUEDocumentBuilder.addDocuments(p_media, p_cue, p_entry.getTracks(i_sheet), -1, i_documents));
+				else
+					m_scan.m_documents.add(pCUEDocumentBuilder.addDocuments(p_media, p_cue, i_sheet, i_documents));
+				if (!i_documents.isEmpty())
+					m_scan.m_handler.sheet(p_media, p_cue, i_documents);
+			}
+			catch (final RuntimeException ex) {
+				m_scan.error(p_cue, ex);
+			}
+		}
+	}
+
+	/**************************************************************************/
+	/***  RUNTIME DATA  *******************************************************/
+	/**************************************************************************/
+
+	private static final pTraceImpl TRACE = pTraceImpl.getTrace(pCUELibraryScanner.class, TRACE_PREFIX);
+
+	/** The maximum number of concurrent directory scans. */
+	private final int m_parallelism;
+
+	private volatile Set<String> m_media_extensions = DEFAULT_MEDIA_EXTENSIONS;
+	private volatile pCUEMediaIndex m_index = pCUEMediaIndex.getDefaultInstance();
+	private volatile pCUESnapshotStore m_store;
+	private volatile long m_progress_interval = DEFAULT_PROGRESS_INTERVAL;
+
+	/** The scans in progress. */
+	private final Set<pCUELibraryScanner_Scan> m_scans = ConcurrentHashMap.newKeySet();
+
+	/** The last scan started, or <code>null</code>. */
+	private volatile pCUELibraryScanner_Scan m_last;
+
+	/**************************************************************************/
+	/***  CONSTRUCTORS  *******************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Constructs a new <code>pCUELibraryScanner</code> object.
+	 * <p>
+	 * @param p_parallelism The maximum number of directories scanned concurrently (at least 1).
+	 */
+	public pCUELibraryScanner(final int p_parallelism) {
+		super();
+		m_parallelism = Math.max(1, p_parallelism);
+	}
+
+	/**
+	 * Constructs a new <code>pCUELibraryScanner</code> object, scanning as many directories concurrently as there are processors.
+	 */
+	public pCUELibraryScanner() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**************************************************************************/
+	/***  METHODS  ************************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Scans a directory tree and waits for the end of the scan.
+	 * <p>
+	 * @param p_root The root directory.
+	 * @param p_handler The receiver of the documents, or <code>null</code> to index the .cue files only.
+	 * @return The final progress of the scan.
+	 */
+	public pCUELibraryScanner_Progress scan(final File p_root, final pCUELibraryScanner_Handler p_handler) {
+		//0.9.30: the counters of each scan are its own
+		final pCUELibraryScanner_Scan i_scan = new pCUELibraryScanner_Scan(p_handler);
+		m_scans.add(i_scan);
+		m_last = i_scan;
+
+		if (TRACE.isDebugEnabled())
+			TRACE.debug("Scanning CUE library: ", p_root.getAbsolutePath(), "...");
+
+		final ForkJoinPool i_pool = new ForkJoinPool(m_parallelism);
+		try {
+			i_pool.invoke(new pCUELibraryScanner_Task(p_root.toPath(), i_scan));
+		}
+		finally {
+			i_pool.shutdown();
+			m_scans.remove(i_scan);
+		}
+
+		final pCUELibraryScanner_Progress i_result = i_scan.progress(true);
+		if (TRACE.isInfoEnabled())
+			TRACE.info("Scanning CUE library: ", p_root.getAbsolutePath(), ": ", i_result);
+		return i_result;
+	}
+
+	/**
+	 * Scans a directory tree to add its .cue files to the media index only, without creating documents, and waits for the end of the scan.
+	 * <p>
+	 * @param p_root The root directory.
+	 * @return The final progress of the scan.
+	 * @see #setMediaIndex(pCUEMediaIndex)
+	 * @since 0.9.30
+	 */
+	public pCUELibraryScanner_Progress index(final File p_root) {
+		return scan(p_root, null);
+	}
+
+	/**
+	 * Cancels the scans in progress: the directories not yet listed are skipped.
+	 */
+	public void cancel() {
+		for(pCUELibraryScanner_Scan i_scan : m_scans)
+			i_scan.m_cancelled = true;
+	}
+
+	/**
+	 * Gets the progress of the last scan started, in progress or not.
+	 * This method can be called from any thread.
+	 * <p>
+	 */
+	public pCUELibraryScanner_Progress getProgress() {
+		final pCUELibraryScanner_Scan i_scan = m_last;
+		return (null!=i_scan)? i_scan.getProgress() : new pCUELibraryScanner_Progress(0, 0, 0, 0, 0, 0);
+	}
+
+	/**************************************************************************/
+	/***  ACCESSOR METHODS  ***************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Sets the extensions (lower case, without dot) of the media files paired with cue sheets.
+	 * <p>
+	 * @see #DEFAULT_MEDIA_EXTENSIONS
+	 */
+	public void setMediaExtensions(final Set<String> p_extensions) {
+		m_media_extensions = new HashSet<>(p_extensions);
+	}
+
+	/**
+	 * Sets the index where the media files of the parsed sheets are added.
+	 * <p>
+	 * @see pCUEMediaIndex#getDefaultInstance()
+	 */
+	public void setMediaIndex(final pCUEMediaIndex p_index) {
+		m_index = p_index;
+	}
+
+	/**
+	 * Sets the store of the parsed sheets, where the .cue files that did not change are loaded from, and the others are saved to.
+	 * <p>
+	 * @param p_store The store, or <code>null</code> to parse every .cue file.
+	 * @see pCUESheetCache#setSnapshotStore(pCUESnapshotStore)
+	 * @since 0.9.30
+	 */
+	public void setSnapshotStore(final pCUESnapshotStore p_store) {
+		m_store = p_store;
+	}
+
+	/**
+	 * Sets the interval between two progress notifications (in milliseconds).
+	 */
+	public void setProgressInterval(final long p_interval) {
+		m_progress_interval = p_interval;
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/
@@ -0,0 +1,430 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.media.cue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import tv.genialist.ptools.io.pSingleThreadBufferedReader;
+
+/**
+ * The <code>pCUELineReader</code> class iterates over the trimmed, non-empty lines of a cue sheet.
+ * <p>
+ * The current line is exposed as a {@link CharSequence} so that {@link pCUETokenizer} can recognise it in place,
+ * and only the parts of the line that are kept are turned into strings by {@link #string(int, int)}.
+ * <p>
+ * Lines are separated by <code>\n</code>, <code>\r</code> or <code>\r\n</code> and trimmed as {@link String#trim()} does.
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ */
+abstract class pCUELineReader implements CharSequence {
+
+	/**************************************************************************/
+	/***  DEFINITIONS  ********************************************************/
+	/**************************************************************************/
+
+	/** The name of the fallback charset used when the bytes are not valid UTF-8. */
+	private static final String CHARSET_FALLBACK = "windows-1252";
+
+	/**************************************************************************/
+	/***  SUB-CLASSES  ********************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Lines read from a character stream.
+	 */
+	static final class pCUELineReader_Stream extends pCUELineReader {
+
+		private final pSingleThreadBufferedReader m_reader;
+		private String m_line;
+
+		pCUELineReader_Stream(final Reader p_reader) {
+			super(null);
+			m_reader = new pSingleThreadBufferedReader(p_reader);
+		}
+
+		@Override
+		boolean next() throws IOException {
+			while((m_line = m_reader.readLine())!=null) {
+				m_line = m_line.trim();
+				if (m_line.length()>0)
+					return true;
+			}
+			return false;
+		}
+
+		@Override
+		public int length() {
+			return m_line.length();
+		}
+
+		@Override
+		public char charAt(final int p_index) {
+			return m_line.charAt(p_index);
+		}
+
+		@Override
+		String string(final int p_from, final int p_to) {
+			return m_line.substring(p_from, p_to);
+		}
+	}
+
+	/**
+	 * Lines read from raw bytes in an ASCII compatible encoding (UTF-8, windows-1252).
+	 * Keywords are recognised on the bytes; only values are decoded.
+	 */
+	static final class pCUELineReader_Bytes extends pCUELineReader {
+
+		private final ByteBuffer m_buffer;
+		private final int m_limit;
+		private int m_position;
+		private int m_start;
+		private int m_end;
+		/** A scratch array used to decode values from buffers without accessible array. */
+		private byte[] m_scratch;
+
+		pCUELineReader_Bytes(final ByteBuffer p_buffer, final Charset p_charset) {
+			super(p_charset);
+			m_buffer = p_buffer;
+			m_position = p_buffer.position();
+			m_limit = p_buffer.limit();
+		}
+
+		@Override
+		boolean next() {
+			while(m_position<m_limit) {
+				int i = m_position;
+				while(i<m_limit) {
+					final byte b = m_buffer.get(i);
+					if (b=='\n' || b=='\r')
+						break;
+					i++;
+				}
+				m_start = m_position;
+				m_end = i;
+				m_position = i+1;
+
+				while(m_start<m_end && (m_buffer.get(m_start)&0xFF)<=' ')
+					m_start++;
+				while(m_end>m_start && (m_buffer.get(m_end-1)&0xFF)<=' ')
+					m_end--;
+				if (m_end>m_start)
+					return true;
+			}
+			return false;
+		}
+
+		@Override
+		public int length() {
+			return m_end - m_start;
+		}
+
+		/**
+		 * Gets the offset of the first byte of the current line in the buffer.
+		 */
+		int getStart() {
+			return m_start;
+		}
+
+		/**
+		 * Gets the offset after the last byte of the current line in the buffer.
+		 */
+		int getEnd() {
+			return m_end;
+		}
+
+		@Override
+		public char charAt(final int p_index) {
+			return (char)(m_buffer.get(m_start+p_index) & 0xFF);
+		}
+
+		@Override
+		String string(final int p_from, final int p_to) {
+			final int i_len = p_to - p_from;
+			if (m_buffer.hasArray())
+				return new String(m_buffer.array(), m_buffer.arrayOffset()+m_start+p_from, i_len, getCharset());
+
+			if (null==m_scratch || m_scratch.length<i_len)
+				m_scratch = new byte[Math.max(i_len, 256)];
+			final int i_from = m_start + p_from;
+			for(int i=0 ; i<i_len ; i++)
+				m_scratch[i] = m_buffer.get(i_from+i);
+			return new String(m_scratch, 0, i_len, getCharset());
+		}
+	}
+
+	/**
+	 * Lines read from decoded characters (used for UTF-16 sheets).
+	 */
+	static final class pCUELineReader_Chars extends pCUELineReader {
+
+		private final CharBuffer m_buffer;
+		private final int m_limit;
+		private int m_position;
+		private int m_start;
+		private int m_end;
+
+		pCUELineReader_Chars(final CharBuffer p_buffer, final Charset p_charset) {
+			super(p_charset);
+			m_buffer = p_buffer;
+			m_position = p_buffer.position();
+			m_limit = p_buffer.limit();
+		}
+
+		@Override
+		boolean next() {
+			while(m_position<m_limit) {
+				int i = m_position;
+				while(i<m_limit) {
+					final char c = m_buffer.get(i);
+					if (c=='\n' || c=='\r')
+						break;
+					i++;
+				}
+				m_start = m_position;
+				m_end = i;
+				m_position = i+1;
+
+				while(m_start<m_end && m_buffer.get(m_start)<=' ')
+					m_start++;
+				while(m_end>m_start && m_buffer.get(m_end-1)<=' ')
+					m_end--;
+				if (m_end>m_start)
+					return true;
+			}
+			return false;
+		}
+
+		@Override
+		public int length() {
+			return m_end - m_start;
+		}
+
+		@Override
+		public char charAt(final int p_index) {
+			return m_buffer.get(m_start+p_index);
+		}
+
+		@Override
+		String string(final int p_from, final int p_to) {
+			if (m_buffer.hasArray())
+				return new String(m_buffer.array(), m_buffer.arrayOffset()+m_start+p_from, p_to-p_from);
+			return m_buffer.subSequence(m_start+p_from-m_buffer.position(), m_start+p_to-m_buffer.position()).toString();
+		}
+	}
+
+	/**************************************************************************/
+	/***  RUNTIME DATA  *******************************************************/
+	/**************************************************************************/
+
+	/** The encoding of the sheet, or <code>null</code> if read from a character stream. */
+	private final Charset m_charset;
+
+	/** The number of bytes of the sheet, or <code>-1</code> if read from a character stream. */
+	private long m_size = -1;
+
+	/**************************************************************************/
+	/***  CONSTRUCTORS  *******************************************************/
+	/**************************************************************************/
+
+	pCUELineReader(final Charset p_charset) {
+		super();
+		m_charset = p_charset;
+	}
+
+	/**************************************************************************/
+	/***  METHODS  ************************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Moves to the next trimmed, non-empty line.
+	 * <p>
+	 * @return <code>true</code> if there is a current line, or <code>false</code> at the end of the sheet.
+	 * @throws IOException If the reading failed.
+	 */
+	abstract boolean next() throws IOException;
+
+	/**
+	 * Gets a part of the current line as a string, decoding it if needed.
+	 * <p>
+	 * @param p_from The start index (inclusive) in the current line.
+	 * @param p_to The end index (exclusive) in the current line.
+	 */
+	abstract String string(int p_from, int p_to);
+
+	/**
+	 * Gets the encoding of the sheet, or <code>null</code> if read from a character stream.
+	 */
+	Charset getCharset() {
+		return m_charset;
+	}
+
+	/**
+	 * Gets the number of bytes of the sheet, or <code>-1</code> if read from a character stream.
+	 */
+	long getSize() {
+		return m_size;
+	}
+
+	/**
+	 * Tests whether the current line starts with a prefix at a given offset.
+	 */
+	boolean startsWith(final String p_prefix, final int p_offset) {
+		final int i_len = p_prefix.length();
+		if (p_offset+i_len>length())
+			return false;
+		for(int i=0 ; i<i_len ; i++)
+			if (charAt(p_offset+i)!=p_prefix.charAt(i))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Tests whether the current line starts with a prefix.
+	 */
+	boolean startsWith(final String p_prefix) {
+		return startsWith(p_prefix, 0);
+	}
+
+	/**
+	 * Tests whether the current line ends with a suffix.
+	 */
+	boolean endsWith(final String p_suffix) {
+		final int i_offset = length() - p_suffix.length();
+		return i_offset>=0 && startsWith(p_suffix, i_offset);
+	}
+
+	@Override
+	public CharSequence subSequence(final int p_from, final int p_to) {
+		return string(p_from, p_to);
+	}
+
+	/**
+	 * Returns the current line.
+	 */
+	@Override
+	public String toString() {
+		return string(0, length());
+	}
+
+	/**************************************************************************/
+	/***  STATIC METHODS  *****************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Creates a line reader over the raw bytes of a cue sheet, detecting its encoding.
+	 * <p>
+	 * @param p_buffer The bytes between the buffer position and limit (the buffer is not modified).
+	 * @see #detectCharset(ByteBuffer)
+	 */
+	static pCUELineReader open(final ByteBuffer p_buffer) {
+		final ByteBuffer i_buffer = p_buffer.duplicate();
+		final Charset i_charset = detectCharset(i_buffer);
+
+		//*** SKIP THE BYTE ORDER MARK
+		final int i_bom = bomLength(i_buffer);
+		i_buffer.position(i_buffer.position()+i_bom);
+
+		final pCUELineReader i_reader = (StandardCharsets.UTF_16LE.equals(i_charset) || StandardCharsets.UTF_16BE.equals(i_charset))?
+				new pCUELineReader_Chars(i_charset.decode(i_buffer), i_charset) : new pCUELineReader_Bytes(i_buffer, i_charset);
+		i_reader.m_size = p_buffer.remaining();
+		return i_reader;
+	}
+
+	/**
+	 * Detects the encoding of the raw bytes of a cue sheet.
+	 * <p>
+	 * The detection is based on:
+	 * <ul>
+	 * <li>the byte order mark (UTF-8, UTF-16LE, UTF-16BE),
+	 * <li>the position of the zero bytes in the first character (UTF-16 without byte order mark),
+	 * <li>the validity of the bytes as UTF-8, otherwise windows-1252 is used.
+	 * </ul>
+	 * @param p_buffer The bytes between the buffer position and limit (the buffer is not modified).
+	 * @return The charset (cannot be <code>null</code>).
+	 */
+	static Charset detectCharset(final ByteBuffer p_buffer) {
+		final int i_pos = p_buffer.position();
+		final int i_len = p_buffer.remaining();
+
+		if (i_len>=3 && (p_buffer.get(i_pos)&0xFF)==0xEF && (p_buffer.get(i_pos+1)&0xFF)==0xBB && (p_buffer.get(i_pos+2)&0xFF)==0xBF)
+			return StandardCharsets.UTF_8;
+		if (i_len>=2) {
+			final int b0 = p_buffer.get(i_pos)&0xFF;
+			final int b1 = p_buffer.get(i_pos+1)&0xFF;
+			if ((b0==0xFF && b1==0xFE) || (b0!=0 && b1==0))
+				return StandardCharsets.UTF_16LE;
+			if ((b0==0xFE && b1==0xFF) || (b0==0 && b1!=0))
+				return StandardCharsets.UTF_16BE;
+		}
+
+		return isUTF8(p_buffer)? StandardCharsets.UTF_8 : fallbackCharset();
+	}
+
+	/**
+	 * Gets the length of the byte order mark at the position of a buffer, if any.
+	 */
+	static int bomLength(final ByteBuffer p_buffer) {
+		final int i_pos = p_buffer.position();
+		final int i_len = p_buffer.remaining();
+		if (i_len>=3 && (p_buffer.get(i_pos)&0xFF)==0xEF && (p_buffer.get(i_pos+1)&0xFF)==0xBB && (p_buffer.get(i_pos+2)&0xFF)==0xBF)
+			return 3;
+		if (i_len>=2) {
+			final int b0 = p_buffer.get(i_pos)&0xFF;
+			final int b1 = p_buffer.get(i_pos+1)&0xFF;
+			if ((b0==0xFF && b1==0xFE) || (b0==0xFE && b1==0xFF))
+				return 2;
+		}
+		return 0;
+	}
+
+	/**
+	 * Tests whether the bytes of a buffer are a well-formed UTF-8 sequence.
+	 */
+	private static boolean isUTF8(final ByteBuffer p_buffer) {
+		final int i_limit = p_buffer.limit();
+		int i = p_buffer.position();
+		while(i<i_limit) {
+			final int b = p_buffer.get(i++)&0xFF;
+			if (b<0x80)
+				continue;
+
+			final int i_more;
+			if (b>=0xC2 && b<=0xDF)
+				i_more = 1;
+			else if (b>=0xE0 && b<=0xEF)
+				i_more = 2;
+			else if (b>=0xF0 && b<=0xF4)
+				i_more = 3;
+			else
+				return false;
+
+			if (i+i_more>i_limit)
+				return false;
+			for(int j=0 ; j<i_more ; j++)
+				if ((p_buffer.get(i++)&0xC0)!=0x80)
+					return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the charset used when the bytes are not valid UTF-8.
+	 */
+	private static Charset fallbackCharset() {
+		return Charset.isSupported(CHARSET_FALLBACK)? Charset.forName(CHARSET_FALLBACK) : StandardCharsets.ISO_8859_1;
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/
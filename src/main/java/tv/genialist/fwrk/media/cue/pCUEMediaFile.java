@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.media.cue;
+
+/**
+ * The <code>pCUEMediaFile</code> class is a "FILE" line of a cue sheet and the group of tracks that follows it.
+ * <p>
+ * A cue sheet can reference several media files (one per disc, or one per track): the tracks of each file
+ * have their own timeline, starting at the beginning of the file. The group is a range of the tracks of the sheet.
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ * @see pCUESheet#getFiles()
+ */
+public final class pCUEMediaFile {
+
+	/**************************************************************************/
+	/***  RUNTIME DATA  *******************************************************/
+	/**************************************************************************/
+
+	/** The media file name, without quotes. */
+	private final String m_name;
+
+	/** The file type ("MP3", "WAVE", "BINARY"...). */
+	private final String m_type;
+
+	/** The position of the group in the files of the sheet. */
+	final int m_number;
+
+	/** The index of the first track of the group in the tracks of the sheet. */
+	int m_first;
+
+	/** The number of tracks of the group. */
+	int m_count;
+
+	/**************************************************************************/
+	/***  CONSTRUCTORS  *******************************************************/
+	/**************************************************************************/
+
+	pCUEMediaFile(final String p_name, final String p_type, final int p_number) {
+		super();
+
+		m_name = p_name;
+		m_type = p_type;
+		m_number = p_number;
+	}
+
+	/**************************************************************************/
+	/***  ACCESSOR METHODS  ***************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Gets the media file name, as written in the "FILE" line without quotes.
+	 * <p>
+	 * @return The name (can be empty, but not <code>null</code>).
+	 */
+	public String getName() {
+		return m_name;
+	}
+
+	/**
+	 * Gets the file type of the "FILE" line ("MP3", "WAVE", "FLAC", "BINARY"...).
+	 */
+	public String getType() {
+		return m_type;
+	}
+
+	/**
+	 * Gets the index of the first track of the group in the tracks of the sheet.
+	 */
+	public int getFirstTrack() {
+		return m_first;
+	}
+
+	/**
+	 * Gets the number of tracks of the group.
+	 */
+	public int getTrackCount() {
+		return m_count;
+	}
+
+	/**
+	 * Checks if this file is referenced by a media file name.
+	 * <p>
+	 * The names are compared exactly, then without their directories and ignoring case, because sheets often give
+	 * paths relative to their own directory.
+	 * <p>
+	 * @param p_media The media file name or path.
+	 */
+	public boolean matches(final String p_media) {
+		if (null==p_media)
+			return false;
+		if (m_name.equals(p_media))
+			return true;
+		return baseName(m_name).equalsIgnoreCase(baseName(p_media));
+	}
+
+	@Override
+	public String toString() {
+		return m_name;
+	}
+
+	/**************************************************************************/
+	/***  STATIC METHODS  *****************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Gets the name of a file path without its directories ('/' and '\' separators).
+	 */
+	static String baseName(final String p_path) {
+		final int i_index = Math.max(p_path.lastIndexOf('/'), p_path.lastIndexOf('\\'));
+		return (i_index>=0)? p_path.substring(i_index+1) : p_path;
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/
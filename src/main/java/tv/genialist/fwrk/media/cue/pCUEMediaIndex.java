@@ -0,0 +1,417 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.media.cue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+import tv.genialist.ptools.trace.pTraceImpl;
+
+/**
+ * The <code>pCUEMediaIndex</code> class maps media files to the cue sheets that reference them in their "FILE" lines.
+ * <p>
+ * A sheet is often named after the album rather than after its media file (<code>Artist - Album.cue</code> next to <code>CDImage.mp3</code>),
+ * so it cannot be found from the name of the media file. The sheets are added to the index when they are parsed
+ * (by {@link pCUESheetCache} and {@link pCUELibraryScanner}): the names of their "FILE" lines are resolved against the directory
+ * of the sheet, and a lookup is a hash probe on the absolute path of the media file.
+ * <p>
+ * As sheets often keep the name of the ripped file (<code>CDImage.wav</code>) after the media has been encoded again
+ * (<code>CDImage.flac</code>), a media file that is not referenced by its exact path is looked up a second time without extension.
+ * <p>
+ * The paths are compared without case when the file system ignores it (Windows and, by default, macOS), which is detected once
+ * (see {@link #isFileSystemCaseInsensitive()}): the entries whose path has the same case as the media file then come first.
+ * Otherwise, as on Linux, <code>Track.flac</code> and <code>track.flac</code> are different files.
+ * The lookup without extension compares the paths the same way.
+ * <p>
+ * <b>Example:</b>
+ * <dl>
+ * <dd><code>
+ * for(pCUEMediaIndex_Entry i_entry : pCUEMediaIndex.getDefaultInstance().find(i_media))<br>
+ * &nbsp;&nbsp;System.out.println(i_entry.getSheet() + ": " + i_entry.getTrackCount() + " tracks");<br>
+ * </code>
+ * </dl>
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ */
+public class pCUEMediaIndex {
+
+	/**************************************************************************/
+	/***  DEFINITIONS  ********************************************************/
+	/**************************************************************************/
+
+	/** The prefix used in trace and log messages. */
+	public static final String TRACE_PREFIX = "CUEMediaIndex";
+
+	/**************************************************************************/
+	/***  SUB-CLASSES  ********************************************************/
+	/**************************************************************************/
+
+	/**
+	 * A "FILE" line of a cue sheet, with the range of its tracks.
+	 */
+	public static final class pCUEMediaIndex_Entry {
+
+		private final File m_sheet;
+		private final String m_media;
+		private final int m_number;
+		private final int m_first;
+		private final int m_count;
+
+		/** The resolved path of the media file, with its case. */
+		private final String m_path;
+
+		pCUEMediaIndex_Entry(final File p_sheet, final pCUEMediaFile p_file, final String p_path) {
+			m_sheet = p_sheet;
+			m_path = p_path;
+			m_media = p_file.getName();
+			m_number = p_file.m_number;
+			m_first = p_file.getFirstTrack();
+			m_count = p_file.getTrackCount();
+		}
+
+		/**
+		 * Gets the .cue file.
+		 */
+		public File getSheet() {
+			return m_sheet;
+		}
+
+		/**
+		 * Gets the media file name as written in the "FILE" line.
+		 */
+		public String getMedia() {
+			return m_media;
+		}
+
+		/**
+		 * Gets the position of the "FILE" line in the files of the sheet.
+		 * <p>
+		 * @see pCUESheet#getFiles()
+		 */
+		public int getFileNumber() {
+			return m_number;
+		}
+
+		/**
+		 * Gets the index of the first track of the media file in the tracks of the sheet, when the sheet was indexed.
+		 */
+		public int getFirstTrack() {
+			return m_first;
+		}
+
+		/**
+		 * Gets the number of tracks of the media file, when the sheet was indexed.
+		 */
+		public int getTrackCount() {
+			return m_count;
+		}
+
+		/**
+		 * Gets the tracks of the media file from a sheet read from the .cue file.
+		 * <p>
+		 * The tracks are taken from the given sheet, which may have been read again since the sheet was indexed.
+		 * <p>
+		 * @param p_sheet The cue sheet read from {@link #getSheet()}.
+		 * @return The tracks (can be empty, but not <code>null</code>).
+		 */
+		public List<pCUETrack> getTracks(final pCUESheet p_sheet) {
+			final List<pCUEMediaFile> i_files = p_sheet.getFiles();
+			return (m_number<i_files.size())? p_sheet.getTracks(i_files.get(m_number)) : Collections.<pCUETrack>emptyList();
+		}
+
+		@Override
+		public String toString() {
+			return m_sheet.getPath() + " [" + m_media + "]";
+		}
+	}
+
+	/**************************************************************************/
+	/***  RUNTIME DATA  *******************************************************/
+	/**************************************************************************/
+
+	private static final pTraceImpl TRACE = pTraceImpl.getTrace(pCUEMediaIndex.class, TRACE_PREFIX);
+
+	/** Whether the default file system ignores the case of the file names. */
+	private static final boolean CASE_INSENSITIVE = detectCaseInsensitive();
+
+	/** The default instance of this object. */
+	private static final pCUEMediaIndex DEFAULT = new pCUEMediaIndex();
+
+	/** Whether the paths are compared without case. */
+	private final boolean m_ignore_case;
+
+	/** The entries by media file path. Guarded by <code>this</code>. */
+	private final HashMap<String,List<pCUEMediaIndex_Entry>> m_media = new HashMap<>();
+
+	/** The entries by media file path without extension. Guarded by <code>this</code>. */
+	private final HashMap<String,List<pCUEMediaIndex_Entry>> m_stems = new HashMap<>();
+
+	/** The media file paths by .cue file path, to update the index when a sheet changes. Guarded by <code>this</code>. */
+	private final HashMap<String,String[]> m_sheets = new HashMap<>();
+
+	/**************************************************************************/
+	/***  CONSTRUCTORS  *******************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Constructs a new empty <code>pCUEMediaIndex</code> object, comparing the paths as the default file system does.
+	 * <p>
+	 * @see #isFileSystemCaseInsensitive()
+	 */
+	public pCUEMediaIndex() {
+		this(CASE_INSENSITIVE);
+	}
+
+	/**
+	 * Constructs a new empty <code>pCUEMediaIndex</code> object.
+	 * <p>
+	 * @param p_ignore_case Whether the paths are compared without case.
+	 */
+	public pCUEMediaIndex(final boolean p_ignore_case) {
+		super();
+		m_ignore_case = p_ignore_case;
+	}
+
+	/**************************************************************************/
+	/***  METHODS  ************************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Adds the media files of a cue sheet to the index, replacing the ones previously added for the same .cue file.
+	 * <p>
+	 * @param p_cue The .cue file.
+	 * @param p_sheet The cue sheet read from the file.
+	 */
+	public void add(final File p_cue, final pCUESheet p_sheet) {
+		final Path i_cue = p_cue.toPath().toAbsolutePath().normalize();
+		final String i_cue_key = key(i_cue.toString());
+		final Path i_dir = i_cue.getParent();
+		final File i_sheet = i_cue.toFile();
+
+		final List<pCUEMediaFile> i_files = p_sheet.getFiles();
+		final ArrayList<String> i_keys = new ArrayList<>(i_files.size());
+		final ArrayList<pCUEMediaIndex_Entry> i_entries = new ArrayList<>(i_files.size());
+		for(pCUEMediaFile i_file : i_files) {
+			final String i_path = resolve(i_dir, i_file.getName());
+			if (null==i_path)
+				continue;
+			final String i_key = key(i_path);
+			if (i_keys.contains(i_key))
+				continue;
+			i_keys.add(i_key);
+			i_entries.add(new pCUEMediaIndex_Entry(i_sheet, i_file, i_path));
+		}
+
+		synchronized(this) {
+			remove(i_cue_key);
+			if (i_keys.isEmpty())
+				return;
+
+			for(int i=0 ; i<i_keys.size() ; i++) {
+				final String i_key = i_keys.get(i);
+				m_media.computeIfAbsent(i_key, k -> new ArrayList<>(1)).add(i_entries.get(i));
+				m_stems.computeIfAbsent(stem(i_key), k -> new ArrayList<>(1)).add(i_entries.get(i));
+			}
+			m_sheets.put(i_cue_key, i_keys.toArray(new String[i_keys.size()]));
+		}
+	}
+
+	/**
+	 * Removes the media files of a cue sheet from the index.
+	 * <p>
+	 * @param p_cue The .cue file.
+	 */
+	public synchronized void remove(final File p_cue) {
+		remove(key(p_cue.toPath().toAbsolutePath().normalize().toString()));
+	}
+
+	/**
+	 * Removes the entries of a .cue file.
+	 * Must be called while holding the lock of this object.
+	 */
+	private void remove(final String p_cue_key) {
+		final String[] i_keys = m_sheets.remove(p_cue_key);
+		if (null==i_keys)
+			return;
+
+		for(String i_key : i_keys) {
+			removeEntries(m_media, i_key, p_cue_key);
+			removeEntries(m_stems, stem(i_key), p_cue_key);
+		}
+	}
+
+	/**
+	 * Removes the entries of a .cue file from one of the maps.
+	 */
+	private void removeEntries(final HashMap<String,List<pCUEMediaIndex_Entry>> p_map, final String p_key, final String p_cue_key) {
+		final List<pCUEMediaIndex_Entry> i_entries = p_map.get(p_key);
+		if (null==i_entries)
+			return;
+
+		i_entries.removeIf(p_entry -> key(p_entry.m_sheet.getPath()).equals(p_cue_key));
+		if (i_entries.isEmpty())
+			p_map.remove(p_key);
+	}
+
+	/**
+	 * Finds the cue sheets that reference a media file.
+	 * <p>
+	 * @param p_media The media file.
+	 * @return The "FILE" lines referencing the media file: the ones with the same case as the media file first,
+	 * then in the order the sheets were added (can be empty, but not <code>null</code>).
+	 */
+	public List<pCUEMediaIndex_Entry> find(final File p_media) {
+		final String i_path = p_media.toPath().toAbsolutePath().normalize().toString();
+		final String i_key = key(i_path);
+
+		final ArrayList<pCUEMediaIndex_Entry> i_result;
+		final boolean i_stem;
+		synchronized(this) {
+			List<pCUEMediaIndex_Entry> i_entries = m_media.get(i_key);
+			i_stem = (null==i_entries);
+			if (i_stem)
+				i_entries = m_stems.get(stem(i_key));
+			if (null==i_entries)
+				return Collections.emptyList();
+			i_result = new ArrayList<>(i_entries);
+		}
+
+		//*** THE SAME CASE FIRST (STABLE SORT)
+		if (m_ignore_case && i_result.size()>1) {
+			final String i_match = i_stem? stem(i_path) : i_path;
+			i_result.sort((p_a, p_b) -> Boolean.compare(!(i_stem? stem(p_a.m_path) : p_a.m_path).equals(i_match), !(i_stem? stem(p_b.m_path) : p_b.m_path).equals(i_match)));
+		}
+
+		if (TRACE.isDebugEnabled())
+			TRACE.debug("Found CUE Sheet of media file: ", i_path, ": ", i_result);
+		return i_result;
+	}
+
+	/**
+	 * Removes all the entries from the index.
+	 */
+	public synchronized void clear() {
+		m_media.clear();
+		m_stems.clear();
+		m_sheets.clear();
+	}
+
+	/**
+	 * Gets the key of a normalized absolute path, without case if this index ignores it.
+	 */
+	private String key(final String p_path) {
+		return m_ignore_case? p_path.toLowerCase(Locale.ROOT) : p_path;
+	}
+
+	/**************************************************************************/
+	/***  ACCESSOR METHODS  ***************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Gets the number of media files in the index.
+	 */
+	public synchronized int size() {
+		return m_media.size();
+	}
+
+	/**
+	 * Gets the number of cue sheets in the index.
+	 */
+	public synchronized int getSheetCount() {
+		return m_sheets.size();
+	}
+
+	/**
+	 * Checks if the paths are compared without case.
+	 */
+	public boolean isIgnoreCase() {
+		return m_ignore_case;
+	}
+
+	/**************************************************************************/
+	/***  STATIC METHODS  *****************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Resolves the name of a "FILE" line against the directory of the sheet.
+	 * <p>
+	 * @return The normalized absolute path of the media file, or <code>null</code> if the name is not a valid path.
+	 */
+	private static String resolve(final Path p_dir, final String p_name) {
+		if (p_name.isEmpty())
+			return null;
+
+		//*** SHEETS WRITTEN ON WINDOWS USE BACKSLASHES
+		final String i_name = (File.separatorChar=='/')? p_name.replace('\\', '/') : p_name;
+		try {
+			final Path i_path = Paths.get(i_name);
+			return (i_path.isAbsolute() || null==p_dir)? i_path.normalize().toString() : p_dir.resolve(i_path).normalize().toString();
+		}
+		catch (final InvalidPathException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Gets a key without the extension of the file name.
+	 */
+	private static String stem(final String p_key) {
+		final int i_dot = p_key.lastIndexOf('.');
+		return (i_dot>p_key.lastIndexOf(File.separatorChar))? p_key.substring(0, i_dot) : p_key;
+	}
+
+	/**
+	 * Checks if the default file system ignores the case of the file names, as detected when this class was loaded.
+	 */
+	public static boolean isFileSystemCaseInsensitive() {
+		return CASE_INSENSITIVE;
+	}
+
+	/**
+	 * Detects if the default file system ignores the case, by looking for a temporary file with its name in upper case.
+	 * <p>
+	 * @return The result, or whether the platform is Windows or macOS if the temporary file cannot be created.
+	 */
+	private static boolean detectCaseInsensitive() {
+		try {
+			final Path i_probe = Files.createTempFile("pCUEMediaIndex", ".tmp");
+			try {
+				return Files.exists(i_probe.resolveSibling(i_probe.getFileName().toString().toUpperCase(Locale.ROOT)));
+			}
+			finally {
+				Files.deleteIfExists(i_probe);
+			}
+		}
+		catch (final IOException | SecurityException ex) {
+			final String i_os = System.getProperty("os.name", "");
+			return i_os.startsWith("Windows") || i_os.startsWith("Mac");
+		}
+	}
+
+	/**
+	 * Gets the default instance of this class.
+	 * <p>
+	 * @return The default instance (this cannot be <code>null</code>).
+	 */
+	public static pCUEMediaIndex getDefaultInstance() {
+		return DEFAULT;
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/
@@ -0,0 +1,350 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.media.cue;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The <code>pCUEMetrics</code> class is a registry of counters and latency histograms, queryable at runtime.
+ * <p>
+ * The counters and timers are created on first use and are never removed, so that they can be kept in static fields
+ * by the measured classes. {@link #reset()} sets their values back to zero.
+ * <p>
+ * A timer counts the operations and the failures, and keeps the distribution of their durations in buckets of powers of two
+ * (nanoseconds), so that a percentile is known within a factor of two without storing the durations.
+ * <p>
+ * <b>Example:</b>
+ * <dl>
+ * <dd><code>
+ * final pCUEMetrics_Timer i_parse = pCUEMetrics.getDefaultInstance().getTimer(pCUEMetrics.PARSE);<br>
+ * System.out.println(i_parse.getCount() + " sheets, p99: " + i_parse.getPercentile(0.99, TimeUnit.MICROSECONDS) + " us");<br>
+ * </code>
+ * </dl>
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ * @see pCUEEvents
+ */
+public class pCUEMetrics {
+
+	/**************************************************************************/
+	/***  DEFINITIONS  ********************************************************/
+	/**************************************************************************/
+
+	/** The timer of the parsing of cue sheets. */
+	public static final String PARSE = "cue.parse";
+
+	/** The timer of the writing of whole cue sheets. */
+	public static final String SAVE = "cue.save";
+
+	/** The timer of the changes of track meta-data in .cue files. */
+	public static final String UPDATE = "cue.update";
+
+	/** The timer of the lookups of .cue files next to media files. */
+	public static final String SIDECAR_LOOKUP = "cue.sidecar.lookup";
+
+	/** The counter of the sheets found in the cache. */
+	public static final String CACHE_HIT = "cue.cache.hit";
+
+	/** The counter of the sheets not found in the cache, or changed since cached. */
+	public static final String CACHE_MISS = "cue.cache.miss";
+
+	/** The counter of the strings found in the string pool. */
+	public static final String INTERN_HIT = "cue.intern.hit";
+
+	/** The counter of the strings added to the string pool. */
+	public static final String INTERN_MISS = "cue.intern.miss";
+
+	/** The timer of the file-to-playlist service of the plug-in. */
+	public static final String SERVICE_FILE_TO_PLAYLIST = "plugin.file.to.playlist";
+
+	/** The timer of the set-metadata service of the plug-in. */
+	public static final String SERVICE_SET_METADATA = "plugin.set.metadata";
+
+	/** The timer of the accept-metadata service of the plug-in. */
+	public static final String SERVICE_ACCEPT_METADATA = "plugin.accept.metadata";
+
+	/** The number of buckets of the histograms: one per power of two of nanoseconds. */
+	private static final int BUCKETS = 64;
+
+	/**************************************************************************/
+	/***  SUB-CLASSES  ********************************************************/
+	/**************************************************************************/
+
+	/**
+	 * A counter of events.
+	 */
+	public static final class pCUEMetrics_Counter {
+
+		private final LongAdder m_count = new LongAdder();
+
+		pCUEMetrics_Counter() {
+			super();
+		}
+
+		/**
+		 * Adds one to the counter.
+		 */
+		public void increment() {
+			m_count.increment();
+		}
+
+		/**
+		 * Gets the value of the counter.
+		 */
+		public long getCount() {
+			return m_count.sum();
+		}
+
+		void reset() {
+			m_count.reset();
+		}
+
+		@Override
+		public String toString() {
+			return Long.toString(getCount());
+		}
+	}
+
+	/**
+	 * A counter of operations, with the histogram of their durations.
+	 */
+	public static final class pCUEMetrics_Timer {
+
+		private final LongAdder m_count = new LongAdder();
+		private final LongAdder m_failures = new LongAdder();
+		private final LongAdder m_total = new LongAdder();
+		private final LongAccumulator m_max = new LongAccumulator(Math::max, 0);
+		/** The number of operations by duration: bucket <code>i</code> counts the durations in <code>[2^i, 2^(i+1))</code> ns. */
+		private final AtomicLongArray m_buckets = new AtomicLongArray(BUCKETS);
+
+		pCUEMetrics_Timer() {
+			super();
+		}
+
+		/**
+		 * Records a successful operation.
+		 * <p>
+		 * @param p_nanos The duration of the operation (in nanoseconds).
+		 */
+		public void record(final long p_nanos) {
+			final long i_nanos = Math.max(0, p_nanos);
+			m_count.increment();
+			m_total.add(i_nanos);
+			m_max.accumulate(i_nanos);
+			m_buckets.incrementAndGet(bucket(i_nanos));
+		}
+
+		/**
+		 * Records a failed operation.
+		 * <p>
+		 * @param p_nanos The duration of the operation (in nanoseconds).
+		 */
+		public void recordFailure(final long p_nanos) {
+			m_failures.increment();
+			record(p_nanos);
+		}
+
+		/**
+		 * Gets the number of operations, including the failed ones.
+		 */
+		public long getCount() {
+			return m_count.sum();
+		}
+
+		/**
+		 * Gets the number of failed operations.
+		 */
+		public long getFailureCount() {
+			return m_failures.sum();
+		}
+
+		/**
+		 * Gets the total duration of the operations.
+		 */
+		public long getTotalTime(final TimeUnit p_unit) {
+			return p_unit.convert(m_total.sum(), TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Gets the average duration of the operations, or <code>0</code> if there is none.
+		 */
+		public long getMeanTime(final TimeUnit p_unit) {
+			final long i_count = getCount();
+			return (i_count>0)? p_unit.convert(m_total.sum()/i_count, TimeUnit.NANOSECONDS) : 0;
+		}
+
+		/**
+		 * Gets the longest duration of the operations.
+		 */
+		public long getMaxTime(final TimeUnit p_unit) {
+			return p_unit.convert(m_max.get(), TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Gets an upper bound of a percentile of the durations, within a factor of two.
+		 * <p>
+		 * @param p_rank The rank of the percentile, between <code>0</code> and <code>1</code> (for instance <code>0.99</code>).
+		 * @return The upper bound, or <code>0</code> if there is no operation.
+		 */
+		public long getPercentile(final double p_rank, final TimeUnit p_unit) {
+			final long[] i_buckets = new long[BUCKETS];
+			long i_count = 0;
+			for(int i=0 ; i<BUCKETS ; i++)
+				i_count += (i_buckets[i] = m_buckets.get(i));
+			if (i_count==0)
+				return 0;
+
+			final long i_rank = Math.max(1, (long)Math.ceil(p_rank*i_count));
+			long i_sum = 0;
+			for(int i=0 ; i<BUCKETS ; i++) {
+				i_sum += i_buckets[i];
+				if (i_sum>=i_rank)
+					return p_unit.convert(Math.min(m_max.get(), (i>=62)? Long.MAX_VALUE : (1L<<(i+1))-1), TimeUnit.NANOSECONDS);
+			}
+			return p_unit.convert(m_max.get(), TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Gets the number of operations by bucket of duration: bucket <code>i</code> counts the durations in <code>[2^i, 2^(i+1))</code> nanoseconds.
+		 */
+		public long[] getHistogram() {
+			final long[] i_buckets = new long[BUCKETS];
+			for(int i=0 ; i<BUCKETS ; i++)
+				i_buckets[i] = m_buckets.get(i);
+			return i_buckets;
+		}
+
+		void reset() {
+			m_count.reset();
+			m_failures.reset();
+			m_total.reset();
+			m_max.reset();
+			for(int i=0 ; i<BUCKETS ; i++)
+				m_buckets.set(i, 0);
+		}
+
+		@Override
+		public String toString() {
+			return "count=" + getCount() + " failures=" + getFailureCount() + " mean=" + getMeanTime(TimeUnit.MICROSECONDS)
+				+ "us p50<=" + getPercentile(0.5, TimeUnit.MICROSECONDS) + "us p99<=" + getPercentile(0.99, TimeUnit.MICROSECONDS)
+				+ "us max=" + getMaxTime(TimeUnit.MICROSECONDS) + "us";
+		}
+
+		/**
+		 * Gets the bucket of a duration.
+		 */
+		private static int bucket(final long p_nanos) {
+			return (p_nanos<=0)? 0 : 63-Long.numberOfLeadingZeros(p_nanos);
+		}
+	}
+
+	/**************************************************************************/
+	/***  RUNTIME DATA  *******************************************************/
+	/**************************************************************************/
+
+	/** The default instance of this object. */
+	private static final pCUEMetrics DEFAULT = new pCUEMetrics();
+
+	private final ConcurrentHashMap<String,pCUEMetrics_Counter> m_counters = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String,pCUEMetrics_Timer> m_timers = new ConcurrentHashMap<>();
+
+	/**************************************************************************/
+	/***  CONSTRUCTORS  *******************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Constructs a new empty <code>pCUEMetrics</code> object.
+	 */
+	public pCUEMetrics() {
+		super();
+	}
+
+	/**************************************************************************/
+	/***  METHODS  ************************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Gets a counter, creating it if needed.
+	 * <p>
+	 * @param p_name The name of the counter (for example {@link #CACHE_HIT}).
+	 * @return The counter (cannot be <code>null</code>).
+	 */
+	public pCUEMetrics_Counter getCounter(final String p_name) {
+		return m_counters.computeIfAbsent(p_name, k -> new pCUEMetrics_Counter());
+	}
+
+	/**
+	 * Gets a timer, creating it if needed.
+	 * <p>
+	 * @param p_name The name of the timer (for example {@link #PARSE}).
+	 * @return The timer (cannot be <code>null</code>).
+	 */
+	public pCUEMetrics_Timer getTimer(final String p_name) {
+		return m_timers.computeIfAbsent(p_name, k -> new pCUEMetrics_Timer());
+	}
+
+	/**
+	 * Gets the counters by name, sorted by name.
+	 */
+	public Map<String,pCUEMetrics_Counter> getCounters() {
+		return new TreeMap<>(m_counters);
+	}
+
+	/**
+	 * Gets the timers by name, sorted by name.
+	 */
+	public Map<String,pCUEMetrics_Timer> getTimers() {
+		return new TreeMap<>(m_timers);
+	}
+
+	/**
+	 * Sets the values of all the counters and timers back to zero.
+	 */
+	public void reset() {
+		for(pCUEMetrics_Counter i_counter : m_counters.values())
+			i_counter.reset();
+		for(pCUEMetrics_Timer i_timer : m_timers.values())
+			i_timer.reset();
+	}
+
+	/**
+	 * Returns a report of the counters and timers, one per line.
+	 */
+	@Override
+	public String toString() {
+		final StringBuilder i_text = new StringBuilder();
+		for(Map.Entry<String,pCUEMetrics_Counter> i_entry : getCounters().entrySet())
+			i_text.append(i_entry.getKey()).append(": ").append(i_entry.getValue()).append('\n');
+		for(Map.Entry<String,pCUEMetrics_Timer> i_entry : getTimers().entrySet())
+			i_text.append(i_entry.getKey()).append(": ").append(i_entry.getValue()).append('\n');
+		return i_text.toString();
+	}
+
+	/**************************************************************************/
+	/***  STATIC METHODS  *****************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Gets the default instance of this class, used by the cue sheet classes and the plug-in.
+	 * <p>
+	 * @return The default instance (this cannot be <code>null</code>).
+	 */
+	public static pCUEMetrics getDefaultInstance() {
+		return DEFAULT;
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/
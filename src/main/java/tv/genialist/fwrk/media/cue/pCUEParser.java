@@ -0,0 +1,298 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.media.cue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The <code>pCUEParser</code> class parses cue sheets in one pass and reports their content to a {@link pCUESheetHandler}.
+ * <p>
+ * The parser keeps no state but the current section of the sheet, so its memory use does not depend on the number of tracks.
+ * The values repeated across sheets (performers, genres, dates, media file names) are shared through the {@link pCUEStringPool}.
+ * <p>
+ * A sheet can reference several media files: each "FILE" line is reported before the tracks that follow it,
+ * and the positions of these tracks are relative to the beginning of that file.
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ * @see pCUESheetHandler
+ */
+public final class pCUEParser {
+
+	/**************************************************************************/
+	/***  DEFINITIONS  ********************************************************/
+	/**************************************************************************/
+
+	/** The size from which .cue files are memory-mapped instead of read into the heap. */
+	private static final long MAP_THRESHOLD = 1024*1024;
+
+	/** The file types of the cue sheet format, returned as constants instead of new strings. */
+	private static final String[] FILE_TYPES = new String[] { "MP3", "WAVE", "FLAC", "AIFF", "BINARY", "MOTOROLA" };
+
+	/** The lines before the first "FILE" line. */
+	private static final int STATE_HEADER = 0;
+	/** The lines between the first "FILE" line and the first "TRACK" line. */
+	private static final int STATE_FILE = 1;
+	/** The lines of the tracks. */
+	private static final int STATE_TRACK = 2;
+
+	/**************************************************************************/
+	/***  CONSTRUCTORS  *******************************************************/
+	/**************************************************************************/
+
+	private pCUEParser() {
+		super();
+	}
+
+	/**************************************************************************/
+	/***  STATIC METHODS  *****************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Parses an existing .cue file.
+	 * <p>
+	 * The file is read through a {@link FileChannel} (memory-mapped for large files)
+	 * and its encoding is detected from the raw bytes: UTF-8 or UTF-16 byte order mark, UTF-16 without mark,
+	 * valid UTF-8, otherwise windows-1252.
+	 * <p>
+	 * @param p_path The .cue file.
+	 * @param p_handler The receiver of the sheet content.
+	 * @throws IOException If the file reading failed.
+	 */
+	public static void parse(final Path p_path, final pCUESheetHandler p_handler) throws IOException {
+		parse(open(p_path), p_handler);
+	}
+
+	/**
+	 * Parses the raw bytes of a cue sheet.
+	 * <p>
+	 * The encoding is detected as by {@link #parse(Path, pCUESheetHandler)}.
+	 * <p>
+	 * @param p_buffer The bytes between the position and the limit of the buffer (the buffer is not modified).
+	 * @param p_handler The receiver of the sheet content.
+	 */
+	public static void parse(final ByteBuffer p_buffer, final pCUESheetHandler p_handler) {
+		try {
+			parse(pCUELineReader.open(p_buffer), p_handler);
+		}
+		catch (final IOException ex) {
+			//*** CANNOT HAPPEN: THE BYTES ARE IN MEMORY
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/**
+	 * Parses a cue sheet from an input stream, decoded with the platform default charset.
+	 * <p>
+	 * @param p_stream The input stream.
+	 * @param p_handler The receiver of the sheet content.
+	 * @throws IOException If the stream reading failed.
+	 */
+	public static void parse(final InputStream p_stream, final pCUESheetHandler p_handler) throws IOException {
+		parse(new pCUELineReader.pCUELineReader_Stream(new InputStreamReader(p_stream)), p_handler);
+	}
+
+	/**
+	 * Reads an existing .cue file into a line reader.
+	 * <p>
+	 * @param p_path The .cue file.
+	 * @throws IOException If the file reading failed.
+	 */
+	static pCUELineReader open(final Path p_path) throws IOException {
+		try (FileChannel i_channel = FileChannel.open(p_path, StandardOpenOption.READ)) {
+			return pCUELineReader.open(read(i_channel, p_path));
+		}
+	}
+
+	/**
+	 * Reads the whole content of a .cue file, memory-mapping large files.
+	 * <p>
+	 * @param p_channel The channel opened on the file.
+	 * @param p_path The .cue file, for error messages.
+	 * @return The bytes, from position 0 of the buffer.
+	 * @throws IOException If the file reading failed.
+	 */
+	static ByteBuffer read(final FileChannel p_channel, final Path p_path) throws IOException {
+		final long i_size = p_channel.size();
+		if (i_size>Integer.MAX_VALUE)
+			throw new IOException("CUE Sheet file is too large: ".concat(p_path.toString()));
+
+		if (i_size>MAP_THRESHOLD)
+			return p_channel.map(FileChannel.MapMode.READ_ONLY, 0, i_size);
+
+		final ByteBuffer i_buffer = ByteBuffer.allocate((int)i_size);
+		while(i_buffer.hasRemaining() && p_channel.read(i_buffer, i_buffer.position())>=0);
+		i_buffer.flip();
+		return i_buffer;
+	}
+
+	/**
+	 * Parses the lines of a cue sheet.
+	 * <p>
+	 * @param p_reader The line reader.
+	 * @param p_handler The receiver of the sheet content.
+	 * @throws IOException If the reading failed.
+	 */
+	static void parse(final pCUELineReader p_reader, final pCUESheetHandler p_handler) throws IOException {
+		int i_state = STATE_HEADER;
+		int i_tracks = 0;
+
+		while(p_reader.next()) {
+			final int i_keyword = pCUETokenizer.keyword(p_reader);
+
+			switch(i_state) {
+				case STATE_HEADER:
+					switch(i_keyword) {
+						case pCUETokenizer.KW_PERFORMER:
+						case pCUETokenizer.KW_TITLE:
+						case pCUETokenizer.KW_REM_GENRE:
+						case pCUETokenizer.KW_REM_DATE:
+							final String i_value = pCUETokenizer.value(p_reader, pCUETokenizer.length(i_keyword));
+							if (null!=i_value)
+								p_handler.onSheetField(pCUETokenizer.metadataKey(i_keyword), intern(i_keyword, i_value));
+							break;
+						case pCUETokenizer.KW_FILE:
+							if (file(p_reader, p_handler))
+								i_state = STATE_FILE;
+							break;
+						default:
+							break;
+					}
+					break;
+
+				case STATE_FILE:
+					if (pCUETokenizer.KW_TRACK==i_keyword && p_reader.endsWith(" AUDIO")) {
+						p_handler.onTrackStart(++i_tracks);
+						i_state = STATE_TRACK;
+					}
+					else if (pCUETokenizer.KW_FILE==i_keyword) {
+						file(p_reader, p_handler);
+					}
+					break;
+
+				default:
+					switch(i_keyword) {
+						case pCUETokenizer.KW_TRACK:
+							p_handler.onTrackStart(++i_tracks);
+							break;
+						case pCUETokenizer.KW_INDEX:
+							final long i_start = pCUETokenizer.index01(p_reader);
+							if (i_start>=0)
+								p_handler.onIndex(i_start);
+							break;
+						case pCUETokenizer.KW_FILE:
+							file(p_reader, p_handler);
+							break;
+						case pCUETokenizer.KW_NONE:
+							break;
+						default:
+							final String i_value = pCUETokenizer.value(p_reader, pCUETokenizer.length(i_keyword));
+							if (null!=i_value)
+								p_handler.onTrackField(pCUETokenizer.metadataKey(i_keyword), intern(i_keyword, i_value));
+					}
+					break;
+			}
+		}
+
+		p_handler.onEnd();
+	}
+
+	/**
+	 * Reports a <code>FILE "..." TYPE</code> line to the handler.
+	 * <p>
+	 * @return <code>true</code> if the line is a valid "FILE" line.
+	 */
+	private static boolean file(final pCUELineReader p_reader, final pCUESheetHandler p_handler) {
+		final String i_media = media(p_reader);
+		if (null==i_media)
+			return false;
+
+		p_handler.onFile(pCUEStringPool.getDefaultInstance().intern(i_media), type(p_reader));
+		return true;
+	}
+
+	/**
+	 * Shares a value with the equal values of the other sheets, except the titles that are seldom repeated.
+	 * <p>
+	 * @param p_keyword The keyword of the line.
+	 * @param p_value The value of the line.
+	 * @return The pooled value.
+	 * @see pCUEStringPool
+	 */
+	private static String intern(final int p_keyword, final String p_value) {
+		return (pCUETokenizer.KW_TITLE==p_keyword)? p_value : pCUEStringPool.getDefaultInstance().intern(p_value);
+	}
+
+	/**
+	 * Reads the media file name of a <code>FILE "..." TYPE</code> line.
+	 * <p>
+	 * @return The name without quotes, or <code>null</code> if the line is not a "FILE ... TYPE" line.
+	 */
+	static String media(final pCUELineReader p_reader) {
+		final int i_type = typeIndex(p_reader);
+		if (i_type<0)
+			return null;
+
+		int i_from = "FILE ".length();
+		int i_to = i_type-1;
+		while(i_from<i_to && p_reader.charAt(i_from)<=' ')
+			i_from++;
+		while(i_to>i_from && p_reader.charAt(i_to-1)<=' ')
+			i_to--;
+		if (i_to-i_from>1) {
+			final char i_first = p_reader.charAt(i_from);
+			final char i_last = p_reader.charAt(i_to-1);
+			if ((i_first=='\"' && i_last=='\"') || (i_first=='\'' && i_last=='\'')) {
+				i_from++;
+				i_to--;
+			}
+		}
+		return (i_from<i_to)? p_reader.string(i_from, i_to) : "";
+	}
+
+	/**
+	 * Reads the file type of a <code>FILE "..." TYPE</code> line.
+	 * <p>
+	 * @return The type, or <code>null</code> if the line is not a "FILE ... TYPE" line.
+	 */
+	static String type(final pCUELineReader p_reader) {
+		final int i_type = typeIndex(p_reader);
+		if (i_type<0)
+			return null;
+
+		final int i_length = p_reader.length()-i_type;
+		for(String i_known : FILE_TYPES)
+			if (i_known.length()==i_length && p_reader.startsWith(i_known, i_type))
+				return i_known;
+		return p_reader.string(i_type, p_reader.length());
+	}
+
+	/**
+	 * Finds the file type of a "FILE" line: the last word of the line, preceded by a space and by the media file name.
+	 * <p>
+	 * @return The offset of the type, or <code>-1</code> if the line has no type.
+	 */
+	private static int typeIndex(final pCUELineReader p_reader) {
+		final int i_length = p_reader.length();
+		int i = i_length;
+		while(i>0 && p_reader.charAt(i-1)>' ')
+			i--;
+		if (i==i_length || i<="FILE ".length() || p_reader.charAt(i-1)!=' ')
+			return -1;
+		return i;
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/
@@ -0,0 +1,437 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.media.cue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import tv.genialist.fwrk.media.pMediaUtil;
+import tv.genialist.ptools.string.pString;
+
+/**
+ * The <code>pCUEPatchWriter</code> class changes the meta-data of tracks in an existing .cue file in place.
+ * <p>
+ * The file is scanned once to remember the byte ranges of the lines of each track. When committed,
+ * only the changed lines are rewritten: the untouched bytes are copied unchanged with a channel transfer,
+ * so that lines not supported by {@link pCUESheet} (CATALOG, FLAGS, INDEX 00, other REM lines...) are preserved.
+ * The new content is written to a temporary file of the same directory, which then replaces the .cue file by an atomic rename.
+ * <p>
+ * Only sheets in an ASCII compatible encoding (UTF-8, windows-1252) can be patched,
+ * and the new values must be encodable in the encoding of the sheet.
+ * <p>
+ * <b>Example:</b>
+ * <dl>
+ * <dd><code>
+ * try (pCUEPatchWriter i_writer = pCUEPatchWriter.open(i_path)) {<br>
+ * &nbsp;&nbsp;if (null!=i_writer &amp;&amp; i_writer.set("03", pMediaUtil.MNAME_TITLE, "New title"))<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;i_writer.commit();<br>
+ * }<br>
+ * </code>
+ * </dl>
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ */
+final class pCUEPatchWriter implements Closeable {
+
+	/**************************************************************************/
+	/***  DEFINITIONS  ********************************************************/
+	/**************************************************************************/
+
+	/** The indentation of the inserted lines when the track has no indented line. */
+	private static final String DEFAULT_INDENT = "    ";
+
+	/**
+	 * The lines of a track.
+	 */
+	private static final class pCUEPatchWriter_Track {
+
+		/** The offset of the end of the "TRACK" line, where new lines are inserted. */
+		private int m_insert;
+
+		/** The line separator following the "TRACK" line. */
+		private String m_eol = "\n";
+
+		/** The indentation of the lines of the track. */
+		private String m_indent;
+
+		/** The offsets (start, end) of the meta-data lines, by <code>MNAME</code> property, in the order of the file. */
+		private final HashMap<String,ArrayList<int[]>> m_lines = new HashMap<>(8);
+	}
+
+	/**
+	 * A replacement of a range of bytes.
+	 */
+	private static final class pCUEPatchWriter_Patch {
+
+		private final int m_from;
+		private final int m_to;
+		private final byte[] m_bytes;
+
+		pCUEPatchWriter_Patch(final int p_from, final int p_to, final byte[] p_bytes) {
+			m_from = p_from;
+			m_to = p_to;
+			m_bytes = p_bytes;
+		}
+	}
+
+	/**************************************************************************/
+	/***  RUNTIME DATA  *******************************************************/
+	/**************************************************************************/
+
+	/** The .cue file. */
+	private final Path m_path;
+
+	/** The channel opened on the .cue file. */
+	private final FileChannel m_channel;
+
+	/** The content of the .cue file. */
+	private final ByteBuffer m_buffer;
+
+	/** The encoding of the .cue file. */
+	private final Charset m_charset;
+
+	/** The tracks, by identifier. */
+	private final HashMap<String,pCUEPatchWriter_Track> m_tracks = new HashMap<>();
+
+	/** The pending changes: values (<code>null</code> to remove) by <code>MNAME</code> property, by track identifier. */
+	private final LinkedHashMap<String,LinkedHashMap<String,String>> m_changes = new LinkedHashMap<>();
+
+	/**************************************************************************/
+	/***  CONSTRUCTORS  *******************************************************/
+	/**************************************************************************/
+
+	private pCUEPatchWriter(final Path p_path, final FileChannel p_channel, final ByteBuffer p_buffer, final pCUELineReader.pCUELineReader_Bytes p_reader) {
+		super();
+
+		m_path = p_path;
+		m_channel = p_channel;
+		m_buffer = p_buffer;
+		m_charset = p_reader.getCharset();
+
+		scan(p_reader);
+	}
+
+	/**************************************************************************/
+	/***  METHODS  ************************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Records the lines of the tracks, following the same sections as {@link pCUEParser}.
+	 */
+	private void scan(final pCUELineReader.pCUELineReader_Bytes p_reader) {
+		boolean i_file = false;
+		int i_tracks = 0;
+		pCUEPatchWriter_Track i_track = null;
+
+		while(p_reader.next()) {
+			final int i_keyword = pCUETokenizer.keyword(p_reader);
+
+			if (null==i_track) {
+				if (!i_file) {
+					i_file = pCUETokenizer.KW_FILE==i_keyword && null!=pCUEParser.media(p_reader);
+					continue;
+				}
+				if (pCUETokenizer.KW_TRACK!=i_keyword || !p_reader.endsWith(" AUDIO"))
+					continue;
+			}
+
+			switch(i_keyword) {
+				case pCUETokenizer.KW_TRACK:
+					i_track = new pCUEPatchWriter_Track();
+					i_track.m_insert = p_reader.getEnd();
+					i_track.m_eol = lineSeparator(p_reader.getEnd());
+					m_tracks.put(pCUETrack.trackID(++i_tracks), i_track);
+					break;
+				case pCUETokenizer.KW_NONE:
+				case pCUETokenizer.KW_FILE:
+					break;
+				default:
+					if (null==i_track.m_indent)
+						i_track.m_indent = indent(p_reader.getStart());
+
+					final String i_key = pCUETokenizer.metadataKey(i_keyword);
+					if (null!=i_key)
+						i_track.m_lines.computeIfAbsent(i_key, k -> new ArrayList<>(1)).add(new int[] { p_reader.getStart(), p_reader.getEnd() });
+			}
+		}
+	}
+
+	/**
+	 * Changes a meta-data of a track.
+	 * <p>
+	 * The change is applied to the file by {@link #commit()}.
+	 * <p>
+	 * @param p_track_id The identifier of the track.
+	 * @param p_key The <code>MNAME</code> property from {@link pMediaUtil} class.
+	 * @param p_value The new value, or <code>null</code> or empty to remove the meta-data from the track.
+	 * @return <code>true</code> if the change can be patched, or <code>false</code> if the track is not found,
+	 * the property is not written in cue sheets or the value cannot be encoded in the encoding of the sheet.
+	 */
+	boolean set(final String p_track_id, final String p_key, final String p_value) {
+		if (!m_tracks.containsKey(p_track_id))
+			return false;
+		if (null==pCUETokenizer.keywordOf(p_key))
+			return false;
+		if (pString.isValid(p_value) && !m_charset.newEncoder().canEncode(p_value))
+			return false;
+
+		m_changes.computeIfAbsent(p_track_id, k -> new LinkedHashMap<>(8)).put(p_key, pString.isValid(p_value)? p_value : null);
+		return true;
+	}
+
+	/**
+	 * Writes the pending changes to the .cue file.
+	 * <p>
+	 * Nothing is written if there is no pending change.
+	 * <p>
+	 * @throws IOException If the writing failed: the .cue file is left unchanged.
+	 */
+	void commit() throws IOException {
+		if (m_changes.isEmpty())
+			return;
+
+		final ArrayList<pCUEPatchWriter_Patch> i_patches = patches();
+		i_patches.sort((p_a, p_b) -> Integer.compare(p_a.m_from, p_b.m_from));
+
+		final Path i_dir = m_path.toAbsolutePath().getParent();
+		final Path i_temp = Files.createTempFile(i_dir, m_path.getFileName().toString(), ".tmp");
+		boolean i_done = false;
+		try {
+			try (FileChannel i_out = FileChannel.open(i_temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				int i_position = 0;
+				for(pCUEPatchWriter_Patch i_patch : i_patches) {
+					transfer(i_position, i_patch.m_from, i_out);
+					write(ByteBuffer.wrap(i_patch.m_bytes), i_out);
+					i_position = i_patch.m_to;
+				}
+				transfer(i_position, m_buffer.limit(), i_out);
+				i_out.force(true);
+			}
+
+			m_channel.close();
+			replace(i_temp, m_path);
+			i_done = true;
+			m_changes.clear();
+		}
+		finally {
+			if (!i_done)
+				Files.deleteIfExists(i_temp);
+		}
+	}
+
+	/**
+	 * Builds the replacements of bytes for the pending changes.
+	 */
+	private ArrayList<pCUEPatchWriter_Patch> patches() {
+		final ArrayList<pCUEPatchWriter_Patch> i_result = new ArrayList<>();
+
+		for(Map.Entry<String,LinkedHashMap<String,String>> i_changes : m_changes.entrySet()) {
+			final pCUEPatchWriter_Track i_track = m_tracks.get(i_changes.getKey());
+			final String i_indent = (null!=i_track.m_indent)? i_track.m_indent : DEFAULT_INDENT;
+			final StringBuilder i_inserted = new StringBuilder();
+
+			for(Map.Entry<String,String> i_change : i_changes.getValue().entrySet()) {
+				final String i_value = i_change.getValue();
+				final ArrayList<int[]> i_lines = i_track.m_lines.get(i_change.getKey());
+
+				if (null==i_value) {
+					//*** REMOVE ALL THE LINES OF THE META-DATA
+					if (null!=i_lines)
+						for(int[] i_line : i_lines)
+							i_result.add(new pCUEPatchWriter_Patch(lineStart(i_line[0]), lineNext(i_line[1]), new byte[0]));
+				}
+				else if (null!=i_lines) {
+					//*** REPLACE THE LAST LINE, THAT PREVAILS WHEN PARSED
+					final int[] i_line = i_lines.get(i_lines.size()-1);
+					i_result.add(new pCUEPatchWriter_Patch(i_line[0], i_line[1], field(i_change.getKey(), i_value).getBytes(m_charset)));
+				}
+				else {
+					i_inserted.append(i_track.m_eol).append(i_indent).append(field(i_change.getKey(), i_value));
+				}
+			}
+
+			if (i_inserted.length()>0)
+				i_result.add(new pCUEPatchWriter_Patch(i_track.m_insert, i_track.m_insert, i_inserted.toString().getBytes(m_charset)));
+		}
+		return i_result;
+	}
+
+	/**
+	 * Copies a range of the original bytes to the output channel.
+	 */
+	private void transfer(long p_from, final long p_to, final FileChannel p_out) throws IOException {
+		while(p_from<p_to) {
+			final long i_count = m_channel.transferTo(p_from, p_to-p_from, p_out);
+			if (i_count<=0) {
+				//*** THE FILE WAS TRUNCATED: FALL BACK ON THE BYTES READ
+				final ByteBuffer i_bytes = m_buffer.duplicate();
+				i_bytes.limit((int)p_to).position((int)p_from);
+				write(i_bytes, p_out);
+				return;
+			}
+			p_from += i_count;
+		}
+	}
+
+	/**
+	 * Gets the offset of the beginning of the physical line containing an offset.
+	 */
+	private int lineStart(int p_offset) {
+		while(p_offset>0) {
+			final byte b = m_buffer.get(p_offset-1);
+			if (b=='\n' || b=='\r')
+				break;
+			p_offset--;
+		}
+		return p_offset;
+	}
+
+	/**
+	 * Gets the offset of the beginning of the physical line following an offset.
+	 */
+	private int lineNext(int p_offset) {
+		final int i_limit = m_buffer.limit();
+		while(p_offset<i_limit) {
+			final byte b = m_buffer.get(p_offset++);
+			if (b=='\r') {
+				if (p_offset<i_limit && m_buffer.get(p_offset)=='\n')
+					p_offset++;
+				break;
+			}
+			if (b=='\n')
+				break;
+		}
+		return p_offset;
+	}
+
+	/**
+	 * Gets the line separator of the physical line containing an offset.
+	 */
+	private String lineSeparator(int p_offset) {
+		final int i_limit = m_buffer.limit();
+		while(p_offset<i_limit) {
+			final byte b = m_buffer.get(p_offset++);
+			if (b=='\r')
+				return (p_offset<i_limit && m_buffer.get(p_offset)=='\n')? "\r\n" : "\r";
+			if (b=='\n')
+				break;
+		}
+		return "\n";
+	}
+
+	/**
+	 * Gets the indentation of the physical line containing an offset.
+	 */
+	private String indent(final int p_offset) {
+		final int i_start = lineStart(p_offset);
+		final StringBuilder i_result = new StringBuilder(p_offset-i_start);
+		for(int i=i_start ; i<p_offset ; i++)
+			i_result.append((char)(m_buffer.get(i)&0xFF));
+		return i_result.toString();
+	}
+
+	/**
+	 * Closes the channel opened on the .cue file, discarding the pending changes.
+	 */
+	@Override
+	public void close() throws IOException {
+		m_changes.clear();
+		m_channel.close();
+	}
+
+	/**************************************************************************/
+	/***  STATIC METHODS  *****************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Opens an existing .cue file for patching.
+	 * <p>
+	 * @param p_path The .cue file.
+	 * @return The writer, or <code>null</code> if the encoding of the file does not allow patching it (UTF-16).
+	 * @throws IOException If the file reading failed.
+	 */
+	static pCUEPatchWriter open(final Path p_path) throws IOException {
+		final FileChannel i_channel = FileChannel.open(p_path, StandardOpenOption.READ);
+		try {
+			final ByteBuffer i_buffer = pCUEParser.read(i_channel, p_path);
+			final pCUELineReader i_reader = pCUELineReader.open(i_buffer);
+			if (i_reader instanceof pCUELineReader.pCUELineReader_Bytes)
+				return new pCUEPatchWriter(p_path, i_channel, i_buffer, (pCUELineReader.pCUELineReader_Bytes)i_reader);
+		}
+		catch (final IOException | RuntimeException ex) {
+			i_channel.close();
+			throw ex;
+		}
+		i_channel.close();
+		return null;
+	}
+
+	/**
+	 * Formats a meta-data line, without indentation.
+	 */
+	private static String field(final String p_key, final String p_value) {
+		return pCUETokenizer.keywordOf(p_key).concat(" \"").concat(p_value).concat("\"");
+	}
+
+	/**
+	 * Writes bytes to a channel.
+	 */
+	private static void write(final ByteBuffer p_bytes, final FileChannel p_out) throws IOException {
+		while(p_bytes.hasRemaining())
+			p_out.write(p_bytes);
+	}
+
+	/**
+	 * Replaces a file by a temporary file of the same directory, by an atomic rename if supported.
+	 * <p>
+	 * The permissions of the replaced file are kept.
+	 * <p>
+	 * @param p_temp The temporary file, fully written.
+	 * @param p_path The file to replace.
+	 * @throws IOException If the rename failed: the file is left unchanged.
+	 * @since 0.9.30
+	 */
+	static void replace(final Path p_temp, final Path p_path) throws IOException {
+		if (Files.exists(p_path))
+			copyPermissions(p_path, p_temp);
+		try {
+			Files.move(p_temp, p_path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (final AtomicMoveNotSupportedException ex) {
+			Files.move(p_temp, p_path, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Copies the POSIX permissions of a file, if supported.
+	 */
+	private static void copyPermissions(final Path p_from, final Path p_to) {
+		try {
+			Files.setPosixFilePermissions(p_to, Files.getPosixFilePermissions(p_from));
+		}
+		catch (final UnsupportedOperationException | IOException ex) {
+			//*** NOT A POSIX FILE SYSTEM: KEEP THE DEFAULT PERMISSIONS
+		}
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/
@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.media.cue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import tv.genialist.fwrk.media.pMediaUtil;
+import tv.genialist.ptools.string.pString;
+
+/**
+ * The <code>pCUESerializer</code> class writes cue sheets and tracks in the .CUE format.
+ * <p>
+ * The text is appended directly to the destination, without intermediate strings and without formatter,
+ * so that {@link pCUESheet#save(java.io.File, String)}, {@link pCUESheet#toString()}, {@link pCUETrack#save(java.io.OutputStreamWriter)}
+ * and {@link pCUETrack#toString()} all produce the same text.
+ * <p>
+ * <b>Example:</b>
+ * <dl>
+ * <dd><code>
+ * final ByteBuffer i_bytes = pCUESerializer.encode(i_sheet, i_sheet.getMedia(), StandardCharsets.UTF_8);<br>
+ * </code>
+ * </dl>
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ */
+public final class pCUESerializer {
+
+	/**************************************************************************/
+	/***  SUB-CLASSES  ********************************************************/
+	/**************************************************************************/
+
+	/**
+	 * An appendable that only counts the characters, used to size the buffers.
+	 */
+	private static final class pCUESerializer_Counter implements Appendable {
+
+		private int m_length;
+
+		@Override
+		public Appendable append(final CharSequence p_text) {
+			m_length += (null!=p_text)? p_text.length() : 4;
+			return this;
+		}
+
+		@Override
+		public Appendable append(final CharSequence p_text, final int p_start, final int p_end) {
+			m_length += p_end - p_start;
+			return this;
+		}
+
+		@Override
+		public Appendable append(final char c) {
+			m_length++;
+			return this;
+		}
+	}
+
+	/**************************************************************************/
+	/***  CONSTRUCTORS  *******************************************************/
+	/**************************************************************************/
+
+	private pCUESerializer() {
+		super();
+	}
+
+	/**************************************************************************/
+	/***  STATIC METHODS  *****************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Writes a cue sheet in the .CUE format.
+	 * <p>
+	 * If the sheet references several media files, each of them is written with its own name before its tracks.
+	 * <p>
+	 * @param p_sheet The cue sheet.
+	 * @param p_media The media file name written in the "FILE" line of a sheet with one media file
+	 * (<code>null</code> is written as an empty name).
+	 * @param p_out The destination.
+	 * @throws IOException If the writing failed.
+	 */
+	public static void write(final pCUESheet p_sheet, final String p_media, final Appendable p_out) throws IOException {
+		write(p_sheet, p_media, p_out, null);
+	}
+
+	/**
+	 * Writes a cue sheet in the .CUE format, with the titles of its tracks computed once for several writings.
+	 * <p>
+	 * @param p_titles The titles of the tracks by position, filled by the first writing and read by the next ones
+	 * (<code>null</code> to compute them).
+	 */
+	private static void write(final pCUESheet p_sheet, final String p_media, final Appendable p_out, final String[] p_titles) throws IOException {
+		writeField(p_out, "", "PERFORMER", p_sheet.ownMetadata().getString(pMediaUtil.MNAME_ARTIST));
+		writeField(p_out, "", "TITLE", p_sheet.ownMetadata().getString(pMediaUtil.MNAME_TITLE));
+
+		final List<pCUEMediaFile> i_files = p_sheet.getFiles();
+		final List<pCUETrack> i_tracks = p_sheet.tracks();
+
+		if (i_files.size()<2) {
+			writeFile(p_out, p_media, i_files.isEmpty()? "MP3" : i_files.get(0).getType());
+			final int i_len = i_tracks.size();
+			for(int i=0 ; i<i_len ; i++)
+				write(i_tracks.get(i), p_out, title(i_tracks, i, p_titles));
+			return;
+		}
+
+		for(pCUEMediaFile i_file : i_files) {
+			writeFile(p_out, i_file.getName(), i_file.getType());
+			final int i_to = i_file.getFirstTrack() + i_file.getTrackCount();
+			for(int i=i_file.getFirstTrack() ; i<i_to ; i++)
+				write(i_tracks.get(i), p_out, title(i_tracks, i, p_titles));
+		}
+	}
+
+	/**
+	 * Writes a track in the .CUE format.
+	 * <p>
+	 * @param p_track The track.
+	 * @param p_out The destination.
+	 * @throws IOException If the writing failed.
+	 */
+	public static void write(final pCUETrack p_track, final Appendable p_out) throws IOException {
+		write(p_track, p_out, p_track.getString(pMediaUtil.MNAME_TITLE));
+	}
+
+	/**
+	 * Writes a track in the .CUE format, with its title.
+	 */
+	private static void write(final pCUETrack p_track, final Appendable p_out, final String p_title) throws IOException {
+		p_out.append("  TRACK ");
+		p_out.append(p_track.getID());
+		p_out.append(" AUDIO\n");
+
+		writeField(p_out, "    ", "REM GENRE", p_track.getString(pMediaUtil.MNAME_GENRE));
+		writeField(p_out, "    ", "REM DATE", p_track.getString(pMediaUtil.MNAME_YEAR));
+		writeField(p_out, "    ", pCUETokenizer.keywordOf(pMediaUtil.MNAME_TV_EPISODE), p_track.getString(pMediaUtil.MNAME_TV_EPISODE));
+		writeField(p_out, "    ", "PERFORMER", p_track.getString(pMediaUtil.MNAME_ARTIST));
+		writeField(p_out, "    ", "TITLE", p_title);
+
+		p_out.append("    INDEX 01 ");
+		pCUETime.write(p_out, p_track.getStartFrames());
+		p_out.append('\n');
+	}
+
+	/**
+	 * Writes a cue sheet into a buffer of the exact size.
+	 * <p>
+	 * @param p_sheet The cue sheet.
+	 * @param p_media The media file name written in the "FILE" line.
+	 * @return The text, from position 0 to the limit of the buffer.
+	 */
+	public static CharBuffer toCharBuffer(final pCUESheet p_sheet, final String p_media) {
+		try {
+			//0.9.30: the inherited titles are built by the first pass only
+			final String[] i_titles = new String[p_sheet.tracks().size()];
+			final pCUESerializer_Counter i_counter = new pCUESerializer_Counter();
+			write(p_sheet, p_media, i_counter, i_titles);
+
+			final CharBuffer i_result = CharBuffer.allocate(i_counter.m_length);
+			write(p_sheet, p_media, i_result, i_titles);
+			i_result.flip();
+			return i_result;
+		}
+		catch (final IOException ex) {
+			//*** CANNOT HAPPEN: THE TEXT IS WRITTEN IN MEMORY
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	/**
+	 * Writes a cue sheet into an encoded buffer.
+	 * <p>
+	 * @param p_sheet The cue sheet.
+	 * @param p_media The media file name written in the "FILE" line.
+	 * @param p_charset The encoding.
+	 * @return The bytes, from position 0 to the limit of the buffer.
+	 */
+	public static ByteBuffer encode(final pCUESheet p_sheet, final String p_media, final Charset p_charset) {
+		return p_charset.encode(toCharBuffer(p_sheet, p_media));
+	}
+
+	/**
+	 * Writes a cue sheet into a file channel, at its current position.
+	 * <p>
+	 * @param p_sheet The cue sheet.
+	 * @param p_media The media file name written in the "FILE" line.
+	 * @param p_charset The encoding.
+	 * @param p_channel The destination.
+	 * @throws IOException If the writing failed.
+	 */
+	public static void write(final pCUESheet p_sheet, final String p_media, final Charset p_charset, final FileChannel p_channel) throws IOException {
+		final ByteBuffer i_bytes = encode(p_sheet, p_media, p_charset);
+		while(i_bytes.hasRemaining())
+			p_channel.write(i_bytes);
+	}
+
+	/**
+	 * Gets the title of a track, from the titles already computed if any.
+	 */
+	private static String title(final List<pCUETrack> p_tracks, final int p_index, final String[] p_titles) {
+		if (null==p_titles)
+			return p_tracks.get(p_index).getString(pMediaUtil.MNAME_TITLE);
+
+		String i_title = p_titles[p_index];
+		if (null==i_title) {
+			i_title = p_tracks.get(p_index).getString(pMediaUtil.MNAME_TITLE);
+			p_titles[p_index] = i_title;
+		}
+		return i_title;
+	}
+
+	/**
+	 * Writes a <code>FILE "name" TYPE</code> line.
+	 */
+	private static void writeFile(final Appendable p_out, final String p_media, final String p_type) throws IOException {
+		p_out.append("FILE \"");
+		if (null!=p_media)
+			p_out.append(p_media);
+		p_out.append("\" ");
+		p_out.append(p_type);
+		p_out.append('\n');
+	}
+
+	/**
+	 * Writes a <code>KEYWORD "value"</code> line, if the value is valid.
+	 */
+	private static void writeField(final Appendable p_out, final String p_indent, final String p_keyword, final String p_value) throws IOException {
+		if (pString.isValid(p_value)) {
+			p_out.append(p_indent);
+			p_out.append(p_keyword);
+			p_out.append(" \"");
+			p_out.append(p_value);
+			p_out.append("\"\n");
+		}
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/
@@ -1,27 +1,35 @@
 /*******************************************************************************
- * Copyright (c) 2017-2025 Genialist Software Ltd.
+ * Copyright (c) 2017-2026 Genialist Software Ltd.
  * All rights reserved.
  ******************************************************************************/
 
 package tv.genialist.fwrk.media.cue;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.regex.Matcher;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
 
 import tv.genialist.fwrk.document.file.pCUESheetFileDocumentType;
 import tv.genialist.fwrk.media.pMediaUtil;
+import tv.genialist.fwrk.media.pMetadata;
 import tv.genialist.fwrk.media.impl.pHasMetadataImpl;
-import tv.genialist.ptools.io.writer.pOutputStreamWriter;
-import tv.genialist.ptools.io.pSingleThreadBufferedReader;
-import tv.genialist.ptools.lang.pBaseStringBuilder;
-import tv.genialist.ptools.lang.util.pStringUtil;
-import tv.genialist.ptools.string.pPattern;
 import tv.genialist.ptools.string.pString;
 import tv.genialist.ptools.trace.pTraceImpl;
 
@@ -51,8 +59,15 @@ import tv.genialist.ptools.trace.pTraceImpl;
  * </code>
  * </dl>
  * <p>
+ * A sheet is not thread-safe. {@link #freeze()} gives an immutable copy that can be shared between threads
+ * (see {@link pCUESheetCache#getFrozen(File)}); it is changed through a mutable copy given by {@link #edit()}.
+ * The meta-data of a frozen sheet and of its tracks are read-only: {@link #getMetadata()} returns a view that cannot be changed.
+ * <p>
+ * {@link #parseAsync(Path)}, {@link #updateAsync(File, Map)} and {@link #updateTracksAsync(File, Map)} do the file reading and writing
+ * in the background, on the threads of the {@link pCUEExecutor}.
+ * <p>
  * @author Genialist Software Ltd
- * @version 0.9.29
+ * @version 0.9.30
  */
 public class pCUESheet extends pHasMetadataImpl {
 
@@ -78,6 +93,100 @@ public class pCUESheet extends pHasMetadataImpl {
 	 */
 	private static final Set<String> KEYS = Collections.unmodifiableSet(SUPPORTED_KEYS);
 	
+	/**************************************************************************/
+	/***  SUB-CLASSES  ********************************************************/
+	/**************************************************************************/
+	
+	/**
+	 * Opens the line reader of a sheet, so that the reading is measured with the parsing.
+	 * @since 0.9.30
+	 */
+	private interface pCUESheet_Source {
+		pCUELineReader open() throws IOException;
+	}
+	
+	/**
+	 * The handler that builds the meta-data and the tracks of this sheet while it is parsed.
+	 * <p>
+	 * A track inherits the meta-data of the sheet and its title is set to the value of the sheet followed by " (&lt;track&gt;)".
+	 * The inherited values are shared by the tracks and copied into a track only when its meta-data is first read.
+	 * @since 0.9.30
+	 */
+	private final class pCUESheet_Builder implements pCUESheetHandler {
+		
+		/** The track being parsed (not yet added to the list of tracks). */
+		private pCUETrack m_track;
+		
+		/** The "FILE" line of the tracks being parsed. */
+		private pCUEMediaFile m_file;
+		
+		/** The meta-data inherited by the tracks (<code>null</code> if not yet built, or if none). */
+		private pCUETrack.pCUETrack_Inherited m_inherited;
+		
+		/** Whether {@link #m_inherited} is built from the current meta-data of the sheet. */
+		private boolean m_inherited_built;
+		
+		@Override
+		public void onSheetField(final String p_key, final String p_value) {
+			ownMetadata().put(p_key, p_value);
+			m_inherited_built = false;
+		}
+		
+		@Override
+		public void onFile(final String p_media, final String p_type) {
+			if (null==m_data_media)
+				m_data_media = p_media;
+			m_file = addFile(p_media, p_type);
+		}
+		
+		@Override
+		public void onTrackStart(final int p_number) {
+			if (null!=m_track)
+				m_data_tracks.add(m_track);
+			
+			m_track = new pCUETrack(pCUETrack.trackID(p_number));
+			m_track.setOwner(pCUESheet.this);
+			m_track.setFile(m_file);
+			
+			if (!m_inherited_built) {
+				m_inherited = pCUETrack.pCUETrack_Inherited.of(ownMetadata(), SUPPORTED_KEYS);
+				m_inherited_built = true;
+			}
+			m_track.setInherited(m_inherited);
+		}
+		
+		@Override
+		public void onIndex(final long p_frames) {
+			m_track.setStartFrames(p_frames);
+			
+			//*** THE TRACKS OF ANOTHER MEDIA FILE HAVE THEIR OWN TIMELINE
+			if (m_data_tracks.size()>0) {
+				final pCUETrack i_previous = m_data_tracks.get(m_data_tracks.size()-1);
+				if (i_previous.getFile()==m_file)
+					i_previous.setEndFrames(p_frames);
+			}
+		}
+		
+		@Override
+		public void onTrackField(final String p_key, final String p_value) {
+			m_track.ownMetadata().put(p_key, p_value);
+		}
+		
+		@Override
+		public void onEnd() {
+			if (null==m_track)
+				return;
+			
+			m_data_tracks.add(m_track);
+			regroup();
+			
+			//*** THE TOTAL LENGTH IS THE ONE OF THE ONLY MEDIA FILE
+			if (m_track.getEnd()<0 && m_total_length>0 && !isMultiFile())
+				m_track.setEnd(m_total_length);
+			m_track = null;
+		}
+	}
+	
 	/*************************************************************************/
 	/***  RUNTIME DATA  ******************************************************/
 	/*************************************************************************/
@@ -85,27 +194,12 @@ public class pCUESheet extends pHasMetadataImpl {
 	/** @since 0.9.29 */
 	private static final pTraceImpl TRACE = pTraceImpl.getTrace(pCUESheet.class, TRACE_PREFIX);
 	
-	/** The line regular expression for the cue sheet metadata. */
-	private static final pPattern[] m_data_sheet_patterns = new pPattern[] {
-		new pPattern(pMediaUtil.MNAME_ARTIST, new String[]{ "PERFORMER\\s+\"([^\"]*)\"", "PERFORMER\\s+([^ \\t\\n]*)" }),
-		new pPattern(pMediaUtil.MNAME_GENRE, new String[]{ "REM GENRE\\s+\"([^\"]*)\"", "REM GENRE\\s+([^ \\t\\n]*)" }),
-		new pPattern(pMediaUtil.MNAME_TITLE, new String[]{ "TITLE\\s+\"([^\"]*)\"", "TITLE\\s+([^ \\t\\n]*)" }),
-		new pPattern(pMediaUtil.MNAME_YEAR, new String[]{ "REM DATE\\s+\"([^\"]*)\"", "REM DATE\\s+([^ \\t\\n]*)" }),
-	};
-
-	private static final pPattern[] m_data_track_patterns = new pPattern[] {
-		new pPattern(pMediaUtil.MNAME_ARTIST, new String[]{ "PERFORMER\\s+\"([^\"]*)\"", "PERFORMER\\s+([^ \\t\\n]*)" }),
-		new pPattern(pMediaUtil.MNAME_GENRE, new String[]{ "REM GENRE\\s+\"([^\"]*)\"", "REM GENRE\\s+([^ \\t\\n]*)" }),
-		new pPattern(pMediaUtil.MNAME_TITLE, new String[]{ "TITLE\\s+\"([^\"]*)\"", "TITLE\\s+([^ \\t\\n]*)" }),
-		new pPattern(pMediaUtil.MNAME_TV_EPISODE, new String[]{ 
-			pStringUtil.concat("REM ", pMediaUtil.MNAME_TV_EPISODE, "\\s+\"([^\"]*)\""), 
-			pStringUtil.concat("REM ", pMediaUtil.MNAME_TV_EPISODE, "\\s+([^ \\t\\n]*)")
-		}),
-		new pPattern(pMediaUtil.MNAME_YEAR, new String[]{ "REM DATE\\s+\"([^\"]*)\"", "REM DATE\\s+([^ \\t\\n]*)" }),
-	};
-	
-	/** The line regular expression for a track index. */
-	private static final pPattern m_line_index = new pPattern("INDEX\\s+01\\s+([0-9][0-9]):([0-9][0-9]):([0-9][0-9])");
+	/** @since 0.9.30 */
+	private static final pCUEMetrics.pCUEMetrics_Timer PARSE = pCUEMetrics.getDefaultInstance().getTimer(pCUEMetrics.PARSE);
+	/** @since 0.9.30 */
+	private static final pCUEMetrics.pCUEMetrics_Timer SAVE = pCUEMetrics.getDefaultInstance().getTimer(pCUEMetrics.SAVE);
+	/** @since 0.9.30 */
+	private static final pCUEMetrics.pCUEMetrics_Timer UPDATE = pCUEMetrics.getDefaultInstance().getTimer(pCUEMetrics.UPDATE);
 	
 	/**
 	 * The list of audio tracks present inside the cue sheet.
@@ -120,6 +214,48 @@ public class pCUESheet extends pHasMetadataImpl {
 	
 	/** The "FILE..." line read from an existing cue sheet. */
 	private String m_data_media;
+	
+	/** 
+	 * The "FILE..." lines read from an existing cue sheet, in order (<code>null</code> if none).
+	 * @since 0.9.30 
+	 */
+	private ArrayList<pCUEMediaFile> m_data_files;
+	
+	/** 
+	 * The "FILE..." lines by media file name (the first one for a name read several times).
+	 * @since 0.9.30 
+	 */
+	private HashMap<String,pCUEMediaFile> m_data_files_by_name;
+	
+	/** 
+	 * The index of the tracks by start time and identifier, built on demand (<code>null</code> if not built or out of date).
+	 * @since 0.9.30 
+	 */
+	private pCUETrackIndex m_index;
+	
+	/** 
+	 * Whether the meta-data of a track has been handed out since the index was built, so that a track identifier may have changed.
+	 * @since 0.9.30 
+	 */
+	private boolean m_index_stale;
+	
+	/** 
+	 * The encoding detected when the sheet was read from raw bytes, otherwise <code>null</code>.
+	 * @since 0.9.30 
+	 */
+	private Charset m_charset;
+	
+	/** 
+	 * The unmodifiable view of the tracks of a frozen sheet, otherwise <code>null</code>.
+	 * @since 0.9.30 
+	 */
+	private List<pCUETrack> m_frozen;
+	
+	/** 
+	 * The read-only meta-data of a frozen sheet, otherwise <code>null</code>.
+	 * @since 0.9.30 
+	 */
+	private pMetadata m_frozen_metadata;
 
 	/**************************************************************************/
 	/***  CONSTRUCTORS  *******************************************************/
@@ -138,32 +274,63 @@ public class pCUESheet extends pHasMetadataImpl {
 	/**
 	 * Constructs a new <code>pCUESheet</code> object from an existing .cue file.
 	 * <p>
+	 * The encoding of the file is detected from its content (see {@link #pCUESheet(Path, long)}).
+	 * <p>
 	 * @param p_file The .cue file.
 	 * @param p_total_length The total length of the cue sheet media, if known (in milliseconds).
-	 * @throws IOException 
-	 * @throws FileNotFoundException 
-	 * @throws Exception If the file reading or parsing failed.
+	 * @throws IOException If the file reading or parsing failed.
 	 */
 	public pCUESheet(final File p_file, final long p_total_length) throws IOException {
+		this(p_file.toPath(), p_total_length);
+	}
+	
+	/**
+	 * Constructs a new <code>pCUESheet</code> object from an existing .cue file.
+	 * <p>
+	 * The file is read through a {@link FileChannel} (memory-mapped for large files) 
+	 * and its encoding is detected from the raw bytes: UTF-8 or UTF-16 byte order mark, UTF-16 without mark, 
+	 * valid UTF-8, otherwise windows-1252.
+	 * <p>
+	 * @param p_path The .cue file.
+	 * @param p_total_length The total length of the cue sheet media, if known (in milliseconds).
+	 * @throws IOException If the file reading or parsing failed.
+	 * @since 0.9.30
+	 */
+	public pCUESheet(final Path p_path, final long p_total_length) throws IOException {
 		this(p_total_length);
 		
-		try (FileInputStream i_stream = new FileInputStream(p_file)) {
-			parse(i_stream);
-		}
+		parse(() -> pCUEParser.open(p_path), p_path);
+	}
+	
+	/**
+	 * Constructs a new <code>pCUESheet</code> object from the raw bytes of a cue sheet.
+	 * <p>
+	 * The encoding is detected as by {@link #pCUESheet(Path, long)}.
+	 * <p>
+	 * @param p_buffer The bytes between the position and the limit of the buffer (the buffer is not modified).
+	 * @param p_total_length The total length of the cue sheet media, if known (in milliseconds).
+	 * @throws IOException If the parsing failed.
+	 * @since 0.9.30
+	 */
+	public pCUESheet(final ByteBuffer p_buffer, final long p_total_length) throws IOException {
+		this(p_total_length);
+		
+		parse(() -> pCUELineReader.open(p_buffer), null);
 	}
 	
 	/**
 	 * Constructs a new <code>pCUESheet</code> object from an input stream.
 	 * <p>
+	 * The stream is decoded with the platform default charset.
+	 * <p>
 	 * @param p_stream The input stream.
 	 * @param p_total_length The total length of the cue sheet media, if known (in milliseconds).
-	 * @throws IOException 
-	 * @throws Exception If the stream reading or parsing failed.
+	 * @throws IOException If the stream reading or parsing failed.
 	 */
 	public pCUESheet(final InputStream p_stream, final long p_total_length) throws IOException {
 		this(p_total_length);
 		
-		parse(p_stream);
+		parse(() -> new pCUELineReader.pCUELineReader_Stream(new InputStreamReader(p_stream)), null);
 	}
 
 	/**************************************************************************/
@@ -171,176 +338,497 @@ public class pCUESheet extends pHasMetadataImpl {
 	/**************************************************************************/
 	
 	/**
-	 * Extracts the audio tracks from an input stream. 
+	 * Extracts the audio tracks from the lines of a cue sheet. 
 	 * <p>
-	 * @param p_stream The input stream.
-	 * @throws IOException 
-	 * @throws Exception If the stream reading or parsing failed.
+	 * The reading and the parsing are measured by the {@link pCUEMetrics#PARSE} timer and a {@link pCUEEvents.pCUEEvents_Parse} event.
+	 * <p>
+	 * @param p_source The source of the line reader.
+	 * @param p_path The .cue file, or <code>null</code> if not read from a file.
+	 * @throws IOException If the reading or parsing failed.
 	 */
-	private void parse(final InputStream p_stream) throws IOException {	
-		
-		String i_line = null;
-		
-		m_data_tracks = new ArrayList<>();
-		
-		final pSingleThreadBufferedReader i_reader =new pSingleThreadBufferedReader(new InputStreamReader(p_stream));
-		while(true) {
-			i_line = i_reader.readLine();
-			if (null==i_line) return;
-			i_line = i_line.trim();
-			if (!pString.isValid(i_line)) continue;
+	private void parse(final pCUESheet_Source p_source, final Path p_path) throws IOException {	
+		//0.9.30
+		final pCUEEvents.pCUEEvents_Parse i_event = new pCUEEvents.pCUEEvents_Parse();
+		i_event.begin();
+		final long i_start = System.nanoTime();
+		pCUELineReader i_reader = null;
+		boolean i_parsed = false;
+		try {
+			i_reader = p_source.open();
+			
+			m_data_tracks = new ArrayList<>();
+			m_charset = i_reader.getCharset();
 			
-			parseLine(i_reader, i_line);
+			//0.9.30
+			pCUEParser.parse(i_reader, new pCUESheet_Builder());
+			i_parsed = true;
 		}
+		finally {
+			final long i_time = System.nanoTime() - i_start;
+			if (i_parsed)
+				PARSE.record(i_time);
+			else
+				PARSE.recordFailure(i_time);
+			
+			i_event.end();
+			if (i_event.shouldCommit()) {
+				i_event.path = (null!=p_path)? p_path.toString() : null;
+				i_event.fileSize = (null!=i_reader)? i_reader.getSize() : -1;
+				i_event.trackCount = getTrackCount();
+				i_event.charset = (null!=m_charset)? m_charset.name() : null;
+				i_event.commit();
+			}
+		}
+	}
+	
+	/**
+	 * Gets the "FILE..." line read from an existing cue sheet.
+	 * <p>
+	 * If the sheet references several media files, this is the first one (see {@link #getFiles()}).
+	 */
+	public String getMedia() {
+		return m_data_media;
 	}
 	
-	private void parseLine(final pSingleThreadBufferedReader i_reader, String i_line) throws NumberFormatException, IOException {
-		Matcher i_matcher;
+	/**
+	 * Gets the media files referenced by the "FILE..." lines of the sheet.
+	 * <p>
+	 * Each file is followed by its group of tracks, whose times are relative to the beginning of the file.
+	 * The methods working on the times of the whole sheet ({@link #trackAt(long)}, {@link #tracksBetween(long, long)},
+	 * {@link #insertTracks(long[])} and {@link #removeTracks(long[])}) are intended for sheets with one media file.
+	 * <p>
+	 * @return The files in the order of the sheet (can be empty, but not <code>null</code>).
+	 * @since 0.9.30
+	 */
+	public List<pCUEMediaFile> getFiles() {
+		return (null!=m_data_files)? Collections.unmodifiableList(m_data_files) : Collections.<pCUEMediaFile>emptyList();
+	}
+	
+	/**
+	 * Checks if the tracks of the sheet belong to several media files.
+	 * <p>
+	 * @return <code>true</code> if more than one "FILE..." line is followed by tracks.
+	 * @since 0.9.30
+	 */
+	public boolean isMultiFile() {
+		if (null==m_data_files)
+			return false;
 		
-		for(pPattern i_pattern : m_data_sheet_patterns)
-			if (null!=(i_matcher = i_pattern.matcher(i_line))) {
-				getMetadata().put(i_pattern.getID(), i_matcher.group(1));
-				return;
-			}
-			
-			if (i_line.startsWith("FILE ") && i_line.endsWith(" MP3")) {
-				//TODO: OPTIMIZE
-				i_line = i_line.substring("FILE ".length());
-				i_line = i_line.substring(0,  i_line.length()-" MP3".length()).trim();
-				m_data_media = i_line;
-				if ((m_data_media.charAt(0)=='\"' && m_data_media.charAt(m_data_media.length()-1)=='\"') || 
-					(m_data_media.charAt(0)=='\'' && m_data_media.charAt(m_data_media.length()-1)=='\''))
-					m_data_media = m_data_media.substring(1, m_data_media.length()-1);
-				
-				parseFile(i_reader);
-			}
+		int i_count = 0;
+		for(pCUEMediaFile i_file : m_data_files)
+			if (i_file.m_count>0 && ++i_count>1)
+				return true;
+		return false;
 	}
 	
 	/**
-	 * Extracts the audio tracks from an input stream after the "FILE" line. 
+	 * Gets a media file referenced by the sheet.
 	 * <p>
-	 * @param p_reader The input reader.
-	 * @param p_title The default title found in the cue sheet (can be <code>null</code> or empty).
-	 * @param p_performer The default artist/performer found in the cue sheet (can be <code>null</code> or empty).
-	 * @throws IOException 
-	 * @throws NumberFormatException 
-	 * @throws Exception If the stream reading or parsing failed.
+	 * @param p_media The media file name, as written in the sheet, or a path to the media file (see {@link pCUEMediaFile#matches(String)}).
+	 * @return The file if found, otherwise <code>null</code>.
+	 * @since 0.9.30
 	 */
-	private void parseFile(final pSingleThreadBufferedReader p_reader) throws NumberFormatException, IOException {
-			
-		String i_line = null;
-
-		while((i_line = p_reader.readLine())!=null) {
-			i_line = i_line.trim();
-			if (!pString.isValid(i_line)) continue;
-			
-			if (i_line.startsWith("TRACK ") && i_line.endsWith(" AUDIO")) 
-				while(parseTrack(p_reader));
+	public pCUEMediaFile getFile(final String p_media) {
+		if (null==m_data_files || null==p_media)
+			return null;
+		
+		final pCUEMediaFile i_file = m_data_files_by_name.get(p_media);
+		if (null!=i_file)
+			return i_file;
+		
+		final int i_len = m_data_files.size();
+		for(int i=0 ; i<i_len ; i++)
+			if (m_data_files.get(i).matches(p_media))
+				return m_data_files.get(i);
+		return null;
+	}
+	
+	/**
+	 * Gets the tracks of a media file referenced by the sheet.
+	 * <p>
+	 * @param p_file The media file, from {@link #getFiles()} or {@link #getFile(String)}.
+	 * @return The tracks of the file, without copy (can be empty, but not <code>null</code>).
+	 * @since 0.9.30
+	 */
+	public List<pCUETrack> getTracks(final pCUEMediaFile p_file) {
+		if (null==p_file || null==m_data_tracks || null==m_data_files || m_data_files.get(p_file.m_number)!=p_file)
+			return Collections.<pCUETrack>emptyList();
+		return Collections.unmodifiableList(m_data_tracks.subList(p_file.m_first, p_file.m_first+p_file.m_count));
+	}
+	
+	/**
+	 * Adds a "FILE..." line after the existing ones.
+	 * <p>
+	 * @since 0.9.30
+	 */
+	private pCUEMediaFile addFile(final String p_media, final String p_type) {
+		if (null==m_data_files) {
+			m_data_files = new ArrayList<>(1);
+			m_data_files_by_name = new HashMap<>(2);
 		}
+		
+		final pCUEMediaFile i_file = new pCUEMediaFile(p_media, p_type, m_data_files.size());
+		m_data_files.add(i_file);
+		m_data_files_by_name.putIfAbsent(p_media, i_file);
+		return i_file;
 	}
 	
 	/**
-	 * Extracts the audio tracks from an input stream after the "FILE" line. 
+	 * Computes the range of tracks of each media file after a change of the tracks.
 	 * <p>
-	 * @param p_reader The input reader.
-	 * @param p_title The default title found in the cue sheet (can be <code>null</code> or empty).
-	 * @param p_performer The default artist/performer found in the cue sheet (can be <code>null</code> or empty).
-	 * @return <code>true</code> if there is other tracks to parse, otherwise <code>false</code>.
-	 * @throws IOException 
-	 * @throws NumberFormatException 
-	 * @throws Exception If the stream reading or parsing failed.
+	 * @since 0.9.30
 	 */
-	private boolean parseTrack(final pSingleThreadBufferedReader p_reader) throws NumberFormatException, IOException {
-				
-		final pCUETrack i_track = new pCUETrack(pCUETrack.trackID(m_data_tracks.size()+1));
-		String i_line = null;
-		
-		for(String i_key : SUPPORTED_KEYS) {
-			i_line = getMetadata().getString(i_key);
-			if (pString.isValid(i_line)) {
-				i_track.getMetadata().put(i_key, i_line);
-				i_track.getMetadata().put(pMediaUtil.MNAME_TITLE, pStringUtil.concat(i_line, " (", i_track.getID(), ")"));
-			}
+	private void regroup() {
+		if (null==m_data_files)
+			return;
+		
+		for(pCUEMediaFile i_file : m_data_files) {
+			i_file.m_first = -1;
+			i_file.m_count = 0;
 		}
-		Matcher i_matcher;
-
-		while((i_line = p_reader.readLine())!=null) {
-			i_line = i_line.trim();
-			if (!pString.isValid(i_line)) continue;
-			
-			if (i_line.startsWith("TRACK ")) {
-				m_data_tracks.add(i_track);
-				return true;
-			}
-				
-			if (null!=(i_matcher = m_line_index.matcher(i_line))) {
-				long i_frames = Long.parseLong(i_matcher.group(3), 10);
-				i_track.setStart(Long.parseLong(i_matcher.group(1), 10)*60000L + Long.parseLong(i_matcher.group(2), 10)*1000L + 1000L*i_frames/75L);
-				if (m_data_tracks.size()>0)
-					m_data_tracks.get(m_data_tracks.size()-1).setEnd(i_track.getStart());
-				
+		
+		final int i_len = (null!=m_data_tracks)? m_data_tracks.size() : 0;
+		for(int i=0 ; i<i_len ; i++) {
+			final pCUEMediaFile i_file = m_data_tracks.get(i).getFile();
+			if (null==i_file)
 				continue;
-			}
-			
-			for(pPattern i_pattern : m_data_track_patterns)
-				if (null!=(i_matcher = i_pattern.matcher(i_line))) {
-					i_track.getMetadata().put(i_pattern.getID(), i_matcher.group(1));
-					break;
-				}
+			if (i_file.m_count++==0)
+				i_file.m_first = i;
 		}
 		
-		if (i_track.getEnd()<0 && m_total_length>0)
-			i_track.setEnd(m_total_length);
-			
-		m_data_tracks.add(i_track);
-		return false;
+		//*** A FILE WITHOUT TRACKS IS PLACED BEFORE THE TRACKS OF THE NEXT FILE
+		int i_next = i_len;
+		for(int i=m_data_files.size()-1 ; i>=0 ; i--) {
+			final pCUEMediaFile i_file = m_data_files.get(i);
+			if (i_file.m_count==0)
+				i_file.m_first = i_next;
+			i_next = i_file.m_first;
+		}
 	}
 	
 	/**
-	 * Gets the "FILE..." line read from an existing cue sheet.
+	 * Gets the encoding detected when the sheet was read from a file or raw bytes.
+	 * <p>
+	 * @return The charset, or <code>null</code> if the sheet was read from an input stream or created empty.
+	 * @since 0.9.30
 	 */
-	public String getMedia() {
-		return m_data_media;
+	public Charset getCharset() {
+		return m_charset;
 	}
 	
 	/**
 	 * Saves this sheet into a file in the .CUE format.
 	 * <p>
+	 * The sheet is written to a temporary file of the same directory, which then replaces the file by an atomic rename:
+	 * the file is left unchanged if the writing fails.
+	 * It is written in the encoding the sheet was read with (see {@link #getCharset()}), otherwise in the platform encoding,
+	 * with a byte order mark if the replaced file has one and the encoding is UTF-8, UTF-16LE or UTF-16BE.
+	 * <p>
 	 * @param p_file The output file (the parent directory must exist).
 	 * @param p_media The name of the media file that is written in the "FILE...MP3" line.
 	 * @throws IOException In case of failure.
 	 */
 	public void save(final File p_file, final String p_media) throws IOException {
+		//0.9.30
+		final pCUEEvents.pCUEEvents_Save i_event = new pCUEEvents.pCUEEvents_Save();
+		i_event.begin();
+		final long i_start = System.nanoTime();
+		boolean i_saved = false;
 		
-		try (FileOutputStream i_fos = new FileOutputStream(p_file); pOutputStreamWriter i_writer = new pOutputStreamWriter(i_fos)) {
-
-			//*** SAVE ARTIST
-			writeField(i_writer, getMetadata().getString(pMediaUtil.MNAME_ARTIST), "PERFORMER");
+		//0.9.30: temporary file and atomic rename, in the encoding of the sheet
+		final Path i_path = p_file.toPath();
+		final Path i_temp = Files.createTempFile(i_path.toAbsolutePath().getParent(), i_path.getFileName().toString(), ".tmp");
+		try {
+			final Charset i_charset = (null!=m_charset)? m_charset : Charset.defaultCharset();
+			try (FileChannel i_out = FileChannel.open(i_temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				if (isBOMCharset(i_charset) && hasBOM(i_path)) {
+					final ByteBuffer i_bom = i_charset.encode("\uFEFF");
+					while(i_bom.hasRemaining())
+						i_out.write(i_bom);
+				}
+				pCUESerializer.write(this, p_media, i_charset, i_out);
+				i_out.force(true);
+			}
 			
-			//*** SAVE TITLE
-			writeField(i_writer, getMetadata().getString(pMediaUtil.MNAME_TITLE), "TITLE");
-
-			//*** SAVE FILENAME
-			i_writer.write("FILE \"");
-			i_writer.write(p_media);
-			i_writer.write("\" MP3\n");
+			pCUEPatchWriter.replace(i_temp, i_path);
+			i_saved = true;
+		}
+		finally {
+			if (!i_saved)
+				Files.deleteIfExists(i_temp);
+			
+			//0.9.30
+			final long i_time = System.nanoTime() - i_start;
+			if (i_saved)
+				SAVE.record(i_time);
+			else
+				SAVE.recordFailure(i_time);
 			
-			//*** SAVE TRACKS
+			i_event.end();
+			if (i_event.shouldCommit()) {
+				i_event.path = p_file.getPath();
+				i_event.fileSize = p_file.length();
+				i_event.trackCount = getTrackCount();
+				i_event.commit();
+			}
+		}
+	}
+	
+	/**
+	 * Checks if a byte order mark can be written in an encoding.
+	 * <p>
+	 * The other encodings cannot encode it, and the UTF-16 encoder writes its own.
+	 * @since 0.9.30
+	 */
+	private static boolean isBOMCharset(final Charset p_charset) {
+		return StandardCharsets.UTF_8.equals(p_charset) || StandardCharsets.UTF_16LE.equals(p_charset) || StandardCharsets.UTF_16BE.equals(p_charset);
+	}
+	
+	/**
+	 * Checks if a file starts with a byte order mark.
+	 * <p>
+	 * @return <code>false</code> if the file does not exist.
+	 * @since 0.9.30
+	 */
+	private static boolean hasBOM(final Path p_path) throws IOException {
+		if (!Files.isRegularFile(p_path))
+			return false;
+		
+		final ByteBuffer i_head = ByteBuffer.allocate(3);
+		try (FileChannel i_in = FileChannel.open(p_path, StandardOpenOption.READ)) {
+			while(i_head.hasRemaining() && i_in.read(i_head)>=0);
+		}
+		i_head.flip();
+		return pCUELineReader.bomLength(i_head)>0;
+	}
+	
+	/**
+	 * Creates a copy of this sheet with its own meta-data and tracks.
+	 * <p>
+	 * @param p_total_length The total length of the cue sheet media, if known (in milliseconds).
+	 * It is used for the end time of the last track if this sheet does not define it.
+	 * @since 0.9.30
+	 */
+	pCUESheet copy(final long p_total_length) {
+		final pCUESheet i_copy = new pCUESheet(p_total_length);
+		
+		//*** ALL THE VALUES, NOT ONLY THE SUPPORTED ONES (E.G. THE NAME OF THE SHEET)
+		for(Map.Entry<String,Object> i_entry : ownMetadata().entrySet())
+			i_copy.ownMetadata().put(i_entry.getKey(), i_entry.getValue());
+		i_copy.m_data_media = m_data_media;
+		i_copy.m_charset = m_charset;
+		
+		if (null!=m_data_files)
+			for(pCUEMediaFile i_file : m_data_files)
+				i_copy.addFile(i_file.getName(), i_file.getType());
+		
+		if (null!=m_data_tracks) {
+			final int i_len = m_data_tracks.size();
+			i_copy.m_data_tracks = new ArrayList<>(i_len);
+			for(int i=0 ; i<i_len ; i++)
+				i_copy.m_data_tracks.add(m_data_tracks.get(i).copy());
+			for(int i=0 ; i<i_len ; i++) {
+				final pCUETrack i_track = i_copy.m_data_tracks.get(i);
+				final pCUEMediaFile i_file = m_data_tracks.get(i).getFile();
+				i_track.setOwner(i_copy);
+				if (null!=i_file)
+					i_track.setFile(i_copy.m_data_files.get(i_file.m_number));
+			}
+			i_copy.regroup();
+			
+			if (i_len>0 && !i_copy.isMultiFile()) {
+				final pCUETrack i_last = i_copy.m_data_tracks.get(i_len-1);
+				if (i_last.getEnd()<0 && p_total_length>0)
+					i_last.setEnd(p_total_length);
+			}
+		}
+		return i_copy;
+	}
+	
+	/**
+	 * Gets an immutable copy of this sheet, that can be shared between threads without copy.
+	 * <p>
+	 * The tracks, their positions and the media files of the copy cannot be changed: the methods that change them throw
+	 * an {@link UnsupportedOperationException}. {@link #getMetadata()} and {@link pCUETrack#getMetadata()} return read-only
+	 * meta-data, built once, so that the meta-data of the copy and of its tracks cannot be changed either.
+	 * The index of the tracks is built once, so that the lookups do not change the copy.
+	 * <p>
+	 * The copy must be published safely to the other threads (through a lock, a volatile field or a concurrent collection).
+	 * <p>
+	 * @return The frozen copy, or this sheet if already frozen.
+	 * @see #edit()
+	 * @since 0.9.30
+	 */
+	public pCUESheet freeze() {
+		return (null!=m_frozen)? this : copy(m_total_length).frozen();
+	}
+	
+	/**
+	 * Freezes this sheet in place.
+	 * Must only be called on a sheet that is not referenced yet by other objects.
+	 * <p>
+	 * @return This sheet.
+	 * @since 0.9.30
+	 */
+	pCUESheet frozen() {
+		if (null==m_frozen) {
 			if (null!=m_data_tracks) {
-				final int i_len = m_data_tracks.size();
-				for(int i=0 ; i<i_len ; i++)
-					m_data_tracks.get(i).save(i_writer);
+				m_data_tracks.trimToSize();
+				index();
+			}
+			m_frozen_metadata = new pCUETrack.pCUETrack_FrozenMetadata(ownMetadata());
+			m_frozen = (null!=m_data_tracks)? Collections.unmodifiableList(m_data_tracks) : Collections.<pCUETrack>emptyList();
+		}
+		return this;
+	}
+	
+	/**
+	 * Checks if this sheet is frozen.
+	 * <p>
+	 * @see #freeze()
+	 * @since 0.9.30
+	 */
+	public boolean isFrozen() {
+		return null!=m_frozen;
+	}
+	
+	/**
+	 * Gets a mutable copy of this sheet with its own meta-data and tracks.
+	 * <p>
+	 * This is how a frozen sheet is changed: the frozen sheet is left unchanged, the copy can be frozen again when done.
+	 * <p>
+	 * @return The copy (cannot be <code>null</code>).
+	 * @since 0.9.30
+	 */
+	public pCUESheet edit() {
+		return copy(m_total_length);
+	}
+	
+	/**
+	 * Checks that this sheet is not frozen.
+	 * <p>
+	 * @throws UnsupportedOperationException If this sheet is frozen.
+	 * @since 0.9.30
+	 */
+	private void checkMutable() {
+		if (null!=m_frozen)
+			throw new UnsupportedOperationException("Frozen CUE Sheet: use edit() to change a copy");
+	}
+	
+	/**
+	 * Writes this sheet in the binary format of {@link pCUESnapshotStore}.
+	 * <p>
+	 * Only the meta-data with string values are written.
+	 * <p>
+	 * @since 0.9.30
+	 */
+	void writeSnapshot(final DataOutput p_out) throws IOException {
+		pCUESnapshotStore.writeString(p_out, (null!=m_charset)? m_charset.name() : null);
+		pCUESnapshotStore.writeString(p_out, m_data_media);
+		
+		int i_count = 0;
+		for(String i_key : KEYS)
+			if (ownMetadata().get(i_key) instanceof String)
+				i_count++;
+		p_out.writeByte(i_count);
+		for(String i_key : KEYS) {
+			final Object i_value = ownMetadata().get(i_key);
+			if (i_value instanceof String) {
+				pCUESnapshotStore.writeString(p_out, i_key);
+				pCUESnapshotStore.writeString(p_out, (String)i_value);
 			}
+		}
+		
+		final int i_files = (null!=m_data_files)? m_data_files.size() : 0;
+		p_out.writeInt(i_files);
+		for(int i=0 ; i<i_files ; i++) {
+			pCUESnapshotStore.writeString(p_out, m_data_files.get(i).getName());
+			pCUESnapshotStore.writeString(p_out, m_data_files.get(i).getType());
+		}
+		
+		final int i_len = (null!=m_data_tracks)? m_data_tracks.size() : -1;
+		p_out.writeInt(i_len);
+		for(int i=0 ; i<i_len ; i++) {
+			final pCUETrack i_track = m_data_tracks.get(i);
+			p_out.writeInt((null!=i_track.getFile())? i_track.getFile().m_number : -1);
+			i_track.writeSnapshot(p_out);
+		}
+	}
+	
+	/**
+	 * Reads a sheet written by {@link #writeSnapshot(DataOutput)}.
+	 * <p>
+	 * @param p_in The binary data.
+	 * @param p_total_length The total length of the cue sheet media, if known (in milliseconds).
+	 * @throws IOException If the data is not valid.
+	 * @since 0.9.30
+	 */
+	static pCUESheet readSnapshot(final DataInput p_in, final long p_total_length) throws IOException {
+		final pCUESheet i_sheet = new pCUESheet(p_total_length);
+		
+		final String i_charset = pCUESnapshotStore.readString(p_in);
+		try {
+			i_sheet.m_charset = (null!=i_charset)? Charset.forName(i_charset) : null;
+		}
+		catch (final IllegalArgumentException ex) {
+			throw new IOException("Unsupported charset: ".concat(i_charset), ex);
+		}
+		i_sheet.m_data_media = pCUEStringPool.getDefaultInstance().intern(pCUESnapshotStore.readString(p_in));
+		
+		pCUESnapshotStore.readMetadata(p_in, i_sheet.getMetadata());
+		
+		final pCUEStringPool i_pool = pCUEStringPool.getDefaultInstance();
+		final int i_files = p_in.readInt();
+		for(int i=0 ; i<i_files ; i++)
+			i_sheet.addFile(i_pool.intern(pCUESnapshotStore.readString(p_in)), i_pool.intern(pCUESnapshotStore.readString(p_in)));
+		
+		final int i_len = p_in.readInt();
+		if (i_len>=0) {
+			i_sheet.m_data_tracks = new ArrayList<>(i_len);
+			for(int i=0 ; i<i_len ; i++) {
+				final int i_file = p_in.readInt();
+				final pCUETrack i_track = pCUETrack.readSnapshot(p_in);
+				i_track.setOwner(i_sheet);
+				if (i_file>=0 && i_file<i_files)
+					i_track.setFile(i_sheet.m_data_files.get(i_file));
+				i_sheet.m_data_tracks.add(i_track);
+			}
+			i_sheet.regroup();
 			
-			i_writer.flush();
-			i_fos.flush();
+			if (i_len>0 && !i_sheet.isMultiFile()) {
+				final pCUETrack i_last = i_sheet.m_data_tracks.get(i_len-1);
+				if (i_last.getEnd()<0 && p_total_length>0)
+					i_last.setEnd(p_total_length);
+			}
 		}
+		return i_sheet;
 	}
 	
 	/**************************************************************************/
 	/***  ACCESSOR METHODS  ***************************************************/
 	/**************************************************************************/
 	
+	/**
+	 * Gets the meta-data of this sheet.
+	 * <p>
+	 * The meta-data of a frozen sheet are shared by all its readers: they are read-only (see {@link #edit()} to change them).
+	 * <p>
+	 * @since 0.9.30
+	 */
+	@Override
+	public pMetadata getMetadata() {
+		return (null!=m_frozen)? m_frozen_metadata : super.getMetadata();
+	}
+	
+	/**
+	 * Gets the meta-data of this sheet, without copy even if this sheet is frozen.
+	 * <p>
+	 * @since 0.9.30
+	 */
+	pMetadata ownMetadata() {
+		return super.getMetadata();
+	}
+	
 	/**
 	 * Gets the list of tracks present inside the cue sheet.
 	 * <p>
@@ -349,11 +837,45 @@ public class pCUESheet extends pHasMetadataImpl {
 	 * If a track does not define its own title, it it set to the title of the cue sheet followed by " (&lt;track&gt;)".
 	 * <p>
 	 * @return The list of audio tracks (can be empty, but not <code>null</code>).
+	 * @see #getTrackList()
 	 */
 	public pCUETrack[] getTracks() {
 		return (null!=m_data_tracks)? m_data_tracks.toArray(pCUETrack.CUETRACKS_EMPTY_ARRAY) : pCUETrack.CUETRACKS_EMPTY_ARRAY;
 	}
 	
+	/**
+	 * Gets an unmodifiable view of the tracks present inside the cue sheet, without copy.
+	 * <p>
+	 * The view follows the changes of the tracks, unless the sheet is frozen.
+	 * <p>
+	 * @return The tracks (can be empty, but not <code>null</code>).
+	 * @since 0.9.30
+	 */
+	public List<pCUETrack> getTrackList() {
+		if (null!=m_frozen)
+			return m_frozen;
+		return (null!=m_data_tracks)? Collections.unmodifiableList(m_data_tracks) : Collections.<pCUETrack>emptyList();
+	}
+	
+	/**
+	 * Gets the list of tracks, without copy.
+	 * <p>
+	 * @return The tracks (can be empty, but not <code>null</code>).
+	 * @since 0.9.30
+	 */
+	List<pCUETrack> tracks() {
+		return (null!=m_data_tracks)? m_data_tracks : Collections.<pCUETrack>emptyList();
+	}
+	
+	/**
+	 * Gets the number of tracks present inside the cue sheet.
+	 * <p>
+	 * @since 0.9.30
+	 */
+	public int getTrackCount() {
+		return (null!=m_data_tracks)? m_data_tracks.size() : 0;
+	}
+	
 	/**
 	 * Gets one track by its unique identifier.
 	 * <p>
@@ -364,14 +886,72 @@ public class pCUESheet extends pHasMetadataImpl {
 		if (null==m_data_tracks)
 			return null;
 		
-		//0.9.8
-		final int i_len = m_data_tracks.size();
-		for(int i=0 ; i<i_len ; i++) {
-			pCUETrack i_track = m_data_tracks.get(i);
-			if (pString.fastEquals(i_track.getID(), p_track_id))
-				return i_track;
+		//0.9.30: hash lookup
+		final pCUETrack i_track = index().getTrack(p_track_id);
+		if (null!=i_track || !m_index_stale)
+			return i_track;
+		
+		//*** THE IDENTIFIERS MAY HAVE BEEN CHANGED THROUGH THE META-DATA OF THE TRACKS: REBUILT ONCE
+		m_index = null;
+		return index().getTrack(p_track_id);
+	}
+	
+	/**
+	 * Gets the track playing at a given time.
+	 * <p>
+	 * The tracks are found by a binary search over their start times.
+	 * <p>
+	 * @param p_time The time in milliseconds from the beginning of the cue media.
+	 * @return The last track starting at or before the time and ending after it (or without known end), otherwise <code>null</code>.
+	 * @since 0.9.30
+	 */
+	public pCUETrack trackAt(final long p_time) {
+		return (null!=m_data_tracks)? index().trackAt(p_time) : null;
+	}
+	
+	/**
+	 * Gets the tracks overlapping a time range.
+	 * <p>
+	 * @param p_from The start of the range in milliseconds (inclusive).
+	 * @param p_to The end of the range in milliseconds (exclusive).
+	 * @return The tracks, in the order of their start times (can be empty, but not <code>null</code>).
+	 * @since 0.9.30
+	 */
+	public List<pCUETrack> tracksBetween(final long p_from, final long p_to) {
+		return (null!=m_data_tracks)? index().tracksBetween(p_from, p_to) : Collections.<pCUETrack>emptyList();
+	}
+	
+	/**
+	 * Gets the index of the tracks, building it if needed.
+	 * <p>
+	 * @since 0.9.30
+	 */
+	private pCUETrackIndex index() {
+		if (null==m_index) {
+			m_index_stale = false;
+			m_index = new pCUETrackIndex(m_data_tracks);
 		}
-		return null;
+		return m_index;
+	}
+	
+	/**
+	 * Drops the index of the tracks after a change of the tracks.
+	 * <p>
+	 * @since 0.9.30
+	 */
+	void invalidateIndex() {
+		m_index = null;
+	}
+	
+	/**
+	 * Marks the index of the tracks as possibly out of date, when the meta-data of a track is handed out.
+	 * The index of a frozen sheet is never out of date.
+	 * <p>
+	 * @since 0.9.30
+	 */
+	void staleIndex() {
+		if (null==m_frozen)
+			m_index_stale = true;
 	}
 	
 	/**
@@ -379,47 +959,178 @@ public class pCUESheet extends pHasMetadataImpl {
 	 * <p>
 	 * @param p_time The start time of the new track. If it equals zero or the start time of another existing track, nothing is changed.
 	 * @return The new track if inserted, or <code>null</code> if nothing has been changed.
+	 * @see #insertTracks(long[])
 	 */
 	public pCUETrack insertTrack(final long p_time) {
-		pCUETrack i_result = null;
+		//0.9.30
+		final List<pCUETrack> i_result = insertTracks(new long[] { p_time });
+		return (i_result.size()>0)? i_result.get(0) : null;
+	}
+	
+	/**
+	 * Inserts new tracks in the list of tracks.
+	 * <p>
+	 * The start times are sorted and merged with the tracks in one pass: each new track ends at the start of the following track
+	 * (or at the total length of the media for the last one), and the previous track ends at its start.
+	 * The tracks are then numbered again once. The result is the same as inserting the tracks one by one with {@link #insertTrack(long)}.
+	 * <p>
+	 * @param p_times The start times of the new tracks, in any order (the array is not modified).
+	 * Times less than or equal to zero, or equal to the start time of another track, are ignored.
+	 * @return The new tracks in the order of their start times (can be empty, but not <code>null</code>).
+	 * @throws UnsupportedOperationException If this sheet is frozen.
+	 * @since 0.9.30
+	 */
+	public List<pCUETrack> insertTracks(final long[] p_times) {
+		checkMutable();
+		if (null==p_times || p_times.length<1)
+			return Collections.emptyList();
 		
-		if (p_time<=0)
-			return null;
+		final long[] i_times = p_times.clone();
+		Arrays.sort(i_times);
+		final int i_count = i_times.length;
+		int t = 0;
+		while(t<i_count && i_times[t]<=0)
+			t++;
+		if (t>=i_count)
+			return Collections.emptyList();
 		
-		if (null==m_data_tracks) {
-			m_data_tracks = new ArrayList<>();
+		//*** THE FIRST TRACK STARTS AT ZERO
+		if (null==m_data_tracks || m_data_tracks.isEmpty()) {
+			m_data_tracks = new ArrayList<>(i_count-t+1);
+			addTrack(new pCUETrack(pCUETrack.trackID(1), 0, -1));
+		}
+		
+		final ArrayList<pCUETrack> i_result = new ArrayList<>(i_count-t);
+		final int i_len = m_data_tracks.size();
+		final ArrayList<pCUETrack> i_tracks = new ArrayList<>(i_len+i_count-t);
+		int i_first = -1;
+		pCUETrack i_previous = null;
+		
+		for(int i=0 ; i<=i_len ; i++) {
+			final pCUETrack i_next = (i<i_len)? m_data_tracks.get(i) : null;
+			final long i_next_start = (null!=i_next)? i_next.getStart() : Long.MAX_VALUE;
 			
-			m_data_tracks.add(new pCUETrack("01", 0, p_time));
-			i_result = new pCUETrack("02", p_time, m_total_length);
-			m_data_tracks.add(i_result);
-			return i_result;
+			//*** THE NEW TRACKS BEFORE THE NEXT EXISTING TRACK
+			for( ; t<i_count && i_times[t]<i_next_start ; t++) {
+				final long i_time = i_times[t];
+				if (t>0 && i_times[t-1]==i_time)
+					continue;
+				
+				final pCUETrack i_track = new pCUETrack(pCUETrack.trackID(i_tracks.size()+1), i_time, (null!=i_next)? i_next_start : m_total_length);
+				i_track.setOwner(this);
+				i_track.setFile((null!=i_previous)? i_previous.getFile() : i_next.getFile());
+				if (null!=i_previous)
+					i_previous.setEnd(i_time);
+				if (i_first<0)
+					i_first = i_tracks.size();
+				
+				i_tracks.add(i_track);
+				i_result.add(i_track);
+				i_previous = i_track;
+			}
+			
+			//*** THE TIMES OF EXISTING TRACKS ARE IGNORED
+			while(t<i_count && i_times[t]==i_next_start)
+				t++;
+			
+			if (null!=i_next) {
+				i_tracks.add(i_next);
+				i_previous = i_next;
+			}
+		}
+		
+		if (i_first>=0) {
+			m_data_tracks = i_tracks;
+			m_index = null;
+			renumber(i_first);
+			regroup();
 		}
+		return i_result;
+	}
+	
+	/**
+	 * Removes tracks from the list of tracks, merging each of them into the previous track.
+	 * <p>
+	 * The start times are sorted and merged with the tracks in one pass: the previous track of a removed track ends at its end.
+	 * The tracks are then numbered again once.
+	 * <p>
+	 * @param p_times The start times of the tracks to remove, in any order (the array is not modified).
+	 * The first track cannot be removed, and times that are not the start time of a track are ignored.
+	 * @return The removed tracks in the order of their start times (can be empty, but not <code>null</code>).
+	 * @throws UnsupportedOperationException If this sheet is frozen.
+	 * @since 0.9.30
+	 */
+	public List<pCUETrack> removeTracks(final long[] p_times) {
+		checkMutable();
+		if (null==m_data_tracks || null==p_times || p_times.length<1)
+			return Collections.emptyList();
+		
+		final long[] i_times = p_times.clone();
+		Arrays.sort(i_times);
+		final int i_count = i_times.length;
+		
+		final int i_len = m_data_tracks.size();
+		final ArrayList<pCUETrack> i_tracks = new ArrayList<>(i_len);
+		final ArrayList<pCUETrack> i_result = new ArrayList<>(Math.min(i_len, i_count));
+		int i_first = -1;
+		int t = 0;
+		pCUETrack i_previous = null;
 		
-		int i_len = m_data_tracks.size();
 		for(int i=0 ; i<i_len ; i++) {
 			final pCUETrack i_track = m_data_tracks.get(i);
-			if (i_track.getStart()==p_time)
-				return null;
-			if (i_track.getStart()>p_time) {
-				i_result = new pCUETrack(pCUETrack.trackID(i+1), p_time, i_track.getStart());
-				m_data_tracks.add(i, i_result);
-				if (i>0)
-					m_data_tracks.get(i-1).setEnd(p_time);
-				
-				i++;
-				for( ; i<m_data_tracks.size() ; i++)
-					m_data_tracks.get(i).getMetadata().put(pMediaUtil.MNAME_TRACK, pCUETrack.trackID(i+1));
-				return i_result;
+			final long i_start = i_track.getStart();
+			while(t<i_count && i_times[t]<i_start)
+				t++;
+			
+			if (null!=i_previous && t<i_count && i_times[t]==i_start) {
+				i_previous.setEnd(i_track);
+				i_track.setOwner(null);
+				if (i_first<0)
+					i_first = i_tracks.size();
+				i_result.add(i_track);
+				continue;
 			}
+			
+			i_tracks.add(i_track);
+			i_previous = i_track;
 		}
 		
-		// insert at the end
-		i_result = new pCUETrack(pCUETrack.trackID(m_data_tracks.size()+1), p_time, m_total_length);
-		m_data_tracks.add(i_result);
-		m_data_tracks.get(m_data_tracks.size()-2).setEnd(p_time);
+		if (i_first>=0) {
+			m_data_tracks = i_tracks;
+			m_index = null;
+			renumber(i_first);
+			regroup();
+		}
 		return i_result;
 	}
 	
+	/**
+	 * Sets the identifiers of the tracks from their position, starting with a given track.
+	 * <p>
+	 * The values that the tracks inherit from the sheet are not copied (see {@link pCUETrack#setID(String)}).
+	 * @since 0.9.30
+	 */
+	private void renumber(final int p_from) {
+		final int i_len = m_data_tracks.size();
+		for(int i=p_from ; i<i_len ; i++) {
+			final pCUETrack i_track = m_data_tracks.get(i);
+			final String i_id = pCUETrack.trackID(i+1);
+			if (!pString.fastEquals(i_track.getID(), i_id))
+				i_track.setID(i_id);
+		}
+	}
+	
+	/**
+	 * Adds a track at the end of the list of tracks.
+	 * <p>
+	 * @since 0.9.30
+	 */
+	private void addTrack(final pCUETrack p_track) {
+		p_track.setOwner(this);
+		m_data_tracks.add(p_track);
+		m_index = null;
+	}
+	
 	/**************************************************************************/
 	/***  METHODS  ************************************************************/
 	/**************************************************************************/
@@ -444,36 +1155,15 @@ public class pCUESheet extends pHasMetadataImpl {
 	
 	/**
 	 * Returns a string representation of this sheet in the .CUE format.
+	 * <p>
+	 * The text is the one written by {@link #save(File, String)} with the {@link pString#STRING_NAME} meta-data of this sheet
+	 * as media name, otherwise with the media of this sheet.
 	 */
 	@Override
 	public String toString() {
-		final pBaseStringBuilder i_result = new pBaseStringBuilder();
-		
-		String i_value = getMetadata().getString(pMediaUtil.MNAME_ARTIST);
-		if (pString.isValid(i_value)) {
-			i_result.append("PERFORMER \"");
-			i_result.append(i_value);
-			i_result.append("\"\n");
-		}
-		
-		i_value = getMetadata().getString(pMediaUtil.MNAME_TITLE);
-		if (pString.isValid(i_value)) {
-			i_result.append("TITLE \"");
-			i_result.append(i_value);
-			i_result.append("\"\n");
-		}
-		
-		i_value = getMetadata().getString(pString.STRING_NAME);
-		if (pString.isValid(i_value)) {
-			i_result.append("FILE \"");
-			i_result.append(i_value);
-			i_result.append("\" MP3\n");
-		}
-
-		for(pCUETrack i_track : getTracks())
-			i_result.append(i_track.toString());
-		
-		return i_result.toString();
+		//0.9.30: the name of the sheet is written in the "FILE" line as before, otherwise its media
+		final String i_name = ownMetadata().getString(pString.STRING_NAME);
+		return pCUESerializer.toCharBuffer(this, pString.isValid(i_name)? i_name : getMedia()).toString();
 	}
 
 	/**************************************************************************/
@@ -486,95 +1176,251 @@ public class pCUESheet extends pHasMetadataImpl {
 	 * @param p_file The .cue file. 
 	 * @param p_values The list of metadata values to change. 
 	 * The list must contain a value for the {@link pMediaUtil#MNAME_TRACK} property, otherwise the method will throw an exception.
-	 * Values that have been successfully changed are removed from the list.
+	 * Values that have been successfully changed are removed from the list, if it can be modified: 
+	 * the list is not changed otherwise.
 	 * @return <code>true</code> if the update succeeded, otherwise <code>false</code>.
 	 * @throws IOException In case of error.
+	 * @see #updateTracks(File, Map)
 	 */
 	public static boolean update(final File p_file, final Map<String,Object> p_values) throws IOException {
-		if (!p_file.exists())
-			return false;
-		if (!p_file.canRead())
-			return false;
-		if (!pCUESheetFileDocumentType.getDefaultInstance().accept(p_file))
-			return false;
-		
 		//0.9.8
 		if (null==p_values)
 			return false;
 		if (p_values.size()<1)
 			return false;
+		
+		//0.9.30: a batch of one track, with the values to write only
+		final String i_track_id = pString.valueOf(p_values.get(pMediaUtil.MNAME_TRACK), null);
+		if (null==i_track_id)
+			throw new IOException("Missing CUE Sheet track identifier: ".concat(p_file.getPath()));
+		final HashMap<String,Object> i_values = new HashMap<>(p_values);
+		i_values.remove(pMediaUtil.MNAME_TRACK);
+		
+		final Map<String,Set<String>> i_applied = updateTracks(p_file, Collections.singletonMap(i_track_id, i_values));
+		if (null==i_applied || i_applied.isEmpty())
+			return false;
+		
+		//*** REMOVE THE VALUES THAT WE SAVED
+		try {
+			p_values.keySet().removeAll(i_applied.get(i_track_id));
+		}
+		catch (final UnsupportedOperationException ex) {
+			//*** THE FILE IS WRITTEN: THE VALUES ARE KEPT
+		}
+		return true;
+	}
+	
+	/**
+	 * Changes metadata of several tracks into an existing CUE Sheet file.
+	 * <p>
+	 * The file is parsed once, all the changes are applied and the file is written once, only if at least one value changed.
+	 * Either all the changes are written or none of them.
+	 * <p>
+	 * @param p_file The .cue file. 
+	 * @param p_edits The metadata values to change, by track identifier.
+	 * The maps are not modified.
+	 * @return The <code>MNAME</code> properties that have been changed, by track identifier 
+	 * (empty if no value changed), or <code>null</code> if the file cannot be read as a CUE Sheet file.
+	 * @throws IOException In case of error, or if a track cannot be found.
+	 * @since 0.9.30
+	 */
+	public static Map<String,Set<String>> updateTracks(final File p_file, final Map<String,? extends Map<String,Object>> p_edits) throws IOException {
+		if (!p_file.exists())
+			return null;
+		if (!p_file.canRead())
+			return null;
+		if (!pCUESheetFileDocumentType.getDefaultInstance().accept(p_file))
+			return null;
+		
+		final LinkedHashMap<String,Set<String>> i_result = new LinkedHashMap<>();
+		if (null==p_edits || p_edits.isEmpty())
+			return i_result;
 
 		if (TRACE.isDebugEnabled())
 			TRACE.debug("Writing CUE Sheet file: ", p_file.getAbsolutePath(), ": changing data...");			
 
+		//0.9.30
+		final pCUEEvents.pCUEEvents_Update i_event = new pCUEEvents.pCUEEvents_Update();
+		i_event.begin();
+		final long i_start = System.nanoTime();
+		boolean i_updated = false;
+		boolean i_patched = false;
+		
+		//*** THE FILE IS READ AND WRITTEN UNDER ITS LOCK, SO THAT CONCURRENT CHANGES ARE NOT LOST
+		final ReentrantLock i_lock = pCUESheetWriter.getLock(p_file);
+		i_lock.lock();
 		try {
-			final pCUESheet i_sheet = new pCUESheet(p_file, 0);
-			boolean i_save = false;
+			final pCUESheet i_sheet = pCUESheetCache.getDefaultInstance().get(p_file, 0);
+			final LinkedHashMap<String,Map<String,String>> i_changes = new LinkedHashMap<>(p_edits.size()*4/3+1);
 			
-			final String i_track_id = pString.valueOf(p_values.get(pMediaUtil.MNAME_TRACK), null);
-			final pCUETrack i_track = i_sheet.getTrack(i_track_id);
-			if (null==i_track) {
-				throw new IOException("Cannot find CUE Sheet track: ".concat(i_track_id));
-			}
-			
-			final ArrayList<String> i_toremove = new ArrayList<>(p_values.size());
-			for(Map.Entry<String,Object> i_entry : p_values.entrySet()) {
-				final String i_pname = i_entry.getKey();
-				final String i_value = Objects.toString(i_entry.getValue(), null);
-			
-				if (i_track.getMetadataSupportedKeys().contains(i_pname)) {
-
-					if (TRACE.isInfoEnabled())
-						TRACE.info("Writing CUE Sheet file: ", p_file.getAbsolutePath(), ": changing data... Setting: ", i_pname, ": ", i_value);
-
-					final String i_ovalue = i_track.getMetadata().getString(i_pname);
-					if (!pString.equals(i_ovalue, i_value)) {
-						i_track.getMetadata().put(i_pname, i_value);
-						i_save = true;
-						
-						i_toremove.remove(i_pname);
+			for(Map.Entry<String,? extends Map<String,Object>> i_edit : p_edits.entrySet()) {
+				final String i_track_id = i_edit.getKey();
+				final pCUETrack i_track = i_sheet.getTrack(i_track_id);
+				if (null==i_track) {
+					throw new IOException("Cannot find CUE Sheet track: ".concat(String.valueOf(i_track_id)));
+				}
+				
+				final LinkedHashMap<String,String> i_track_changes = new LinkedHashMap<>();
+				for(Map.Entry<String,Object> i_entry : i_edit.getValue().entrySet()) {
+					final String i_pname = i_entry.getKey();
+					final String i_value = Objects.toString(i_entry.getValue(), null);
+				
+					if (i_track.getMetadataSupportedKeys().contains(i_pname)) {
+	
+						if (TRACE.isInfoEnabled())
+							TRACE.info("Writing CUE Sheet file: ", p_file.getAbsolutePath(), ": changing data... Setting: ", i_track_id, ": ", i_pname, ": ", i_value);
+	
+						final String i_ovalue = i_track.getMetadata().getString(i_pname);
+						if (!pString.equals(i_ovalue, i_value)) {
+							i_track.getMetadata().put(i_pname, i_value);
+							i_track_changes.put(i_pname, i_value);
+						}
 					}
 				}
+				
+				if (i_track_changes.size()>0)
+					i_changes.put(i_track_id, i_track_changes);
 			}
 			
 			//*** SAVE THE CHANGES
-			if (i_save) {
-				i_sheet.save(p_file, i_sheet.getMedia());
-					
-				//*** REMOVE THE VALUES THAT WE SAVED
-				final int i_len = i_toremove.size();
-				for(int i=0 ; i<i_len ; i++)
-					p_values.remove(i_toremove.get(i));
+			if (i_changes.size()>0) {
+				try {
+					//0.9.30: patch the changed lines only, otherwise rewrite the whole sheet
+					i_patched = patch(p_file, i_changes);
+					if (!i_patched)
+						i_sheet.save(p_file, i_sheet.getMedia());
+				}
+				finally {
+					pCUESheetCache.getDefaultInstance().invalidate(p_file);
+				}
+				
+				for(Map.Entry<String,Map<String,String>> i_entry : i_changes.entrySet())
+					i_result.put(i_entry.getKey(), Collections.unmodifiableSet(i_entry.getValue().keySet()));
 				
 				if (TRACE.isDebugEnabled())
 					TRACE.debug("Writing CUE Sheet file: ", p_file.getAbsolutePath(), ": changing data... Done.");
-				return true;
 			}
 			
 			//TODO: update mp3 file...
+			i_updated = true;
 		}
 		catch (final IOException ex) {
 			if (TRACE.isErrorEnabled())
 				TRACE.error("Failed to write data into CUE Sheet file: ", p_file.getAbsolutePath(), ex);
 			throw ex;
 		}
-		return false;
+		finally {
+			i_lock.unlock();
+			
+			//0.9.30
+			final long i_time = System.nanoTime() - i_start;
+			if (i_updated)
+				UPDATE.record(i_time);
+			else
+				UPDATE.recordFailure(i_time);
+			
+			i_event.end();
+			if (i_event.shouldCommit()) {
+				i_event.path = p_file.getPath();
+				i_event.fileSize = p_file.length();
+				i_event.trackCount = p_edits.size();
+				i_event.changedCount = i_result.size();
+				i_event.patched = i_patched;
+				i_event.commit();
+			}
+		}
+		return i_result;
 	}
 	
-	/** 
+	/**
+	 * Parses an existing .cue file in the background.
+	 * <p>
+	 * @param p_path The .cue file.
+	 * @return The future of the sheet: cancelling it stops the reading.
+	 * @see #pCUESheet(Path, long)
+	 * @see pCUEExecutor
+	 * @since 0.9.30
+	 */
+	public static CompletableFuture<pCUESheet> parseAsync(final Path p_path) {
+		return parseAsync(p_path, -1);
+	}
+	
+	/**
+	 * Parses an existing .cue file in the background.
 	 * <p>
-	 * @throws IOException 
-	 * @since 0.9.29 
+	 * @param p_path The .cue file.
+	 * @param p_total_length The total length of the cue sheet media, if known (in milliseconds).
+	 * @return The future of the sheet: cancelling it stops the reading.
+	 * @see #pCUESheet(Path, long)
+	 * @see pCUEExecutor
+	 * @since 0.9.30
+	 */
+	public static CompletableFuture<pCUESheet> parseAsync(final Path p_path, final long p_total_length) {
+		return pCUEExecutor.getDefaultInstance().submit(() -> new pCUESheet(p_path, p_total_length));
+	}
+	
+	/**
+	 * Changes metadata into an existing CUE Sheet file in the background.
+	 * <p>
+	 * The values that have been changed are removed from the map when the writing is done: 
+	 * the caller must not use the map until the future is completed.
+	 * <p>
+	 * @param p_file The .cue file.
+	 * @param p_values The metadata values to change, with a value for the {@link pMediaUtil#MNAME_TRACK} property.
+	 * @return The future of the result of {@link #update(File, Map)}.
+	 * @see pCUEExecutor
+	 * @since 0.9.30
+	 */
+	public static CompletableFuture<Boolean> updateAsync(final File p_file, final Map<String,Object> p_values) {
+		return pCUEExecutor.getDefaultInstance().submit(() -> Boolean.valueOf(update(p_file, p_values)));
+	}
+	
+	/**
+	 * Changes metadata of several tracks into an existing CUE Sheet file in the background.
+	 * <p>
+	 * @param p_file The .cue file.
+	 * @param p_edits The metadata values to change, by track identifier: the maps must not be changed until the future is completed.
+	 * @return The future of the result of {@link #updateTracks(File, Map)}.
+	 * @see pCUEExecutor
+	 * @since 0.9.30
 	 */
-	static void writeField(final OutputStreamWriter i_writer, final String p_value, final String p_name) throws IOException {
-		if (pString.isValid(p_value)) {
-			i_writer.write(p_name);
-			i_writer.write(" \"");
-			i_writer.write(p_value);
-			i_writer.write("\"\n");
+	public static CompletableFuture<Map<String,Set<String>>> updateTracksAsync(final File p_file, final Map<String,? extends Map<String,Object>> p_edits) {
+		return pCUEExecutor.getDefaultInstance().submit(() -> updateTracks(p_file, p_edits));
+	}
+	
+	/**
+	 * Writes changes of track meta-data into an existing CUE Sheet file, without rewriting the unchanged lines.
+	 * <p>
+	 * @param p_file The .cue file.
+	 * @param p_changes The new values, by <code>MNAME</code> property, by track identifier.
+	 * @return <code>true</code> if the changes have been written, or <code>false</code> if the file cannot be patched.
+	 * @throws IOException In case of error: the file is left unchanged.
+	 * @since 0.9.30
+	 */
+	private static boolean patch(final File p_file, final Map<String,Map<String,String>> p_changes) throws IOException {
+		try (pCUEPatchWriter i_writer = pCUEPatchWriter.open(p_file.toPath())) {
+			if (null==i_writer)
+				return false;
+			
+			for(Map.Entry<String,Map<String,String>> i_track : p_changes.entrySet())
+				for(Map.Entry<String,String> i_entry : i_track.getValue().entrySet())
+					if (!i_writer.set(i_track.getKey(), i_entry.getKey(), i_entry.getValue()))
+						return false;
+			
+			i_writer.commit();
+			return true;
 		}
 	}
 	
+	/**
+	 * Gets the sheet meta-data inherited by the tracks, in the order they are applied.
+	 * <p>
+	 * @since 0.9.30
+	 */
+	static Set<String> getInheritedKeys() {
+		return KEYS;
+	}
+	
 	/**************************************************************************/
 	/***  MAIN METHOD  ********************************************************/
 	/**************************************************************************/
@@ -0,0 +1,444 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.media.cue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import tv.genialist.ptools.trace.pTraceImpl;
+
+/**
+ * The <code>pCUESheetCache</code> class keeps the cue sheets parsed from .cue files in memory.
+ * <p>
+ * Entries are keyed by canonical path and validated against the last modification time and the size of the file,
+ * so that a file changed on disk is parsed again. The least recently used entries are evicted when the number of entries
+ * or their estimated heap size exceed the configured limits.
+ * <p>
+ * Concurrent requests for the same file share a single parsing.
+ * <p>
+ * The cached sheets are frozen (see {@link pCUESheet#freeze()}): {@link #get(File, long)} returns a copy that the caller can change freely,
+ * and {@link #getFrozen(File)} returns the shared sheet itself, for the readers that do not change it.
+ * <p>
+ * The media files of the parsed sheets are added to a {@link pCUEMediaIndex}, so that the sheets can be found from their media files.
+ * <p>
+ * If a {@link pCUESnapshotStore} is set, the sheets missing from the cache are read from their snapshots instead of being parsed,
+ * so that the .cue files are not parsed again after a restart.
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ */
+public class pCUESheetCache {
+
+	/**************************************************************************/
+	/***  DEFINITIONS  ********************************************************/
+	/**************************************************************************/
+
+	/** The prefix used in trace and log messages. */
+	public static final String TRACE_PREFIX = "CUESheetCache";
+
+	/** The default maximum number of entries. */
+	public static final int DEFAULT_MAX_ENTRIES = 256;
+
+	/** The default maximum estimated heap size of the entries (in bytes). */
+	public static final long DEFAULT_MAX_SIZE = 16L*1024L*1024L;
+
+	/**************************************************************************/
+	/***  SUB-CLASSES  ********************************************************/
+	/**************************************************************************/
+
+	/**
+	 * A parsed sheet with the attributes of the file it was read from.
+	 */
+	private static final class pCUESheetCache_Entry {
+
+		private final pCUESheet m_sheet;
+		private final long m_modified;
+		private final long m_length;
+		private final long m_size;
+
+		pCUESheetCache_Entry(final pCUESheet p_sheet, final long p_modified, final long p_length) {
+			m_sheet = p_sheet;
+			m_modified = p_modified;
+			m_length = p_length;
+			m_size = estimateSize(p_sheet, p_length);
+		}
+
+		boolean isValid(final long p_modified, final long p_length) {
+			return m_modified==p_modified && m_length==p_length;
+		}
+	}
+
+	/**
+	 * A parsing in progress, with the number of times its file has been invalidated since it started.
+	 */
+	private static final class pCUESheetCache_Loading extends CompletableFuture<pCUESheetCache_Entry> {
+
+		/** Incremented by {@link pCUESheetCache#invalidate(File)}: <code>0</code> if the file has not been invalidated since the parsing started. Guarded by the cache. */
+		private int m_generation;
+
+		pCUESheetCache_Loading() {
+			super();
+		}
+	}
+
+	/**************************************************************************/
+	/***  RUNTIME DATA  *******************************************************/
+	/**************************************************************************/
+
+	private static final pTraceImpl TRACE = pTraceImpl.getTrace(pCUESheetCache.class, TRACE_PREFIX);
+
+	private static final pCUEMetrics.pCUEMetrics_Counter HITS = pCUEMetrics.getDefaultInstance().getCounter(pCUEMetrics.CACHE_HIT);
+	private static final pCUEMetrics.pCUEMetrics_Counter MISSES = pCUEMetrics.getDefaultInstance().getCounter(pCUEMetrics.CACHE_MISS);
+
+	/** The default instance of this object. */
+	private static final pCUESheetCache DEFAULT = new pCUESheetCache(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_SIZE);
+
+	/** The entries by canonical path, in access order. Guarded by <code>this</code>. */
+	private final LinkedHashMap<String,pCUESheetCache_Entry> m_entries = new LinkedHashMap<>(64, 0.75f, true);
+
+	/** The parsings in progress by canonical path. Guarded by <code>this</code>. */
+	private final HashMap<String,pCUESheetCache_Loading> m_loading = new HashMap<>();
+
+	/** The index of the media files of the parsed sheets. */
+	private volatile pCUEMediaIndex m_index = pCUEMediaIndex.getDefaultInstance();
+
+	/** The snapshots of the parsed sheets, or <code>null</code>. */
+	private volatile pCUESnapshotStore m_store;
+
+	private int m_max_entries;
+	private long m_max_size;
+	/** The estimated heap size of the entries. Guarded by <code>this</code>. */
+	private long m_size;
+
+	private long m_hits;
+	private long m_misses;
+
+	/**************************************************************************/
+	/***  CONSTRUCTORS  *******************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Constructs a new <code>pCUESheetCache</code> object.
+	 * <p>
+	 * @param p_max_entries The maximum number of entries.
+	 * @param p_max_size The maximum estimated heap size of the entries (in bytes).
+	 */
+	public pCUESheetCache(final int p_max_entries, final long p_max_size) {
+		super();
+		m_max_entries = p_max_entries;
+		m_max_size = p_max_size;
+	}
+
+	/**************************************************************************/
+	/***  METHODS  ************************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Gets a cue sheet read from a .cue file.
+	 * <p>
+	 * The file is parsed only if it is not in the cache, or if its last modification time or its size changed.
+	 * <p>
+	 * @param p_file The .cue file.
+	 * @param p_total_length The total length of the cue sheet media, if known (in milliseconds).
+	 * @return A copy of the cached sheet (cannot be <code>null</code>).
+	 * @throws IOException If the file reading or parsing failed.
+	 * @see #getFrozen(File)
+	 */
+	public pCUESheet get(final File p_file, final long p_total_length) throws IOException {
+		//0.9.30
+		return entry(p_file).m_sheet.copy(p_total_length);
+	}
+
+	/**
+	 * Gets the cached sheet read from a .cue file, without copy.
+	 * <p>
+	 * The sheet is frozen (see {@link pCUESheet#freeze()}), so that it can be shared by all the threads.
+	 * Its last track has no end if the sheet does not define it, as the total length of the media is not known.
+	 * <p>
+	 * @param p_file The .cue file.
+	 * @return The frozen sheet (cannot be <code>null</code>).
+	 * @throws IOException If the file reading or parsing failed.
+	 * @since 0.9.30
+	 */
+	public pCUESheet getFrozen(final File p_file) throws IOException {
+		return entry(p_file).m_sheet;
+	}
+
+	/**
+	 * Gets the entry of a .cue file, parsing the file if needed.
+	 */
+	private pCUESheetCache_Entry entry(final File p_file) throws IOException {
+		final String i_key = p_file.getCanonicalPath();
+
+		final BasicFileAttributes i_attributes;
+		try {
+			i_attributes = Files.readAttributes(p_file.toPath(), BasicFileAttributes.class);
+		}
+		catch (final NoSuchFileException ex) {
+			invalidate(i_key);
+			m_index.remove(p_file);
+			final pCUESnapshotStore i_store = m_store;
+			if (null!=i_store)
+				i_store.remove(i_key);
+			throw ex;
+		}
+		final long i_modified = i_attributes.lastModifiedTime().toMillis();
+		final long i_length = i_attributes.size();
+
+		pCUESheetCache_Entry i_entry;
+		pCUESheetCache_Loading i_future = null;
+		boolean i_owner = false;
+
+		synchronized(this) {
+			i_entry = m_entries.get(i_key);
+			if (null!=i_entry && i_entry.isValid(i_modified, i_length)) {
+				m_hits++;
+				HITS.increment();
+			}
+			else {
+				i_entry = null;
+				m_misses++;
+				MISSES.increment();
+
+				i_future = m_loading.get(i_key);
+				if (null==i_future) {
+					i_future = new pCUESheetCache_Loading();
+					m_loading.put(i_key, i_future);
+					i_owner = true;
+				}
+			}
+		}
+
+		//*** THE CACHED SHEETS ARE FROZEN, SO THEY CAN BE SHARED WITHOUT THE LOCK
+		if (null!=i_entry)
+			return i_entry;
+		if (i_owner)
+			return load(p_file, i_key, i_modified, i_length, i_future);
+
+		//*** WAIT FOR THE PARSING IN PROGRESS
+		try {
+			return i_future.get();
+		}
+		catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while reading CUE Sheet file: ".concat(i_key), ex);
+		}
+		catch (final ExecutionException ex) {
+			//0.9.30: the thread of the parsing has been interrupted, not this one: the file is read again
+			if (ex.getCause() instanceof ClosedByInterruptException || ex.getCause() instanceof InterruptedIOException) {
+				if (TRACE.isDebugEnabled())
+					TRACE.debug("CUE Sheet file reading interrupted, reading again: ", i_key);
+				return entry(p_file);
+			}
+			if (ex.getCause() instanceof IOException)
+				throw (IOException)ex.getCause();
+			throw new IOException("Failed to read CUE Sheet file: ".concat(i_key), ex.getCause());
+		}
+	}
+
+	/**
+	 * Parses a file and publishes the result to the threads waiting for it.
+	 */
+	private pCUESheetCache_Entry load(final File p_file, final String p_key, final long p_modified, final long p_length, final pCUESheetCache_Loading p_future) throws IOException {
+		try {
+			final pCUESnapshotStore i_store = m_store;
+			final pCUESheet i_sheet = (null!=i_store)? i_store.load(p_file, p_key, p_modified, p_length) : new pCUESheet(p_file, -1);
+			final pCUESheetCache_Entry i_entry = new pCUESheetCache_Entry(i_sheet.frozen(), p_modified, p_length);
+			
+			//*** A FILE INVALIDATED DURING THE PARSING MAY HAVE CHANGED: THE SHEET IS NOT CACHED
+			final boolean i_current;
+			synchronized(this) {
+				m_loading.remove(p_key);
+				i_current = (0==p_future.m_generation);
+				if (i_current)
+					put(p_key, i_entry);
+			}
+			if (i_current)
+				m_index.add(p_file, i_entry.m_sheet);
+			else if (TRACE.isDebugEnabled())
+				TRACE.debug("CUE Sheet file invalidated while read: ", p_key);
+			p_future.complete(i_entry);
+			return i_entry;
+		}
+		catch (final IOException | RuntimeException ex) {
+			synchronized(this) {
+				m_loading.remove(p_key);
+			}
+			if (TRACE.isDebugEnabled())
+				TRACE.debug("Failed to read CUE Sheet file: ", p_key, ex);
+			p_future.completeExceptionally(ex);
+			throw ex;
+		}
+	}
+
+	/**
+	 * Adds an entry and evicts the least recently used ones above the limits.
+	 * Must be called while holding the lock of this object.
+	 */
+	private void put(final String p_key, final pCUESheetCache_Entry p_entry) {
+		final pCUESheetCache_Entry i_old = m_entries.put(p_key, p_entry);
+		if (null!=i_old)
+			m_size -= i_old.m_size;
+		m_size += p_entry.m_size;
+
+		evict();
+	}
+
+	/**
+	 * Evicts the least recently used entries above the limits.
+	 * Must be called while holding the lock of this object.
+	 */
+	private void evict() {
+		final Iterator<pCUESheetCache_Entry> i_entries = m_entries.values().iterator();
+		while(i_entries.hasNext() && (m_entries.size()>m_max_entries || m_size>m_max_size)) {
+			m_size -= i_entries.next().m_size;
+			i_entries.remove();
+		}
+	}
+
+	/**
+	 * Removes a file from the cache.
+	 * <p>
+	 * This should be called after a .cue file has been written, as its modification time and size may not change.
+	 * <p>
+	 * @param p_file The .cue file.
+	 */
+	public void invalidate(final File p_file) {
+		try {
+			invalidate(p_file.getCanonicalPath());
+		}
+		catch (final IOException ex) {
+			invalidate(p_file.getAbsolutePath());
+		}
+	}
+
+	private synchronized void invalidate(final String p_key) {
+		final pCUESheetCache_Entry i_old = m_entries.remove(p_key);
+		if (null!=i_old)
+			m_size -= i_old.m_size;
+		
+		//*** A PARSING IN PROGRESS MUST NOT PUT ITS SHEET BACK
+		final pCUESheetCache_Loading i_loading = m_loading.get(p_key);
+		if (null!=i_loading)
+			i_loading.m_generation++;
+	}
+
+	/**
+	 * Removes all the entries from the cache.
+	 */
+	public synchronized void clear() {
+		m_entries.clear();
+		m_size = 0;
+		for(pCUESheetCache_Loading i_loading : m_loading.values())
+			i_loading.m_generation++;
+	}
+
+	/**************************************************************************/
+	/***  ACCESSOR METHODS  ***************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Sets the maximum number of entries.
+	 */
+	public synchronized void setMaxEntries(final int p_max_entries) {
+		m_max_entries = p_max_entries;
+		evict();
+	}
+
+	/**
+	 * Sets the maximum estimated heap size of the entries (in bytes).
+	 */
+	public synchronized void setMaxSize(final long p_max_size) {
+		m_max_size = p_max_size;
+		evict();
+	}
+
+	/**
+	 * Sets the index where the media files of the parsed sheets are added.
+	 * <p>
+	 * @see pCUEMediaIndex#getDefaultInstance()
+	 */
+	public void setMediaIndex(final pCUEMediaIndex p_index) {
+		m_index = p_index;
+	}
+
+	/**
+	 * Sets the snapshots read instead of parsing the .cue files.
+	 * <p>
+	 * @param p_store The snapshots, or <code>null</code> to always parse the files.
+	 */
+	public void setSnapshotStore(final pCUESnapshotStore p_store) {
+		m_store = p_store;
+	}
+
+	/**
+	 * Gets the snapshots read instead of parsing the .cue files.
+	 * <p>
+	 * @return The snapshots, or <code>null</code> if not set.
+	 */
+	public pCUESnapshotStore getSnapshotStore() {
+		return m_store;
+	}
+
+	/**
+	 * Gets the number of entries.
+	 */
+	public synchronized int size() {
+		return m_entries.size();
+	}
+
+	/**
+	 * Gets the number of requests served from the cache.
+	 */
+	public synchronized long getHitCount() {
+		return m_hits;
+	}
+
+	/**
+	 * Gets the number of requests that required the file to be parsed (or to wait for a parsing in progress).
+	 */
+	public synchronized long getMissCount() {
+		return m_misses;
+	}
+
+	/**************************************************************************/
+	/***  STATIC METHODS  *****************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Estimates the heap size of a parsed sheet.
+	 * <p>
+	 * @param p_sheet The sheet.
+	 * @param p_length The size of the .cue file (in bytes).
+	 */
+	static long estimateSize(final pCUESheet p_sheet, final long p_length) {
+		return 512L + 2L*p_length + 256L*p_sheet.getTrackCount();
+	}
+
+	/**
+	 * Gets a default instance of this class.
+	 * <p>
+	 * @return The default instance (this cannot be <code>null</code>).
+	 */
+	public static pCUESheetCache getDefaultInstance() {
+		return DEFAULT;
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/
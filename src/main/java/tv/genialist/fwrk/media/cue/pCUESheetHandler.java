@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.media.cue;
+
+import tv.genialist.fwrk.media.pMediaUtil;
+
+/**
+ * The <code>pCUESheetHandler</code> interface receives the content of a cue sheet while it is parsed by {@link pCUEParser}.
+ * <p>
+ * The callbacks are invoked in the order of the sheet lines, in one pass and without building any object graph,
+ * so that a handler can count tracks, extract titles or forward entries with a constant memory.
+ * {@link pCUESheet} itself is built by an implementation of this interface.
+ * <p>
+ * All methods do nothing by default.
+ * <p>
+ * <b>Example:</b>
+ * <dl>
+ * <dd><code>
+ * final int[] i_count = new int[1];<br>
+ * pCUEParser.parse(i_path, new pCUESheetHandler() {<br>
+ * &nbsp;&nbsp;public void onTrackStart(int p_number) { i_count[0]++; }<br>
+ * });<br>
+ * </code>
+ * </dl>
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ * @see pCUEParser
+ */
+public interface pCUESheetHandler {
+
+	/**
+	 * Receives a meta-data of the sheet, found before the first "FILE" line.
+	 * <p>
+	 * @param p_key The <code>MNAME</code> property from {@link pMediaUtil} class:
+	 * {@link pMediaUtil#MNAME_ARTIST}, {@link pMediaUtil#MNAME_GENRE}, {@link pMediaUtil#MNAME_TITLE} or {@link pMediaUtil#MNAME_YEAR}.
+	 * @param p_value The value (cannot be <code>null</code>).
+	 */
+	default void onSheetField(final String p_key, final String p_value) {
+	}
+
+	/**
+	 * Receives a "FILE" line.
+	 * <p>
+	 * A sheet can have several "FILE" lines: the tracks received afterwards belong to the last file,
+	 * and their positions are relative to the beginning of this file.
+	 * <p>
+	 * @param p_media The media file name, without quotes (cannot be <code>null</code>).
+	 * @param p_type The file type: "MP3", "WAVE", "FLAC", "BINARY"... (cannot be <code>null</code>).
+	 */
+	default void onFile(final String p_media, final String p_type) {
+	}
+
+	/**
+	 * Receives the start of a track.
+	 * <p>
+	 * @param p_number The number of the track, starting with 1.
+	 */
+	default void onTrackStart(final int p_number) {
+	}
+
+	/**
+	 * Receives the start position of the current track ("INDEX 01" line).
+	 * <p>
+	 * @param p_frames The start position in CD frames (1/75 s) from the beginning of the media.
+	 * @see pCUETime#toMillis(long)
+	 */
+	default void onIndex(final long p_frames) {
+	}
+
+	/**
+	 * Receives a meta-data of the current track.
+	 * <p>
+	 * @param p_key The <code>MNAME</code> property from {@link pMediaUtil} class:
+	 * {@link pMediaUtil#MNAME_ARTIST}, {@link pMediaUtil#MNAME_GENRE}, {@link pMediaUtil#MNAME_TITLE},
+	 * {@link pMediaUtil#MNAME_TV_EPISODE} or {@link pMediaUtil#MNAME_YEAR}.
+	 * @param p_value The value (cannot be <code>null</code>).
+	 */
+	default void onTrackField(final String p_key, final String p_value) {
+	}
+
+	/**
+	 * Receives the end of the sheet.
+	 */
+	default void onEnd() {
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/
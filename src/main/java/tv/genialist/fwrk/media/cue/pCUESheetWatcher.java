@@ -0,0 +1,733 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.media.cue;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import tv.genialist.ptools.trace.pTraceImpl;
+
+/**
+ * The <code>pCUESheetWatcher</code> class watches the .cue files of directory trees and publishes their changes.
+ * <p>
+ * The directories are watched with a {@link WatchService}. If the file system does not support it, or if a directory cannot be
+ * registered (for instance above the limit of watches of the system), the watcher falls back to listing the trees periodically
+ * and comparing the modification time and the size of the .cue files.
+ * <p>
+ * The events received during a short delay are merged, so that a file written in several steps is published once.
+ * Renaming a file is published as the deletion of the old name and the creation of the new one.
+ * <p>
+ * The listeners are invoked from the thread of the watcher. The default instance invalidates the default
+ * {@link pCUESheetCache}, {@link pCUEMediaIndex} and {@link pCUESidecarFinder} (see {@link pCUESheetWatcher_Invalidator}).
+ * <p>
+ * <b>Example:</b>
+ * <dl>
+ * <dd><code>
+ * pCUESheetWatcher.getDefaultInstance().addRoot(new File("/music"));<br>
+ * pCUESheetWatcher.getDefaultInstance().addListener(p_event -&gt; i_playlist.refresh(p_event.getFile()));<br>
+ * </code>
+ * </dl>
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ */
+public class pCUESheetWatcher implements Closeable {
+
+	/**************************************************************************/
+	/***  DEFINITIONS  ********************************************************/
+	/**************************************************************************/
+
+	/** The prefix used in trace and log messages. */
+	public static final String TRACE_PREFIX = "CUESheetWatcher";
+
+	/** The default interval between two listings of the trees, when the directories cannot be watched (in milliseconds). */
+	public static final long DEFAULT_POLL_INTERVAL = 5000L;
+
+	/** The default delay during which the events are merged (in milliseconds). */
+	public static final long DEFAULT_DELAY = 200L;
+
+	/** The maximum number of watch keys merged into one publication. */
+	private static final int MAX_KEYS = 256;
+
+	/** The extension of the cue sheet files. */
+	private static final String EXTENSION = ".cue";
+
+	/**************************************************************************/
+	/***  SUB-CLASSES  ********************************************************/
+	/**************************************************************************/
+
+	/**
+	 * The changes of a .cue file.
+	 */
+	public enum pCUESheetWatcher_Change {
+		/** The file has been created, or moved into a watched tree. */
+		CREATED,
+		/** The file has been written. */
+		MODIFIED,
+		/** The file has been deleted, or moved out of a watched tree. */
+		DELETED
+	}
+
+	/**
+	 * A change of a .cue file.
+	 */
+	public static final class pCUESheetWatcher_Event {
+
+		private final File m_file;
+		private final pCUESheetWatcher_Change m_change;
+
+		pCUESheetWatcher_Event(final File p_file, final pCUESheetWatcher_Change p_change) {
+			m_file = p_file;
+			m_change = p_change;
+		}
+
+		/**
+		 * Gets the .cue file (absolute).
+		 */
+		public File getFile() {
+			return m_file;
+		}
+
+		/**
+		 * Gets the change.
+		 */
+		public pCUESheetWatcher_Change getChange() {
+			return m_change;
+		}
+
+		@Override
+		public String toString() {
+			return m_change + " " + m_file.getPath();
+		}
+	}
+
+	/**
+	 * The receiver of the changes of .cue files.
+	 */
+	public interface pCUESheetWatcher_Listener {
+
+		/**
+		 * Receives a change of a .cue file.
+		 * <p>
+		 * This method is invoked from the thread of the watcher.
+		 */
+		void sheetChanged(pCUESheetWatcher_Event p_event);
+	}
+
+	/**
+	 * The listener that drops the parsed state of the changed sheets.
+	 * <p>
+	 * A deleted sheet is removed from the cache, its snapshot and the index. A created or modified sheet is parsed again
+	 * through the cache, which updates the index and the snapshot, on a thread of the executor so that the watcher is not delayed. The directory snapshots of the sidecar finder are
+	 * refreshed when a sheet is created or deleted.
+	 */
+	public static class pCUESheetWatcher_Invalidator implements pCUESheetWatcher_Listener {
+
+		private final pCUESheetCache m_cache;
+		private final pCUEMediaIndex m_index;
+		private final pCUESidecarFinder m_finder;
+		private final pCUEExecutor m_executor;
+
+		/**
+		 * Constructs a new <code>pCUESheetWatcher_Invalidator</code> object, parsing the sheets on the default executor.
+		 * <p>
+		 * @param p_cache The cache of the parsed sheets.
+		 * @param p_index The index of the media files of the sheets.
+		 * @param p_finder The finder of the sheets stored next to media files.
+		 */
+		public pCUESheetWatcher_Invalidator(final pCUESheetCache p_cache, final pCUEMediaIndex p_index, final pCUESidecarFinder p_finder) {
+			this(p_cache, p_index, p_finder, pCUEExecutor.getDefaultInstance());
+		}
+
+		/**
+		 * Constructs a new <code>pCUESheetWatcher_Invalidator</code> object.
+		 * <p>
+		 * @param p_cache The cache of the parsed sheets.
+		 * @param p_index The index of the media files of the sheets.
+		 * @param p_finder The finder of the sheets stored next to media files.
+		 * @param p_executor The executor parsing the created and modified sheets.
+		 * @since 0.9.30
+		 */
+		public pCUESheetWatcher_Invalidator(final pCUESheetCache p_cache, final pCUEMediaIndex p_index, final pCUESidecarFinder p_finder, final pCUEExecutor p_executor) {
+			m_cache = p_cache;
+			m_index = p_index;
+			m_finder = p_finder;
+			m_executor = p_executor;
+		}
+
+		@Override
+		public void sheetChanged(final pCUESheetWatcher_Event p_event) {
+			final File i_file = p_event.getFile();
+			m_cache.invalidate(i_file);
+			if (pCUESheetWatcher_Change.MODIFIED!=p_event.getChange())
+				m_finder.invalidate(i_file.getParentFile());
+
+			if (pCUESheetWatcher_Change.DELETED==p_event.getChange()) {
+				m_index.remove(i_file);
+				final pCUESnapshotStore i_store = m_cache.getSnapshotStore();
+				if (null!=i_store)
+					i_store.remove(i_file);
+				return;
+			}
+
+			//*** PARSED AGAIN IN THE BACKGROUND: THE CACHE UPDATES THE INDEX AND THE SNAPSHOT
+			m_executor.submit(() -> m_cache.getFrozen(i_file)).whenComplete((p_sheet, ex) -> {
+				if (null!=ex && TRACE.isDebugEnabled())
+					TRACE.debug("Failed to read CUE Sheet file: ", i_file, ex);
+			});
+		}
+	}
+
+	/**************************************************************************/
+	/***  RUNTIME DATA  *******************************************************/
+	/**************************************************************************/
+
+	private static final pTraceImpl TRACE = pTraceImpl.getTrace(pCUESheetWatcher.class, TRACE_PREFIX);
+
+	/** The default instance of this object. */
+	private static final pCUESheetWatcher DEFAULT = new pCUESheetWatcher();
+
+	static {
+		DEFAULT.addListener(new pCUESheetWatcher_Invalidator(pCUESheetCache.getDefaultInstance(), pCUEMediaIndex.getDefaultInstance(), pCUESidecarFinder.getDefaultInstance()));
+	}
+
+	private final CopyOnWriteArrayList<pCUESheetWatcher_Listener> m_listeners = new CopyOnWriteArrayList<>();
+
+	/** The roots of the watched trees. Guarded by <code>this</code>. */
+	private final LinkedHashSet<Path> m_roots = new LinkedHashSet<>();
+
+	/** The known .cue files with their modification time and size. Guarded by <code>this</code>. */
+	private final HashMap<Path,long[]> m_sheets = new HashMap<>();
+
+	/** The watched directories by watch key. Guarded by <code>this</code>. */
+	private final HashMap<WatchKey,Path> m_keys = new HashMap<>();
+
+	/** The watch service, or <code>null</code> if the trees are listed periodically. Guarded by <code>this</code>. */
+	private WatchService m_service;
+
+	/** The thread of the watcher, or <code>null</code> if not started. Guarded by <code>this</code>. */
+	private Thread m_thread;
+
+	private volatile long m_poll_interval = DEFAULT_POLL_INTERVAL;
+	private volatile long m_delay = DEFAULT_DELAY;
+
+	/**************************************************************************/
+	/***  CONSTRUCTORS  *******************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Constructs a new <code>pCUESheetWatcher</code> object, without root nor listener.
+	 */
+	public pCUESheetWatcher() {
+		super();
+	}
+
+	/**************************************************************************/
+	/***  METHODS  ************************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Starts watching a directory tree.
+	 * <p>
+	 * The .cue files already present are recorded without being published. The thread of the watcher is started if needed.
+	 * <p>
+	 * The tree is listed without holding the lock of the watcher; a tree added while the watcher is closed is not watched.
+	 * <p>
+	 * @param p_root The root directory.
+	 */
+	public void addRoot(final File p_root) {
+		final Path i_root = p_root.toPath().toAbsolutePath().normalize();
+		final Thread i_thread;
+		synchronized(this) {
+			if (m_roots.contains(i_root))
+				return;
+			if (null==m_thread)
+				start();
+			i_thread = m_thread;
+		}
+
+		//0.9.30: a large tree must not block the other roots nor close()
+		final HashMap<Path,long[]> i_found = new HashMap<>();
+		scan(i_root, i_found);
+
+		synchronized(this) {
+			if (m_thread!=i_thread || !m_roots.add(i_root))
+				return;
+			for(Map.Entry<Path,long[]> i_sheet : i_found.entrySet())
+				m_sheets.putIfAbsent(i_sheet.getKey(), i_sheet.getValue());
+		}
+
+		if (TRACE.isDebugEnabled())
+			TRACE.debug("Watching CUE Sheet files: ", i_root, ": ", Integer.valueOf(i_found.size()));
+	}
+
+	/**
+	 * Stops watching a directory tree.
+	 * <p>
+	 * @param p_root The root directory.
+	 */
+	public synchronized void removeRoot(final File p_root) {
+		final Path i_root = p_root.toPath().toAbsolutePath().normalize();
+		if (!m_roots.remove(i_root))
+			return;
+
+		final Iterator<Map.Entry<WatchKey,Path>> i_keys = m_keys.entrySet().iterator();
+		while(i_keys.hasNext()) {
+			final Map.Entry<WatchKey,Path> i_key = i_keys.next();
+			if (i_key.getValue().startsWith(i_root) && !isWatched(i_key.getValue())) {
+				i_key.getKey().cancel();
+				i_keys.remove();
+			}
+		}
+		m_sheets.keySet().removeIf(p_path -> p_path.startsWith(i_root) && !isWatched(p_path));
+	}
+
+	/**
+	 * Checks if a path is in one of the watched trees.
+	 * Must be called while holding the lock of this object.
+	 */
+	private boolean isWatched(final Path p_path) {
+		for(Path i_root : m_roots)
+			if (p_path.startsWith(i_root))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Adds a listener of the changes.
+	 */
+	public void addListener(final pCUESheetWatcher_Listener p_listener) {
+		m_listeners.addIfAbsent(p_listener);
+	}
+
+	/**
+	 * Removes a listener of the changes.
+	 */
+	public void removeListener(final pCUESheetWatcher_Listener p_listener) {
+		m_listeners.remove(p_listener);
+	}
+
+	/**
+	 * Stops watching all the trees and stops the thread of the watcher.
+	 * <p>
+	 * The watcher can still be used afterwards: the thread is started again by {@link #addRoot(File)}.
+	 */
+	@Override
+	public void close() {
+		final Thread i_thread;
+		synchronized(this) {
+			i_thread = m_thread;
+			m_thread = null;
+			m_roots.clear();
+			m_sheets.clear();
+			stopService();
+		}
+
+		if (null!=i_thread) {
+			i_thread.interrupt();
+			try {
+				i_thread.join(m_poll_interval);
+			}
+			catch (final InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Creates the watch service and starts the thread of the watcher.
+	 * Must be called while holding the lock of this object.
+	 */
+	private void start() {
+		try {
+			m_service = FileSystems.getDefault().newWatchService();
+		}
+		catch (final IOException | UnsupportedOperationException ex) {
+			if (TRACE.isInfoEnabled())
+				TRACE.info("Cannot watch CUE Sheet files, listing them every ", Long.valueOf(m_poll_interval), " ms: ", ex);
+			m_service = null;
+		}
+
+		m_thread = new Thread(this::run, TRACE_PREFIX);
+		m_thread.setDaemon(true);
+		m_thread.start();
+	}
+
+	/**
+	 * Closes the watch service.
+	 * Must be called while holding the lock of this object.
+	 */
+	private void stopService() {
+		if (null!=m_service) {
+			try {
+				m_service.close();
+			}
+			catch (final IOException ex) {
+				//*** NOTHING TO DO
+			}
+			m_service = null;
+		}
+		m_keys.clear();
+	}
+
+	/**
+	 * The loop of the thread of the watcher.
+	 */
+	private void run() {
+		final Thread i_thread = Thread.currentThread();
+
+		while(true) {
+			final WatchService i_service;
+			synchronized(this) {
+				if (m_thread!=i_thread)
+					return;
+				i_service = m_service;
+			}
+
+			final LinkedHashMap<Path,pCUESheetWatcher_Change> i_changes = new LinkedHashMap<>();
+			try {
+				if (null==i_service) {
+					Thread.sleep(m_poll_interval);
+					final ArrayList<Path> i_roots;
+					synchronized(this) {
+						i_roots = new ArrayList<>(m_roots);
+					}
+					
+					//0.9.30: the trees are listed without the lock, so that addRoot() and close() are not blocked
+					for(Path i_root : i_roots) {
+						final HashMap<Path,long[]> i_found = new HashMap<>();
+						scan(i_root, i_found);
+						synchronized(this) {
+							if (m_thread!=i_thread)
+								return;
+							if (m_roots.contains(i_root))
+								compare(i_root, i_found, i_changes);
+						}
+					}
+				}
+				else {
+					//*** MERGE THE EVENTS RECEIVED DURING THE DELAY
+					final LinkedHashSet<Path> i_rescans = new LinkedHashSet<>();
+					WatchKey i_key = i_service.take();
+					for(int i=0 ; null!=i_key && i<MAX_KEYS ; i++) {
+						synchronized(this) {
+							events(i_key, i_changes, i_rescans);
+						}
+						i_key = i_service.poll(m_delay, TimeUnit.MILLISECONDS);
+					}
+					if (null!=i_key) {
+						synchronized(this) {
+							events(i_key, i_changes, i_rescans);
+						}
+					}
+					
+					//0.9.30: the new directories and the overflowed ones are listed without the lock, as the trees of the roots
+					for(Path i_dir : i_rescans) {
+						final HashMap<Path,long[]> i_found = new HashMap<>();
+						scan(i_dir, i_found);
+						synchronized(this) {
+							if (m_thread!=i_thread)
+								return;
+							if (isWatched(i_dir))
+								compare(i_dir, i_found, i_changes);
+						}
+					}
+				}
+			}
+			catch (final InterruptedException ex) {
+				return;
+			}
+			catch (final ClosedWatchServiceException ex) {
+				//*** CLOSED BY close() OR REPLACED BY THE PERIODIC LISTING
+				continue;
+			}
+
+			publish(i_changes);
+		}
+	}
+
+	/**
+	 * Handles the events of a watched directory.
+	 * Must be called while holding the lock of this object.
+	 * <p>
+	 * @param p_rescans The directories to list again once the lock is released: the new ones, and the ones whose events were lost.
+	 */
+	private void events(final WatchKey p_key, final Map<Path,pCUESheetWatcher_Change> p_changes, final Set<Path> p_rescans) {
+		final Path i_dir = m_keys.get(p_key);
+		if (null==i_dir) {
+			p_key.cancel();
+			return;
+		}
+
+		for(WatchEvent<?> i_event : p_key.pollEvents()) {
+			final WatchEvent.Kind<?> i_kind = i_event.kind();
+			if (StandardWatchEventKinds.OVERFLOW==i_kind) {
+				p_rescans.add(i_dir);
+				continue;
+			}
+
+			final Path i_path = i_dir.resolve((Path)i_event.context());
+			if (StandardWatchEventKinds.ENTRY_CREATE==i_kind && Files.isDirectory(i_path, LinkOption.NOFOLLOW_LINKS)) {
+				//*** A NEW DIRECTORY: WATCH IT AND PUBLISH THE SHEETS MOVED WITH IT
+				p_rescans.add(i_path);
+				continue;
+			}
+			if (!isSheet(i_path)) {
+				//*** MAYBE A DIRECTORY: ITS SHEETS ARE DELETED WITH IT
+				if (StandardWatchEventKinds.ENTRY_DELETE==i_kind)
+					deleted(i_path, p_changes);
+				continue;
+			}
+			refresh(i_path, StandardWatchEventKinds.ENTRY_MODIFY==i_kind, p_changes);
+		}
+
+		if (!p_key.reset())
+			m_keys.remove(p_key);
+	}
+
+	/**
+	 * Compares a .cue file with its known state.
+	 * Must be called while holding the lock of this object.
+	 * <p>
+	 * @param p_modified <code>true</code> if the file has been reported as written, even if its modification time and size did not change.
+	 */
+	private void refresh(final Path p_path, final boolean p_modified, final Map<Path,pCUESheetWatcher_Change> p_changes) {
+		final long[] i_state = state(p_path);
+		if (null==i_state) {
+			if (null!=m_sheets.remove(p_path))
+				change(p_changes, p_path, pCUESheetWatcher_Change.DELETED);
+			return;
+		}
+
+		final long[] i_old = m_sheets.put(p_path, i_state);
+		if (null==i_old)
+			change(p_changes, p_path, pCUESheetWatcher_Change.CREATED);
+		else if (p_modified || i_old[0]!=i_state[0] || i_old[1]!=i_state[1])
+			change(p_changes, p_path, pCUESheetWatcher_Change.MODIFIED);
+	}
+
+	/**
+	 * Publishes the deletion of the known .cue files of a deleted directory.
+	 * Must be called while holding the lock of this object.
+	 */
+	private void deleted(final Path p_dir, final Map<Path,pCUESheetWatcher_Change> p_changes) {
+		final Iterator<Path> i_sheets = m_sheets.keySet().iterator();
+		while(i_sheets.hasNext()) {
+			final Path i_path = i_sheets.next();
+			if (i_path.startsWith(p_dir)) {
+				i_sheets.remove();
+				change(p_changes, i_path, pCUESheetWatcher_Change.DELETED);
+			}
+		}
+	}
+
+	/**
+	 * Compares the .cue files found in a directory tree with their known state.
+	 * Must be called while holding the lock of this object.
+	 */
+	private void compare(final Path p_dir, final Map<Path,long[]> p_found, final Map<Path,pCUESheetWatcher_Change> p_changes) {
+		final Iterator<Map.Entry<Path,long[]>> i_sheets = m_sheets.entrySet().iterator();
+		while(i_sheets.hasNext()) {
+			final Map.Entry<Path,long[]> i_sheet = i_sheets.next();
+			if (i_sheet.getKey().startsWith(p_dir) && !p_found.containsKey(i_sheet.getKey())) {
+				i_sheets.remove();
+				change(p_changes, i_sheet.getKey(), pCUESheetWatcher_Change.DELETED);
+			}
+		}
+
+		for(Map.Entry<Path,long[]> i_sheet : p_found.entrySet()) {
+			final long[] i_old = m_sheets.put(i_sheet.getKey(), i_sheet.getValue());
+			if (null==i_old)
+				change(p_changes, i_sheet.getKey(), pCUESheetWatcher_Change.CREATED);
+			else if (i_old[0]!=i_sheet.getValue()[0] || i_old[1]!=i_sheet.getValue()[1])
+				change(p_changes, i_sheet.getKey(), pCUESheetWatcher_Change.MODIFIED);
+		}
+	}
+
+	/**
+	 * Lists the .cue files of a directory tree, and registers its directories to the watch service.
+	 * This method can be called without holding the lock of this object.
+	 */
+	private void scan(final Path p_dir, final Map<Path,long[]> p_found) {
+		try {
+			Files.walkFileTree(p_dir, new SimpleFileVisitor<Path>() {
+
+				@Override
+				public FileVisitResult preVisitDirectory(final Path p_path, final BasicFileAttributes p_attributes) {
+					register(p_path);
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFile(final Path p_path, final BasicFileAttributes p_attributes) {
+					if (p_attributes.isRegularFile() && isSheet(p_path))
+						p_found.put(p_path, new long[] { p_attributes.lastModifiedTime().toMillis(), p_attributes.size() });
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(final Path p_path, final IOException p_exception) {
+					if (TRACE.isDebugEnabled())
+						TRACE.debug("Failed to read: ", p_path, p_exception);
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+		catch (final IOException ex) {
+			if (TRACE.isDebugEnabled())
+				TRACE.debug("Failed to list directory: ", p_dir, ex);
+		}
+	}
+
+	/**
+	 * Registers a directory to the watch service, or falls back to the periodic listing if it cannot be registered.
+	 */
+	private synchronized void register(final Path p_dir) {
+		if (null==m_service)
+			return;
+
+		try {
+			m_keys.put(p_dir.register(m_service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), p_dir);
+		}
+		catch (final IOException | UnsupportedOperationException ex) {
+			if (TRACE.isInfoEnabled())
+				TRACE.info("Cannot watch directory ", p_dir, ", listing CUE Sheet files every ", Long.valueOf(m_poll_interval), " ms: ", ex);
+			stopService();
+		}
+	}
+
+	/**
+	 * Publishes the changes to the listeners.
+	 */
+	private void publish(final Map<Path,pCUESheetWatcher_Change> p_changes) {
+		for(Map.Entry<Path,pCUESheetWatcher_Change> i_change : p_changes.entrySet()) {
+			final pCUESheetWatcher_Event i_event = new pCUESheetWatcher_Event(i_change.getKey().toFile(), i_change.getValue());
+			if (TRACE.isDebugEnabled())
+				TRACE.debug("CUE Sheet file changed: ", i_event);
+
+			for(pCUESheetWatcher_Listener i_listener : m_listeners) {
+				try {
+					i_listener.sheetChanged(i_event);
+				}
+				catch (final RuntimeException ex) {
+					if (TRACE.isErrorEnabled())
+						TRACE.error("Failed to publish CUE Sheet change: ", i_event, ex);
+				}
+			}
+		}
+	}
+
+	/**************************************************************************/
+	/***  ACCESSOR METHODS  ***************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Sets the interval between two listings of the trees, when the directories cannot be watched (in milliseconds).
+	 */
+	public void setPollInterval(final long p_interval) {
+		m_poll_interval = p_interval;
+	}
+
+	/**
+	 * Sets the delay during which the events are merged (in milliseconds).
+	 */
+	public void setDelay(final long p_delay) {
+		m_delay = p_delay;
+	}
+
+	/**
+	 * Checks if the trees are listed periodically instead of being watched.
+	 */
+	public synchronized boolean isPolling() {
+		return null!=m_thread && null==m_service;
+	}
+
+	/**
+	 * Gets the number of known .cue files.
+	 */
+	public synchronized int size() {
+		return m_sheets.size();
+	}
+
+	/**************************************************************************/
+	/***  STATIC METHODS  *****************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Gets the default instance of this class, that invalidates the default cache, index and sidecar finder.
+	 * <p>
+	 * @return The default instance (this cannot be <code>null</code>).
+	 */
+	public static pCUESheetWatcher getDefaultInstance() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Merges a change of a file with the changes already found.
+	 */
+	private static void change(final Map<Path,pCUESheetWatcher_Change> p_changes, final Path p_path, final pCUESheetWatcher_Change p_change) {
+		final pCUESheetWatcher_Change i_old = p_changes.get(p_path);
+		if (pCUESheetWatcher_Change.CREATED==i_old && pCUESheetWatcher_Change.MODIFIED==p_change)
+			return;
+		if (pCUESheetWatcher_Change.CREATED==i_old && pCUESheetWatcher_Change.DELETED==p_change)
+			p_changes.remove(p_path);
+		else if (pCUESheetWatcher_Change.DELETED==i_old && pCUESheetWatcher_Change.CREATED==p_change)
+			p_changes.put(p_path, pCUESheetWatcher_Change.MODIFIED);
+		else
+			p_changes.put(p_path, p_change);
+	}
+
+	/**
+	 * Checks if a path has the extension of the cue sheet files.
+	 */
+	private static boolean isSheet(final Path p_path) {
+		final Path i_name = p_path.getFileName();
+		return null!=i_name && i_name.toString().toLowerCase(Locale.ROOT).endsWith(EXTENSION);
+	}
+
+	/**
+	 * Gets the modification time and the size of a file.
+	 * <p>
+	 * @return The state, or <code>null</code> if the file is not a regular file.
+	 */
+	private static long[] state(final Path p_path) {
+		try {
+			final BasicFileAttributes i_attributes = Files.readAttributes(p_path, BasicFileAttributes.class);
+			return i_attributes.isRegularFile()? new long[] { i_attributes.lastModifiedTime().toMillis(), i_attributes.size() } : null;
+		}
+		catch (final IOException ex) {
+			return null;
+		}
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/
@@ -0,0 +1,396 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.media.cue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import tv.genialist.fwrk.document.file.pCUESheetFileDocumentType;
+import tv.genialist.ptools.trace.pTraceImpl;
+
+/**
+ * The <code>pCUESheetWriter</code> class writes metadata changes into .cue files in the background.
+ * <p>
+ * The changes submitted for a file are kept for a short delay, during which the following changes of the same file
+ * are merged with them (the last value of a track property wins), then written at once with {@link pCUESheet#updateTracks(File, Map)}.
+ * <p>
+ * The tracks of the changes are checked when they are submitted, so that an unknown track does not fail the changes merged with it.
+ * If the merged writing fails all the same, the changes of each submission are written again separately: each submission succeeds or fails on its own.
+ * <p>
+ * The writings of a file are serialized by a lock striped on its canonical path, also taken by {@link pCUESheet#updateTracks(File, Map)}
+ * itself, so that concurrent changes of the same file are never lost.
+ * <p>
+ * <b>Example:</b>
+ * <dl>
+ * <dd><code>
+ * pCUESheetWriter.getDefaultInstance().submit(i_file, Collections.singletonMap("03", i_values));<br>
+ * ...<br>
+ * pCUESheetWriter.getDefaultInstance().close();<br>
+ * </code>
+ * </dl>
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ */
+public class pCUESheetWriter {
+
+	/**************************************************************************/
+	/***  DEFINITIONS  ********************************************************/
+	/**************************************************************************/
+
+	/** The prefix used in trace and log messages. */
+	public static final String TRACE_PREFIX = "CUESheetWriter";
+
+	/** The default delay during which the changes of a file are merged (in milliseconds). */
+	public static final long DEFAULT_DELAY = 200;
+
+	/** The number of background threads. */
+	private static final int THREADS = 2;
+
+	/** The number of locks the files are striped on (a power of 2). */
+	private static final int STRIPES = 64;
+
+	/**************************************************************************/
+	/***  SUB-CLASSES  ********************************************************/
+	/**************************************************************************/
+
+	/**
+	 * The changes of one submission.
+	 */
+	private static final class pCUESheetWriter_Submission {
+
+		private final LinkedHashMap<String,Map<String,Object>> m_edits;
+		private final CompletableFuture<Map<String,Set<String>>> m_future = new CompletableFuture<>();
+
+		pCUESheetWriter_Submission(final Map<String,? extends Map<String,Object>> p_edits) {
+			m_edits = new LinkedHashMap<>(p_edits.size()*4/3+1);
+			for(Map.Entry<String,? extends Map<String,Object>> i_edit : p_edits.entrySet())
+				m_edits.put(i_edit.getKey(), new LinkedHashMap<>(i_edit.getValue()));
+		}
+
+		/**
+		 * Completes the submission with the changed properties of its own tracks and values.
+		 */
+		void complete(final Map<String,Set<String>> p_result) {
+			final LinkedHashMap<String,Set<String>> i_result = new LinkedHashMap<>();
+			if (null!=p_result) {
+				for(Map.Entry<String,Map<String,Object>> i_edit : m_edits.entrySet()) {
+					final Set<String> i_changed = p_result.get(i_edit.getKey());
+					if (null==i_changed)
+						continue;
+					final HashSet<String> i_keys = new HashSet<>(i_edit.getValue().keySet());
+					i_keys.retainAll(i_changed);
+					if (!i_keys.isEmpty())
+						i_result.put(i_edit.getKey(), Collections.unmodifiableSet(i_keys));
+				}
+			}
+			m_future.complete(i_result);
+		}
+	}
+
+	/**
+	 * The changes of a file waiting to be written.
+	 */
+	private static final class pCUESheetWriter_Pending {
+
+		private final File m_file;
+		private final ArrayList<pCUESheetWriter_Submission> m_submissions = new ArrayList<>();
+		private ScheduledFuture<?> m_task;
+
+		pCUESheetWriter_Pending(final File p_file) {
+			m_file = p_file;
+		}
+
+		/**
+		 * Merges the changes of the submissions, in submission order.
+		 */
+		LinkedHashMap<String,Map<String,Object>> merge() {
+			final LinkedHashMap<String,Map<String,Object>> i_result = new LinkedHashMap<>();
+			for(pCUESheetWriter_Submission i_submission : m_submissions)
+				for(Map.Entry<String,Map<String,Object>> i_edit : i_submission.m_edits.entrySet())
+					i_result.computeIfAbsent(i_edit.getKey(), k -> new LinkedHashMap<>()).putAll(i_edit.getValue());
+			return i_result;
+		}
+	}
+
+	/**************************************************************************/
+	/***  RUNTIME DATA  *******************************************************/
+	/**************************************************************************/
+
+	private static final pTraceImpl TRACE = pTraceImpl.getTrace(pCUESheetWriter.class, TRACE_PREFIX);
+
+	/** The default instance of this object. */
+	private static final pCUESheetWriter DEFAULT = new pCUESheetWriter(DEFAULT_DELAY);
+
+	/** The locks serializing the writings of the files. */
+	private static final ReentrantLock[] LOCKS = new ReentrantLock[STRIPES];
+
+	static {
+		for(int i=0 ; i<STRIPES ; i++)
+			LOCKS[i] = new ReentrantLock();
+	}
+
+	/** The changes waiting to be written, by canonical path. Guarded by <code>this</code>. */
+	private final HashMap<String,pCUESheetWriter_Pending> m_pending = new HashMap<>();
+
+	/** The changes being written. Guarded by <code>this</code>. */
+	private final HashSet<pCUESheetWriter_Pending> m_writing = new HashSet<>();
+
+	/** The background threads, created on demand. Guarded by <code>this</code>. */
+	private ScheduledThreadPoolExecutor m_executor;
+
+	private long m_delay;
+
+	private long m_edits;
+	private long m_writes;
+
+	/**************************************************************************/
+	/***  CONSTRUCTORS  *******************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Constructs a new <code>pCUESheetWriter</code> object.
+	 * <p>
+	 * @param p_delay The delay during which the changes of a file are merged (in milliseconds).
+	 */
+	public pCUESheetWriter(final long p_delay) {
+		super();
+		m_delay = p_delay;
+	}
+
+	/**************************************************************************/
+	/***  METHODS  ************************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Submits metadata changes of tracks for writing.
+	 * <p>
+	 * The maps are copied, so the caller can reuse them.
+	 * The tracks are checked against the cached sheet of the file (see {@link pCUESheetCache#getFrozen(File)}).
+	 * <p>
+	 * @param p_file The .cue file.
+	 * @param p_edits The metadata values to change, by track identifier.
+	 * @return The completion of the writing, with the <code>MNAME</code> properties of this submission that have been changed
+	 * by track identifier (empty if no value changed). It fails if the changes of this submission cannot be written.
+	 * @throws IOException If the file cannot be read, or if a track cannot be found in it.
+	 * @see pCUESheet#updateTracks(File, Map)
+	 */
+	public CompletableFuture<Map<String,Set<String>>> submit(final File p_file, final Map<String,? extends Map<String,Object>> p_edits) throws IOException {
+		final String i_key = p_file.getCanonicalPath();
+
+		//*** AN UNKNOWN TRACK IS REJECTED HERE, SO THAT IT DOES NOT FAIL THE CHANGES MERGED WITH IT
+		if (pCUESheetFileDocumentType.getDefaultInstance().accept(p_file)) {
+			final pCUESheet i_sheet = pCUESheetCache.getDefaultInstance().getFrozen(p_file);
+			for(String i_track_id : p_edits.keySet())
+				if (null==i_sheet.getTrack(i_track_id))
+					throw new IOException("Cannot find CUE Sheet track: ".concat(String.valueOf(i_track_id)));
+		}
+
+		final pCUESheetWriter_Submission i_submission = new pCUESheetWriter_Submission(p_edits);
+		synchronized(this) {
+			pCUESheetWriter_Pending i_pending = m_pending.get(i_key);
+			if (null==i_pending) {
+				i_pending = new pCUESheetWriter_Pending(p_file);
+				m_pending.put(i_key, i_pending);
+
+				final pCUESheetWriter_Pending i_task = i_pending;
+				i_pending.m_task = executor().schedule(() -> write(i_key, i_task), m_delay, TimeUnit.MILLISECONDS);
+			}
+			else if (TRACE.isDebugEnabled()) {
+				TRACE.debug("Merging changes of CUE Sheet file: ", i_key);
+			}
+
+			i_pending.m_submissions.add(i_submission);
+			m_edits++;
+		}
+		return i_submission.m_future;
+	}
+
+	/**
+	 * Writes the changes of a file, unless they have been written already by {@link #flush()}.
+	 */
+	private void write(final String p_key, final pCUESheetWriter_Pending p_pending) {
+		synchronized(this) {
+			if (m_pending.get(p_key)!=p_pending)
+				return;
+			m_pending.remove(p_key);
+			m_writing.add(p_pending);
+		}
+
+		try {
+			final Map<String,Set<String>> i_result = pCUESheet.updateTracks(p_pending.m_file, p_pending.merge());
+			for(pCUESheetWriter_Submission i_submission : p_pending.m_submissions)
+				i_submission.complete(i_result);
+		}
+		catch (final IOException | RuntimeException ex) {
+			if (p_pending.m_submissions.size()==1) {
+				if (TRACE.isErrorEnabled())
+					TRACE.error("Failed to write data into CUE Sheet file: ", p_key, ex);
+				p_pending.m_submissions.get(0).m_future.completeExceptionally(ex);
+			}
+			else {
+				//*** EACH SUBMISSION SUCCEEDS OR FAILS ON ITS OWN
+				if (TRACE.isDebugEnabled())
+					TRACE.debug("Failed to write merged data into CUE Sheet file: ", p_key, ": writing each change separately...");
+				for(pCUESheetWriter_Submission i_submission : p_pending.m_submissions)
+					write(p_key, p_pending.m_file, i_submission);
+			}
+		}
+		finally {
+			synchronized(this) {
+				m_writing.remove(p_pending);
+				m_writes++;
+			}
+		}
+	}
+
+	/**
+	 * Writes the changes of one submission.
+	 */
+	private static void write(final String p_key, final File p_file, final pCUESheetWriter_Submission p_submission) {
+		try {
+			p_submission.complete(pCUESheet.updateTracks(p_file, p_submission.m_edits));
+		}
+		catch (final IOException | RuntimeException ex) {
+			if (TRACE.isErrorEnabled())
+				TRACE.error("Failed to write data into CUE Sheet file: ", p_key, ex);
+			p_submission.m_future.completeExceptionally(ex);
+		}
+	}
+
+	/**
+	 * Writes all the waiting changes on the calling thread, and waits for the writings in progress.
+	 */
+	public void flush() {
+		final ArrayList<Map.Entry<String,pCUESheetWriter_Pending>> i_pending;
+		final ArrayList<pCUESheetWriter_Pending> i_writing;
+		synchronized(this) {
+			i_pending = new ArrayList<>(m_pending.entrySet());
+			i_writing = new ArrayList<>(m_writing);
+		}
+
+		for(Map.Entry<String,pCUESheetWriter_Pending> i_entry : i_pending) {
+			i_entry.getValue().m_task.cancel(false);
+			write(i_entry.getKey(), i_entry.getValue());
+		}
+
+		for(pCUESheetWriter_Pending i_entry : i_writing) {
+			for(pCUESheetWriter_Submission i_submission : i_entry.m_submissions) {
+				try {
+					i_submission.m_future.join();
+				}
+				catch (final RuntimeException ex) {
+					//*** ALREADY TRACED
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes all the waiting changes and stops the background threads.
+	 * <p>
+	 * The writer can still be used afterwards: the threads are created again on demand.
+	 */
+	public void close() {
+		flush();
+
+		final ScheduledThreadPoolExecutor i_executor;
+		synchronized(this) {
+			i_executor = m_executor;
+			m_executor = null;
+		}
+		if (null!=i_executor)
+			i_executor.shutdown();
+	}
+
+	/**
+	 * Gets the background threads, creating them if needed.
+	 * Must be called while holding the lock of this object.
+	 */
+	private ScheduledThreadPoolExecutor executor() {
+		if (null==m_executor) {
+			m_executor = new ScheduledThreadPoolExecutor(THREADS, p_runnable -> {
+				final Thread i_thread = new Thread(p_runnable, TRACE_PREFIX);
+				i_thread.setDaemon(true);
+				return i_thread;
+			});
+			m_executor.setRemoveOnCancelPolicy(true);
+		}
+		return m_executor;
+	}
+
+	/**************************************************************************/
+	/***  ACCESSOR METHODS  ***************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Sets the delay during which the changes of a file are merged (in milliseconds).
+	 */
+	public synchronized void setDelay(final long p_delay) {
+		m_delay = p_delay;
+	}
+
+	/**
+	 * Gets the number of submitted changes.
+	 */
+	public synchronized long getEditCount() {
+		return m_edits;
+	}
+
+	/**
+	 * Gets the number of writings of files.
+	 */
+	public synchronized long getWriteCount() {
+		return m_writes;
+	}
+
+	/**************************************************************************/
+	/***  STATIC METHODS  *****************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Gets the default instance of this class.
+	 * <p>
+	 * @return The default instance (this cannot be <code>null</code>).
+	 */
+	public static pCUESheetWriter getDefaultInstance() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Gets the lock serializing the writings of a file.
+	 * <p>
+	 * @param p_file The .cue file.
+	 */
+	static ReentrantLock getLock(final File p_file) {
+		String i_key;
+		try {
+			i_key = p_file.getCanonicalPath();
+		}
+		catch (final IOException ex) {
+			i_key = p_file.getAbsolutePath();
+		}
+		final int h = i_key.hashCode();
+		return LOCKS[(h ^ (h>>>16)) & (STRIPES-1)];
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/
@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.media.cue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import tv.genialist.ptools.trace.pTraceImpl;
+
+/**
+ * The <code>pCUESidecarFinder</code> class finds the .cue files stored next to media files.
+ * <p>
+ * Instead of probing the file system for every media file, the names of the .cue files of a directory are listed once
+ * and kept in a snapshot, so that a lookup is a hash probe. A snapshot older than the refresh timeout is listed again
+ * only if the modification time of its directory changed.
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ */
+public class pCUESidecarFinder {
+
+	/**************************************************************************/
+	/***  DEFINITIONS  ********************************************************/
+	/**************************************************************************/
+
+	/** The prefix used in trace and log messages. */
+	public static final String TRACE_PREFIX = "CUESidecarFinder";
+
+	/** The default refresh timeout of the directory snapshots (in milliseconds). */
+	public static final long DEFAULT_TIMEOUT = 5000L;
+
+	/** The default maximum number of directory snapshots. */
+	public static final int DEFAULT_MAX_DIRECTORIES = 1024;
+
+	/** The extension of the cue sheet files. */
+	private static final String EXTENSION = ".cue";
+
+	/** <code>true</code> if the file names are compared without case (Windows). */
+	private static final boolean IGNORE_CASE = File.separatorChar=='\\';
+
+	/**************************************************************************/
+	/***  SUB-CLASSES  ********************************************************/
+	/**************************************************************************/
+
+	/**
+	 * The names of the .cue files of a directory.
+	 */
+	private static final class pCUESidecarFinder_Snapshot {
+
+		private final Set<String> m_names;
+		private final long m_modified;
+		private volatile long m_checked;
+
+		pCUESidecarFinder_Snapshot(final Set<String> p_names, final long p_modified, final long p_checked) {
+			m_names = p_names;
+			m_modified = p_modified;
+			m_checked = p_checked;
+		}
+	}
+
+	/**************************************************************************/
+	/***  RUNTIME DATA  *******************************************************/
+	/**************************************************************************/
+
+	private static final pTraceImpl TRACE = pTraceImpl.getTrace(pCUESidecarFinder.class, TRACE_PREFIX);
+
+	private static final pCUEMetrics.pCUEMetrics_Timer LOOKUP = pCUEMetrics.getDefaultInstance().getTimer(pCUEMetrics.SIDECAR_LOOKUP);
+
+	/** The default instance of this object. */
+	private static final pCUESidecarFinder DEFAULT = new pCUESidecarFinder(DEFAULT_TIMEOUT, DEFAULT_MAX_DIRECTORIES);
+
+	/** The snapshots by directory path, in access order. Guarded by <code>this</code>. */
+	private final LinkedHashMap<String,pCUESidecarFinder_Snapshot> m_snapshots;
+
+	private volatile long m_timeout;
+
+	/**************************************************************************/
+	/***  CONSTRUCTORS  *******************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Constructs a new <code>pCUESidecarFinder</code> object.
+	 * <p>
+	 * @param p_timeout The refresh timeout of the directory snapshots (in milliseconds).
+	 * @param p_max_directories The maximum number of directory snapshots.
+	 */
+	public pCUESidecarFinder(final long p_timeout, final int p_max_directories) {
+		super();
+		m_timeout = p_timeout;
+		m_snapshots = new LinkedHashMap<String,pCUESidecarFinder_Snapshot>(64, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String,pCUESidecarFinder_Snapshot> p_eldest) {
+				return size()>p_max_directories;
+			}
+		};
+	}
+
+	/**************************************************************************/
+	/***  METHODS  ************************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Finds a .cue file in a directory.
+	 * <p>
+	 * @param p_directory The directory.
+	 * @param p_name The name of the .cue file (for example the base name of a media file followed by ".cue").
+	 * @return The readable .cue file, or <code>null</code> if not found.
+	 */
+	public File find(final File p_directory, final String p_name) {
+		if (null==p_directory)
+			return null;
+
+		final pCUEEvents.pCUEEvents_SidecarLookup i_event = new pCUEEvents.pCUEEvents_SidecarLookup();
+		i_event.begin();
+		final long i_start = System.nanoTime();
+		File i_result = null;
+		try {
+			i_result = lookup(p_directory, p_name);
+			return i_result;
+		}
+		finally {
+			LOOKUP.record(System.nanoTime() - i_start);
+			i_event.end();
+			if (i_event.shouldCommit()) {
+				i_event.directory = p_directory.getPath();
+				i_event.name = p_name;
+				i_event.found = null!=i_result;
+				i_event.commit();
+			}
+		}
+	}
+
+	/**
+	 * Finds a .cue file in a directory, from the snapshot of the directory.
+	 */
+	private File lookup(final File p_directory, final String p_name) {
+		final pCUESidecarFinder_Snapshot i_snapshot = getSnapshot(p_directory);
+		if (null==i_snapshot) {
+			//*** THE DIRECTORY CANNOT BE LISTED: PROBE THE FILE
+			final File i_file = new File(p_directory, p_name);
+			return (i_file.isFile() && i_file.canRead())? i_file : null;
+		}
+
+		if (!i_snapshot.m_names.contains(normalize(p_name)))
+			return null;
+
+		final File i_file = new File(p_directory, p_name);
+		return i_file.canRead()? i_file : null;
+	}
+
+	/**
+	 * Gets the up-to-date snapshot of a directory.
+	 * <p>
+	 * @return The snapshot, or <code>null</code> if the directory cannot be listed.
+	 */
+	private pCUESidecarFinder_Snapshot getSnapshot(final File p_directory) {
+		final String i_key = p_directory.getPath();
+		final long i_now = System.currentTimeMillis();
+
+		final pCUESidecarFinder_Snapshot i_snapshot;
+		synchronized(this) {
+			i_snapshot = m_snapshots.get(i_key);
+		}
+		if (null!=i_snapshot) {
+			if (i_now-i_snapshot.m_checked<m_timeout)
+				return i_snapshot;
+			if (p_directory.lastModified()==i_snapshot.m_modified) {
+				i_snapshot.m_checked = i_now;
+				return i_snapshot;
+			}
+		}
+
+		final pCUESidecarFinder_Snapshot i_result = list(p_directory, i_now);
+		synchronized(this) {
+			if (null!=i_result)
+				m_snapshots.put(i_key, i_result);
+			else
+				m_snapshots.remove(i_key);
+		}
+		return i_result;
+	}
+
+	/**
+	 * Lists the .cue files of a directory.
+	 * <p>
+	 * @return The snapshot, or <code>null</code> if the directory cannot be listed.
+	 */
+	private static pCUESidecarFinder_Snapshot list(final File p_directory, final long p_now) {
+		//*** READ THE MODIFICATION TIME FIRST, SO THAT A CHANGE DURING THE LISTING IS NOT MISSED
+		final long i_modified = p_directory.lastModified();
+
+		Set<String> i_names = null;
+		try (DirectoryStream<Path> i_stream = Files.newDirectoryStream(p_directory.toPath())) {
+			for(Path i_path : i_stream) {
+				final String i_name = i_path.getFileName().toString();
+				if (!i_name.regionMatches(IGNORE_CASE, i_name.length()-EXTENSION.length(), EXTENSION, 0, EXTENSION.length()))
+					continue;
+				if (!Files.isRegularFile(i_path))
+					continue;
+				if (null==i_names)
+					i_names = new HashSet<>(4);
+				i_names.add(normalize(i_name));
+			}
+		}
+		catch (final IOException | SecurityException ex) {
+			if (TRACE.isDebugEnabled())
+				TRACE.debug("Failed to list directory: ", p_directory.getAbsolutePath(), ex);
+			return null;
+		}
+
+		return new pCUESidecarFinder_Snapshot((null!=i_names)? i_names : Collections.<String>emptySet(), i_modified, p_now);
+	}
+
+	/**
+	 * Removes the snapshot of a directory, so that it is listed again by the next lookup.
+	 * <p>
+	 * @param p_directory The directory.
+	 */
+	public synchronized void invalidate(final File p_directory) {
+		m_snapshots.remove(p_directory.getPath());
+	}
+
+	/**
+	 * Removes all the directory snapshots.
+	 */
+	public synchronized void clear() {
+		m_snapshots.clear();
+	}
+
+	/**************************************************************************/
+	/***  ACCESSOR METHODS  ***************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Sets the refresh timeout of the directory snapshots (in milliseconds).
+	 */
+	public void setTimeout(final long p_timeout) {
+		m_timeout = p_timeout;
+	}
+
+	/**************************************************************************/
+	/***  STATIC METHODS  *****************************************************/
+	/**************************************************************************/
+
+	private static String normalize(final String p_name) {
+		return IGNORE_CASE? p_name.toLowerCase(Locale.ROOT) : p_name;
+	}
+
+	/**
+	 * Gets a default instance of this class.
+	 * <p>
+	 * @return The default instance (this cannot be <code>null</code>).
+	 */
+	public static pCUESidecarFinder getDefaultInstance() {
+		return DEFAULT;
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/
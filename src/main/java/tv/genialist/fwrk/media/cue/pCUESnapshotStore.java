@@ -0,0 +1,504 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.media.cue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+import tv.genialist.fwrk.media.pMediaUtil;
+import tv.genialist.fwrk.media.pMetadata;
+import tv.genialist.ptools.trace.pTraceImpl;
+
+/**
+ * The <code>pCUESnapshotStore</code> class keeps parsed cue sheets in a binary file, so that they survive a restart.
+ * <p>
+ * The store is one file, read into memory when it is opened, that holds for each .cue file its last modification time, its size,
+ * a CRC-32C of its content and the parsed sheet. Opening the store only reads the headers of the entries: a sheet is decoded
+ * when it is requested. A sheet is parsed again from the .cue file if its size or content changed (a file whose modification time
+ * changed but whose content did not is only read to compute its checksum).
+ * <p>
+ * The sheets parsed since the store was opened are kept in memory until {@link #save()}, which writes a new file next to the store
+ * and replaces it atomically. The store file is not kept open nor mapped, so that it can be replaced on all the platforms.
+ * A store file of another version is ignored, and written again by {@link #save()}.
+ * <p>
+ * <b>Example:</b>
+ * <dl>
+ * <dd><code>
+ * pCUESheetCache.getDefaultInstance().setSnapshotStore(pCUESnapshotStore.open(i_path));<br>
+ * ...<br>
+ * pCUESheetCache.getDefaultInstance().getSnapshotStore().save();<br>
+ * </code>
+ * </dl>
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ * @see pCUESheetCache#setSnapshotStore(pCUESnapshotStore)
+ */
+public class pCUESnapshotStore {
+
+	/**************************************************************************/
+	/***  DEFINITIONS  ********************************************************/
+	/**************************************************************************/
+
+	/** The prefix used in trace and log messages. */
+	public static final String TRACE_PREFIX = "CUESnapshotStore";
+
+	/** The version of the binary format, changed whenever the format changes. */
+	public static final int VERSION = 1;
+
+	/** The first bytes of a store file ("CUES"). */
+	private static final int MAGIC = 0x43554553;
+
+	/** The maximum length of a string in the store (in bytes), to detect invalid files. */
+	private static final int MAX_STRING = 1024*1024;
+
+	/**************************************************************************/
+	/***  SUB-CLASSES  ********************************************************/
+	/**************************************************************************/
+
+	/**
+	 * A sheet of the store, either in the store file or parsed since the store was opened.
+	 */
+	private static final class pCUESnapshotStore_Entry {
+
+		private final long m_modified;
+		private final long m_length;
+		private final long m_hash;
+		/** The content of the store file, or <code>null</code> if the sheet is in {@link #m_data}. */
+		private final ByteBuffer m_buffer;
+		private final int m_offset;
+		private final int m_size;
+		/** The binary sheet, or <code>null</code> if it is in the store file. */
+		private final byte[] m_data;
+
+		pCUESnapshotStore_Entry(final long p_modified, final long p_length, final long p_hash, final ByteBuffer p_buffer, final int p_offset, final int p_size, final byte[] p_data) {
+			m_modified = p_modified;
+			m_length = p_length;
+			m_hash = p_hash;
+			m_buffer = p_buffer;
+			m_offset = p_offset;
+			m_size = p_size;
+			m_data = p_data;
+		}
+
+		/**
+		 * Gets the binary sheet, without copy.
+		 */
+		ByteBuffer data() {
+			if (null!=m_data)
+				return ByteBuffer.wrap(m_data);
+
+			final ByteBuffer i_data = m_buffer.duplicate();
+			i_data.position(m_offset).limit(m_offset+m_size);
+			return i_data.slice();
+		}
+	}
+
+	/**
+	 * An input stream reading a buffer from its position to its limit.
+	 */
+	private static final class pCUESnapshotStore_Input extends InputStream {
+
+		private final ByteBuffer m_buffer;
+
+		pCUESnapshotStore_Input(final ByteBuffer p_buffer) {
+			m_buffer = p_buffer;
+		}
+
+		@Override
+		public int read() {
+			return m_buffer.hasRemaining()? m_buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(final byte[] p_bytes, final int p_offset, final int p_length) {
+			if (!m_buffer.hasRemaining())
+				return -1;
+			final int i_length = Math.min(p_length, m_buffer.remaining());
+			m_buffer.get(p_bytes, p_offset, i_length);
+			return i_length;
+		}
+	}
+
+	/**************************************************************************/
+	/***  RUNTIME DATA  *******************************************************/
+	/**************************************************************************/
+
+	private static final pTraceImpl TRACE = pTraceImpl.getTrace(pCUESnapshotStore.class, TRACE_PREFIX);
+
+	/** The store file. */
+	private final Path m_path;
+
+	/** The entries by canonical path of the .cue files. Guarded by <code>this</code>. */
+	private final HashMap<String,pCUESnapshotStore_Entry> m_entries = new HashMap<>();
+
+	/** <code>true</code> if the entries changed since the store file was read or written. Guarded by <code>this</code>. */
+	private boolean m_changed;
+
+	private long m_hits;
+	private long m_parses;
+
+	/**************************************************************************/
+	/***  CONSTRUCTORS  *******************************************************/
+	/**************************************************************************/
+
+	private pCUESnapshotStore(final Path p_path) {
+		super();
+		m_path = p_path;
+	}
+
+	/**************************************************************************/
+	/***  METHODS  ************************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Reads the store file and the headers of its entries.
+	 * Must be called while holding the lock of this object.
+	 */
+	private void read() throws IOException {
+		m_entries.clear();
+
+		//0.9.30: read into the heap rather than mapped, as a mapped file cannot be replaced on Windows until the mapping is collected
+		final ByteBuffer i_buffer;
+		try {
+			i_buffer = ByteBuffer.wrap(Files.readAllBytes(m_path));
+		}
+		catch (final NoSuchFileException ex) {
+			return;
+		}
+
+		try {
+			final ByteBuffer i_input = i_buffer.duplicate();
+			final DataInputStream i_in = new DataInputStream(new pCUESnapshotStore_Input(i_input));
+			if (i_in.readInt()!=MAGIC || i_in.readInt()!=VERSION) {
+				if (TRACE.isInfoEnabled())
+					TRACE.info("Ignoring CUE Sheet snapshots of another version: ", m_path);
+				return;
+			}
+
+			final int i_count = i_in.readInt();
+			for(int i=0 ; i<i_count ; i++) {
+				final int i_end = i_in.readInt() + i_input.position();
+				final String i_key = readString(i_in);
+				final long i_modified = i_in.readLong();
+				final long i_length = i_in.readLong();
+				final long i_hash = i_in.readLong();
+				final int i_offset = i_input.position();
+
+				m_entries.put(i_key, new pCUESnapshotStore_Entry(i_modified, i_length, i_hash, i_buffer, i_offset, i_end-i_offset, null));
+				i_input.position(i_end);
+			}
+		}
+		catch (final IOException | RuntimeException ex) {
+			if (TRACE.isErrorEnabled())
+				TRACE.error("Ignoring invalid CUE Sheet snapshots: ", m_path, ex);
+			m_entries.clear();
+		}
+	}
+
+	/**
+	 * Gets a cue sheet from its snapshot, or parses the .cue file if the snapshot is missing or out of date.
+	 * <p>
+	 * @param p_file The .cue file.
+	 * @param p_modified The last modification time of the file.
+	 * @param p_length The size of the file.
+	 * @return The sheet (cannot be <code>null</code>).
+	 * @throws IOException If the file reading or parsing failed.
+	 */
+	public pCUESheet load(final File p_file, final long p_modified, final long p_length) throws IOException {
+		return load(p_file, p_file.getCanonicalPath(), p_modified, p_length);
+	}
+
+	/**
+	 * Gets a cue sheet from its snapshot, or parses the .cue file if the snapshot is missing or out of date.
+	 * <p>
+	 * @param p_key The canonical path of the file.
+	 */
+	pCUESheet load(final File p_file, final String p_key, final long p_modified, final long p_length) throws IOException {
+		final pCUESnapshotStore_Entry i_entry;
+		synchronized(this) {
+			i_entry = m_entries.get(p_key);
+		}
+
+		if (null!=i_entry && i_entry.m_modified==p_modified && i_entry.m_length==p_length) {
+			final pCUESheet i_sheet = decode(p_key, i_entry);
+			if (null!=i_sheet)
+				return i_sheet;
+		}
+
+		final Path i_path = p_file.toPath();
+		final ByteBuffer i_bytes;
+		try (FileChannel i_channel = FileChannel.open(i_path, StandardOpenOption.READ)) {
+			i_bytes = pCUEParser.read(i_channel, i_path);
+		}
+		final CRC32C i_crc = new CRC32C();
+		i_crc.update(i_bytes.duplicate());
+		final long i_hash = i_crc.getValue();
+
+		//*** SAME CONTENT WITH ANOTHER MODIFICATION TIME
+		if (null!=i_entry && i_entry.m_length==i_bytes.remaining() && i_entry.m_hash==i_hash) {
+			final pCUESheet i_sheet = decode(p_key, i_entry);
+			if (null!=i_sheet) {
+				put(p_key, new pCUESnapshotStore_Entry(p_modified, p_length, i_hash, i_entry.m_buffer, i_entry.m_offset, i_entry.m_size, i_entry.m_data));
+				return i_sheet;
+			}
+		}
+
+		final pCUESheet i_sheet = new pCUESheet(i_bytes, -1);
+		final ByteArrayOutputStream i_data = new ByteArrayOutputStream(256 + 64*i_sheet.getTrackCount());
+		i_sheet.writeSnapshot(new DataOutputStream(i_data));
+		put(p_key, new pCUESnapshotStore_Entry(p_modified, p_length, i_hash, null, 0, 0, i_data.toByteArray()));
+
+		synchronized(this) {
+			m_parses++;
+		}
+		return i_sheet;
+	}
+
+	/**
+	 * Decodes the sheet of an entry.
+	 * <p>
+	 * @return The sheet, or <code>null</code> if the entry is not valid.
+	 */
+	private pCUESheet decode(final String p_key, final pCUESnapshotStore_Entry p_entry) {
+		try {
+			final pCUESheet i_sheet = pCUESheet.readSnapshot(new DataInputStream(new pCUESnapshotStore_Input(p_entry.data())), -1);
+			synchronized(this) {
+				m_hits++;
+			}
+			return i_sheet;
+		}
+		catch (final IOException | RuntimeException ex) {
+			if (TRACE.isErrorEnabled())
+				TRACE.error("Ignoring invalid CUE Sheet snapshot: ", p_key, ex);
+			return null;
+		}
+	}
+
+	private synchronized void put(final String p_key, final pCUESnapshotStore_Entry p_entry) {
+		m_entries.put(p_key, p_entry);
+		m_changed = true;
+	}
+
+	/**
+	 * Removes the snapshot of a .cue file.
+	 * <p>
+	 * @param p_file The .cue file.
+	 */
+	public void remove(final File p_file) {
+		try {
+			remove(p_file.getCanonicalPath());
+		}
+		catch (final IOException ex) {
+			remove(p_file.getAbsolutePath());
+		}
+	}
+
+	synchronized void remove(final String p_key) {
+		if (null!=m_entries.remove(p_key))
+			m_changed = true;
+	}
+
+	/**
+	 * Writes the store file, if the snapshots changed since it was read or written.
+	 * <p>
+	 * The file is written next to the store file, then moved over it.
+	 * The missing directories and the file are readable by their owner only, on file systems supporting POSIX permissions.
+	 * <p>
+	 * @throws IOException If the writing failed: the store file is left unchanged.
+	 */
+	public synchronized void save() throws IOException {
+		if (!m_changed)
+			return;
+
+		//0.9.30: not readable by the other users
+		final Path i_dir = m_path.toAbsolutePath().getParent();
+		final boolean i_posix = i_dir.getFileSystem().supportedFileAttributeViews().contains("posix");
+		if (!Files.isDirectory(i_dir)) {
+			if (i_posix)
+				Files.createDirectories(i_dir, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+			else
+				Files.createDirectories(i_dir);
+		}
+		final Path i_temp = i_posix? 
+			Files.createTempFile(i_dir, m_path.getFileName().toString(), ".tmp", PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"))) :
+			Files.createTempFile(i_dir, m_path.getFileName().toString(), ".tmp");
+		boolean i_done = false;
+		try {
+			try (FileChannel i_out = FileChannel.open(i_temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				final ByteArrayOutputStream i_header = new ByteArrayOutputStream(256);
+				final DataOutputStream i_data = new DataOutputStream(i_header);
+				i_data.writeInt(MAGIC);
+				i_data.writeInt(VERSION);
+				i_data.writeInt(m_entries.size());
+				write(i_out, ByteBuffer.wrap(i_header.toByteArray()));
+
+				for(Map.Entry<String,pCUESnapshotStore_Entry> i_item : m_entries.entrySet()) {
+					final pCUESnapshotStore_Entry i_entry = i_item.getValue();
+					final ByteBuffer i_sheet = i_entry.data();
+
+					i_header.reset();
+					writeString(i_data, i_item.getKey());
+					i_data.writeLong(i_entry.m_modified);
+					i_data.writeLong(i_entry.m_length);
+					i_data.writeLong(i_entry.m_hash);
+
+					final ByteBuffer i_size = ByteBuffer.allocate(4).putInt(i_header.size() + i_sheet.remaining());
+					i_size.flip();
+					write(i_out, i_size);
+					write(i_out, ByteBuffer.wrap(i_header.toByteArray()));
+					write(i_out, i_sheet);
+				}
+				i_out.force(true);
+			}
+
+			try {
+				Files.move(i_temp, m_path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch (final AtomicMoveNotSupportedException ex) {
+				Files.move(i_temp, m_path, StandardCopyOption.REPLACE_EXISTING);
+			}
+			i_done = true;
+		}
+		finally {
+			if (!i_done)
+				Files.deleteIfExists(i_temp);
+		}
+
+		if (TRACE.isDebugEnabled())
+			TRACE.debug("Saved CUE Sheet snapshots: ", m_path, ": ", Integer.valueOf(m_entries.size()));
+
+		//*** THE SHEETS ARE NOW READ FROM THE NEW FILE
+		read();
+		m_changed = false;
+	}
+
+	/**************************************************************************/
+	/***  ACCESSOR METHODS  ***************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Gets the store file.
+	 */
+	public Path getPath() {
+		return m_path;
+	}
+
+	/**
+	 * Gets the number of sheets in the store.
+	 */
+	public synchronized int size() {
+		return m_entries.size();
+	}
+
+	/**
+	 * Gets the number of sheets read from their snapshots.
+	 */
+	public synchronized long getHitCount() {
+		return m_hits;
+	}
+
+	/**
+	 * Gets the number of sheets parsed from their .cue files.
+	 */
+	public synchronized long getParseCount() {
+		return m_parses;
+	}
+
+	/**************************************************************************/
+	/***  STATIC METHODS  *****************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Opens a store.
+	 * <p>
+	 * @param p_path The store file. If it does not exist, the store is empty and the file is created by {@link #save()}.
+	 * @return The store (cannot be <code>null</code>).
+	 * @throws IOException If the store file cannot be read.
+	 */
+	public static pCUESnapshotStore open(final Path p_path) throws IOException {
+		final pCUESnapshotStore i_store = new pCUESnapshotStore(p_path);
+		synchronized(i_store) {
+			i_store.read();
+		}
+		return i_store;
+	}
+
+	/**
+	 * Writes a whole buffer into a channel.
+	 */
+	private static void write(final FileChannel p_out, final ByteBuffer p_buffer) throws IOException {
+		while(p_buffer.hasRemaining())
+			p_out.write(p_buffer);
+	}
+
+	/**
+	 * Writes a string, or <code>null</code>, in UTF-8 preceded by its length.
+	 */
+	static void writeString(final DataOutput p_out, final String p_value) throws IOException {
+		if (null==p_value) {
+			p_out.writeInt(-1);
+			return;
+		}
+		final byte[] i_bytes = p_value.getBytes(StandardCharsets.UTF_8);
+		p_out.writeInt(i_bytes.length);
+		p_out.write(i_bytes);
+	}
+
+	/**
+	 * Reads a string written by {@link #writeString(DataOutput, String)}.
+	 */
+	static String readString(final DataInput p_in) throws IOException {
+		final int i_length = p_in.readInt();
+		if (i_length<0)
+			return null;
+		if (i_length>MAX_STRING)
+			throw new IOException("Invalid string length: " + i_length);
+		final byte[] i_bytes = new byte[i_length];
+		p_in.readFully(i_bytes);
+		return new String(i_bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads meta-data written as a count followed by keys and values, sharing the keys and the values but the titles through the {@link pCUEStringPool}.
+	 * <p>
+	 * @param p_in The source.
+	 * @param p_metadata The meta-data where the values are put.
+	 */
+	static void readMetadata(final DataInput p_in, final pMetadata p_metadata) throws IOException {
+		final pCUEStringPool i_pool = pCUEStringPool.getDefaultInstance();
+		final int i_count = p_in.readUnsignedByte();
+		for(int i=0 ; i<i_count ; i++) {
+			final String i_key = i_pool.intern(readString(p_in));
+			final String i_value = readString(p_in);
+			p_metadata.put(i_key, pMediaUtil.MNAME_TITLE.equals(i_key)? i_value : i_pool.intern(i_value));
+		}
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/
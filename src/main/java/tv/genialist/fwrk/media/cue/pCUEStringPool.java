@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.media.cue;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import tv.genialist.fwrk.media.cue.pCUEMetrics.pCUEMetrics_Counter;
+
+/**
+ * The <code>pCUEStringPool</code> class shares the equal strings of the cue sheets of a library: performers, genres, dates and media file names.
+ * <p>
+ * The pool is a fixed array of slots, indexed by the hash code of the strings, so that its size is bounded and its lookups need no lock.
+ * A string is kept only through a weak reference: the pool never retains a string that no sheet or document uses anymore.
+ * When two strings compete for the same slots, the last one replaces the other: the pool may miss a duplicate, but always returns an equal string.
+ * <p>
+ * The hits and the misses are counted as {@link pCUEMetrics#INTERN_HIT} and {@link pCUEMetrics#INTERN_MISS} for the default instance.
+ * <p>
+ * <b>Example:</b>
+ * <dl>
+ * <dd><code>
+ * final String i_artist = pCUEStringPool.getDefaultInstance().intern(i_value);<br>
+ * </code>
+ * </dl>
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ * @see pCUEParser
+ */
+public class pCUEStringPool {
+
+	/**************************************************************************/
+	/***  DEFINITIONS  ********************************************************/
+	/**************************************************************************/
+
+	/** The default number of slots. */
+	public static final int DEFAULT_CAPACITY = 16*1024;
+
+	/** The length from which strings are not pooled: long values are seldom shared. */
+	public static final int MAX_LENGTH = 256;
+
+	/**************************************************************************/
+	/***  RUNTIME DATA  *******************************************************/
+	/**************************************************************************/
+
+	/** The default instance of this object. */
+	private static final pCUEStringPool DEFAULT = new pCUEStringPool(DEFAULT_CAPACITY,
+		pCUEMetrics.getDefaultInstance().getCounter(pCUEMetrics.INTERN_HIT), pCUEMetrics.getDefaultInstance().getCounter(pCUEMetrics.INTERN_MISS));
+
+	/** The slots: a power of two. */
+	private final AtomicReferenceArray<WeakReference<String>> m_slots;
+
+	/** The mask of the slot indexes. */
+	private final int m_mask;
+
+	private final pCUEMetrics_Counter m_hits;
+	private final pCUEMetrics_Counter m_misses;
+
+	/**************************************************************************/
+	/***  CONSTRUCTORS  *******************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Constructs a new empty <code>pCUEStringPool</code> object.
+	 * <p>
+	 * @param p_capacity The number of slots, rounded up to a power of two.
+	 */
+	public pCUEStringPool(final int p_capacity) {
+		this(p_capacity, new pCUEMetrics_Counter(), new pCUEMetrics_Counter());
+	}
+
+	private pCUEStringPool(final int p_capacity, final pCUEMetrics_Counter p_hits, final pCUEMetrics_Counter p_misses) {
+		super();
+		final int i_capacity = (p_capacity<=2)? 2 : Integer.highestOneBit(p_capacity-1)<<1;
+		m_slots = new AtomicReferenceArray<>(i_capacity);
+		m_mask = i_capacity-1;
+		m_hits = p_hits;
+		m_misses = p_misses;
+	}
+
+	/**************************************************************************/
+	/***  METHODS  ************************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Gets the pooled string equal to a string, adding it to the pool if needed.
+	 * <p>
+	 * @param p_value The string (can be <code>null</code>).
+	 * @return The pooled string, or the string itself if it is not pooled (<code>null</code> if <code>null</code>).
+	 */
+	public String intern(final String p_value) {
+		if (null==p_value || p_value.length()>MAX_LENGTH)
+			return p_value;
+		if (p_value.isEmpty())
+			return "";
+
+		//*** TWO SLOTS BY STRING, SO THAT A COLLISION DOES NOT EVICT A SHARED STRING AT ONCE
+		final int i_hash = p_value.hashCode();
+		final int i_first = (i_hash ^ (i_hash>>>16)) & m_mask;
+		final int i_second = (i_first+1) & m_mask;
+
+		final WeakReference<String> i_ref1 = m_slots.get(i_first);
+		final String i_value1 = (null!=i_ref1)? i_ref1.get() : null;
+		if (p_value.equals(i_value1)) {
+			m_hits.increment();
+			return i_value1;
+		}
+		final WeakReference<String> i_ref2 = m_slots.get(i_second);
+		final String i_value2 = (null!=i_ref2)? i_ref2.get() : null;
+		if (p_value.equals(i_value2)) {
+			m_hits.increment();
+			return i_value2;
+		}
+
+		//*** THE FREE SLOT, OTHERWISE THE FIRST ONE
+		m_misses.increment();
+		m_slots.set((null==i_value1 || null!=i_value2)? i_first : i_second, new WeakReference<>(p_value));
+		return p_value;
+	}
+
+	/**
+	 * Removes all the strings of the pool.
+	 */
+	public void clear() {
+		for(int i=0 ; i<m_slots.length() ; i++)
+			m_slots.set(i, null);
+	}
+
+	/**************************************************************************/
+	/***  ACCESSOR METHODS  ***************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Gets the number of slots of the pool.
+	 */
+	public int getCapacity() {
+		return m_slots.length();
+	}
+
+	/**
+	 * Gets the number of strings found in the pool.
+	 */
+	public long getHitCount() {
+		return m_hits.getCount();
+	}
+
+	/**
+	 * Gets the number of strings added to the pool.
+	 */
+	public long getMissCount() {
+		return m_misses.getCount();
+	}
+
+	/**
+	 * Gets the ratio of the strings found in the pool, between <code>0</code> and <code>1</code>.
+	 */
+	public double getHitRate() {
+		final long i_hits = getHitCount();
+		final long i_total = i_hits + getMissCount();
+		return (i_total>0)? (double)i_hits/i_total : 0;
+	}
+
+	/**************************************************************************/
+	/***  STATIC METHODS  *****************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Gets the default instance of this class, shared by the parser and the document builder.
+	 * <p>
+	 * @return The default instance (this cannot be <code>null</code>).
+	 */
+	public static pCUEStringPool getDefaultInstance() {
+		return DEFAULT;
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.media.cue;
+
+import java.io.IOException;
+
+/**
+ * The <code>pCUETime</code> class converts and formats the positions of cue sheets.
+ * <p>
+ * Cue sheets give positions as <code>MM:SS:FF</code>, where <code>FF</code> is a number of CD frames (75 frames per second).
+ * The methods of this class read and write this format from and to character sequences and buffers without allocating any object.
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ */
+public final class pCUETime {
+
+	/**************************************************************************/
+	/***  DEFINITIONS  ********************************************************/
+	/**************************************************************************/
+
+	/** The number of CD frames per second. */
+	public static final int FRAMES_PER_SECOND = 75;
+
+	/** The number of characters of a <code>MM:SS:FF</code> position with two digits of minutes. */
+	public static final int LENGTH = 8;
+
+	/** The maximum number of characters of a position: nine digits of minutes, so that the number of frames cannot overflow. */
+	public static final int MAX_LENGTH = 15;
+
+	/**************************************************************************/
+	/***  CONSTRUCTORS  *******************************************************/
+	/**************************************************************************/
+
+	private pCUETime() {
+		super();
+	}
+
+	/**************************************************************************/
+	/***  STATIC METHODS  *****************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Converts a number of frames to milliseconds, rounded down.
+	 */
+	public static long toMillis(final long p_frames) {
+		return Math.floorDiv(p_frames*1000L, FRAMES_PER_SECOND);
+	}
+
+	/**
+	 * Converts milliseconds to a number of frames, rounded down.
+	 */
+	public static long toFrames(final long p_millis) {
+		return Math.floorDiv(p_millis*FRAMES_PER_SECOND, 1000L);
+	}
+
+	/**
+	 * Reads a <code>MM:SS:FF</code> position.
+	 * <p>
+	 * @param p_text The characters.
+	 * @param p_offset The offset of the position in the characters: exactly {@link #LENGTH} characters are read.
+	 * @return The number of frames, or <code>-1</code> if the characters are not a position.
+	 * @see #parse(CharSequence, int, int)
+	 */
+	public static long parse(final CharSequence p_text, final int p_offset) {
+		if (p_offset<0 || p_offset+LENGTH>p_text.length() || p_text.charAt(p_offset+2)!=':' || p_text.charAt(p_offset+5)!=':')
+			return -1;
+
+		final int i_minutes = digits2(p_text, p_offset);
+		final int i_seconds = digits2(p_text, p_offset+3);
+		final int i_frames = digits2(p_text, p_offset+6);
+		if ((i_minutes|i_seconds|i_frames)<0)
+			return -1;
+
+		return (i_minutes*60L + i_seconds)*FRAMES_PER_SECOND + i_frames;
+	}
+
+	/**
+	 * Reads a <code>MM:SS:FF</code> position whose minutes can have more than two digits,
+	 * as written by {@link #write(Appendable, long)} above 99 minutes.
+	 * <p>
+	 * @param p_text The characters.
+	 * @param p_offset The offset of the position in the characters.
+	 * @param p_length The number of characters of the position, from {@link #LENGTH} to {@link #MAX_LENGTH}.
+	 * @return The number of frames, or <code>-1</code> if the characters are not a position.
+	 * @since 0.9.30
+	 */
+	public static long parse(final CharSequence p_text, final int p_offset, final int p_length) {
+		if (p_length==LENGTH)
+			return parse(p_text, p_offset);
+
+		final int i_end = p_offset+p_length;
+		if (p_offset<0 || p_length<LENGTH || p_length>MAX_LENGTH || i_end>p_text.length() || p_text.charAt(i_end-6)!=':' || p_text.charAt(i_end-3)!=':')
+			return -1;
+
+		long i_minutes = 0;
+		for(int i=p_offset ; i<i_end-6 ; i++) {
+			final int d = p_text.charAt(i) - '0';
+			if (d<0 || d>9)
+				return -1;
+			i_minutes = i_minutes*10 + d;
+		}
+		final int i_seconds = digits2(p_text, i_end-5);
+		final int i_frames = digits2(p_text, i_end-2);
+		if ((i_seconds|i_frames)<0)
+			return -1;
+
+		return (i_minutes*60L + i_seconds)*FRAMES_PER_SECOND + i_frames;
+	}
+
+	/**
+	 * Writes a <code>MM:SS:FF</code> position.
+	 * <p>
+	 * Negative positions are written as <code>00:00:00</code>, and minutes above 99 with more than two digits.
+	 * <p>
+	 * @param p_out The destination (for instance a {@link StringBuilder} or a {@link java.nio.CharBuffer}).
+	 * @param p_frames The number of frames.
+	 * @throws IOException If the writing failed.
+	 */
+	public static void write(final Appendable p_out, final long p_frames) throws IOException {
+		final long i_frames = Math.max(0, p_frames);
+		final long i_seconds = i_frames/FRAMES_PER_SECOND;
+
+		writeMinutes(p_out, i_seconds/60);
+		p_out.append(':');
+		p_out.append((char)('0' + (i_seconds%60)/10));
+		p_out.append((char)('0' + (i_seconds%60)%10));
+		p_out.append(':');
+		p_out.append((char)('0' + (i_frames%FRAMES_PER_SECOND)/10));
+		p_out.append((char)('0' + (i_frames%FRAMES_PER_SECOND)%10));
+	}
+
+	/**
+	 * Writes a <code>MM:SS:FF</code> position into an array.
+	 * <p>
+	 * @param p_out The destination, with room for {@link #LENGTH} characters (more if the minutes are above 99).
+	 * @param p_offset The offset of the position in the array.
+	 * @param p_frames The number of frames.
+	 * @return The offset following the position.
+	 * @see #write(Appendable, long)
+	 */
+	public static int write(final char[] p_out, int p_offset, final long p_frames) {
+		final long i_frames = Math.max(0, p_frames);
+		final long i_seconds = i_frames/FRAMES_PER_SECOND;
+		final long i_minutes = i_seconds/60;
+
+		int i_digits = 2;
+		for(long i=i_minutes/100 ; i>0 ; i/=10)
+			i_digits++;
+		long i_value = i_minutes;
+		for(int i=i_digits-1 ; i>=0 ; i--) {
+			p_out[p_offset+i] = (char)('0' + i_value%10);
+			i_value /= 10;
+		}
+		p_offset += i_digits;
+
+		p_out[p_offset++] = ':';
+		p_out[p_offset++] = (char)('0' + (i_seconds%60)/10);
+		p_out[p_offset++] = (char)('0' + (i_seconds%60)%10);
+		p_out[p_offset++] = ':';
+		p_out[p_offset++] = (char)('0' + (i_frames%FRAMES_PER_SECOND)/10);
+		p_out[p_offset++] = (char)('0' + (i_frames%FRAMES_PER_SECOND)%10);
+		return p_offset;
+	}
+
+	/**
+	 * Writes the minutes with at least two digits.
+	 */
+	private static void writeMinutes(final Appendable p_out, final long p_minutes) throws IOException {
+		if (p_minutes<10)
+			p_out.append('0');
+
+		long i_divisor = 1;
+		while(i_divisor<=p_minutes/10)
+			i_divisor *= 10;
+		while(i_divisor>0) {
+			p_out.append((char)('0' + (p_minutes/i_divisor)%10));
+			i_divisor /= 10;
+		}
+	}
+
+	/**
+	 * Reads two decimal digits.
+	 * <p>
+	 * @return The value, or <code>-1</code> if the characters are not digits.
+	 */
+	private static int digits2(final CharSequence p_text, final int p_offset) {
+		final int d1 = p_text.charAt(p_offset) - '0';
+		final int d2 = p_text.charAt(p_offset+1) - '0';
+		if (d1<0 || d1>9 || d2<0 || d2>9)
+			return -1;
+		return d1*10 + d2;
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/
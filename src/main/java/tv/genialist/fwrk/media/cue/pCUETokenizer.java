@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.media.cue;
+
+import tv.genialist.fwrk.media.pMediaUtil;
+
+/**
+ * The <code>pCUETokenizer</code> class recognises the lines of a cue sheet without regular expressions.
+ * <p>
+ * The leading keyword of the current line of a {@link pCUELineReader} is identified first, then the value is read in place:
+ * <ul>
+ * <li><code>KEYWORD "value"</code> or <code>KEYWORD value</code> for PERFORMER, TITLE, REM GENRE, REM DATE and REM &lt;tv episode&gt;,
+ * <li><code>INDEX 01 MM:SS:FF</code> for the track start times.
+ * </ul>
+ * The accepted syntax is exactly the one of the regular expressions previously used by {@link pCUESheet}.
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ */
+final class pCUETokenizer {
+
+	/**************************************************************************/
+	/***  DEFINITIONS  ********************************************************/
+	/**************************************************************************/
+
+	/** The line is not recognised. */
+	static final int KW_NONE = 0;
+	/** The line starts with "PERFORMER". */
+	static final int KW_PERFORMER = 1;
+	/** The line starts with "TITLE". */
+	static final int KW_TITLE = 2;
+	/** The line starts with "REM GENRE". */
+	static final int KW_REM_GENRE = 3;
+	/** The line starts with "REM DATE". */
+	static final int KW_REM_DATE = 4;
+	/** The line starts with "REM " followed by {@link pMediaUtil#MNAME_TV_EPISODE}. */
+	static final int KW_REM_TV_EPISODE = 5;
+	/** The line starts with "FILE ". */
+	static final int KW_FILE = 6;
+	/** The line starts with "TRACK ". */
+	static final int KW_TRACK = 7;
+	/** The line starts with "INDEX". */
+	static final int KW_INDEX = 8;
+
+	private static final String REM_TV_EPISODE = "REM ".concat(pMediaUtil.MNAME_TV_EPISODE);
+
+	/**************************************************************************/
+	/***  CONSTRUCTORS  *******************************************************/
+	/**************************************************************************/
+
+	private pCUETokenizer() {
+		super();
+	}
+
+	/**************************************************************************/
+	/***  STATIC METHODS  *****************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Identifies the leading keyword of the current line.
+	 * <p>
+	 * @param p_line The line reader (cannot be <code>null</code>).
+	 * @return One of the <code>KW_</code> constants.
+	 */
+	static int keyword(final pCUELineReader p_line) {
+		if (p_line.length()<4)
+			return KW_NONE;
+
+		switch(p_line.charAt(0)) {
+			case 'P':
+				return p_line.startsWith("PERFORMER")? KW_PERFORMER : KW_NONE;
+			case 'T':
+				if (p_line.startsWith("TITLE"))
+					return KW_TITLE;
+				return p_line.startsWith("TRACK ")? KW_TRACK : KW_NONE;
+			case 'F':
+				return p_line.startsWith("FILE ")? KW_FILE : KW_NONE;
+			case 'I':
+				return p_line.startsWith("INDEX")? KW_INDEX : KW_NONE;
+			case 'R':
+				if (!p_line.startsWith("REM "))
+					return KW_NONE;
+				if (p_line.startsWith("GENRE", 4))
+					return KW_REM_GENRE;
+				if (p_line.startsWith("DATE", 4))
+					return KW_REM_DATE;
+				return p_line.startsWith(REM_TV_EPISODE)? KW_REM_TV_EPISODE : KW_NONE;
+			default:
+				return KW_NONE;
+		}
+	}
+
+	/**
+	 * Gets the length of a keyword, that is the offset of the value inside the line.
+	 * <p>
+	 * @param p_keyword One of the <code>KW_</code> constants.
+	 */
+	static int length(final int p_keyword) {
+		switch(p_keyword) {
+			case KW_PERFORMER: return 9;
+			case KW_TITLE: return 5;
+			case KW_REM_GENRE: return 9;
+			case KW_REM_DATE: return 8;
+			case KW_REM_TV_EPISODE: return REM_TV_EPISODE.length();
+			case KW_FILE: return 5;
+			case KW_TRACK: return 6;
+			case KW_INDEX: return 5;
+			default: return 0;
+		}
+	}
+
+	/**
+	 * Gets the <code>MNAME</code> property from {@link pMediaUtil} class that is read from a keyword.
+	 * <p>
+	 * @param p_keyword One of the <code>KW_</code> constants.
+	 * @return The property, or <code>null</code> if the keyword does not carry any meta-data.
+	 */
+	static String metadataKey(final int p_keyword) {
+		switch(p_keyword) {
+			case KW_PERFORMER: return pMediaUtil.MNAME_ARTIST;
+			case KW_TITLE: return pMediaUtil.MNAME_TITLE;
+			case KW_REM_GENRE: return pMediaUtil.MNAME_GENRE;
+			case KW_REM_DATE: return pMediaUtil.MNAME_YEAR;
+			case KW_REM_TV_EPISODE: return pMediaUtil.MNAME_TV_EPISODE;
+			default: return null;
+		}
+	}
+
+	/**
+	 * Gets the keyword written for a <code>MNAME</code> property from {@link pMediaUtil} class.
+	 * <p>
+	 * @param p_key The property.
+	 * @return The keyword (for instance "REM GENRE"), or <code>null</code> if the property is not written in cue sheets.
+	 */
+	static String keywordOf(final String p_key) {
+		if (pMediaUtil.MNAME_ARTIST.equals(p_key))
+			return "PERFORMER";
+		if (pMediaUtil.MNAME_TITLE.equals(p_key))
+			return "TITLE";
+		if (pMediaUtil.MNAME_GENRE.equals(p_key))
+			return "REM GENRE";
+		if (pMediaUtil.MNAME_YEAR.equals(p_key))
+			return "REM DATE";
+		if (pMediaUtil.MNAME_TV_EPISODE.equals(p_key))
+			return REM_TV_EPISODE;
+		return null;
+	}
+
+	/**
+	 * Reads the value following a keyword: <code>\s+"([^"]*)"</code>, otherwise <code>\s+([^ \t\n]*)</code>.
+	 * <p>
+	 * @param p_line The line reader, positioned on the line.
+	 * @param p_offset The offset of the end of the keyword.
+	 * @return The value, or <code>null</code> if the remaining of the line does not match.
+	 */
+	static String value(final pCUELineReader p_line, final int p_offset) {
+		final int i_len = p_line.length();
+
+		int i = p_offset;
+		while(i<i_len && isWhitespace(p_line.charAt(i)))
+			i++;
+		if (i==p_offset || i==i_len)
+			return null;
+
+		//*** QUOTED VALUE
+		if (p_line.charAt(i)=='\"' && i<i_len-1 && p_line.charAt(i_len-1)=='\"') {
+			int i_end = i+1;
+			while(p_line.charAt(i_end)!='\"')
+				i_end++;
+			if (i_end==i_len-1)
+				return p_line.string(i+1, i_end);
+		}
+
+		//*** UNQUOTED VALUE
+		for(int j=i ; j<i_len ; j++) {
+			final char c = p_line.charAt(j);
+			if (c==' ' || c=='\t' || c=='\n')
+				return null;
+		}
+		return p_line.string(i, i_len);
+	}
+
+	/**
+	 * Reads a <code>INDEX\s+01\s+MM:SS:FF</code> line.
+	 * <p>
+	 * The minutes can have more than two digits, as written for the positions above 99 minutes.
+	 * <p>
+	 * @param p_line The line reader, positioned on the line.
+	 * @return The position in CD frames, or <code>-1</code> if the line does not match.
+	 * @see pCUETime#parse(CharSequence, int, int)
+	 */
+	static long index01(final pCUELineReader p_line) {
+		final int i_len = p_line.length();
+
+		int i = skipWhitespace(p_line, 5);
+		if (i<0 || i+2>i_len || p_line.charAt(i)!='0' || p_line.charAt(i+1)!='1')
+			return -1;
+
+		i = skipWhitespace(p_line, i+2);
+		if (i<0 || i+pCUETime.LENGTH>i_len)
+			return -1;
+
+		//0.9.30: two digits of minutes or more
+		return pCUETime.parse(p_line, i, i_len-i);
+	}
+
+	/**
+	 * Skips at least one whitespace character.
+	 * <p>
+	 * @return The offset of the next non-whitespace character, or <code>-1</code> if there is no whitespace at <code>p_offset</code>.
+	 */
+	private static int skipWhitespace(final pCUELineReader p_line, final int p_offset) {
+		final int i_len = p_line.length();
+		int i = p_offset;
+		while(i<i_len && isWhitespace(p_line.charAt(i)))
+			i++;
+		return (i==p_offset)? -1 : i;
+	}
+
+	/**
+	 * Tests whether a character matches the <code>\s</code> regular expression class.
+	 */
+	static boolean isWhitespace(final char c) {
+		return c==' ' || c=='\t' || c=='\n' || c=='\u000B' || c=='\f' || c=='\r';
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/
@@ -1,21 +1,29 @@
 /*******************************************************************************
- * Copyright (c) 2017-2024 Genialist Software Ltd.
+ * Copyright (c) 2017-2026 Genialist Software Ltd.
  * All rights reserved.
  ******************************************************************************/
 
 package tv.genialist.fwrk.media.cue;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import tv.genialist.fwrk.media.pMediaUtil;
+import tv.genialist.fwrk.media.pMetadata;
 import tv.genialist.fwrk.media.impl.pHasMetadataImpl;
 import tv.genialist.ptools.data.pHasID;
-import tv.genialist.ptools.lang.pBaseStringBuilder;
+import tv.genialist.ptools.lang.util.pStringUtil;
 import tv.genialist.ptools.string.pString;
 
 /**
@@ -23,7 +31,7 @@ import tv.genialist.ptools.string.pString;
  * The list of tracks is retrieved from a .cue file by the {@link pCUESheet#getTracks()} method.
  * <p>
  * @author Genialist Software Ltd
- * @version 0.9.23
+ * @version 0.9.30
  * @see pCUESheet
  */
 public class pCUETrack extends pHasMetadataImpl implements pHasID {
@@ -52,12 +60,212 @@ public class pCUETrack extends pHasMetadataImpl implements pHasID {
 	 */
 	private static final Set<String> KEYS = Collections.unmodifiableSet(SUPPORTED_KEYS);
 	
+	/** 
+	 * The identifiers of the first tracks, shared to avoid creating them again when tracks are numbered.
+	 * @since 0.9.30 
+	 */
+	private static final String[] TRACK_IDS = new String[100];
+	
+	static {
+		for(int i=0 ; i<TRACK_IDS.length ; i++)
+			TRACK_IDS[i] = pString.toString2Digits(i);
+	}
+	
+	/** 
+	 * The number of ticks per millisecond.
+	 * <p>
+	 * The times are kept in ticks of 1/3000 s, so that both the CD frames of the sheets (40 ticks) 
+	 * and the milliseconds of the callers (3 ticks) are stored without loss.
+	 * @since 0.9.30 
+	 */
+	private static final long TICKS_PER_MILLISECOND = 3;
+	
+	/** 
+	 * The number of ticks per CD frame (1/75 s).
+	 * @since 0.9.30 
+	 */
+	private static final long TICKS_PER_FRAME = 40;
+	
+	/**************************************************************************/
+	/***  SUB-CLASSES  ********************************************************/
+	/**************************************************************************/
+	
+	/**
+	 * The meta-data that the tracks inherit from their sheet, shared by all the tracks of the sheet.
+	 * <p>
+	 * A track has the valid values of the sheet, and its title is the last of them followed by " (&lt;track&gt;)".
+	 * @since 0.9.30
+	 */
+	static final class pCUETrack_Inherited {
+		
+		/** The inherited keys, except the title. */
+		private final String[] m_keys;
+		
+		/** The inherited values, except the title. */
+		private final String[] m_values;
+		
+		/** The value the titles of the tracks start with. */
+		private final String m_title;
+		
+		private pCUETrack_Inherited(final String[] p_keys, final String[] p_values, final String p_title) {
+			m_keys = p_keys;
+			m_values = p_values;
+			m_title = p_title;
+		}
+		
+		/**
+		 * Gets an inherited value.
+		 * <p>
+		 * @param p_key The <code>MNAME</code> property.
+		 * @param p_id The identifier of the track, for the title.
+		 * @return The value, or <code>null</code> if not inherited.
+		 */
+		String get(final String p_key, final String p_id) {
+			if (pMediaUtil.MNAME_TITLE.equals(p_key))
+				return pStringUtil.concat(m_title, " (", p_id, ")");
+			for(int i=0 ; i<m_keys.length ; i++)
+				if (m_keys[i].equals(p_key))
+					return m_values[i];
+			return null;
+		}
+		
+		/**
+		 * Creates the inherited meta-data of a sheet.
+		 * <p>
+		 * @param p_metadata The meta-data of the sheet.
+		 * @param p_keys The keys of the sheet, in the order they are inherited.
+		 * @return The inherited meta-data, or <code>null</code> if the sheet has no valid value.
+		 */
+		static pCUETrack_Inherited of(final pMetadata p_metadata, final Set<String> p_keys) {
+			final String[] i_keys = new String[p_keys.size()];
+			final String[] i_values = new String[p_keys.size()];
+			int i_count = 0;
+			String i_title = null;
+			for(String i_key : p_keys) {
+				final String i_value = p_metadata.getString(i_key);
+				if (!pString.isValid(i_value))
+					continue;
+				if (!pMediaUtil.MNAME_TITLE.equals(i_key)) {
+					i_keys[i_count] = i_key;
+					i_values[i_count++] = i_value;
+				}
+				i_title = i_value;
+			}
+			return (null!=i_title)? new pCUETrack_Inherited(Arrays.copyOf(i_keys, i_count), Arrays.copyOf(i_values, i_count), i_title) : null;
+		}
+	}
+	
+	/**
+	 * The read-only meta-data of a frozen sheet or track, built once and shared by all its readers.
+	 * <p>
+	 * The methods that change the values, directly or through the views of the map, throw an {@link UnsupportedOperationException}.
+	 * @since 0.9.30
+	 */
+	static final class pCUETrack_FrozenMetadata extends pMetadata {
+		
+		private static final long serialVersionUID = 1L;
+		
+		/** The read-only views of the values, the entries of which cannot be changed either. */
+		private final Map<String,Object> m_view;
+		
+		pCUETrack_FrozenMetadata(final Map<String,Object> p_values) {
+			super();
+			for(Map.Entry<String,Object> i_entry : p_values.entrySet())
+				super.put(i_entry.getKey(), i_entry.getValue());
+			m_view = Collections.unmodifiableMap(new HashMap<>(p_values));
+		}
+		
+		private static UnsupportedOperationException frozen() {
+			return new UnsupportedOperationException("Frozen CUE Sheet meta-data");
+		}
+		
+		@Override
+		public Object put(final String p_key, final Object p_value) {
+			throw frozen();
+		}
+		
+		@Override
+		public void putAll(final Map<? extends String,? extends Object> p_values) {
+			throw frozen();
+		}
+		
+		@Override
+		public Object putIfAbsent(final String p_key, final Object p_value) {
+			throw frozen();
+		}
+		
+		@Override
+		public Object remove(final Object p_key) {
+			throw frozen();
+		}
+		
+		@Override
+		public boolean remove(final Object p_key, final Object p_value) {
+			throw frozen();
+		}
+		
+		@Override
+		public Object replace(final String p_key, final Object p_value) {
+			throw frozen();
+		}
+		
+		@Override
+		public boolean replace(final String p_key, final Object p_old_value, final Object p_new_value) {
+			throw frozen();
+		}
+		
+		@Override
+		public void replaceAll(final BiFunction<? super String,? super Object,? extends Object> p_function) {
+			throw frozen();
+		}
+		
+		@Override
+		public Object compute(final String p_key, final BiFunction<? super String,? super Object,? extends Object> p_function) {
+			throw frozen();
+		}
+		
+		@Override
+		public Object computeIfAbsent(final String p_key, final Function<? super String,? extends Object> p_function) {
+			throw frozen();
+		}
+		
+		@Override
+		public Object computeIfPresent(final String p_key, final BiFunction<? super String,? super Object,? extends Object> p_function) {
+			throw frozen();
+		}
+		
+		@Override
+		public Object merge(final String p_key, final Object p_value, final BiFunction<? super Object,? super Object,? extends Object> p_function) {
+			throw frozen();
+		}
+		
+		@Override
+		public void clear() {
+			throw frozen();
+		}
+		
+		@Override
+		public Set<String> keySet() {
+			return m_view.keySet();
+		}
+		
+		@Override
+		public Collection<Object> values() {
+			return m_view.values();
+		}
+		
+		@Override
+		public Set<Map.Entry<String,Object>> entrySet() {
+			return m_view.entrySet();
+		}
+	}
+	
 	/**************************************************************************/
 	/***  RUNTIME DATA  *******************************************************/
 	/**************************************************************************/
 	
 	/** 
-	 * The starting time in milliseconds from the beginning of the cue media.
+	 * The starting time from the beginning of the cue media, in ticks.
 	 * <p>
 	 * @see #getStart()
 	 * @see #setStart(long)
@@ -65,12 +273,38 @@ public class pCUETrack extends pHasMetadataImpl implements pHasID {
 	private long m_start = 0;
 
 	/** 
-	 * The end time in milliseconds from the beginning of the cue media.
+	 * The end time from the beginning of the cue media, in ticks.
 	 * <p>
 	 * @see #getEnd()
 	 * @see #setEnd(long)
 	 */
-	private long m_end = -1;
+	private long m_end = -TICKS_PER_MILLISECOND;
+	
+	/** 
+	 * The sheet that contains this track, notified when the start time changes (can be <code>null</code>).
+	 * @since 0.9.30 
+	 */
+	private pCUESheet m_owner;
+	
+	/** 
+	 * The "FILE" line of the sheet this track belongs to (can be <code>null</code>).
+	 * @since 0.9.30 
+	 */
+	private pCUEMediaFile m_file;
+	
+	/** 
+	 * The meta-data inherited from the sheet and not yet copied into the meta-data of this track (<code>null</code> if none).
+	 * <p>
+	 * The values are copied by the first call to {@link #getMetadata()}, so that the tracks that are never read do not hold them.
+	 * @since 0.9.30 
+	 */
+	private volatile pCUETrack_Inherited m_inherited;
+	
+	/** 
+	 * The read-only meta-data returned by {@link #getMetadata()} once the sheet is frozen (<code>null</code> until the first call).
+	 * @since 0.9.30 
+	 */
+	private volatile pMetadata m_frozen_metadata;
 	
 	/**************************************************************************/
 	/***  CONSTRUCTORS  *******************************************************/
@@ -83,7 +317,7 @@ public class pCUETrack extends pHasMetadataImpl implements pHasID {
 	 */
 	public pCUETrack(final String p_id) {
 		super();
-		getMetadata().put(pMediaUtil.MNAME_TRACK, p_id);
+		ownMetadata().put(pMediaUtil.MNAME_TRACK, p_id);
 	}
 	
 	/**
@@ -95,7 +329,7 @@ public class pCUETrack extends pHasMetadataImpl implements pHasID {
 	 */
 	public pCUETrack(final String p_id, final long p_start, final long p_end) {
 		super();
-		getMetadata().put(pMediaUtil.MNAME_TRACK, p_id);
+		ownMetadata().put(pMediaUtil.MNAME_TRACK, p_id);
 		setStart(p_start);
 		setEnd(p_end);
 	}
@@ -110,7 +344,26 @@ public class pCUETrack extends pHasMetadataImpl implements pHasID {
 	 * @see #getStart()
 	 */
 	public void setStart(final long p_index) {
-		m_start = p_index;
+		checkMutable();
+		setStartTicks(p_index*TICKS_PER_MILLISECOND);
+	}
+
+	/**
+	 * Sets the starting position in CD frames (1/75 s) from the beginning of the cue media.
+	 * <p>
+	 * @see #getStartFrames()
+	 * @since 0.9.30
+	 */
+	public void setStartFrames(final long p_frames) {
+		checkMutable();
+		setStartTicks(p_frames*TICKS_PER_FRAME);
+	}
+
+	private void setStartTicks(final long p_ticks) {
+		m_start = p_ticks;
+		//0.9.30
+		if (null!=m_owner)
+			m_owner.invalidateIndex();
 	}
 
 	/**
@@ -119,7 +372,188 @@ public class pCUETrack extends pHasMetadataImpl implements pHasID {
 	 * @see #getEnd()
 	 */
 	public void setEnd(final long p_index) {
-		m_end = p_index;
+		checkMutable();
+		m_end = p_index*TICKS_PER_MILLISECOND;
+	}
+	
+	/**
+	 * Sets the end time to the end time of another track.
+	 * <p>
+	 * @since 0.9.30
+	 */
+	void setEnd(final pCUETrack p_track) {
+		m_end = p_track.m_end;
+	}
+	
+	/**
+	 * Sets the end position in CD frames (1/75 s) from the beginning of the cue media.
+	 * <p>
+	 * @see #getEndFrames()
+	 * @since 0.9.30
+	 */
+	public void setEndFrames(final long p_frames) {
+		checkMutable();
+		m_end = p_frames*TICKS_PER_FRAME;
+	}
+	
+	/**
+	 * Gets the meta-data of this track, with the values inherited from its sheet.
+	 * <p>
+	 * The inherited values are added on the first call: the values of the track itself are kept.
+	 * The next lookup of a missing identifier in the sheet rebuilds its index, in case the identifier is changed.
+	 * <p>
+	 * The tracks of a frozen sheet are shared by all its readers: read-only meta-data with the inherited values are returned,
+	 * built by the first call, so that the track and the index of the sheet cannot be changed (see {@link #copyMetadata()} to change them).
+	 * <p>
+	 * @since 0.9.30
+	 */
+	@Override
+	public pMetadata getMetadata() {
+		if (null!=m_owner && m_owner.isFrozen()) {
+			pMetadata i_frozen = m_frozen_metadata;
+			if (null==i_frozen) {
+				//*** A RACE ONLY BUILDS THE SAME VALUES TWICE
+				i_frozen = new pCUETrack_FrozenMetadata(copyMetadata());
+				m_frozen_metadata = i_frozen;
+			}
+			return i_frozen;
+		}
+		
+		final pMetadata i_metadata = super.getMetadata();
+		if (null!=m_inherited)
+			inherit(i_metadata);
+		//*** THE IDENTIFIER CAN BE CHANGED THROUGH THE META-DATA
+		if (null!=m_owner)
+			m_owner.staleIndex();
+		return i_metadata;
+	}
+	
+	/**
+	 * Copies the inherited values that the track does not override.
+	 * <p>
+	 * Guarded by <code>this</code>: the tracks of a frozen sheet can be read by several threads.
+	 * @since 0.9.30
+	 */
+	private synchronized void inherit(final pMetadata p_metadata) {
+		final pCUETrack_Inherited i_inherited = m_inherited;
+		if (null==i_inherited)
+			return;
+		
+		for(int i=0 ; i<i_inherited.m_keys.length ; i++)
+			if (null==p_metadata.get(i_inherited.m_keys[i]))
+				p_metadata.put(i_inherited.m_keys[i], i_inherited.m_values[i]);
+		if (null==p_metadata.get(pMediaUtil.MNAME_TITLE))
+			p_metadata.put(pMediaUtil.MNAME_TITLE, i_inherited.get(pMediaUtil.MNAME_TITLE, p_metadata.getString(pMediaUtil.MNAME_TRACK)));
+		m_inherited = null;
+	}
+	
+	/**
+	 * Creates a copy of the meta-data of this track, with the values inherited from its sheet.
+	 * <p>
+	 * The inherited values are added to the copy only: the meta-data of a shared track is not changed.
+	 * <p>
+	 * @return The new meta-data (cannot be <code>null</code>).
+	 * @since 0.9.30
+	 */
+	public pMetadata copyMetadata() {
+		return copy().getMetadata();
+	}
+	
+	/**
+	 * Gets the meta-data of this track without the values inherited from its sheet.
+	 * <p>
+	 * This is used while the track is parsed, and to read its values without copying the inherited ones.
+	 * <p>
+	 * @since 0.9.30
+	 */
+	pMetadata ownMetadata() {
+		return super.getMetadata();
+	}
+	
+	/**
+	 * Gets a value of the meta-data of this track, inherited from its sheet if not set, without copying the inherited values.
+	 * <p>
+	 * @param p_key The <code>MNAME</code> property.
+	 * @return The value as a string, or <code>null</code> if not set.
+	 * @since 0.9.30
+	 */
+	String getString(final String p_key) {
+		if (null!=m_inherited) {
+			//*** THE META-DATA CANNOT BE READ WHILE THE VALUES ARE INHERITED
+			synchronized(this) {
+				final pCUETrack_Inherited i_inherited = m_inherited;
+				if (null!=i_inherited) {
+					final String i_value = super.getMetadata().getString(p_key);
+					return (null!=i_value)? i_value : i_inherited.get(p_key, super.getMetadata().getString(pMediaUtil.MNAME_TRACK));
+				}
+			}
+		}
+		return super.getMetadata().getString(p_key);
+	}
+	
+	/**
+	 * Sets the meta-data inherited from the sheet.
+	 * <p>
+	 * @since 0.9.30
+	 */
+	void setInherited(final pCUETrack_Inherited p_inherited) {
+		m_inherited = p_inherited;
+	}
+	
+	/**
+	 * Changes the identifier of this track, without copying the values inherited from its sheet.
+	 * <p>
+	 * The inherited title keeps the identifier the track had, as if the inherited values had been copied before.
+	 * <p>
+	 * Guarded by <code>this</code>, as {@link #inherit(pMetadata)}.
+	 * @since 0.9.30
+	 */
+	synchronized void setID(final String p_id) {
+		final pCUETrack_Inherited i_inherited = m_inherited;
+		if (null!=i_inherited && null==ownMetadata().get(pMediaUtil.MNAME_TITLE))
+			ownMetadata().put(pMediaUtil.MNAME_TITLE, i_inherited.get(pMediaUtil.MNAME_TITLE, getID()));
+		ownMetadata().put(pMediaUtil.MNAME_TRACK, p_id);
+	}
+	
+	/**
+	 * Checks that the sheet of this track is not frozen.
+	 * <p>
+	 * @throws UnsupportedOperationException If the sheet is frozen (see {@link pCUESheet#freeze()}).
+	 * @since 0.9.30
+	 */
+	private void checkMutable() {
+		if (null!=m_owner && m_owner.isFrozen())
+			throw new UnsupportedOperationException("Frozen CUE Sheet track: ".concat(String.valueOf(getID())));
+	}
+	
+	/**
+	 * Sets the sheet that contains this track.
+	 * <p>
+	 * @since 0.9.30
+	 */
+	void setOwner(final pCUESheet p_owner) {
+		m_owner = p_owner;
+	}
+	
+	/**
+	 * Gets the media file of the track, from the "FILE" line it follows in the cue sheet.
+	 * <p>
+	 * The start and end times of the track are relative to the beginning of this file.
+	 * <p>
+	 * @return The media file, or <code>null</code> if the track was not read from a cue sheet.
+	 * @since 0.9.30
+	 */
+	public pCUEMediaFile getFile() {
+		return m_file;
+	}
+	
+	/**
+	 * Sets the media file of the track.
+	 * <p>
+	 * @since 0.9.30
+	 */
+	void setFile(final pCUEMediaFile p_file) {
+		m_file = p_file;
 	}
 	
 	/**
@@ -128,7 +562,17 @@ public class pCUETrack extends pHasMetadataImpl implements pHasID {
 	 * @see #setStart(long)
 	 */
 	public long getStart() {
-		return m_start;
+		return Math.floorDiv(m_start, TICKS_PER_MILLISECOND);
+	}
+
+	/**
+	 * Gets the starting position in CD frames (1/75 s) from the beginning of the cue media, rounded down.
+	 * <p>
+	 * @see #setStartFrames(long)
+	 * @since 0.9.30
+	 */
+	public long getStartFrames() {
+		return Math.floorDiv(m_start, TICKS_PER_FRAME);
 	}
 
 	/**
@@ -137,14 +581,25 @@ public class pCUETrack extends pHasMetadataImpl implements pHasID {
 	 * @see #setEnd(long)
 	 */
 	public long getEnd() {
-		return m_end;
+		return Math.floorDiv(m_end, TICKS_PER_MILLISECOND);
+	}
+	
+	/**
+	 * Gets the end position in CD frames (1/75 s) from the beginning of the cue media, rounded down.
+	 * <p>
+	 * @return The position, or <code>-1</code> if the end is not known.
+	 * @see #setEndFrames(long)
+	 * @since 0.9.30
+	 */
+	public long getEndFrames() {
+		return (m_end<0)? -1 : Math.floorDiv(m_end, TICKS_PER_FRAME);
 	}
 	
 	/**
 	 * Gets the duration of the track.
 	 */
 	public long getDuration() {
-		return (m_end<0)? 0 : m_end - m_start; 
+		return (m_end<0)? 0 : getEnd() - getStart(); 
 	}
 	
 	/**************************************************************************/
@@ -164,37 +619,90 @@ public class pCUETrack extends pHasMetadataImpl implements pHasID {
 	}
 	
 	/**
-	 * Saves this track into an output stream in the .CUE format.
+	 * Creates a copy of this track with its own meta-data.
 	 * <p>
-	 * @param i_writer The output stream.
-	 * @throws IOException In case of failure.
+	 * @since 0.9.30
 	 */
-	public void save(final OutputStreamWriter i_writer) throws IOException {
-		
-		i_writer.write("  TRACK ");
-		i_writer.write(getID());
-		i_writer.write(" AUDIO\n");
-				
-		pCUESheet.writeField(i_writer, getMetadata().getString(pMediaUtil.MNAME_GENRE), "    REM GENRE");
+	pCUETrack copy() {
+		final pCUETrack i_copy = new pCUETrack(getID());
+		i_copy.m_start = m_start;
+		i_copy.m_end = m_end;
 		
-		pCUESheet.writeField(i_writer, getMetadata().getString(pMediaUtil.MNAME_YEAR), "    REM DATE");
+		//0.9.30: the inherited values are shared, not copied
+		i_copy.m_inherited = m_inherited;
+		//*** ALL THE VALUES, NOT ONLY THE SUPPORTED ONES
+		for(Map.Entry<String,Object> i_entry : ownMetadata().entrySet())
+			i_copy.ownMetadata().put(i_entry.getKey(), i_entry.getValue());
+		return i_copy;
+	}
+	
+	/**
+	 * Writes this track in the binary format of {@link pCUESnapshotStore}.
+	 * <p>
+	 * Only the meta-data with string values are written.
+	 * <p>
+	 * @since 0.9.30
+	 */
+	void writeSnapshot(final DataOutput p_out) throws IOException {
+		pCUESnapshotStore.writeString(p_out, getID());
+		p_out.writeLong(m_start);
+		p_out.writeLong(m_end);
 		
-		final String i_value = getMetadata().getString(pMediaUtil.MNAME_TV_EPISODE);
-		if (pString.isValid(i_value)) {
-			i_writer.write("    REM ");
-			i_writer.write(pMediaUtil.MNAME_TV_EPISODE);
-			i_writer.write(" \"");
-			i_writer.write(i_value);
-			i_writer.write("\"\n");
+		int i_count = 0;
+		for(String i_key : KEYS)
+			if (value(i_key) instanceof String)
+				i_count++;
+		p_out.writeByte(i_count);
+		for(String i_key : KEYS) {
+			final Object i_value = value(i_key);
+			if (i_value instanceof String) {
+				pCUESnapshotStore.writeString(p_out, i_key);
+				pCUESnapshotStore.writeString(p_out, (String)i_value);
+			}
 		}
+	}
+	
+	/**
+	 * Gets a value of the meta-data of this track, inherited from its sheet if not set, without copying the inherited values.
+	 * <p>
+	 * @since 0.9.30
+	 */
+	private Object value(final String p_key) {
+		if (null!=m_inherited) {
+			synchronized(this) {
+				final pCUETrack_Inherited i_inherited = m_inherited;
+				if (null!=i_inherited) {
+					final Object i_value = super.getMetadata().get(p_key);
+					return (null!=i_value)? i_value : i_inherited.get(p_key, super.getMetadata().getString(pMediaUtil.MNAME_TRACK));
+				}
+			}
+		}
+		return super.getMetadata().get(p_key);
+	}
+	
+	/**
+	 * Reads a track written by {@link #writeSnapshot(DataOutput)}.
+	 * <p>
+	 * @since 0.9.30
+	 */
+	static pCUETrack readSnapshot(final DataInput p_in) throws IOException {
+		final pCUETrack i_track = new pCUETrack(pCUEStringPool.getDefaultInstance().intern(pCUESnapshotStore.readString(p_in)));
+		i_track.m_start = p_in.readLong();
+		i_track.m_end = p_in.readLong();
 		
-		pCUESheet.writeField(i_writer, getMetadata().getString(pMediaUtil.MNAME_ARTIST), "    PERFORMER");
-		
-		pCUESheet.writeField(i_writer, getMetadata().getString(pMediaUtil.MNAME_TITLE), "    TITLE");
-
-		i_writer.write("    INDEX 01 ");
-		i_writer.write(time(getStart()));
-		i_writer.write("\n");
+		pCUESnapshotStore.readMetadata(p_in, i_track.ownMetadata());
+		return i_track;
+	}
+	
+	/**
+	 * Saves this track into an output stream in the .CUE format.
+	 * <p>
+	 * @param i_writer The output stream.
+	 * @throws IOException In case of failure.
+	 */
+	public void save(final OutputStreamWriter i_writer) throws IOException {
+		//0.9.30
+		pCUESerializer.write(this, i_writer);
 	}
 
 	/**
@@ -202,62 +710,18 @@ public class pCUETrack extends pHasMetadataImpl implements pHasID {
 	 */
 	@Override
 	public String toString() {
-		final pBaseStringBuilder i_result = new pBaseStringBuilder();
-		
-		i_result.append("  TRACK ");
-		i_result.append(getID());
-		i_result.append(" AUDIO\n");
-		
-		String i_value = getMetadata().getString(pMediaUtil.MNAME_GENRE);
-		if (pString.isValid(i_value)) {
-			i_result.append("    REM GENRE \"");
-			i_result.append(i_value);
-			//0.9.8
-			i_result.append('\"');
-			i_result.append('\n');
+		final StringBuilder i_result = new StringBuilder(128);
+		try {
+			//0.9.30
+			pCUESerializer.write(this, i_result);
 		}
-		
-		i_value = getMetadata().getString(pMediaUtil.MNAME_YEAR);
-		if (pString.isValid(i_value)) {
-			i_result.append("    REM DATE \"");
-			i_result.append(i_value);
-			//0.9.8
-			i_result.append('\"');
-			i_result.append('\n');
-		}
-		
-		i_value = getMetadata().getString(pMediaUtil.MNAME_ARTIST);
-		if (pString.isValid(i_value)) {
-			i_result.append("    PERFORMER \"");
-			i_result.append(i_value);
-			//0.9.8
-			i_result.append('\"');
-			i_result.append('\n');
+		catch (final IOException ex) {
+			//*** CANNOT HAPPEN: THE TEXT IS WRITTEN IN MEMORY
+			throw new IllegalStateException(ex);
 		}
-		
-		i_value = getMetadata().getString(pMediaUtil.MNAME_TITLE);
-		if (pString.isValid(i_value)) {
-			i_result.append("    TITLE \"");
-			i_result.append(i_value);
-			//0.9.8
-			i_result.append('\"');
-			i_result.append('\n');
-		}
-
-		i_result.append("    INDEX 01 ");
-		i_result.append(time(getStart()));
-		i_result.append('\n');
-		
 		return i_result.toString();
 	}
 	
-	private String time(final long millis) {
-		return String.format("%02d:%02d:00",
-			TimeUnit.MILLISECONDS.toMinutes(millis),// - TimeUnit.HOURS.toMinutes(TimeUnit.MILLISECONDS.toHours(millis)), 
-			TimeUnit.MILLISECONDS.toSeconds(millis) - TimeUnit.MINUTES.toSeconds(TimeUnit.MILLISECONDS.toMinutes(millis))
-		);
-	}	
-	
 	/***************************************************************************/
 	/***  pHasID METHODS  ******************************************************/
 	/***************************************************************************/
@@ -268,7 +732,13 @@ public class pCUETrack extends pHasMetadataImpl implements pHasID {
 	 * @return The unique identifier (can be <code>null</code>). 
 	 */
 	public String getID() {
-		return getMetadata().getString(pMediaUtil.MNAME_TRACK);
+		//0.9.30: the identifier is never inherited
+		if (null!=m_inherited) {
+			synchronized(this) {
+				return ownMetadata().getString(pMediaUtil.MNAME_TRACK);
+			}
+		}
+		return ownMetadata().getString(pMediaUtil.MNAME_TRACK);
 	}
 
 	/***************************************************************************/
@@ -281,6 +751,9 @@ public class pCUETrack extends pHasMetadataImpl implements pHasID {
 	 * @param n The integer (must starts with 1).
 	 */
 	public static String trackID(final int n) {
+		//0.9.30
+		if (n>=0 && n<TRACK_IDS.length)
+			return TRACK_IDS[n];
 		return pString.toString2Digits(n);
 	}
 
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.media.cue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import tv.genialist.ptools.string.pString;
+
+/**
+ * The <code>pCUETrackIndex</code> class indexes the tracks of a {@link pCUESheet} by start time and by identifier.
+ * <p>
+ * The index is a snapshot of the list of tracks: it is built on demand by the sheet and dropped when the tracks change.
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ */
+final class pCUETrackIndex {
+
+	/**************************************************************************/
+	/***  RUNTIME DATA  *******************************************************/
+	/**************************************************************************/
+
+	/** The tracks, in the order of their start times. */
+	private final pCUETrack[] m_tracks;
+
+	/** The start times of {@link #m_tracks}, in ascending order. */
+	private final long[] m_starts;
+
+	/** The tracks by identifier. */
+	private final HashMap<String,pCUETrack> m_ids;
+
+	/**************************************************************************/
+	/***  CONSTRUCTORS  *******************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Constructs a new <code>pCUETrackIndex</code> object.
+	 * <p>
+	 * @param p_tracks The tracks of the sheet.
+	 */
+	pCUETrackIndex(final List<pCUETrack> p_tracks) {
+		super();
+
+		final int i_len = p_tracks.size();
+		m_tracks = p_tracks.toArray(new pCUETrack[i_len]);
+		m_starts = new long[i_len];
+		m_ids = new HashMap<>(Math.max(16, i_len*4/3+1));
+
+		boolean i_sorted = true;
+		for(int i=0 ; i<i_len ; i++) {
+			m_starts[i] = m_tracks[i].getStart();
+			if (i>0 && m_starts[i]<m_starts[i-1])
+				i_sorted = false;
+			m_ids.putIfAbsent(m_tracks[i].getID(), m_tracks[i]);
+		}
+
+		//*** THE TRACKS OF A SHEET ARE NORMALLY SORTED ALREADY (STABLE SORT OTHERWISE)
+		if (!i_sorted) {
+			Arrays.sort(m_tracks, (p_a, p_b) -> Long.compare(p_a.getStart(), p_b.getStart()));
+			for(int i=0 ; i<i_len ; i++)
+				m_starts[i] = m_tracks[i].getStart();
+		}
+	}
+
+	/**************************************************************************/
+	/***  METHODS  ************************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Gets a track by its identifier.
+	 * <p>
+	 * @return The track, or <code>null</code> if not found or if the identifier of the indexed track changed.
+	 */
+	pCUETrack getTrack(final String p_track_id) {
+		final pCUETrack i_track = m_ids.get(p_track_id);
+		return (null!=i_track && pString.fastEquals(i_track.getID(), p_track_id))? i_track : null;
+	}
+
+	/**
+	 * Gets the track playing at a given time.
+	 * <p>
+	 * @param p_time The time in milliseconds from the beginning of the media.
+	 * @return The last track starting at or before the time and ending after it (or without end), otherwise <code>null</code>.
+	 */
+	pCUETrack trackAt(final long p_time) {
+		final int i = upperBound(p_time) - 1;
+		if (i<0)
+			return null;
+
+		final pCUETrack i_track = m_tracks[i];
+		return (i_track.getEnd()<0 || p_time<i_track.getEnd())? i_track : null;
+	}
+
+	/**
+	 * Gets the tracks overlapping a time range.
+	 * <p>
+	 * @param p_from The start of the range in milliseconds (inclusive).
+	 * @param p_to The end of the range in milliseconds (exclusive).
+	 * @return The tracks, in the order of their start times (can be empty, but not <code>null</code>).
+	 */
+	List<pCUETrack> tracksBetween(final long p_from, final long p_to) {
+		if (p_to<=p_from)
+			return Collections.emptyList();
+
+		//*** THE TRACKS STARTING INSIDE THE RANGE
+		final int i_end = lowerBound(p_to);
+		int i_start = lowerBound(p_from);
+
+		//*** THE TRACKS STARTING BEFORE THE RANGE AND STILL PLAYING AT ITS START
+		while(i_start>0 && (m_tracks[i_start-1].getEnd()<0 || m_tracks[i_start-1].getEnd()>p_from))
+			i_start--;
+
+		if (i_start>=i_end)
+			return Collections.emptyList();
+
+		final ArrayList<pCUETrack> i_result = new ArrayList<>(i_end-i_start);
+		for(int i=i_start ; i<i_end ; i++)
+			i_result.add(m_tracks[i]);
+		return i_result;
+	}
+
+	/**
+	 * Gets the index of the first start time greater than or equal to a time.
+	 */
+	private int lowerBound(final long p_time) {
+		int i_low = 0;
+		int i_high = m_starts.length;
+		while(i_low<i_high) {
+			final int i_mid = (i_low+i_high)>>>1;
+			if (m_starts[i_mid]<p_time)
+				i_low = i_mid+1;
+			else
+				i_high = i_mid;
+		}
+		return i_low;
+	}
+
+	/**
+	 * Gets the index of the first start time greater than a time.
+	 */
+	private int upperBound(final long p_time) {
+		int i_low = 0;
+		int i_high = m_starts.length;
+		while(i_low<i_high) {
+			final int i_mid = (i_low+i_high)>>>1;
+			if (m_starts[i_mid]<=p_time)
+				i_low = i_mid+1;
+			else
+				i_high = i_mid;
+		}
+		return i_low;
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/
@@ -0,0 +1,369 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.media.cue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import tv.genialist.fwrk.media.pMediaUtil;
+import tv.genialist.ptools.lang.util.pStringUtil;
+import tv.genialist.ptools.string.pString;
+
+/**
+ * The <code>pCUETrackTable</code> class is a compact, read-only representation of the tracks of a cue sheet.
+ * <p>
+ * Instead of one {@link pCUETrack} object with its own meta-data map per track, the table stores:
+ * <ul>
+ * <li>the start and end times in two <code>long[]</code> columns,
+ * <li>one <code>String[]</code> column per meta-data explicitly set by the tracks (a column is not allocated if no track sets it),
+ * <li>the sheet meta-data once, inherited by the tracks when they are read.
+ * </ul>
+ * Equal strings of a sheet share one instance, and the default track titles (sheet value followed by " (&lt;track&gt;)") are only
+ * built when read. {@link pCUETrack} objects are created on demand by {@link #getTrack(int)} and are equal to the tracks of a
+ * {@link pCUESheet} parsed from the same content.
+ * <p>
+ * <b>Example:</b>
+ * <dl>
+ * <dd><code>
+ * pCUETrackTable i_table = pCUETrackTable.parse(i_path, i_default_length);<br>
+ * for(int i=0 ; i&lt;i_table.size() ; i++)<br>
+ * &nbsp;&nbsp;System.out.println(i_table.getID(i) + ": " + i_table.getString(i, pMediaUtil.MNAME_TITLE));<br>
+ * </code>
+ * </dl>
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ * @see pCUESheet
+ */
+public final class pCUETrackTable {
+
+	/**************************************************************************/
+	/***  DEFINITIONS  ********************************************************/
+	/**************************************************************************/
+
+	/** The meta-data stored in columns, in column order. */
+	private static final String[] COLUMN_KEYS = new String[] {
+		pMediaUtil.MNAME_ARTIST,
+		pMediaUtil.MNAME_GENRE,
+		pMediaUtil.MNAME_TITLE,
+		pMediaUtil.MNAME_TV_EPISODE,
+		pMediaUtil.MNAME_YEAR,
+	};
+
+	private static final int COLUMN_TITLE = 2;
+
+	/**************************************************************************/
+	/***  SUB-CLASSES  ********************************************************/
+	/**************************************************************************/
+
+	/**
+	 * The handler that fills a table while a sheet is parsed.
+	 */
+	private static final class pCUETrackTable_Builder implements pCUESheetHandler {
+
+		private final pCUETrackTable m_table;
+		private final long m_total_length;
+		/** The strings already stored, to share equal values. */
+		private final HashMap<String,String> m_pool = new HashMap<>();
+		/** The number of "FILE" lines followed by tracks. */
+		private int m_files;
+		/** The index of the first track of the current "FILE" line: the tracks before it have another timeline. */
+		private int m_file_first;
+
+		pCUETrackTable_Builder(final pCUETrackTable p_table, final long p_total_length) {
+			m_table = p_table;
+			m_total_length = p_total_length;
+		}
+
+		private String pool(final String p_value) {
+			final String i_value = m_pool.putIfAbsent(p_value, p_value);
+			return (null!=i_value)? i_value : p_value;
+		}
+
+		@Override
+		public void onSheetField(final String p_key, final String p_value) {
+			final int i_column = column(p_key);
+			if (i_column>=0)
+				m_table.m_sheet_values[i_column] = pool(p_value);
+		}
+
+		@Override
+		public void onFile(final String p_media, final String p_type) {
+			if (null==m_table.m_media)
+				m_table.m_media = p_media;
+			m_file_first = m_table.m_count;
+		}
+
+		@Override
+		public void onTrackStart(final int p_number) {
+			final pCUETrackTable t = m_table;
+			if (t.m_count==t.m_starts.length) {
+				final int i_capacity = Math.max(16, t.m_count*2);
+				t.m_starts = Arrays.copyOf(t.m_starts, i_capacity);
+				t.m_ends = Arrays.copyOf(t.m_ends, i_capacity);
+				for(int c=0 ; c<t.m_columns.length ; c++)
+					if (null!=t.m_columns[c])
+						t.m_columns[c] = Arrays.copyOf(t.m_columns[c], i_capacity);
+			}
+			if (t.m_count==m_file_first)
+				m_files++;
+			t.m_starts[t.m_count] = 0;
+			t.m_ends[t.m_count] = -1;
+			t.m_count++;
+		}
+
+		@Override
+		public void onIndex(final long p_frames) {
+			final long i_start = pCUETime.toMillis(p_frames);
+			final int i = m_table.m_count-1;
+			m_table.m_starts[i] = i_start;
+			if (i>m_file_first)
+				m_table.m_ends[i-1] = i_start;
+		}
+
+		@Override
+		public void onTrackField(final String p_key, final String p_value) {
+			final int i_column = column(p_key);
+			if (i_column<0)
+				return;
+			if (null==m_table.m_columns[i_column])
+				m_table.m_columns[i_column] = new String[m_table.m_starts.length];
+			m_table.m_columns[i_column][m_table.m_count-1] = pool(p_value);
+		}
+
+		@Override
+		public void onEnd() {
+			final pCUETrackTable t = m_table;
+			if (t.m_count>0 && t.m_ends[t.m_count-1]<0 && m_total_length>0 && m_files<=1)
+				t.m_ends[t.m_count-1] = m_total_length;
+
+			//*** TRIM THE COLUMNS
+			if (t.m_count<t.m_starts.length) {
+				t.m_starts = Arrays.copyOf(t.m_starts, t.m_count);
+				t.m_ends = Arrays.copyOf(t.m_ends, t.m_count);
+				for(int c=0 ; c<t.m_columns.length ; c++)
+					if (null!=t.m_columns[c])
+						t.m_columns[c] = Arrays.copyOf(t.m_columns[c], t.m_count);
+			}
+
+			//*** THE DEFAULT TITLE PREFIX IS THE LAST SHEET VALUE INHERITED BY THE TRACKS
+			for(String i_key : pCUESheet.getInheritedKeys()) {
+				final String i_value = t.m_sheet_values[column(i_key)];
+				if (pString.isValid(i_value))
+					t.m_title_prefix = i_value;
+			}
+		}
+	}
+
+	/**************************************************************************/
+	/***  RUNTIME DATA  *******************************************************/
+	/**************************************************************************/
+
+	private int m_count;
+	private long[] m_starts = new long[0];
+	private long[] m_ends = new long[0];
+	/** The explicit values of the tracks, by column (<code>null</code> if no track sets the meta-data). */
+	private final String[][] m_columns = new String[COLUMN_KEYS.length][];
+	/** The values of the sheet, by column. */
+	private final String[] m_sheet_values = new String[COLUMN_KEYS.length];
+	/** The sheet value used for the default track titles, or <code>null</code>. */
+	private String m_title_prefix;
+	private String m_media;
+
+	/**************************************************************************/
+	/***  CONSTRUCTORS  *******************************************************/
+	/**************************************************************************/
+
+	private pCUETrackTable() {
+		super();
+	}
+
+	/**************************************************************************/
+	/***  ACCESSOR METHODS  ***************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Gets the number of tracks.
+	 */
+	public int size() {
+		return m_count;
+	}
+
+	/**
+	 * Gets the identifier of a track.
+	 * <p>
+	 * @param p_index The index of the track, starting with 0.
+	 * @see pCUETrack#getID()
+	 */
+	public String getID(final int p_index) {
+		checkIndex(p_index);
+		return pCUETrack.trackID(p_index+1);
+	}
+
+	/**
+	 * Gets the starting time of a track in milliseconds from the beginning of the cue media.
+	 * <p>
+	 * @param p_index The index of the track, starting with 0.
+	 */
+	public long getStart(final int p_index) {
+		checkIndex(p_index);
+		return m_starts[p_index];
+	}
+
+	/**
+	 * Gets the end time of a track in milliseconds from the beginning of the cue media, or <code>-1</code> if unknown.
+	 * <p>
+	 * @param p_index The index of the track, starting with 0.
+	 */
+	public long getEnd(final int p_index) {
+		checkIndex(p_index);
+		return m_ends[p_index];
+	}
+
+	/**
+	 * Gets the duration of a track in milliseconds.
+	 * <p>
+	 * @param p_index The index of the track, starting with 0.
+	 */
+	public long getDuration(final int p_index) {
+		checkIndex(p_index);
+		return (m_ends[p_index]<0)? 0 : m_ends[p_index] - m_starts[p_index];
+	}
+
+	/**
+	 * Gets a meta-data of a track, including the values inherited from the sheet.
+	 * <p>
+	 * @param p_index The index of the track, starting with 0.
+	 * @param p_key One of the <code>MNAME</code> properties returned by {@link pCUETrack#getMetadataKeys()}.
+	 * @return The value, or <code>null</code> if not set.
+	 */
+	public String getString(final int p_index, final String p_key) {
+		checkIndex(p_index);
+
+		if (pMediaUtil.MNAME_TRACK.equals(p_key))
+			return getID(p_index);
+
+		final int i_column = column(p_key);
+		if (i_column<0)
+			return null;
+
+		final String[] i_values = m_columns[i_column];
+		if (null!=i_values && null!=i_values[p_index])
+			return i_values[p_index];
+
+		if (i_column==COLUMN_TITLE)
+			return (null!=m_title_prefix)? pStringUtil.concat(m_title_prefix, " (", getID(p_index), ")") : null;
+
+		final String i_value = m_sheet_values[i_column];
+		return pString.isValid(i_value)? i_value : null;
+	}
+
+	/**
+	 * Gets a meta-data of the sheet.
+	 * <p>
+	 * @param p_key One of the <code>MNAME</code> properties returned by {@link pCUESheet#getMetadataSupportedKeys()}.
+	 * @return The value, or <code>null</code> if not set.
+	 */
+	public String getSheetString(final String p_key) {
+		final int i_column = column(p_key);
+		return (i_column>=0)? m_sheet_values[i_column] : null;
+	}
+
+	/**
+	 * Gets the media file name of the first "FILE..." line, or <code>null</code> if not found.
+	 */
+	public String getMedia() {
+		return m_media;
+	}
+
+	/**
+	 * Creates a {@link pCUETrack} object from a row of this table.
+	 * <p>
+	 * The track is not stored in the table: changing it does not change the table.
+	 * <p>
+	 * @param p_index The index of the track, starting with 0.
+	 */
+	public pCUETrack getTrack(final int p_index) {
+		final pCUETrack i_track = new pCUETrack(getID(p_index), m_starts[p_index], m_ends[p_index]);
+		for(String i_key : COLUMN_KEYS) {
+			final String i_value = getString(p_index, i_key);
+			if (null!=i_value)
+				i_track.getMetadata().put(i_key, i_value);
+		}
+		return i_track;
+	}
+
+	private void checkIndex(final int p_index) {
+		if (p_index<0 || p_index>=m_count)
+			throw new IndexOutOfBoundsException("Track index: " + p_index + ", size: " + m_count);
+	}
+
+	/**************************************************************************/
+	/***  STATIC METHODS  *****************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Parses an existing .cue file into a table.
+	 * <p>
+	 * @param p_path The .cue file.
+	 * @param p_total_length The total length of the cue sheet media, if known (in milliseconds).
+	 * @throws IOException If the file reading failed.
+	 * @see pCUESheet#pCUESheet(Path, long)
+	 */
+	public static pCUETrackTable parse(final Path p_path, final long p_total_length) throws IOException {
+		final pCUETrackTable i_table = new pCUETrackTable();
+		pCUEParser.parse(p_path, new pCUETrackTable_Builder(i_table, p_total_length));
+		return i_table;
+	}
+
+	/**
+	 * Parses the raw bytes of a cue sheet into a table.
+	 * <p>
+	 * @param p_buffer The bytes between the position and the limit of the buffer (the buffer is not modified).
+	 * @param p_total_length The total length of the cue sheet media, if known (in milliseconds).
+	 * @see pCUESheet#pCUESheet(ByteBuffer, long)
+	 */
+	public static pCUETrackTable parse(final ByteBuffer p_buffer, final long p_total_length) {
+		final pCUETrackTable i_table = new pCUETrackTable();
+		pCUEParser.parse(p_buffer, new pCUETrackTable_Builder(i_table, p_total_length));
+		return i_table;
+	}
+
+	/**
+	 * Parses a cue sheet from an input stream into a table.
+	 * <p>
+	 * @param p_stream The input stream.
+	 * @param p_total_length The total length of the cue sheet media, if known (in milliseconds).
+	 * @throws IOException If the stream reading failed.
+	 * @see pCUESheet#pCUESheet(InputStream, long)
+	 */
+	public static pCUETrackTable parse(final InputStream p_stream, final long p_total_length) throws IOException {
+		final pCUETrackTable i_table = new pCUETrackTable();
+		pCUEParser.parse(p_stream, new pCUETrackTable_Builder(i_table, p_total_length));
+		return i_table;
+	}
+
+	/**
+	 * Gets the column of a meta-data.
+	 * <p>
+	 * @return The column, or <code>-1</code> if the meta-data is not stored in columns.
+	 */
+	private static int column(final String p_key) {
+		for(int i=0 ; i<COLUMN_KEYS.length ; i++)
+			if (COLUMN_KEYS[i].equals(p_key))
+				return i;
+		return -1;
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/
@@ -1,23 +1,200 @@
 /*******************************************************************************
- * Copyright (c) 2017-2020 Genialist Software Ltd.
+ * Copyright (c) 2017-2026 Genialist Software Ltd.
  * All rights reserved.
  ******************************************************************************/
 
 package tv.genialist.fwrk.media.cue;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.ref.Reference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import tv.genialist.fwrk.media.pMediaUtil;
+import tv.genialist.ptools.lang.util.pStringUtil;
+import tv.genialist.ptools.string.pPattern;
 import tv.genialist.ptools.string.pString;
 
 /**
  * <p>
  * @author Genialist Software Ltd
- * @version 0.9.8
+ * @version 0.9.30
  */
 public class test_pCUESheet {
 
+	/**************************************************************************/
+	/***  DEFINITIONS  ********************************************************/
+	/**************************************************************************/
+	
+	/** The minimum ratio between the heap per track of a parsed sheet and of a track table. @since 0.9.30 */
+	private static final long MIN_FOOTPRINT_RATIO = 4;
+	
+	/** The number of random sheets of the randomized tests. @since 0.9.30 */
+	private static final int RANDOM_SHEETS = 2000;
+	
+	/** The seed of the randomized tests, so that a failure can be replayed. @since 0.9.30 */
+	private static final long RANDOM_SEED = 3;
+	
+	/** The number of random sheets of the parser test. @since 0.9.30 */
+	private static final int RANDOM_PARSED_SHEETS = 20000;
+	
+	/** The lines the random sheets of the parser test are made of, including invalid ones. @since 0.9.30 */
+	private static final String[] RANDOM_LINES = {
+		"PERFORMER \"A B\"", "PERFORMER X", "PERFORMER X Y", "TITLE \"T\"", "TITLE\t\"T 2\"", "TITLE \"a\"b\"", "TITLEX y", "TITLE  \"\"",
+		"REM GENRE Rock", "REM GENRE \"Pop Rock\"", "REM DATE 1999", "REM DATE \"2001\"", "REM tv_episode \"E1\"", "REM COMMENT x",
+		"FILE \"a b.mp3\" MP3", "FILE x.mp3 MP3", "FILE 'y.mp3' MP3", "TRACK 01 AUDIO", "TRACK 02 AUDIO", "TRACK 3 MODE1",
+		"  INDEX 01 03:04:37", "INDEX 01 99:59:74", "INDEX 00 01:00:00", "INDEX 01 1:00:00", "INDEX  01  12:34:56", "INDEX 01 12:34:5x",
+		"", "   ", "CATALOG 123", "FLAGS DCP", "PERFORMER", "TITLE \"", "REM DATE \"x y\" z"
+	};
+	
+	/**************************************************************************/
+	/***  SUB-CLASSES  ********************************************************/
+	/**************************************************************************/
+	
+	/**
+	 * The parser of the sheets with one MP3 file before 0.9.30, with regular expressions: the reference of {@link test_pCUESheet#testParser()}.
+	 * @since 0.9.30
+	 */
+	private static final class test_pCUESheet_Reference {
+		
+		private static final pPattern[] SHEET_PATTERNS = new pPattern[] {
+			new pPattern(pMediaUtil.MNAME_ARTIST, new String[]{ "PERFORMER\\s+\"([^\"]*)\"", "PERFORMER\\s+([^ \\t\\n]*)" }),
+			new pPattern(pMediaUtil.MNAME_GENRE, new String[]{ "REM GENRE\\s+\"([^\"]*)\"", "REM GENRE\\s+([^ \\t\\n]*)" }),
+			new pPattern(pMediaUtil.MNAME_TITLE, new String[]{ "TITLE\\s+\"([^\"]*)\"", "TITLE\\s+([^ \\t\\n]*)" }),
+			new pPattern(pMediaUtil.MNAME_YEAR, new String[]{ "REM DATE\\s+\"([^\"]*)\"", "REM DATE\\s+([^ \\t\\n]*)" }),
+		};
+		
+		private static final pPattern[] TRACK_PATTERNS = new pPattern[] {
+			new pPattern(pMediaUtil.MNAME_ARTIST, new String[]{ "PERFORMER\\s+\"([^\"]*)\"", "PERFORMER\\s+([^ \\t\\n]*)" }),
+			new pPattern(pMediaUtil.MNAME_GENRE, new String[]{ "REM GENRE\\s+\"([^\"]*)\"", "REM GENRE\\s+([^ \\t\\n]*)" }),
+			new pPattern(pMediaUtil.MNAME_TITLE, new String[]{ "TITLE\\s+\"([^\"]*)\"", "TITLE\\s+([^ \\t\\n]*)" }),
+			new pPattern(pMediaUtil.MNAME_TV_EPISODE, new String[]{ 
+				pStringUtil.concat("REM ", pMediaUtil.MNAME_TV_EPISODE, "\\s+\"([^\"]*)\""), 
+				pStringUtil.concat("REM ", pMediaUtil.MNAME_TV_EPISODE, "\\s+([^ \\t\\n]*)")
+			}),
+			new pPattern(pMediaUtil.MNAME_YEAR, new String[]{ "REM DATE\\s+\"([^\"]*)\"", "REM DATE\\s+([^ \\t\\n]*)" }),
+		};
+		
+		private static final pPattern INDEX = new pPattern("INDEX\\s+01\\s+([0-9][0-9]):([0-9][0-9]):([0-9][0-9])");
+		
+		private final LinkedHashMap<String,String> m_metadata = new LinkedHashMap<>();
+		private final ArrayList<pCUETrack> m_tracks = new ArrayList<>();
+		private final long m_total_length;
+		private String m_media;
+		
+		private test_pCUESheet_Reference(final long p_total_length) {
+			m_total_length = p_total_length;
+		}
+		
+		/**
+		 * Parses a sheet and writes its meta-data, media and tracks as {@link test_pCUESheet#testParser()} does.
+		 */
+		static String parse(final byte[] p_bytes, final long p_total_length) throws IOException {
+			final test_pCUESheet_Reference i_sheet = new test_pCUESheet_Reference(p_total_length);
+			final BufferedReader i_reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(p_bytes), StandardCharsets.UTF_8));
+			String i_line;
+			while(null!=(i_line = i_reader.readLine())) {
+				i_line = i_line.trim();
+				if (pString.isValid(i_line))
+					i_sheet.parseLine(i_reader, i_line);
+			}
+			
+			final StringBuilder i_result = new StringBuilder();
+			for(String i_key : new pCUESheet(-1).getMetadataSupportedKeys())
+				i_result.append(i_key).append('=').append(i_sheet.m_metadata.get(i_key)).append(' ');
+			return i_result.append(i_sheet.m_media).append('\n').append(dump(i_sheet.m_tracks)).toString();
+		}
+		
+		private void parseLine(final BufferedReader p_reader, String p_line) throws IOException {
+			Matcher i_matcher;
+			for(pPattern i_pattern : SHEET_PATTERNS)
+				if (null!=(i_matcher = i_pattern.matcher(p_line))) {
+					m_metadata.put(i_pattern.getID(), i_matcher.group(1));
+					return;
+				}
+			
+			if (p_line.startsWith("FILE ") && p_line.endsWith(" MP3")) {
+				p_line = p_line.substring("FILE ".length());
+				m_media = p_line.substring(0, p_line.length()-" MP3".length()).trim();
+				if ((m_media.charAt(0)=='\"' && m_media.charAt(m_media.length()-1)=='\"') || (m_media.charAt(0)=='\'' && m_media.charAt(m_media.length()-1)=='\''))
+					m_media = m_media.substring(1, m_media.length()-1);
+				
+				String i_line;
+				while(null!=(i_line = p_reader.readLine())) {
+					i_line = i_line.trim();
+					if (pString.isValid(i_line) && i_line.startsWith("TRACK ") && i_line.endsWith(" AUDIO"))
+						while(parseTrack(p_reader));
+				}
+			}
+		}
+		
+		private boolean parseTrack(final BufferedReader p_reader) throws IOException {
+			final pCUETrack i_track = new pCUETrack(pCUETrack.trackID(m_tracks.size()+1));
+			String i_line;
+			for(String i_key : new pCUESheet(-1).getMetadataSupportedKeys()) {
+				i_line = m_metadata.get(i_key);
+				if (pString.isValid(i_line)) {
+					i_track.getMetadata().put(i_key, i_line);
+					i_track.getMetadata().put(pMediaUtil.MNAME_TITLE, pStringUtil.concat(i_line, " (", i_track.getID(), ")"));
+				}
+			}
+			
+			Matcher i_matcher;
+			while(null!=(i_line = p_reader.readLine())) {
+				i_line = i_line.trim();
+				if (!pString.isValid(i_line))
+					continue;
+				if (i_line.startsWith("TRACK ")) {
+					m_tracks.add(i_track);
+					return true;
+				}
+				if (null!=(i_matcher = INDEX.matcher(i_line))) {
+					final long i_frames = Long.parseLong(i_matcher.group(3), 10);
+					i_track.setStart(Long.parseLong(i_matcher.group(1), 10)*60000L + Long.parseLong(i_matcher.group(2), 10)*1000L + 1000L*i_frames/75L);
+					if (m_tracks.size()>0)
+						m_tracks.get(m_tracks.size()-1).setEnd(i_track.getStart());
+					continue;
+				}
+				for(pPattern i_pattern : TRACK_PATTERNS)
+					if (null!=(i_matcher = i_pattern.matcher(i_line))) {
+						i_track.getMetadata().put(i_pattern.getID(), i_matcher.group(1));
+						break;
+					}
+			}
+			
+			if (i_track.getEnd()<0 && m_total_length>0)
+				i_track.setEnd(m_total_length);
+			m_tracks.add(i_track);
+			return false;
+		}
+	}
+	
 	/**************************************************************************/
 	/***  MAIN METHOD  ********************************************************/
 	/**************************************************************************/
@@ -29,6 +206,90 @@ public class test_pCUESheet {
 	 */
 	public static void main(final String[] p_args) {
 		
+		try {
+			testHeapFootprint();
+		} 
+		catch (final Exception e) {
+			e.printStackTrace();
+		}
+		
+		try {
+			testRoundTrip();
+		} 
+		catch (final Exception e) {
+			e.printStackTrace();
+		}
+		
+		try {
+			testInsertTracks();
+		} 
+		catch (final Exception e) {
+			e.printStackTrace();
+		}
+		
+		try {
+			testParser();
+		} 
+		catch (final Exception e) {
+			e.printStackTrace();
+		}
+		
+		try {
+			testPatchWriter();
+		} 
+		catch (final Exception e) {
+			e.printStackTrace();
+		}
+		
+		try {
+			testSheetWriter();
+		} 
+		catch (final Exception e) {
+			e.printStackTrace();
+		}
+		
+		try {
+			testSnapshotStore();
+		} 
+		catch (final Exception e) {
+			e.printStackTrace();
+		}
+		
+		try {
+			testWatcher();
+		} 
+		catch (final Exception e) {
+			e.printStackTrace();
+		}
+		
+		try {
+			testCache();
+		} 
+		catch (final Exception e) {
+			e.printStackTrace();
+		}
+		
+		try {
+			testMediaIndex();
+		} 
+		catch (final Exception e) {
+			e.printStackTrace();
+		}
+		
+		try {
+			testFrozen();
+		} 
+		catch (final Exception e) {
+			e.printStackTrace();
+		}
+		
+		try {
+			testAsync();
+		} 
+		catch (final Exception e) {
+			e.printStackTrace();
+		}
+		
 		try {
 			new pCUESheet(new File("C:\\Music\\=Techno, House & Dance\\DJ Armin van Buuren\\Boundaries Of Imagination\\DJ Armin van Buuren # D1 - Boundaries Of Imagination.cue"), -1);
 		} 
@@ -64,6 +325,730 @@ public class test_pCUESheet {
 			}
 		}
 	}
+	
+	/**
+	 * Checks that a track table takes at least {@link #MIN_FOOTPRINT_RATIO} times less heap than a parsed sheet, for a 300-track sheet.
+	 * <p>
+	 * The heap is measured from the used heap after GC, as the smallest of several measures (JOL is not available to this build).
+	 * <p>
+	 * @throws IllegalStateException If the ratio is not reached.
+	 * @since 0.9.30
+	 */
+	static void testHeapFootprint() throws IOException {
+		final StringBuilder i_text = new StringBuilder("PERFORMER \"Various Artists\"\nTITLE \"DJ Mix\"\nREM GENRE Trance\nREM DATE 2026\nFILE \"mix.mp3\" MP3\n");
+		for(int i=1 ; i<=300 ; i++) {
+			i_text.append("  TRACK ").append(pCUETrack.trackID(i)).append(" AUDIO\n");
+			i_text.append("    PERFORMER \"Artist ").append(i%20).append("\"\n");
+			i_text.append("    INDEX 01 ").append(pString.toString2Digits(i/6)).append(':').append(pString.toString2Digits((i*10)%60)).append(":00\n");
+		}
+		final byte[] i_bytes = i_text.toString().getBytes(StandardCharsets.UTF_8);
+		final int i_count = 100;
+		
+		long i_sheet_size = Long.MAX_VALUE;
+		long i_table_size = Long.MAX_VALUE;
+		for(int j=0 ; j<3 ; j++) {
+			final Object[] i_sheets = new Object[i_count];
+			long i_before = usedMemory();
+			for(int i=0 ; i<i_count ; i++)
+				i_sheets[i] = new pCUESheet(ByteBuffer.wrap(i_bytes), -1);
+			i_sheet_size = Math.min(i_sheet_size, (usedMemory() - i_before) / (i_count*300L));
+			Reference.reachabilityFence(i_sheets);
+			
+			final Object[] i_tables = new Object[i_count];
+			i_before = usedMemory();
+			for(int i=0 ; i<i_count ; i++)
+				i_tables[i] = pCUETrackTable.parse(ByteBuffer.wrap(i_bytes), -1);
+			i_table_size = Math.min(i_table_size, (usedMemory() - i_before) / (i_count*300L));
+			Reference.reachabilityFence(i_tables);
+		}
+		
+		System.out.println("Heap per track: pCUESheet: " + i_sheet_size + " bytes, pCUETrackTable: " + i_table_size + " bytes (" + i_count + " sheets of 300 tracks)");
+		if (i_table_size*MIN_FOOTPRINT_RATIO>i_sheet_size)
+			throw new IllegalStateException("pCUETrackTable is not " + MIN_FOOTPRINT_RATIO + " times smaller than pCUESheet: " + i_table_size + " vs " + i_sheet_size + " bytes per track");
+	}
+	
+	/**
+	 * Checks that the sheets written by {@link pCUESheet#toString()} are parsed back with the same track positions,
+	 * for a track starting at 120 minutes and for {@link #RANDOM_SHEETS} random sheets up to about 200 minutes.
+	 * <p>
+	 * @throws IllegalStateException If a position differs.
+	 * @since 0.9.30
+	 */
+	static void testRoundTrip() throws IOException {
+		//*** MORE THAN 99 MINUTES: THREE DIGITS
+		final pCUESheet i_long = new pCUESheet(-1);
+		i_long.insertTrack(7200000);
+		final pCUESheet i_long_read = new pCUESheet(ByteBuffer.wrap(i_long.toString().getBytes(StandardCharsets.UTF_8)), -1);
+		if (i_long_read.getTrackCount()!=2 || i_long_read.getTracks()[1].getStart()!=7200000)
+			throw new IllegalStateException("Track at 120 minutes not read back: " + i_long_read.toString());
+		
+		final Random i_random = new Random(RANDOM_SEED);
+		int i_diffs = 0;
+		for(int n=0 ; n<RANDOM_SHEETS ; n++) {
+			final StringBuilder i_text = new StringBuilder("TITLE \"Round trip\"\nFILE \"mix.mp3\" MP3\n");
+			long i_frames = i_random.nextInt(100);
+			final int i_count = 1 + i_random.nextInt(30);
+			for(int i=1 ; i<=i_count ; i++) {
+				i_frames += i_random.nextInt(30000);
+				i_text.append("  TRACK ").append(pCUETrack.trackID(i)).append(" AUDIO\n    INDEX 01 ");
+				pCUETime.write(i_text, i_frames);
+				i_text.append('\n');
+			}
+			
+			final pCUESheet i_sheet = new pCUESheet(ByteBuffer.wrap(i_text.toString().getBytes(StandardCharsets.UTF_8)), -1);
+			final pCUESheet i_read = new pCUESheet(ByteBuffer.wrap(i_sheet.toString().getBytes(StandardCharsets.UTF_8)), -1);
+			final pCUETrack[] i_tracks = i_sheet.getTracks();
+			final pCUETrack[] i_tracks_read = i_read.getTracks();
+			if (i_tracks.length!=i_count || i_tracks_read.length!=i_count) {
+				i_diffs++;
+				continue;
+			}
+			for(int i=0 ; i<i_count ; i++)
+				if (i_tracks[i].getStartFrames()!=i_tracks_read[i].getStartFrames() || i_tracks[i].getEndFrames()!=i_tracks_read[i].getEndFrames())
+					i_diffs++;
+		}
+		
+		System.out.println("Round trip: " + RANDOM_SHEETS + " random sheets, differences: " + i_diffs);
+		if (i_diffs>0)
+			throw new IllegalStateException("Round trip differences: " + i_diffs);
+	}
+	
+	/**
+	 * Checks that {@link pCUESheet#insertTracks(long[])} gives the same tracks as {@link pCUESheet#insertTrack(long)} called for each time in turn,
+	 * for {@link #RANDOM_SHEETS} random sheets and times (including duplicate, zero and negative times).
+	 * <p>
+	 * @throws IllegalStateException If the tracks differ.
+	 * @since 0.9.30
+	 */
+	static void testInsertTracks() throws IOException {
+		final Random i_random = new Random(RANDOM_SEED);
+		int i_diffs = 0;
+		for(int n=0 ; n<RANDOM_SHEETS ; n++) {
+			final StringBuilder i_text = new StringBuilder("TITLE \"Insert\"\nFILE \"mix.mp3\" MP3\n");
+			long i_frames = 0;
+			final int i_count = i_random.nextInt(6);
+			for(int i=1 ; i<=i_count ; i++) {
+				i_frames += (i_random.nextInt(3)==0)? 0 : i_random.nextInt(2000);
+				i_text.append("  TRACK ").append(pCUETrack.trackID(i)).append(" AUDIO\n    INDEX 01 ");
+				pCUETime.write(i_text, i_frames);
+				i_text.append('\n');
+			}
+			final byte[] i_bytes = i_text.toString().getBytes(StandardCharsets.UTF_8);
+			final long i_total = i_random.nextBoolean()? -1 : 100000;
+			
+			final long[] i_times = new long[i_random.nextInt(8)];
+			for(int i=0 ; i<i_times.length ; i++)
+				i_times[i] = (i_random.nextInt(5)==0)? -i_random.nextInt(3) : i_random.nextInt(30000);
+			
+			final pCUESheet i_single = new pCUESheet(ByteBuffer.wrap(i_bytes), i_total);
+			int i_single_count = 0;
+			for(long i_time : i_times)
+				if (null!=i_single.insertTrack(i_time))
+					i_single_count++;
+			
+			final pCUESheet i_batch = new pCUESheet(ByteBuffer.wrap(i_bytes), i_total);
+			final int i_batch_count = i_batch.insertTracks(i_times).size();
+			
+			if (i_single_count!=i_batch_count || !dump(i_single).equals(dump(i_batch)))
+				i_diffs++;
+		}
+		
+		System.out.println("insertTracks: " + RANDOM_SHEETS + " random sheets, differences: " + i_diffs);
+		if (i_diffs>0)
+			throw new IllegalStateException("insertTracks differences: " + i_diffs);
+	}
+	
+	/**
+	 * Checks that the parser gives the same sheets as the regular expressions of the previous parser ({@link test_pCUESheet_Reference}),
+	 * for {@link #RANDOM_PARSED_SHEETS} random sheets with one MP3 file, read from streams, heap buffers and direct buffers.
+	 * <p>
+	 * @throws IllegalStateException If the sheets differ.
+	 * @since 0.9.30
+	 */
+	static void testParser() throws IOException {
+		final Random i_random = new Random(RANDOM_SEED);
+		int i_diffs = 0;
+		for(int n=0 ; n<RANDOM_PARSED_SHEETS ; n++) {
+			final StringBuilder i_text = new StringBuilder();
+			boolean i_file = false;
+			final int i_count = i_random.nextInt(40);
+			for(int i=0 ; i<i_count ; i++) {
+				final String i_line = RANDOM_LINES[i_random.nextInt(RANDOM_LINES.length)];
+				//*** ONE MP3 FILE: THE PREVIOUS PARSER IGNORED THE OTHER ONES
+				if (i_line.startsWith("FILE ")) {
+					if (i_file)
+						continue;
+					i_file = true;
+				}
+				i_text.append(i_line).append(i_random.nextBoolean()? "\n" : "\r\n");
+			}
+			final byte[] i_bytes = i_text.toString().getBytes(StandardCharsets.UTF_8);
+			
+			String i_expected;
+			try {
+				i_expected = test_pCUESheet_Reference.parse(i_bytes, 123456);
+			}
+			catch (final RuntimeException ex) {
+				i_expected = "EXC";
+			}
+			String i_actual;
+			try {
+				final pCUESheet i_sheet;
+				switch(n%3) {
+					case 0: i_sheet = new pCUESheet(new ByteArrayInputStream(i_bytes), 123456); break;
+					case 1: i_sheet = new pCUESheet(ByteBuffer.wrap(i_bytes), 123456); break;
+					default: i_sheet = new pCUESheet((ByteBuffer)ByteBuffer.allocateDirect(i_bytes.length).put(i_bytes).flip(), 123456); break;
+				}
+				final StringBuilder i_result = new StringBuilder();
+				for(String i_key : i_sheet.getMetadataSupportedKeys())
+					i_result.append(i_key).append('=').append(i_sheet.getMetadata().getString(i_key)).append(' ');
+				i_actual = i_result.append(i_sheet.getMedia()).append('\n').append(dump(i_sheet)).toString();
+			}
+			catch (final RuntimeException ex) {
+				i_actual = "EXC";
+			}
+			
+			if (!i_expected.equals(i_actual))
+				i_diffs++;
+		}
+		
+		System.out.println("Parser: " + RANDOM_PARSED_SHEETS + " random sheets, differences with the previous parser: " + i_diffs);
+		if (i_diffs>0)
+			throw new IllegalStateException("Parser differences: " + i_diffs);
+	}
+
+	/**
+	 * Checks the bytes written by {@link pCUEPatchWriter}: only the changed values differ, the file is replaced by a temporary
+	 * file with the permissions of the original one, and nothing is written for an unknown track or an UTF-16 sheet.
+	 * <p>
+	 * @throws IllegalStateException If a check fails.
+	 * @since 0.9.30
+	 */
+	static void testPatchWriter() throws IOException {
+		final Path i_dir = Files.createTempDirectory("test_pCUESheet");
+		try {
+			final Path i_path = i_dir.resolve("patch.cue");
+			final String i_text = "PERFORMER \"Various\"\r\nTITLE \"Mix\"\r\nFILE \"mix.mp3\" MP3\r\n  TRACK 01 AUDIO\r\n    TITLE \"Old\"\r\n    INDEX 01 00:00:00\r\n"
+				+ "  TRACK 02 AUDIO\r\n    PERFORMER \"Someone\"\r\n    INDEX 01 03:00:00\r\n";
+			Files.write(i_path, i_text.getBytes(StandardCharsets.UTF_8));
+			final boolean i_posix = i_dir.getFileSystem().supportedFileAttributeViews().contains("posix");
+			if (i_posix)
+				Files.setPosixFilePermissions(i_path, PosixFilePermissions.fromString("rw-r-----"));
+			final Object i_before = Files.readAttributes(i_path, BasicFileAttributes.class).fileKey();
+
+			try (pCUEPatchWriter i_writer = pCUEPatchWriter.open(i_path)) {
+				if (i_writer.set("03", pMediaUtil.MNAME_TITLE, "None") || i_writer.set("01", pString.STRING_NAME, "None"))
+					throw new IllegalStateException("Unknown track or property accepted by pCUEPatchWriter");
+				i_writer.set("01", pMediaUtil.MNAME_TITLE, "New title");
+				i_writer.set("02", pMediaUtil.MNAME_ARTIST, "Other");
+				i_writer.commit();
+			}
+
+			final String i_expected = i_text.replace("\"Old\"", "\"New title\"").replace("\"Someone\"", "\"Other\"");
+			final String i_actual = new String(Files.readAllBytes(i_path), StandardCharsets.UTF_8);
+			if (!i_expected.equals(i_actual))
+				throw new IllegalStateException("Unexpected bytes written by pCUEPatchWriter:\n" + i_actual);
+
+			//*** REPLACED BY A TEMPORARY FILE, WITH THE SAME PERMISSIONS
+			final Object i_after = Files.readAttributes(i_path, BasicFileAttributes.class).fileKey();
+			if (null!=i_before && i_before.equals(i_after))
+				throw new IllegalStateException("File written in place by pCUEPatchWriter");
+			if (i_posix && !"rw-r-----".equals(PosixFilePermissions.toString(Files.getPosixFilePermissions(i_path))))
+				throw new IllegalStateException("Permissions not kept by pCUEPatchWriter: " + PosixFilePermissions.toString(Files.getPosixFilePermissions(i_path)));
+			if (files(i_dir)!=1)
+				throw new IllegalStateException("Temporary file left by pCUEPatchWriter");
+
+			//*** NOTHING TO COMMIT: THE FILE IS NOT REPLACED
+			try (pCUEPatchWriter i_writer = pCUEPatchWriter.open(i_path)) {
+				i_writer.commit();
+			}
+			if (!i_after.equals(Files.readAttributes(i_path, BasicFileAttributes.class).fileKey()))
+				throw new IllegalStateException("File replaced by pCUEPatchWriter without change");
+
+			//*** UTF-16: NOT PATCHED
+			final Path i_utf16 = i_dir.resolve("utf16.cue");
+			Files.write(i_utf16, ("\uFEFF" + i_text).getBytes(StandardCharsets.UTF_16LE));
+			if (null!=pCUEPatchWriter.open(i_utf16))
+				throw new IllegalStateException("UTF-16 sheet opened by pCUEPatchWriter");
+
+			System.out.println("pCUEPatchWriter: patched bytes, replacement and permissions OK");
+		}
+		finally {
+			delete(i_dir);
+		}
+	}
+
+	/**
+	 * Checks that {@link pCUESheetWriter} merges the changes submitted during its delay into one writing,
+	 * and that {@link pCUESheetWriter#flush()} and {@link pCUESheetWriter#close()} write the waiting changes.
+	 * <p>
+	 * @throws IllegalStateException If a check fails.
+	 * @since 0.9.30
+	 */
+	static void testSheetWriter() throws IOException {
+		final Path i_dir = Files.createTempDirectory("test_pCUESheet");
+		final pCUESheetWriter i_writer = new pCUESheetWriter(60000);
+		try {
+			final File i_file = sheet(i_dir, "writer.cue", "Writer", 3);
+
+			final CompletableFuture<Map<String,Set<String>>> i_first = i_writer.submit(i_file, Collections.singletonMap("01", Collections.<String,Object>singletonMap(pMediaUtil.MNAME_TITLE, "First")));
+			final CompletableFuture<Map<String,Set<String>>> i_second = i_writer.submit(i_file, Collections.singletonMap("03", Collections.<String,Object>singletonMap(pMediaUtil.MNAME_ARTIST, "Third")));
+			try {
+				i_writer.submit(i_file, Collections.singletonMap("04", Collections.<String,Object>singletonMap(pMediaUtil.MNAME_TITLE, "None")));
+				throw new IllegalStateException("Unknown track accepted by pCUESheetWriter");
+			}
+			catch (final IOException ex) {
+				//*** EXPECTED
+			}
+			if (i_first.isDone() || i_second.isDone() || 0!=i_writer.getWriteCount())
+				throw new IllegalStateException("Changes written by pCUESheetWriter before its delay");
+
+			i_writer.flush();
+			if (!i_first.isDone() || !i_second.isDone() || 2!=i_writer.getEditCount() || 1!=i_writer.getWriteCount())
+				throw new IllegalStateException("Changes not merged by pCUESheetWriter: " + i_writer.getEditCount() + " edits, " + i_writer.getWriteCount() + " writes");
+			if (!i_first.join().get("01").contains(pMediaUtil.MNAME_TITLE) || !i_second.join().get("03").contains(pMediaUtil.MNAME_ARTIST))
+				throw new IllegalStateException("Unexpected result of pCUESheetWriter: " + i_first.join() + " " + i_second.join());
+
+			final pCUESheet i_sheet = new pCUESheet(i_file, -1);
+			if (!"First".equals(i_sheet.getTrack("01").getMetadata().getString(pMediaUtil.MNAME_TITLE)) || !"Third".equals(i_sheet.getTrack("03").getMetadata().getString(pMediaUtil.MNAME_ARTIST)))
+				throw new IllegalStateException("Changes not written by pCUESheetWriter:\n" + i_sheet);
+
+			final CompletableFuture<Map<String,Set<String>>> i_third = i_writer.submit(i_file, Collections.singletonMap("02", Collections.<String,Object>singletonMap(pMediaUtil.MNAME_TITLE, "Second")));
+			i_writer.close();
+			if (!i_third.isDone() || 2!=i_writer.getWriteCount())
+				throw new IllegalStateException("Changes not written by pCUESheetWriter.close()");
+			if (!"Second".equals(new pCUESheet(i_file, -1).getTrack("02").getMetadata().getString(pMediaUtil.MNAME_TITLE)))
+				throw new IllegalStateException("Change not written by pCUESheetWriter.close()");
+
+			System.out.println("pCUESheetWriter: " + i_writer.getEditCount() + " edits in " + i_writer.getWriteCount() + " writes OK");
+		}
+		finally {
+			i_writer.close();
+			pCUESheetCache.getDefaultInstance().clear();
+			delete(i_dir);
+		}
+	}
+
+	/**
+	 * Checks that {@link pCUESnapshotStore} reads back the sheets it saved, parses again the sheets whose content changed
+	 * (same size, other hash), ignores a store of another version, and forgets the removed sheets.
+	 * <p>
+	 * @throws IllegalStateException If a check fails.
+	 * @since 0.9.30
+	 */
+	static void testSnapshotStore() throws IOException {
+		final Path i_dir = Files.createTempDirectory("test_pCUESheet");
+		try {
+			final File i_file = sheet(i_dir, "store.cue", "Store", 5);
+			final Path i_path = i_dir.resolve("store").resolve("snapshots.bin");
+
+			pCUESnapshotStore i_store = pCUESnapshotStore.open(i_path);
+			final String i_parsed = dump(i_store.load(i_file, i_file.lastModified(), i_file.length()));
+			if (1!=i_store.getParseCount() || 1!=i_store.size())
+				throw new IllegalStateException("Sheet not parsed by pCUESnapshotStore");
+			i_store.save();
+			if (i_dir.getFileSystem().supportedFileAttributeViews().contains("posix") && !"rw-------".equals(PosixFilePermissions.toString(Files.getPosixFilePermissions(i_path))))
+				throw new IllegalStateException("Snapshots readable by other users: " + PosixFilePermissions.toString(Files.getPosixFilePermissions(i_path)));
+
+			//*** READ BACK FROM THE FILE
+			i_store = pCUESnapshotStore.open(i_path);
+			if (!i_parsed.equals(dump(i_store.load(i_file, i_file.lastModified(), i_file.length()))) || 1!=i_store.getHitCount() || 0!=i_store.getParseCount())
+				throw new IllegalStateException("Sheet not read back from pCUESnapshotStore");
+
+			//*** SAME CONTENT, OTHER TIME: THE HASH MATCHES
+			i_store.load(i_file, i_file.lastModified()+1000, i_file.length());
+			if (2!=i_store.getHitCount() || 0!=i_store.getParseCount())
+				throw new IllegalStateException("Snapshot of an unchanged content not used by pCUESnapshotStore");
+
+			//*** OTHER CONTENT OF THE SAME SIZE: THE HASH DIFFERS
+			final byte[] i_bytes = Files.readAllBytes(i_file.toPath());
+			final String i_changed = new String(i_bytes, StandardCharsets.UTF_8).replace("\"Store\"", "\"Shop!\"");
+			Files.write(i_file.toPath(), i_changed.getBytes(StandardCharsets.UTF_8));
+			final pCUESheet i_sheet = i_store.load(i_file, i_file.lastModified()+2000, i_file.length());
+			if (1!=i_store.getParseCount() || !"Shop!".equals(i_sheet.getMetadata().getString(pMediaUtil.MNAME_TITLE)))
+				throw new IllegalStateException("Snapshot of a changed content used by pCUESnapshotStore");
+			i_store.save();
+
+			//*** ANOTHER VERSION: IGNORED
+			final byte[] i_saved = Files.readAllBytes(i_path);
+			final byte[] i_version = i_saved.clone();
+			ByteBuffer.wrap(i_version).putInt(4, pCUESnapshotStore.VERSION+1);
+			Files.write(i_path, i_version);
+			if (0!=pCUESnapshotStore.open(i_path).size())
+				throw new IllegalStateException("Snapshots of another version read by pCUESnapshotStore");
+
+			//*** TRUNCATED: IGNORED
+			Files.write(i_path, Arrays.copyOf(i_saved, i_saved.length-3));
+			if (0!=pCUESnapshotStore.open(i_path).size())
+				throw new IllegalStateException("Truncated snapshots read by pCUESnapshotStore");
+
+			//*** REMOVED: NOT SAVED AGAIN
+			Files.write(i_path, i_saved);
+			i_store = pCUESnapshotStore.open(i_path);
+			i_store.remove(i_file);
+			i_store.save();
+			if (0!=pCUESnapshotStore.open(i_path).size())
+				throw new IllegalStateException("Removed snapshot saved by pCUESnapshotStore");
+
+			System.out.println("pCUESnapshotStore: read back, hash, version and removal OK");
+		}
+		finally {
+			delete(i_dir);
+		}
+	}
+
+	/**
+	 * Checks that {@link pCUESheetWatcher} with a {@link pCUESheetWatcher.pCUESheetWatcher_Invalidator} drops the cached sheet
+	 * of a modified file, even if its size and modification time did not change, and removes a deleted file from the cache and the index.
+	 * <p>
+	 * @throws IllegalStateException If a check fails.
+	 * @since 0.9.30
+	 */
+	static void testWatcher() throws IOException {
+		final Path i_dir = Files.createTempDirectory("test_pCUESheet");
+		final pCUESheetWatcher i_watcher = new pCUESheetWatcher();
+		final pCUEExecutor i_executor = new pCUEExecutor(2);
+		try {
+			final File i_file = sheet(i_dir, "watched.cue", "Watched", 4);
+			final File i_media = i_dir.resolve("watched.mp3").toFile();
+			final pCUESheetCache i_cache = new pCUESheetCache(16, 1<<20);
+			final pCUEMediaIndex i_index = new pCUEMediaIndex();
+			i_cache.setMediaIndex(i_index);
+			final LinkedBlockingQueue<pCUESheetWatcher.pCUESheetWatcher_Event> i_events = new LinkedBlockingQueue<>();
+			i_watcher.setDelay(50);
+			i_watcher.setPollInterval(100);
+			i_watcher.addListener(new pCUESheetWatcher.pCUESheetWatcher_Invalidator(i_cache, i_index, new pCUESidecarFinder(1000, 16), i_executor));
+			i_watcher.addListener(i_events::add);
+			i_watcher.addRoot(i_dir.toFile());
+
+			i_cache.getFrozen(i_file);
+			if (1!=i_index.find(i_media).size())
+				throw new IllegalStateException("Sheet not indexed by pCUESheetCache");
+
+			//*** SAME SIZE AND TIME: ONLY THE WATCHER CAN TELL (UNLESS LISTED PERIODICALLY)
+			final long i_modified = i_file.lastModified();
+			final String i_text = new String(Files.readAllBytes(i_file.toPath()), StandardCharsets.UTF_8);
+			Files.write(i_file.toPath(), i_text.replace("\"Watched\"", "\"Changed\"").getBytes(StandardCharsets.UTF_8));
+			if (!i_watcher.isPolling())
+				i_file.setLastModified(i_modified);
+			event(i_events, pCUESheetWatcher.pCUESheetWatcher_Change.MODIFIED);
+			final long i_end = System.currentTimeMillis() + 10000;
+			while(!"Changed".equals(i_cache.getFrozen(i_file).getMetadata().getString(pMediaUtil.MNAME_TITLE))) {
+				if (System.currentTimeMillis()>i_end)
+					throw new IllegalStateException("Modified sheet not invalidated by pCUESheetWatcher");
+				sleep(20);
+			}
+
+			Files.delete(i_file.toPath());
+			event(i_events, pCUESheetWatcher.pCUESheetWatcher_Change.DELETED);
+			if (0!=i_cache.size() || !i_index.find(i_media).isEmpty())
+				throw new IllegalStateException("Deleted sheet not removed by pCUESheetWatcher: " + i_cache.size() + " cached, " + i_index.find(i_media));
+
+			System.out.println("pCUESheetWatcher: invalidation on modify and delete OK" + (i_watcher.isPolling()? " (polling)" : ""));
+		}
+		finally {
+			i_watcher.close();
+			i_executor.close();
+			delete(i_dir);
+		}
+	}
+
+	/**
+	 * Checks that {@link pCUESheetCache} parses a file once, returns copies and shared frozen sheets, evicts the oldest sheets,
+	 * and parses again an invalidated, changed or deleted file.
+	 * <p>
+	 * @throws IllegalStateException If a check fails.
+	 * @since 0.9.30
+	 */
+	static void testCache() throws IOException {
+		final Path i_dir = Files.createTempDirectory("test_pCUESheet");
+		try {
+			final File i_file = sheet(i_dir, "cache.cue", "Cache", 3);
+			final pCUESheetCache i_cache = new pCUESheetCache(2, 1<<20);
+			final pCUEMediaIndex i_index = new pCUEMediaIndex();
+			i_cache.setMediaIndex(i_index);
+
+			final pCUESheet i_frozen = i_cache.getFrozen(i_file);
+			final pCUESheet i_copy = i_cache.get(i_file, -1);
+			if (!i_frozen.isFrozen() || i_copy.isFrozen() || i_frozen!=i_cache.getFrozen(i_file) || 1!=i_cache.getMissCount() || 2!=i_cache.getHitCount())
+				throw new IllegalStateException("Sheet not shared by pCUESheetCache: " + i_cache.getMissCount() + " misses, " + i_cache.getHitCount() + " hits");
+			i_copy.getMetadata().put(pMediaUtil.MNAME_TITLE, "Copy");
+			if (!"Cache".equals(i_cache.getFrozen(i_file).getMetadata().getString(pMediaUtil.MNAME_TITLE)))
+				throw new IllegalStateException("Cached sheet changed through its copy");
+
+			i_cache.invalidate(i_file);
+			if (i_frozen==i_cache.getFrozen(i_file) || 2!=i_cache.getMissCount())
+				throw new IllegalStateException("Invalidated sheet not parsed again by pCUESheetCache");
+
+			sheet(i_dir, "cache.cue", "Cache changed", 3);
+			if (!"Cache changed".equals(i_cache.getFrozen(i_file).getMetadata().getString(pMediaUtil.MNAME_TITLE)))
+				throw new IllegalStateException("Changed sheet not parsed again by pCUESheetCache");
+
+			i_cache.getFrozen(sheet(i_dir, "cache2.cue", "Cache 2", 1));
+			i_cache.getFrozen(sheet(i_dir, "cache3.cue", "Cache 3", 1));
+			if (2!=i_cache.size())
+				throw new IllegalStateException("Sheets not evicted by pCUESheetCache: " + i_cache.size());
+
+			Files.delete(i_dir.resolve("cache3.cue"));
+			try {
+				i_cache.getFrozen(i_dir.resolve("cache3.cue").toFile());
+				throw new IllegalStateException("Deleted sheet read by pCUESheetCache");
+			}
+			catch (final NoSuchFileException ex) {
+				//*** EXPECTED
+			}
+			//*** THE EVICTED SHEETS STAY IN THE INDEX, NOT THE DELETED ONE
+			if (1!=i_cache.size() || !i_index.find(i_dir.resolve("cache3.mp3").toFile()).isEmpty() || 1!=i_index.find(i_dir.resolve("cache.mp3").toFile()).size())
+				throw new IllegalStateException("Deleted sheet kept by pCUESheetCache: " + i_cache.size() + " cached, " + i_index.getSheetCount() + " indexed");
+
+			System.out.println("pCUESheetCache: " + i_cache.getMissCount() + " misses, " + i_cache.getHitCount() + " hits OK");
+		}
+		finally {
+			delete(i_dir);
+		}
+	}
+
+	/**
+	 * Checks that {@link pCUEMediaIndex} finds the sheets of a media file by path, then by name without extension,
+	 * ignoring the case only if asked to, with the same case first.
+	 * <p>
+	 * @throws IllegalStateException If a check fails.
+	 * @since 0.9.30
+	 */
+	static void testMediaIndex() throws IOException {
+		final File i_dir = new File(System.getProperty("java.io.tmpdir"), "test_pCUESheet");
+		final File i_upper = new File(i_dir, "Upper.cue");
+		final File i_lower = new File(i_dir, "lower.cue");
+		final pCUESheet i_upper_sheet = new pCUESheet(ByteBuffer.wrap("FILE \"Mix.MP3\" MP3\n  TRACK 01 AUDIO\n    INDEX 01 00:00:00\n".getBytes(StandardCharsets.UTF_8)), -1);
+		final pCUESheet i_lower_sheet = new pCUESheet(ByteBuffer.wrap("FILE \"mix.mp3\" MP3\n  TRACK 01 AUDIO\n    INDEX 01 00:00:00\n".getBytes(StandardCharsets.UTF_8)), -1);
+
+		final pCUEMediaIndex i_sensitive = new pCUEMediaIndex(false);
+		i_sensitive.add(i_upper, i_upper_sheet);
+		i_sensitive.add(i_lower, i_lower_sheet);
+		if (1!=i_sensitive.find(new File(i_dir, "Mix.MP3")).size() || !i_upper.getAbsoluteFile().equals(i_sensitive.find(new File(i_dir, "Mix.MP3")).get(0).getSheet()))
+			throw new IllegalStateException("Media file not found by pCUEMediaIndex: " + i_sensitive.find(new File(i_dir, "Mix.MP3")));
+		if (!i_sensitive.find(new File(i_dir, "MIX.mp3")).isEmpty())
+			throw new IllegalStateException("Case ignored by pCUEMediaIndex: " + i_sensitive.find(new File(i_dir, "MIX.mp3")));
+		if (1!=i_sensitive.find(new File(i_dir, "Mix.flac")).size())
+			throw new IllegalStateException("Media file not found by name by pCUEMediaIndex: " + i_sensitive.find(new File(i_dir, "Mix.flac")));
+
+		final pCUEMediaIndex i_insensitive = new pCUEMediaIndex(true);
+		i_insensitive.add(i_upper, i_upper_sheet);
+		i_insensitive.add(i_lower, i_lower_sheet);
+		final List<pCUEMediaIndex.pCUEMediaIndex_Entry> i_found = i_insensitive.find(new File(i_dir, "mix.mp3"));
+		if (2!=i_found.size() || !i_lower.getAbsoluteFile().equals(i_found.get(0).getSheet()) || 2!=i_insensitive.find(new File(i_dir, "MIX.mp3")).size())
+			throw new IllegalStateException("Case not ignored by pCUEMediaIndex: " + i_found);
+
+		i_insensitive.remove(i_lower);
+		if (1!=i_insensitive.find(new File(i_dir, "mix.mp3")).size() || 1!=i_insensitive.getSheetCount())
+			throw new IllegalStateException("Sheet not removed by pCUEMediaIndex: " + i_insensitive.find(new File(i_dir, "mix.mp3")));
+
+		if (pCUEMediaIndex.getDefaultInstance().isIgnoreCase()!=pCUEMediaIndex.isFileSystemCaseInsensitive())
+			throw new IllegalStateException("Case of the default pCUEMediaIndex not detected from the file system");
+
+		System.out.println("pCUEMediaIndex: case " + (pCUEMediaIndex.isFileSystemCaseInsensitive()? "ignored" : "kept") + " by default, lookups OK");
+	}
+
+	/**
+	 * Checks that a frozen sheet has the tracks and meta-data of the parsed sheet, built once, read-only, with the values
+	 * inherited from the sheet, and that the inherited titles of the tracks are kept when they are renumbered.
+	 * <p>
+	 * @throws IllegalStateException If a check fails.
+	 * @since 0.9.30
+	 */
+	static void testFrozen() throws IOException {
+		final byte[] i_bytes = ("PERFORMER \"Sheet artist\"\nTITLE \"Sheet title\"\nREM GENRE Trance\nFILE \"mix.mp3\" MP3\n"
+			+ "  TRACK 01 AUDIO\n    INDEX 01 00:10:00\n  TRACK 02 AUDIO\n    TITLE \"Own\"\n    PERFORMER \"Own artist\"\n    INDEX 01 02:00:00\n"
+			+ "  TRACK 03 AUDIO\n    INDEX 01 04:00:00\n").getBytes(StandardCharsets.UTF_8);
+		final pCUESheet i_sheet = new pCUESheet(ByteBuffer.wrap(i_bytes), 600000);
+
+		//*** INHERITED ON DEMAND ONLY
+		if (null!=i_sheet.getTracks()[0].ownMetadata().get(pMediaUtil.MNAME_ARTIST))
+			throw new IllegalStateException("Inherited values copied by the parser");
+		final String i_expected = dump(new pCUESheet(ByteBuffer.wrap(i_bytes), 600000));
+
+		final pCUESheet i_frozen = i_sheet.freeze();
+		if (i_frozen==i_sheet || !i_frozen.isFrozen() || i_frozen!=i_frozen.freeze() || !i_expected.equals(dump(i_frozen)))
+			throw new IllegalStateException("Frozen sheet differs:\n" + dump(i_frozen));
+		if (!"Sheet artist".equals(i_frozen.getTracks()[0].getMetadata().getString(pMediaUtil.MNAME_ARTIST)) || !"Own artist".equals(i_frozen.getTrack("02").getMetadata().getString(pMediaUtil.MNAME_ARTIST)))
+			throw new IllegalStateException("Values not inherited by the frozen tracks:\n" + dump(i_frozen));
+		if (i_frozen.getMetadata()!=i_frozen.getMetadata() || i_frozen.getTracks()[0].getMetadata()!=i_frozen.getTracks()[0].getMetadata())
+			throw new IllegalStateException("Meta-data of the frozen sheet built on each call");
+
+		int i_rejected = 0;
+		final pCUETrack i_track = i_frozen.getTracks()[0];
+		for(Runnable i_change : new Runnable[] {
+			() -> i_frozen.getMetadata().put(pMediaUtil.MNAME_TITLE, "x"),
+			() -> i_track.getMetadata().put(pMediaUtil.MNAME_TITLE, "x"),
+			() -> i_track.getMetadata().remove(pMediaUtil.MNAME_ARTIST),
+			() -> i_track.getMetadata().entrySet().clear(),
+			() -> i_track.setStart(0),
+			() -> i_frozen.insertTrack(30000),
+		}) {
+			try {
+				i_change.run();
+			}
+			catch (final UnsupportedOperationException ex) {
+				i_rejected++;
+			}
+		}
+		if (6!=i_rejected || !i_expected.equals(dump(i_frozen)))
+			throw new IllegalStateException("Frozen sheet changed: " + (6-i_rejected) + " changes accepted");
+
+		final pCUESheet i_edit = i_frozen.edit();
+		i_edit.getTrack("01").getMetadata().put(pMediaUtil.MNAME_TITLE, "Edited");
+		if (i_edit.isFrozen() || !i_expected.equals(dump(i_frozen)) || !"Edited".equals(i_edit.getTrack("01").getMetadata().getString(pMediaUtil.MNAME_TITLE)))
+			throw new IllegalStateException("Edited copy not separate from the frozen sheet");
+
+		//*** RENUMBERED: THE INHERITED TITLES OF THE PARSED TRACKS ARE KEPT
+		final pCUESheet i_renumbered = new pCUESheet(ByteBuffer.wrap(i_bytes), 600000);
+		final String i_title = i_renumbered.getTrack("03").getMetadata().getString(pMediaUtil.MNAME_TITLE);
+		final pCUESheet i_inserted = new pCUESheet(ByteBuffer.wrap(i_bytes), 600000);
+		i_inserted.insertTrack(1000);
+		if (4!=i_inserted.getTrackCount() || !i_title.equals(i_inserted.getTrack("04").getMetadata().getString(pMediaUtil.MNAME_TITLE)))
+			throw new IllegalStateException("Inherited title changed by the renumbering: " + i_title + " vs " + i_inserted.getTrack("04").getMetadata().getString(pMediaUtil.MNAME_TITLE));
+
+		System.out.println("Frozen sheets: read-only shared meta-data and inherited values OK");
+	}
+
+	/**
+	 * Checks that the background methods of {@link pCUESheet} give the results of the blocking ones, and fail with their exceptions.
+	 * <p>
+	 * @throws IllegalStateException If a check fails.
+	 * @since 0.9.30
+	 */
+	static void testAsync() throws IOException {
+		final Path i_dir = Files.createTempDirectory("test_pCUESheet");
+		try {
+			final File i_file = sheet(i_dir, "async.cue", "Async", 3);
+			if (!dump(new pCUESheet(i_file, 600000)).equals(dump(pCUESheet.parseAsync(i_file.toPath(), 600000).get())))
+				throw new IllegalStateException("Sheet parsed in the background differs");
+
+			final Map<String,Set<String>> i_result = pCUESheet.updateTracksAsync(i_file, Collections.singletonMap("02", Collections.<String,Object>singletonMap(pMediaUtil.MNAME_TITLE, "Async title"))).get();
+			if (!Collections.singleton(pMediaUtil.MNAME_TITLE).equals(i_result.get("02")))
+				throw new IllegalStateException("Unexpected result of updateTracksAsync(): " + i_result);
+
+			final HashMap<String,Object> i_values = new HashMap<>();
+			i_values.put(pMediaUtil.MNAME_TRACK, "03");
+			i_values.put(pMediaUtil.MNAME_ARTIST, "Async artist");
+			if (!pCUESheet.updateAsync(i_file, i_values).get().booleanValue())
+				throw new IllegalStateException("Track not updated by updateAsync()");
+
+			final pCUESheet i_sheet = new pCUESheet(i_file, -1);
+			if (!"Async title".equals(i_sheet.getTrack("02").getMetadata().getString(pMediaUtil.MNAME_TITLE)) || !"Async artist".equals(i_sheet.getTrack("03").getMetadata().getString(pMediaUtil.MNAME_ARTIST)))
+				throw new IllegalStateException("Changes not written in the background:\n" + i_sheet);
+
+			try {
+				pCUESheet.parseAsync(i_dir.resolve("missing.cue")).get();
+				throw new IllegalStateException("Missing sheet parsed in the background");
+			}
+			catch (final ExecutionException ex) {
+				if (!(ex.getCause() instanceof NoSuchFileException))
+					throw new IllegalStateException("Unexpected failure of parseAsync()", ex.getCause());
+			}
+
+			System.out.println("Asynchronous API: parse and updates OK");
+		}
+		catch (final InterruptedException | ExecutionException ex) {
+			throw new IllegalStateException("Background method failed", ex);
+		}
+		finally {
+			pCUESheetCache.getDefaultInstance().clear();
+			delete(i_dir);
+		}
+	}
+
+	/**
+	 * Writes the tracks of a sheet, with their positions and meta-data, for comparisons.
+	 * @since 0.9.30
+	 */
+	private static String dump(final pCUESheet p_sheet) {
+		return dump(p_sheet.getTrackList());
+	}
+	
+	/**
+	 * Writes tracks, with their positions and meta-data, for comparisons.
+	 * @since 0.9.30
+	 */
+	private static String dump(final List<pCUETrack> p_tracks) {
+		final StringBuilder i_result = new StringBuilder();
+		for(pCUETrack i_track : p_tracks) {
+			i_result.append(i_track.getID()).append(' ').append(i_track.getStart()).append(' ').append(i_track.getEnd());
+			for(String i_key : pCUETrack.getMetadataKeys())
+				i_result.append(' ').append(i_key).append('=').append(i_track.getMetadata().getString(i_key));
+			i_result.append('\n');
+		}
+		return i_result.toString();
+	}
+	
+	/**
+	 * Writes a .cue file with a title and tracks of one minute.
+	 * @since 0.9.30
+	 */
+	private static File sheet(final Path p_dir, final String p_name, final String p_title, final int p_tracks) throws IOException {
+		final StringBuilder i_text = new StringBuilder("PERFORMER \"Various\"\nTITLE \"").append(p_title).append("\"\nFILE \"");
+		i_text.append(p_name.substring(0, p_name.lastIndexOf('.'))).append(".mp3\" MP3\n");
+		for(int i=1 ; i<=p_tracks ; i++) {
+			i_text.append("  TRACK ").append(pCUETrack.trackID(i)).append(" AUDIO\n    TITLE \"Track ").append(i).append("\"\n    INDEX 01 ");
+			pCUETime.write(i_text, (i-1)*60L*75L);
+			i_text.append('\n');
+		}
+		final Path i_path = p_dir.resolve(p_name);
+		Files.write(i_path, i_text.toString().getBytes(StandardCharsets.UTF_8));
+		return i_path.toFile();
+	}
+
+	/**
+	 * Waits for an event of a watcher, for 10 seconds at most.
+	 * @since 0.9.30
+	 */
+	private static void event(final LinkedBlockingQueue<pCUESheetWatcher.pCUESheetWatcher_Event> p_events, final pCUESheetWatcher.pCUESheetWatcher_Change p_change) {
+		try {
+			pCUESheetWatcher.pCUESheetWatcher_Event i_event;
+			while(null!=(i_event = p_events.poll(10, TimeUnit.SECONDS)))
+				if (p_change==i_event.getChange())
+					return;
+		}
+		catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		throw new IllegalStateException("No " + p_change + " event from pCUESheetWatcher");
+	}
+
+	private static void sleep(final long p_millis) {
+		try {
+			Thread.sleep(p_millis);
+		}
+		catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Counts the files of a directory.
+	 * @since 0.9.30
+	 */
+	private static long files(final Path p_dir) throws IOException {
+		try (Stream<Path> i_files = Files.list(p_dir)) {
+			return i_files.count();
+		}
+	}
+
+	/**
+	 * Deletes a directory tree.
+	 * @since 0.9.30
+	 */
+	private static void delete(final Path p_dir) throws IOException {
+		try (Stream<Path> i_files = Files.walk(p_dir)) {
+			i_files.sorted(Comparator.reverseOrder()).forEach(p_path -> p_path.toFile().delete());
+		}
+	}
+
+	private static long usedMemory() {
+		for(int i=0 ; i<3 ; i++)
+			System.gc();
+		return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+	}
 }
 
 /******************************************************************************/
@@ -6,16 +6,36 @@
 package tv.genialist.fwrk.plugin;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
 
-import tv.genialist.fwrk.document.pFragmentPosition;
 import tv.genialist.fwrk.document.pMediaDocument;
+import tv.genialist.fwrk.document.file.pCUEDocumentBuilder;
 import tv.genialist.fwrk.document.file.pCUESheetFileDocumentType;
-import tv.genialist.fwrk.document.file.pFileDocument;
 import tv.genialist.fwrk.document.file.pMediaFileDocument;
 import tv.genialist.fwrk.media.pMediaUtil;
+import tv.genialist.fwrk.media.cue.pCUEExecutor;
+import tv.genialist.fwrk.media.cue.pCUELibraryScanner;
+import tv.genialist.fwrk.media.cue.pCUEMediaIndex;
+import tv.genialist.fwrk.media.cue.pCUEMetrics;
 import tv.genialist.fwrk.media.cue.pCUESheet;
+import tv.genialist.fwrk.media.cue.pCUESheetCache;
+import tv.genialist.fwrk.media.cue.pCUESheetWatcher;
+import tv.genialist.fwrk.media.cue.pCUESheetWriter;
+import tv.genialist.fwrk.media.cue.pCUESidecarFinder;
+import tv.genialist.fwrk.media.cue.pCUESnapshotStore;
 import tv.genialist.fwrk.media.cue.pCUETrack;
 import tv.genialist.fwrk.swing.util.service.pFileAcceptMetadata;
 import tv.genialist.fwrk.swing.util.service.pFileAcceptMetadata.pFileAcceptMetadata_Request;
@@ -23,26 +43,60 @@ import tv.genialist.fwrk.swing.util.service.pFileToPlaylist.pFileToPlaylist_Requ
 import tv.genialist.fwrk.swing.util.service.pFileSetMetadata;
 import tv.genialist.fwrk.swing.util.service.pFileToPlaylist;
 import tv.genialist.ptools.lang.util.pStringUtil;
-import tv.genialist.ptools.util.pDuration;
+import tv.genialist.ptools.trace.pTraceImpl;
 import tv.genialist.ptools.util.pFilenameUtil;
 
 /**
  * <p>
  * @author Genialist Software Ltd
  * @since 0.9.29
- * @version 0.9.29
+ * @version 0.9.30
  */
 public class pCUEPlugin extends pBasePlugin {
 
 	/** The prefix used in trace and log messages. */
 	public static final String TRACE_PREFIX = "CUEPlugin";
 	
+	/** 
+	 * The system property, or the property of this plug-in, listing the directories of the media library (separated by the path separator).
+	 * Their .cue files are indexed when the plug-in starts, so that the sheets of another name than their media files are found, and then watched.
+	 * @since 0.9.30 
+	 */
+	public static final String PROPERTY_LIBRARY_ROOTS = "cue.library.roots";
+	
+	/** 
+	 * The system property, or the property of this plug-in, giving the file where the parsed sheets are kept between two runs
+	 * (by default <code>pCUESnapshotStore.bin</code> in the <code>Genialist</code> directory of the local application data of the user
+	 * on Windows, of <code>~/.cache</code> otherwise; empty to parse the .cue files again at each start).
+	 * @since 0.9.30 
+	 */
+	public static final String PROPERTY_SNAPSHOT_FILE = "cue.snapshot.file";
+	
 	/**************************************************************************/
 	/***  RUNTIME DATA  *******************************************************/
 	/**************************************************************************/
 	
 	/** @since 0.9.29 */
-	//private static final pTraceImpl TRACE = pTraceImpl.getTrace(pCUEPlugin.class, TRACE_PREFIX);
+	private static final pTraceImpl TRACE = pTraceImpl.getTrace(pCUEPlugin.class, TRACE_PREFIX);
+	
+	/** @since 0.9.30 */
+	private static final pCUEMetrics.pCUEMetrics_Timer FILE_TO_PLAYLIST = pCUEMetrics.getDefaultInstance().getTimer(pCUEMetrics.SERVICE_FILE_TO_PLAYLIST);
+	/** @since 0.9.30 */
+	private static final pCUEMetrics.pCUEMetrics_Timer SET_METADATA = pCUEMetrics.getDefaultInstance().getTimer(pCUEMetrics.SERVICE_SET_METADATA);
+	/** @since 0.9.30 */
+	private static final pCUEMetrics.pCUEMetrics_Timer ACCEPT_METADATA = pCUEMetrics.getDefaultInstance().getTimer(pCUEMetrics.SERVICE_ACCEPT_METADATA);
+	
+	/** 
+	 * The time the file-to-playlist service waits for the reading of the cue sheet of a media file to start, 
+	 * then for the reading (in milliseconds). @since 0.9.30 
+	 */
+	private static final long FILE_TO_PLAYLIST_TIMEOUT = 10000;
+	
+	/** The scanner indexing the .cue files of the library when the plug-in starts. @since 0.9.30 */
+	private static final pCUELibraryScanner SCANNER = new pCUELibraryScanner();
+	
+	/** The thread reading the snapshots and indexing the library, or <code>null</code>. @since 0.9.30 */
+	private volatile Thread m_start_thread;
 	
 	/** The default instance of this object (initialised by the method {@link #getDefaultInstance()}). */
 	private static pCUEPlugin DEFAULT; 
@@ -61,61 +115,19 @@ public class pCUEPlugin extends pBasePlugin {
 			
 			@Override
 			public boolean invoke(final pFileToPlaylist_Request p_request) {
-
-				final File i_file = p_request.getSourceFile();
-				final List<pMediaDocument> i_result = p_request.getResult();
-				final String p_default_title = p_request.getDefaultTitle();
-				final long p_default_duration = p_request.getDefaultDuration();
-				
-				final String i_name = i_file.getName();
-				//0.9.20
-				final int i_ext = pFilenameUtil.indexOfExtension(i_name);
-				if (i_ext<0)
-				//if (null==pFilenameUtil.getExtension(i_name))
+				//0.9.30: measured, and the failures are logged instead of printed
+				final long i_start = System.nanoTime();
+				try {
+					final boolean i_result = toPlaylist(p_request);
+					FILE_TO_PLAYLIST.record(System.nanoTime() - i_start);
+					return i_result;
+				}
+				catch (final Exception ex) {
+					FILE_TO_PLAYLIST.recordFailure(System.nanoTime() - i_start);
+					if (TRACE.isErrorEnabled())
+						TRACE.error("Failed to read CUE Sheet file of: ", p_request.getSourceFile(), ex);
 					return false;
-				
-				//0.9.20
-				final File i_file_cue = new File(i_file.getParent(), pStringUtil.concat(i_name, 0, i_ext, ".cue"));
-				//File i_file_cue = new File(i_file.getParent(), pFilenameUtil.removeExtension(i_name)+".cue");
-				if (i_file_cue.exists() && i_file_cue.canRead() && i_file_cue.isFile()) {
-					try {
-						pCUESheet i_cue = new pCUESheet(i_file_cue, p_default_duration);
-						
-						i_cue.getMetadata().put(pMediaUtil.MNAME_TITLE, (null==p_default_title)? i_file.getName() : p_default_title);
-						
-						pFileDocument i_first_doc = null;
-						for(pCUETrack i_track : i_cue.getTracks()) {
-							pMediaFileDocument i_doc = new pMediaFileDocument(i_file);
-							
-							pFragmentPosition i_position = new pFragmentPosition();
-							i_position.setStartPosition(i_track.getStart());
-							i_position.setEndPosition(i_track.getEnd());
-							
-							i_doc.setFragment(i_position);
-							i_doc.setMetadata(i_track.getMetadata());
-							i_doc.setID(i_track.getID());
-							
-							pDuration i_duration = pDuration.getInstance(i_track.getDuration());
-							i_doc.putValue(pMediaUtil.MNAME_LENGTH, i_duration);
-							i_doc.getMetadata().setDuration(i_duration);
-							
-							i_doc.getMetadata().put(pMediaUtil.MNAME_TRACKS_FILE, i_file_cue.getAbsolutePath());
-							
-							if (null==i_first_doc)
-								i_first_doc = i_doc;
-							
-							i_result.add(i_doc);
-						}
-						if (null!=i_first_doc) {
-							return true;
-						}
-					}
-					catch (final Exception ex) {
-						ex.printStackTrace();
-						//TODO:...
-					}
 				}
-				return false;
 			}
 		});
 		
@@ -124,7 +136,30 @@ public class pCUEPlugin extends pBasePlugin {
 
 			@Override
 			public boolean provide(final File p_source, final Map<String,Object> p_values) throws Exception {
-				return pCUESheet.update(p_source, p_values);
+				//0.9.30: setMetadata() returns once the changes are queued, so the timer measures the writing when it completes;
+				//an exception is recorded as a failure
+				final long i_start = System.nanoTime();
+				final CompletableFuture<Map<String,Set<String>>> i_result;
+				try {
+					i_result = setMetadata(p_source, p_values);
+				}
+				catch (final IOException | RuntimeException ex) {
+					SET_METADATA.recordFailure(System.nanoTime() - i_start);
+					throw ex;
+				}
+				if (null==i_result) {
+					SET_METADATA.record(System.nanoTime() - i_start);
+					return false;
+				}
+				
+				//*** WRITE FAILURES ARE LOGGED BY THE WRITER
+				i_result.whenComplete((i_changed, ex) -> {
+					if (null==ex)
+						SET_METADATA.record(System.nanoTime() - i_start);
+					else
+						SET_METADATA.recordFailure(System.nanoTime() - i_start);
+				});
+				return true;
 			}
 		});
 		
@@ -132,15 +167,21 @@ public class pCUEPlugin extends pBasePlugin {
 
 			@Override
 			public boolean invoke(final pFileAcceptMetadata_Request p_request) {
-				
-				if (pCUESheetFileDocumentType.getDefaultInstance().accept(p_request.getSourceFile())) {
-					if (pCUETrack.getMetadataKeys().contains(p_request.getMetadataType()))
-						p_request.setResult(false);
+				//0.9.30
+				final long i_start = System.nanoTime();
+				try {
+					if (pCUESheetFileDocumentType.getDefaultInstance().accept(p_request.getSourceFile())) {
+						if (pCUETrack.getMetadataKeys().contains(p_request.getMetadataType()))
+							p_request.setResult(false);
+						
+						return true;
+					}
 					
-					return true;
+					return false;
+				}
+				finally {
+					ACCEPT_METADATA.record(System.nanoTime() - i_start);
 				}
-				
-				return false;
 			}
 		});
 	}
@@ -148,7 +189,209 @@ public class pCUEPlugin extends pBasePlugin {
 	/**************************************************************************/
 	/***  METHODS  ************************************************************/
 	/**************************************************************************/
+	
+	/**
+	 * Adds the tracks of the cue sheet of a media file to a playlist.
+	 * <p>
+	 * @param p_request The request of the file-to-playlist service.
+	 * @return <code>true</code> if tracks have been added.
+	 * @throws Exception If the cue sheet cannot be read, or if its reading does not start or end within {@link #FILE_TO_PLAYLIST_TIMEOUT}.
+	 * @since 0.9.30
+	 */
+	private static boolean toPlaylist(final pFileToPlaylist_Request p_request) throws Exception {
 
+		final File i_file = p_request.getSourceFile();
+		final List<pMediaDocument> i_result = p_request.getResult();
+		final long p_default_duration = p_request.getDefaultDuration();
+		
+		final String i_name = i_file.getName();
+		//0.9.20
+		final int i_ext = pFilenameUtil.indexOfExtension(i_name);
+		if (i_ext<0)
+		//if (null==pFilenameUtil.getExtension(i_name))
+			return false;
+		
+		//0.9.30: read in the background, so that a slow network share cannot block the caller for longer than the timeout.
+		//        The reading is never interrupted, as other threads may wait for the same sheet in the cache:
+		//        after a timeout it goes on, and the sheet is cached for the next request.
+		final CompletableFuture<Void> i_started = new CompletableFuture<>();
+		final CompletableFuture<List<pMediaFileDocument>> i_future = pCUEExecutor.getDefaultInstance().submit(() -> {
+			i_started.complete(null);
+			return documents(i_file, i_ext, p_default_duration);
+		});
+		final List<pMediaFileDocument> i_documents;
+		try {
+			//*** THE TIME WAITING FOR A SLOT OF THE EXECUTOR IS NOT PART OF THE TIMEOUT OF THE READING
+			try {
+				CompletableFuture.anyOf(i_started, i_future).get(FILE_TO_PLAYLIST_TIMEOUT, TimeUnit.MILLISECONDS);
+			}
+			catch (final TimeoutException ex) {
+				i_future.cancel(false);
+				throw new IOException("CUE Sheet file reading not started in time: ".concat(i_file.getPath()), ex);
+			}
+			i_documents = i_future.get(FILE_TO_PLAYLIST_TIMEOUT, TimeUnit.MILLISECONDS);
+		}
+		catch (final InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		catch (final ExecutionException ex) {
+			throw (ex.getCause() instanceof Exception)? (Exception)ex.getCause() : ex;
+		}
+		catch (final TimeoutException ex) {
+			throw new IOException("CUE Sheet file not read in time, still reading: ".concat(i_file.getPath()), ex);
+		}
+		
+		i_result.addAll(i_documents);
+		return !i_documents.isEmpty();
+	}
+	
+	/**
+	 * Creates the documents of the tracks of the cue sheet of a media file.
+	 * <p>
+	 * @param p_file The media file.
+	 * @param p_ext The index of the extension in the name of the media file.
+	 * @param p_default_duration The length of the media file, if known (in milliseconds).
+	 * @return The documents (empty if the media file has no cue sheet).
+	 * @throws IOException If the cue sheet cannot be read.
+	 * @since 0.9.30
+	 */
+	private static List<pMediaFileDocument> documents(final File p_file, final int p_ext, final long p_default_duration) throws IOException {
+		final String i_name = p_file.getName();
+		final ArrayList<pMediaFileDocument> i_result = new ArrayList<>();
+		
+		//0.9.30: directory snapshot instead of exists(), canRead() and isFile() for every media file
+		File i_file_cue = pCUESidecarFinder.getDefaultInstance().find(p_file.getAbsoluteFile().getParentFile(), pStringUtil.concat(i_name, 0, p_ext, ".cue"));
+		
+		if (null!=i_file_cue) {
+			//0.9.30: the shared sheet, not a copy: the documents copy the meta-data of their track on first access only
+			pCUEDocumentBuilder.addDocuments(p_file, i_file_cue, pCUESheetCache.getDefaultInstance().getFrozen(i_file_cue), p_default_duration, i_result);
+			return i_result;
+		}
+		
+		//0.9.30: otherwise the first sheet of another name that references the media file in a "FILE" line and still has tracks for it
+		for(pCUEMediaIndex.pCUEMediaIndex_Entry i_entry : pCUEMediaIndex.getDefaultInstance().find(p_file)) {
+			final List<pCUETrack> i_tracks;
+			try {
+				i_tracks = i_entry.getTracks(pCUESheetCache.getDefaultInstance().getFrozen(i_entry.getSheet()));
+			}
+			catch (final IOException ex) {
+				if (TRACE.isDebugEnabled())
+					TRACE.debug("Failed to read CUE Sheet file: ", i_entry.getSheet(), ex);
+				continue;
+			}
+			
+			//*** ONLY THE TRACKS OF THIS MEDIA FILE WHEN THE SHEET REFERENCES SEVERAL FILES
+			if (!i_tracks.isEmpty()) {
+				pCUEDocumentBuilder.addDocuments(p_file, i_entry.getSheet(), i_tracks, p_default_duration, i_result);
+				break;
+			}
+		}
+		return i_result;
+	}
+	
+	/**
+	 * Changes meta-data of tracks in a .cue file, without waiting for the writing.
+	 * <p>
+	 * The value of the {@link pMediaUtil#MNAME_TRACK} property selects the tracks:
+	 * <ul>
+	 * <li>an identifier: the other values of the map are written into this track;</li>
+	 * <li>a map of the maps of values to write by track identifier, to change several tracks at once: the other values of
+	 * the map are ignored.</li>
+	 * </ul>
+	 * The {@link pMediaUtil#MNAME_TRACK} values are never written: the tracks are not renumbered.
+	 * <p>
+	 * The changes are checked, then written in the background, merged with the other changes of the file submitted meanwhile.
+	 * <p>
+	 * @param p_source The .cue file.
+	 * @param p_values The values to change: the values supported by CUE Sheet tracks are removed once they are queued,
+	 * when the maps can be modified.
+	 * @return The completion of the writing (see {@link pCUESheetWriter#submit(File, Map)}), 
+	 * or <code>null</code> if there is nothing to write into this file.
+	 * @throws IOException If the file cannot be read, or if a track cannot be found in it.
+	 * @since 0.9.30
+	 */
+	private static CompletableFuture<Map<String,Set<String>>> setMetadata(final File p_source, final Map<String,Object> p_values) throws IOException {
+		if (null==p_values || p_values.size()<1)
+			return null;
+		if (!p_source.isFile() || !pCUESheetFileDocumentType.getDefaultInstance().accept(p_source))
+			return null;
+		
+		final Object i_tracks = p_values.get(pMediaUtil.MNAME_TRACK);
+		if (null==i_tracks)
+			return null;
+		final Map<String,Map<String,Object>> i_values = (i_tracks instanceof Map)? edits((Map<?,?>)i_tracks) : Collections.singletonMap(i_tracks.toString(), p_values);
+		
+		//*** THE TRACK SELECTION IS NOT A VALUE TO WRITE
+		final LinkedHashMap<String,Map<String,Object>> i_edits = new LinkedHashMap<>(i_values.size()*4/3+1);
+		for(Map.Entry<String,Map<String,Object>> i_entry : i_values.entrySet()) {
+			final LinkedHashMap<String,Object> i_edit = new LinkedHashMap<>(i_entry.getValue());
+			i_edit.remove(pMediaUtil.MNAME_TRACK);
+			i_edits.put(i_entry.getKey(), i_edit);
+		}
+		
+		//0.9.30: written in the background, merged with the other changes of the file
+		final CompletableFuture<Map<String,Set<String>>> i_result = pCUESheetWriter.getDefaultInstance().submit(p_source, i_edits);
+		
+		//*** REMOVE THE VALUES QUEUED FOR THE FILE
+		for(Map<String,Object> i_map : i_values.values()) {
+			try {
+				for(String i_key : pCUETrack.getMetadataKeys())
+					if (!pMediaUtil.MNAME_TRACK.equals(i_key))
+						i_map.remove(i_key);
+			}
+			catch (final UnsupportedOperationException ex) {
+				//*** THE VALUES ARE KEPT
+			}
+		}
+		return i_result;
+	}
+	
+	/**
+	 * Starts this plug-in.
+	 * This method must be thread-safe.
+	 * In case of overwriting, the method of the parent class should be invoked as well.
+	 * <p>
+	 * The snapshots of the parsed sheets (see {@link #PROPERTY_SNAPSHOT_FILE}) are read, then the .cue files of the library directories
+	 * (see {@link #PROPERTY_LIBRARY_ROOTS}) are indexed and watched, in the background.
+	 * @since 0.9.30
+	 */
+	public void start() {
+		super.start();
+		
+		final File i_snapshots = getSnapshotFile();
+		final List<File> i_roots = getLibraryRoots();
+		if (null==i_snapshots && i_roots.isEmpty())
+			return;
+		
+		final Thread i_thread = new Thread(() -> {
+			if (null!=i_snapshots) {
+				try {
+					//*** THE SHEETS OF THE LIBRARY THAT DID NOT CHANGE ARE NOT PARSED AGAIN
+					final pCUESnapshotStore i_store = pCUESnapshotStore.open(i_snapshots.toPath());
+					pCUESheetCache.getDefaultInstance().setSnapshotStore(i_store);
+					SCANNER.setSnapshotStore(i_store);
+				}
+				catch (final IOException ex) {
+					if (TRACE.isErrorEnabled())
+						TRACE.error("Failed to read CUE Sheet snapshots: ", i_snapshots, ex);
+				}
+			}
+			for(File i_root : i_roots) {
+				//*** STOPPED MEANWHILE
+				if (m_start_thread!=Thread.currentThread())
+					return;
+				SCANNER.index(i_root);
+				//*** THE CHANGES OF THE SHEETS UPDATE THE CACHE AND THE INDEX
+				if (m_start_thread==Thread.currentThread())
+					pCUESheetWatcher.getDefaultInstance().addRoot(i_root);
+			}
+		}, TRACE_PREFIX);
+		i_thread.setDaemon(true);
+		m_start_thread = i_thread;
+		i_thread.start();
+	}
+	
 	/**
 	 * Stops this plug-in.
 	 * This method must be thread-safe.
@@ -157,13 +400,132 @@ public class pCUEPlugin extends pBasePlugin {
 	public void stop() {
 		super.stop();
 		
+		//0.9.30: stop indexing the library, and wait for the end of the start so that no root is watched after stop
+		SCANNER.cancel();
+		final Thread i_start_thread = m_start_thread;
+		m_start_thread = null;
+		if (null!=i_start_thread) {
+			try {
+				i_start_thread.join();
+			}
+			catch (final InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		//0.9.30: stop publishing the changes of the sheets
+		pCUESheetWatcher.getDefaultInstance().close();
+		
+		//0.9.30: write the waiting metadata changes
+		pCUESheetWriter.getDefaultInstance().close();
+		
+		//0.9.30: cancel the waiting background readings
+		pCUEExecutor.getDefaultInstance().close();
+		
 		pCUESheetFileDocumentType.getDefaultInstance().clearCache();
+		
+		//0.9.30: keep the parsed sheets for the next start
+		final pCUESnapshotStore i_store = pCUESheetCache.getDefaultInstance().getSnapshotStore();
+		if (null!=i_store) {
+			pCUESheetCache.getDefaultInstance().setSnapshotStore(null);
+			SCANNER.setSnapshotStore(null);
+			try {
+				i_store.save();
+			}
+			catch (final IOException ex) {
+				if (TRACE.isErrorEnabled())
+					TRACE.error("Failed to write CUE Sheet snapshots: ", i_store.getPath(), ex);
+			}
+		}
+		
+		//0.9.30
+		pCUESheetCache.getDefaultInstance().clear();
+		pCUESidecarFinder.getDefaultInstance().clear();
 	}
 	
 	/**************************************************************************/
 	/***  STATIC METHODS  *****************************************************/
 	/**************************************************************************/
 	
+	/**
+	 * Gets the directories of the media library, from the {@link #PROPERTY_LIBRARY_ROOTS} system property,
+	 * otherwise from the properties of this plug-in.
+	 * <p>
+	 * @return The existing directories (can be empty, but not <code>null</code>).
+	 * @since 0.9.30
+	 */
+	static List<File> getLibraryRoots() {
+		final String i_value = getProperty(PROPERTY_LIBRARY_ROOTS);
+		final ArrayList<File> i_result = new ArrayList<>();
+		if (null==i_value)
+			return i_result;
+		for(String i_path : i_value.split(Pattern.quote(File.pathSeparator))) {
+			final File i_root = new File(i_path.trim());
+			if (!i_path.trim().isEmpty() && i_root.isDirectory())
+				i_result.add(i_root);
+		}
+		return i_result;
+	}
+	
+	/**
+	 * Gets the file of the snapshots of the parsed sheets, from the {@link #PROPERTY_SNAPSHOT_FILE} system property,
+	 * otherwise from the properties of this plug-in.
+	 * <p>
+	 * @return The file, or <code>null</code> if the sheets are not kept between two runs.
+	 * @since 0.9.30
+	 */
+	static File getSnapshotFile() {
+		final String i_value = getProperty(PROPERTY_SNAPSHOT_FILE);
+		if (null!=i_value)
+			return i_value.trim().isEmpty()? null : new File(i_value.trim());
+		
+		//*** A DIRECTORY OF THE USER, NOT THE SHARED TEMPORARY DIRECTORY
+		final File i_dir = getUserCacheDirectory();
+		return (null!=i_dir)? new File(new File(i_dir, "Genialist"), "pCUESnapshotStore.bin") : null;
+	}
+	
+	/**
+	 * Gets the directory of the cached application data of the user: <code>%LOCALAPPDATA%</code> on Windows, 
+	 * otherwise <code>$XDG_CACHE_HOME</code> or <code>~/.cache</code>.
+	 * <p>
+	 * @return The directory, or <code>null</code> if not known.
+	 * @since 0.9.30
+	 */
+	private static File getUserCacheDirectory() {
+		final String i_os = System.getProperty("os.name", "");
+		final String i_local = i_os.startsWith("Windows")? System.getenv("LOCALAPPDATA") : System.getenv("XDG_CACHE_HOME");
+		if (null!=i_local && !i_local.trim().isEmpty() && new File(i_local.trim()).isAbsolute())
+			return new File(i_local.trim());
+		
+		final String i_home = System.getProperty("user.home");
+		if (null==i_home || i_home.trim().isEmpty())
+			return null;
+		return i_os.startsWith("Windows")? new File(i_home, "AppData" + File.separator + "Local") : new File(i_home, ".cache");
+	}
+	
+	/**
+	 * Gets a system property, otherwise a property of this plug-in.
+	 * <p>
+	 * @return The value, or <code>null</code> if not defined.
+	 * @since 0.9.30
+	 */
+	private static String getProperty(final String p_name) {
+		final String i_value = System.getProperty(p_name);
+		if (null!=i_value)
+			return i_value;
+		
+		final Properties i_properties = new Properties();
+		try (InputStream i_stream = pCUEPlugin.class.getResourceAsStream("pCUEPlugin.properties")) {
+			if (null!=i_stream)
+				i_properties.load(i_stream);
+		}
+		catch (final IOException ex) {
+			if (TRACE.isErrorEnabled())
+				TRACE.error("Failed to read the properties of the CUE plug-in", ex);
+		}
+		return i_properties.getProperty(p_name);
+	}
+	
 	/**
 	 * Gets a default instance of this class.
 	 * <p>
@@ -174,6 +536,22 @@ public class pCUEPlugin extends pBasePlugin {
 			DEFAULT = new pCUEPlugin();
     	return DEFAULT;
 	}
+	
+	/**
+	 * Gets the maps of metadata values to change by track identifier.
+	 * <p>
+	 * @param p_tracks The value of the {@link pMediaUtil#MNAME_TRACK} property: the maps of values by track identifier
+	 * (see {@link #setMetadata(File, Map)}). The entries that are not maps are ignored.
+	 * @since 0.9.30
+	 */
+	@SuppressWarnings("unchecked")
+	private static Map<String,Map<String,Object>> edits(final Map<?,?> p_tracks) {
+		final LinkedHashMap<String,Map<String,Object>> i_result = new LinkedHashMap<>(p_tracks.size()*4/3+1);
+		for(Map.Entry<?,?> i_entry : p_tracks.entrySet())
+			if (i_entry.getValue() instanceof Map)
+				i_result.put(String.valueOf(i_entry.getKey()), (Map<String,Object>)i_entry.getValue());
+		return i_result;
+	}
 }
 
 /******************************************************************************/
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2026 Genialist Software Ltd.
+ * All rights reserved.
+ ******************************************************************************/
+
+package tv.genialist.fwrk.media.cue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tv.genialist.fwrk.document.file.pCUEDocumentBuilder;
+import tv.genialist.fwrk.media.pMediaUtil;
+
+/**
+ * Measures the main paths of the cue sheet classes with JMH, on the synthetic sheets of {@link bench_pCUESheet}.
+ * <p>
+ * This class is compiled and run by the <code>bench-jmh</code> target of the Ant build only, with the JMH jars
+ * (<code>jmh-core</code>, <code>jmh-generator-annprocess</code> and their dependencies) of the <code>jmh.dir</code> directory.
+ * The allocations are measured by the GC profiler of JMH.
+ * <p>
+ * <b>Example:</b>
+ * <dl>
+ * <dd><code>
+ * ant bench-jmh -Djmh.dir=.../jmh -Djmh.args="bench_pCUESheetJMH.parse -p size=1000 -prof gc"<br>
+ * </code>
+ * </dl>
+ * <p>
+ * @author Genialist Software Ltd
+ * @since 0.9.30
+ * @version 0.9.30
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xms512m", "-Xmx512m" })
+public class bench_pCUESheetJMH {
+
+	/**************************************************************************/
+	/***  RUNTIME DATA  *******************************************************/
+	/**************************************************************************/
+
+	/** The number of tracks of the sheet. */
+	@Param({ "10", "100", "1000", "10000" })
+	public int size;
+
+	/** The encoding of the parsed sheet. */
+	@Param({ "UTF8", "UTF8_BOM", "UTF16_BOM", "WINDOWS_1252" })
+	public String encoding;
+
+	private byte[] m_bytes;
+	private pCUESheet m_sheet;
+	private String[] m_ids;
+	private long m_end;
+	private int m_index;
+
+	private Path m_dir;
+	private File m_file;
+	private File m_media;
+
+	/**************************************************************************/
+	/***  METHODS  ************************************************************/
+	/**************************************************************************/
+
+	/**
+	 * Generates the sheet, and writes the files of the benchmarks that read or write them.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		m_bytes = bench_pCUESheet.generate(size, 42L+size, bench_pCUESheet.bench_pCUESheet_Encoding.valueOf(encoding));
+		m_sheet = new pCUESheet(ByteBuffer.wrap(m_bytes), -1);
+		final pCUETrack[] i_tracks = m_sheet.getTracks();
+		m_ids = new String[i_tracks.length];
+		for(int i=0 ; i<i_tracks.length ; i++)
+			m_ids[i] = i_tracks[i].getID();
+		m_end = i_tracks[i_tracks.length-1].getStart();
+
+		m_dir = Files.createTempDirectory("bench_pCUESheetJMH");
+		m_file = m_dir.resolve("bench" + size + ".cue").toFile();
+		Files.write(m_file.toPath(), m_bytes);
+		m_media = m_dir.resolve("playlist" + size + ".mp3").toFile();
+		Files.write(m_media.toPath(), new byte[0]);
+		Files.write(m_dir.resolve("playlist" + size + ".cue"), m_bytes);
+	}
+
+	/**
+	 * Deletes the files of the benchmarks.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		pCUESheetCache.getDefaultInstance().clear();
+		try (final Stream<Path> i_files = Files.walk(m_dir)) {
+			i_files.sorted(Comparator.reverseOrder()).forEach(p_path -> p_path.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public pCUESheet parse() throws IOException {
+		return new pCUESheet(ByteBuffer.wrap(m_bytes), -1);
+	}
+
+	@Benchmark
+	public pCUETrack[] getTracks() {
+		return m_sheet.getTracks();
+	}
+
+	@Benchmark
+	public pCUETrack getTrack() {
+		return m_sheet.getTrack(m_ids[m_index++ % m_ids.length]);
+	}
+
+	/**
+	 * Copies the sheet alone, so that the copy can be subtracted from {@link #insertTrack()}.
+	 */
+	@Benchmark
+	public pCUESheet copy() {
+		return m_sheet.copy(-1);
+	}
+
+	@Benchmark
+	public pCUETrack insertTrack() {
+		return m_sheet.copy(-1).insertTrack(1 + (m_index++ * 7919L) % m_end);
+	}
+
+	@Benchmark
+	public String toString_() {
+		return m_sheet.toString();
+	}
+
+	@Benchmark
+	public File save() throws IOException {
+		m_sheet.save(m_file, "bench.mp3");
+		return m_file;
+	}
+
+	@Benchmark
+	public boolean update() throws IOException {
+		final HashMap<String,Object> i_values = new HashMap<>();
+		i_values.put(pMediaUtil.MNAME_TRACK, m_ids[m_index % m_ids.length]);
+		i_values.put(pMediaUtil.MNAME_TITLE, "Title " + m_index++);
+		return pCUESheet.update(m_file, i_values);
+	}
+
+	/**
+	 * The path of the file-to-playlist service of the plug-in: sidecar lookup, shared frozen sheet, documents.
+	 */
+	@Benchmark
+	public int playlist() throws IOException {
+		final File i_cue = pCUESidecarFinder.getDefaultInstance().find(m_media.getParentFile(), "playlist" + size + ".cue");
+		final pCUESheet i_cached = pCUESheetCache.getDefaultInstance().getFrozen(i_cue);
+		return pCUEDocumentBuilder.addDocuments(m_media, i_cue, i_cached, -1, new ArrayList<>());
+	}
+}
+
+/******************************************************************************/
+/***  END OF FILE  ************************************************************/
+/******************************************************************************/